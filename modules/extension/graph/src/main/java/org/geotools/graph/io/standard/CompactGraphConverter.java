@@ -0,0 +1,87 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.graph.io.standard;
+
+import org.geotools.graph.build.GraphBuilder;
+import org.geotools.graph.build.basic.BasicDirectedGraphBuilder;
+import org.geotools.graph.build.basic.BasicGraphBuilder;
+import org.geotools.graph.io.GraphReaderWriter;
+import org.geotools.graph.structure.Graph;
+import org.geotools.graph.traverse.standard.DijkstraIterator.EdgeWeighter;
+
+/**
+ * Converts graphs stored by another GraphReaderWriter, such as {@link SerializedReaderWriter}
+ * or a {@link TextfileReaderWriter}, to the {@link CompactGraphReaderWriter} format. <BR>
+ * The conversion can also be run from the command line for serialized graphs:<BR>
+ * <code>java org.geotools.graph.io.standard.CompactGraphConverter [-directed] source target
+ * </code>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class CompactGraphConverter {
+
+  /**
+   * Reads the graph with the source reader, and writes it in the compact format.
+   *
+   * @param source The reader of the original graph, with its properties already set.
+   * @param filename The compact graph file to be written.
+   * @param weighter The weights of the edges, or null to use the edge geometry length.
+   *
+   * @return The graph that has been converted.
+   */
+  public static Graph convert(GraphReaderWriter source, String filename, EdgeWeighter weighter)
+    throws Exception {
+    Graph graph = source.read();
+
+    CompactGraphReaderWriter target = new CompactGraphReaderWriter();
+    target.setProperty(CompactGraphReaderWriter.FILENAME, filename);
+    if (weighter != null) target.setProperty(CompactGraphReaderWriter.WEIGHTER, weighter);
+    target.write(graph);
+
+    return(graph);
+  }
+
+  /**
+   * Converts a serialized graph to the compact format, the arguments are the optional
+   * <code>-directed</code> flag, the serialized graph file and the compact graph file.
+   */
+  public static void main(String[] args) throws Exception {
+    boolean directed = args.length > 0 && "-directed".equals(args[0]);
+    int first = directed ? 1 : 0;
+    if (args.length - first != 2) {
+      System.err.println(
+        "Usage: CompactGraphConverter [-directed] <serialized graph> <compact graph>"
+      );
+      System.exit(1);
+    }
+
+    GraphBuilder builder = directed
+      ? (GraphBuilder)new BasicDirectedGraphBuilder() : new BasicGraphBuilder();
+    SerializedReaderWriter source = new SerializedReaderWriter();
+    source.setProperty(SerializedReaderWriter.FILENAME, args[first]);
+    source.setProperty(SerializedReaderWriter.BUILDER, builder);
+
+    long start = System.currentTimeMillis();
+    Graph graph = convert(source, args[first + 1], null);
+    System.out.println(
+      "Converted " + graph.getNodes().size() + " nodes and " + graph.getEdges().size()
+      + " edges in " + (System.currentTimeMillis() - start) + "ms"
+    );
+  }
+}
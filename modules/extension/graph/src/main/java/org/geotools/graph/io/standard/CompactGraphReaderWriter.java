@@ -0,0 +1,407 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.graph.io.standard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+import org.geotools.graph.build.GraphBuilder;
+import org.geotools.graph.build.basic.BasicGraphBuilder;
+import org.geotools.graph.io.GraphReaderWriter;
+import org.geotools.graph.structure.Edge;
+import org.geotools.graph.structure.Graph;
+import org.geotools.graph.structure.Node;
+import org.geotools.graph.structure.compact.CompactGraph;
+import org.geotools.graph.structure.compact.CompactGraphBuilder;
+import org.geotools.graph.traverse.standard.DijkstraIterator.EdgeWeighter;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * An implementation of GraphReaderWriter that reads and writes graphs in a versioned binary
+ * format made of flat primitive arrays, which is memory mapped when read instead of being
+ * deserialized. <BR>
+ * The file holds the {@link CompactGraph} form of the graph (the adjacency lists, their weights
+ * and the optional node coordinates) along with the end nodes of each edge and the ids of the
+ * graph components. {@link #readCompact()} maps the file and returns a {@link CompactGraph}
+ * backed by it, which can be searched right away by a
+ * {@link org.geotools.graph.path.CompactPathFinder} regardless of the size of the graph, while
+ * {@link #read()} rebuilds the object graph with the BUILDER property. <BR>
+ * <BR>
+ * Only the topology and the node locations are stored: the objects held by the edges, and the
+ * objects held by the nodes other than {@link Coordinate} and {@link Point}, are not written.
+ * When writing, the WEIGHTER property provides the edge weights, if not set the edge geometry
+ * length is used (see {@link CompactGraphBuilder}). <BR>
+ * <BR>
+ * The file is made of a 32 bytes header followed by the arrays, each one starting at a
+ * multiple of 8 bytes: <BR>
+ * <code>
+ * magic ("GTCG"), byte order (0 big endian, 1 little endian), 3 bytes padding,
+ * version, flags, nodes, edges, adjacencies, 4 bytes padding,
+ * offsets[nodes + 1], targets[adjacencies], adjacency edges[adjacencies],
+ * edge nodes[edges * 2], node ids[nodes], edge ids[edges],
+ * weights[adjacencies], coordinates[nodes * 2] (optional)
+ * </code><BR>
+ * The arrays are written in the native byte order of the writing machine, and read in the
+ * order recorded in the header.
+ *
+ * @see CompactGraphConverter
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class CompactGraphReaderWriter extends AbstractReaderWriter
+  implements FileReaderWriter {
+
+  /** EdgeWeighter property key **/
+  public static final String WEIGHTER = "WEIGHTER";
+
+  /** current version of the file format **/
+  public static final int VERSION = 1;
+
+  /** file signature **/
+  static final byte[] MAGIC = new byte[] {'G', 'T', 'C', 'G'};
+
+  /** size of the file header **/
+  static final int HEADER_SIZE = 32;
+
+  /** the nodes are located **/
+  static final int FLAG_COORDINATES = 1;
+
+  /** the nodes held points, rather than coordinates **/
+  static final int FLAG_POINTS = 2;
+
+  /** array indexes in the file layout **/
+  static final int OFFSETS = 0, TARGETS = 1, ADJACENCY_EDGES = 2, EDGE_NODES = 3,
+    NODE_IDS = 4, EDGE_IDS = 5, WEIGHTS = 6, COORDINATES = 7, END = 8;
+
+  /**
+   * Maps the file and returns the compact graph backed by it. The file is not read in memory,
+   * the operating system pages in the parts of it the graph users actually access.
+   *
+   * @return The graph, weighted with the weights computed at write time.
+   *
+   * @throws IOException If the file is not a valid compact graph file.
+   */
+  public CompactGraph readCompact() throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(getFile(), "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      Header h = readHeader(channel);
+      return(
+        new CompactGraph(
+          h.edges,
+          mapInts(channel, h, OFFSETS, h.nodes + 1),
+          mapInts(channel, h, TARGETS, h.adjacencies),
+          mapInts(channel, h, ADJACENCY_EDGES, h.adjacencies),
+          mapDoubles(channel, h, WEIGHTS, h.adjacencies),
+          h.hasFlag(FLAG_COORDINATES)
+            ? mapDoubles(channel, h, COORDINATES, h.nodes * 2) : null
+        )
+      );
+    }
+    finally {
+      //the mappings stay valid once the channel is closed
+      raf.close();
+    }
+  }
+
+  /**
+   * Maps the file and rebuilds the object graph out of it with the BUILDER property, or a
+   * {@link BasicGraphBuilder} if not set. The components get back their original ids, and the
+   * located nodes their {@link Coordinate} or {@link Point}. Edges are built from their node A
+   * to their node B, so directed graphs need a directed builder.
+   *
+   * @see GraphReaderWriter#read()
+   */
+  public Graph read() throws Exception {
+    GraphBuilder builder = (GraphBuilder)getProperty(BUILDER);
+    if (builder == null) builder = new BasicGraphBuilder();
+
+    RandomAccessFile raf = new RandomAccessFile(getFile(), "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      Header h = readHeader(channel);
+      IntBuffer edgeNodes = mapInts(channel, h, EDGE_NODES, h.edges * 2);
+      IntBuffer nodeIds = mapInts(channel, h, NODE_IDS, h.nodes);
+      IntBuffer edgeIds = mapInts(channel, h, EDGE_IDS, h.edges);
+      DoubleBuffer coordinates = h.hasFlag(FLAG_COORDINATES)
+        ? mapDoubles(channel, h, COORDINATES, h.nodes * 2) : null;
+      GeometryFactory gf = h.hasFlag(FLAG_POINTS) ? new GeometryFactory() : null;
+
+      Node[] nodes = new Node[h.nodes];
+      for (int i = 0; i < h.nodes; i++) {
+        Node n = builder.buildNode();
+        n.setID(nodeIds.get(i));
+        if (coordinates != null) {
+          Coordinate c = new Coordinate(coordinates.get(i * 2), coordinates.get(i * 2 + 1));
+          n.setObject(gf != null ? (Object)gf.createPoint(c) : c);
+        }
+        builder.addNode(n);
+        nodes[i] = n;
+      }
+
+      for (int i = 0; i < h.edges; i++) {
+        Edge e = builder.buildEdge(
+          nodes[edgeNodes.get(i * 2)], nodes[edgeNodes.get(i * 2 + 1)]
+        );
+        e.setID(edgeIds.get(i));
+        builder.addEdge(e);
+      }
+
+      return(builder.getGraph());
+    }
+    finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Writes the compact form of the graph, weighted with the WEIGHTER property.
+   *
+   * @see GraphReaderWriter#write(Graph)
+   */
+  public void write(Graph graph) throws Exception {
+    CompactGraphBuilder cb = new CompactGraphBuilder(
+      graph, (EdgeWeighter)getProperty(WEIGHTER)
+    );
+    CompactGraph cg = cb.getGraph();
+    int nodes = cg.getNodeCount();
+    int edges = cg.getEdgeCount();
+    int adjacencies = cg.getAdjacencyCount();
+    int flags = 0;
+    if (cg.hasCoordinates()) {
+      flags |= FLAG_COORDINATES;
+      if (cb.getNode(0).getObject() instanceof Point) flags |= FLAG_POINTS;
+    }
+    long[] layout = layout(nodes, edges, adjacencies, cg.hasCoordinates());
+
+    RandomAccessFile raf = new RandomAccessFile(getFile(), "rw");
+    try {
+      FileChannel channel = raf.getChannel();
+      channel.truncate(0);
+      Output out = new Output(channel);
+
+      out.buffer.put(MAGIC);
+      out.buffer.put((byte)(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 0 : 1));
+      out.buffer.put(new byte[3]);
+      out.putInt(VERSION);
+      out.putInt(flags);
+      out.putInt(nodes);
+      out.putInt(edges);
+      out.putInt(adjacencies);
+      out.putInt(0);
+
+      out.seek(layout[OFFSETS]);
+      for (int i = 0; i <= nodes; i++) {
+        out.putInt(i < nodes ? cg.getAdjacencyStart(i) : adjacencies);
+      }
+      out.seek(layout[TARGETS]);
+      for (int a = 0; a < adjacencies; a++) {
+        out.putInt(cg.getTarget(a));
+      }
+      out.seek(layout[ADJACENCY_EDGES]);
+      for (int a = 0; a < adjacencies; a++) {
+        out.putInt(cg.getEdge(a));
+      }
+      out.seek(layout[EDGE_NODES]);
+      for (int i = 0; i < edges; i++) {
+        Edge e = cb.getEdge(i);
+        out.putInt(cb.getIndex(e.getNodeA()));
+        out.putInt(cb.getIndex(e.getNodeB()));
+      }
+      out.seek(layout[NODE_IDS]);
+      for (int i = 0; i < nodes; i++) {
+        out.putInt(cb.getNode(i).getID());
+      }
+      out.seek(layout[EDGE_IDS]);
+      for (int i = 0; i < edges; i++) {
+        out.putInt(cb.getEdge(i).getID());
+      }
+      out.seek(layout[WEIGHTS]);
+      for (int a = 0; a < adjacencies; a++) {
+        out.putDouble(cg.getWeight(a));
+      }
+      if (cg.hasCoordinates()) {
+        out.seek(layout[COORDINATES]);
+        for (int i = 0; i < nodes; i++) {
+          out.putDouble(cg.getX(i));
+          out.putDouble(cg.getY(i));
+        }
+      }
+      out.seek(layout[END]);
+      out.flush();
+    }
+    finally {
+      raf.close();
+    }
+  }
+
+  private File getFile() {
+    String filename = (String)getProperty(FILENAME);
+    if (filename == null)
+      throw new IllegalStateException("The " + FILENAME + " property has not been set");
+    return(new File(filename));
+  }
+
+  /**
+   * Returns the position of each array in the file, and the file size in the last entry.
+   */
+  static long[] layout(int nodes, int edges, int adjacencies, boolean coordinates) {
+    long[] layout = new long[END + 1];
+    long pos = HEADER_SIZE;
+    long[] sizes = new long[] {
+      (nodes + 1L) * 4, adjacencies * 4L, adjacencies * 4L, edges * 8L, nodes * 4L, edges * 4L,
+      adjacencies * 8L, coordinates ? nodes * 16L : 0
+    };
+    for (int i = 0; i < sizes.length; i++) {
+      layout[i] = pos;
+      pos = align(pos + sizes[i]);
+    }
+    layout[END] = pos;
+    return(layout);
+  }
+
+  private static long align(long pos) {
+    return((pos + 7) & ~7L);
+  }
+
+  private static Header readHeader(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) break;
+    }
+    buffer.flip();
+    if (buffer.remaining() < HEADER_SIZE)
+      throw new IOException("Not a compact graph file, too short");
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (buffer.get() != MAGIC[i])
+        throw new IOException("Not a compact graph file, invalid signature");
+    }
+
+    Header h = new Header();
+    h.order = buffer.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    buffer.order(h.order);
+    buffer.position(8);
+    h.version = buffer.getInt();
+    if (h.version < 1 || h.version > VERSION) {
+      throw new IOException(
+        "Unsupported compact graph file version " + h.version + ", the supported version is "
+        + VERSION
+      );
+    }
+    h.flags = buffer.getInt();
+    h.nodes = buffer.getInt();
+    h.edges = buffer.getInt();
+    h.adjacencies = buffer.getInt();
+    if (h.nodes < 0 || h.edges < 0 || h.adjacencies < 0)
+      throw new IOException("Corrupted compact graph file, negative sizes in the header");
+
+    h.layout = layout(h.nodes, h.edges, h.adjacencies, h.hasFlag(FLAG_COORDINATES));
+    if (channel.size() < h.layout[END]) {
+      throw new IOException(
+        "Corrupted compact graph file, expected " + h.layout[END] + " bytes but found "
+        + channel.size()
+      );
+    }
+    return(h);
+  }
+
+  private static ByteBuffer map(FileChannel channel, Header h, int array, long size)
+    throws IOException {
+    if (size > Integer.MAX_VALUE)
+      throw new IOException("Graph too big, arrays are limited to 2GB");
+    return(channel.map(FileChannel.MapMode.READ_ONLY, h.layout[array], size).order(h.order));
+  }
+
+  private static IntBuffer mapInts(FileChannel channel, Header h, int array, int count)
+    throws IOException {
+    return(map(channel, h, array, count * 4L).asIntBuffer());
+  }
+
+  private static DoubleBuffer mapDoubles(FileChannel channel, Header h, int array, int count)
+    throws IOException {
+    return(map(channel, h, array, count * 8L).asDoubleBuffer());
+  }
+
+  /**
+   * The content of the file header.
+   */
+  static final class Header {
+    ByteOrder order;
+    int version;
+    int flags;
+    int nodes;
+    int edges;
+    int adjacencies;
+    long[] layout;
+
+    boolean hasFlag(int flag) {
+      return((flags & flag) != 0);
+    }
+  }
+
+  /**
+   * Buffered sequential writer of primitives in the native byte order.
+   */
+  static final class Output {
+    final FileChannel channel;
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder());
+    long position;
+
+    Output(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    void putInt(int value) throws IOException {
+      if (buffer.remaining() < 4) flush();
+      buffer.putInt(value);
+    }
+
+    void putDouble(double value) throws IOException {
+      if (buffer.remaining() < 8) flush();
+      buffer.putDouble(value);
+    }
+
+    /**
+     * Pads with zeros up to the specified position.
+     */
+    void seek(long target) throws IOException {
+      while (position + buffer.position() < target) {
+        if (!buffer.hasRemaining()) flush();
+        buffer.put((byte)0);
+      }
+    }
+
+    void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+}
@@ -29,6 +29,7 @@ import org.geotools.graph.traverse.standard.AStarIterator.AStarFunctions;
  * Calculates the shortest path between two nodes using the A Star algorithm
  * (for details see http://en.wikipedia.org/wiki/A_star) 
  * @see AStarIterator 
+ * @see CompactPathFinder for large graphs, and many queries on the same graph
  * @author Germán E. Trouillet, Francisco G. Malbrán. Universidad Nacional de Córdoba (UNC)
  *
  *
@@ -0,0 +1,86 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.graph.path;
+
+/**
+ * A path in a {@link org.geotools.graph.structure.compact.CompactGraph}, as the sequence of the
+ * node indexes going <B>from</B> the source <B>to</B> the target, and the indexes of the edges
+ * traversed between them.
+ *
+ * @see CompactPathFinder
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public final class CompactPath {
+
+  private final int[] m_nodes;
+
+  private final int[] m_edges;
+
+  private final double m_cost;
+
+  public CompactPath(int[] nodes, int[] edges, double cost) {
+    if (nodes.length != edges.length + 1)
+      throw new IllegalArgumentException("A path must have one more node than its edges");
+    m_nodes = nodes;
+    m_edges = edges;
+    m_cost = cost;
+  }
+
+  /**
+   * Returns the nodes of the path, from the source to the target.
+   */
+  public int[] getNodes() {
+    return(m_nodes.clone());
+  }
+
+  /**
+   * Returns the edges of the path, from the source to the target.
+   */
+  public int[] getEdges() {
+    return(m_edges.clone());
+  }
+
+  public int getSource() {
+    return(m_nodes[0]);
+  }
+
+  public int getTarget() {
+    return(m_nodes[m_nodes.length - 1]);
+  }
+
+  /**
+   * Returns the number of edges in the path.
+   */
+  public int size() {
+    return(m_edges.length);
+  }
+
+  /**
+   * Returns the total weight of the edges in the path.
+   */
+  public double getCost() {
+    return(m_cost);
+  }
+
+  public String toString() {
+    return("CompactPath[source=" + getSource() + ", target=" + getTarget() + ", edges="
+      + size() + ", cost=" + m_cost + "]");
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.graph.path;
+
+import java.util.Arrays;
+
+import org.geotools.graph.structure.compact.CompactGraph;
+import org.geotools.graph.util.IndexedBinaryHeap;
+
+/**
+ * Calculates shortest paths on a {@link CompactGraph} using Dijkstra's algorithm, or the A Star
+ * algorithm when a {@link Heuristic} is provided. It is the compact graph counterpart of
+ * {@link DijkstraShortestPathFinder} and {@link AStarShortestPathFinder}, meant for large
+ * networks queried many times.
+ * <p>
+ * The search state (costs, parents and the {@link IndexedBinaryHeap} of the open nodes) is held
+ * in primitive arrays sized on the graph, allocated once per thread and reused by all the
+ * searches that thread runs, so a query does not allocate anything but its result, and only
+ * touches the nodes it actually reaches. A single finder can be used by many threads at the same
+ * time.
+ * </p>
+ *
+ * @see org.geotools.graph.structure.compact.CompactGraphBuilder
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class CompactPathFinder {
+
+  /**
+   * Estimates the cost of reaching the target from a node, used to drive the A Star search.
+   * The estimate must never exceed the actual cost, and must be consistent: for each edge from
+   * <code>a</code> to <code>b</code>, <code>estimate(a) &lt;= weight(a, b) + estimate(b)</code>.
+   */
+  public static interface Heuristic {
+    public double estimate(int node, int target);
+  }
+
+  /**
+   * Returns a heuristic based on the straight line distance between the nodes, for graphs whose
+   * nodes have coordinates.
+   *
+   * @param graph The graph.
+   * @param minCostPerUnit The minimum cost of traveling a unit of distance, for example 1 if the
+   *        weights are the edge lengths, or the inverse of the maximum speed if they are travel
+   *        times.
+   */
+  public static Heuristic euclidean(final CompactGraph graph, final double minCostPerUnit) {
+    if (!graph.hasCoordinates())
+      throw new IllegalArgumentException("The graph nodes do not have coordinates");
+
+    return(
+      new Heuristic() {
+        public double estimate(int node, int target) {
+          double dx = graph.getX(node) - graph.getX(target);
+          double dy = graph.getY(node) - graph.getY(target);
+          return(Math.sqrt(dx * dx + dy * dy) * minCostPerUnit);
+        }
+      }
+    );
+  }
+
+  /**
+   * The state of a search, reused across the searches run by the same thread. The costs and
+   * parents of a node are valid only if its stamp matches the current search, the stamp is
+   * negated once the node is closed.
+   */
+  static final class SearchState {
+    final double[] costs;
+    final int[] parents;
+    final int[] stamps;
+    final IndexedBinaryHeap open;
+    int stamp;
+
+    SearchState(int nodes) {
+      costs = new double[nodes];
+      parents = new int[nodes];
+      stamps = new int[nodes];
+      open = new IndexedBinaryHeap(nodes);
+    }
+
+    void reset() {
+      open.clear();
+      if (++stamp == Integer.MAX_VALUE) {
+        Arrays.fill(stamps, 0);
+        stamp = 1;
+      }
+    }
+  }
+
+  /** the graph **/
+  private final CompactGraph m_graph;
+
+  /** per thread search state **/
+  private final ThreadLocal<SearchState> m_state = new ThreadLocal<SearchState>() {
+    protected SearchState initialValue() {
+      return(new SearchState(m_graph.getNodeCount()));
+    }
+  };
+
+  public CompactPathFinder(CompactGraph graph) {
+    m_graph = graph;
+  }
+
+  public CompactGraph getGraph() {
+    return(m_graph);
+  }
+
+  /**
+   * Calculates the shortest path between two nodes with Dijkstra's algorithm.
+   *
+   * @return The path, or null if the target cannot be reached from the source.
+   */
+  public CompactPath findPath(int source, int target) {
+    return(findPath(source, target, null));
+  }
+
+  /**
+   * Calculates the shortest path between two nodes with the A Star algorithm.
+   *
+   * @param heuristic The estimate of the remaining cost, or null to run Dijkstra's algorithm.
+   *
+   * @return The path, or null if the target cannot be reached from the source.
+   */
+  public CompactPath findPath(int source, int target, Heuristic heuristic) {
+    checkNode(source);
+    checkNode(target);
+
+    SearchState s = m_state.get();
+    s.reset();
+    final double[] costs = s.costs;
+    final int[] parents = s.parents;
+    final int[] stamps = s.stamps;
+    final IndexedBinaryHeap open = s.open;
+    final int stamp = s.stamp;
+
+    costs[source] = 0;
+    parents[source] = -1;
+    stamps[source] = stamp;
+    open.insertOrDecrease(
+      source, heuristic == null ? 0 : heuristic.estimate(source, target)
+    );
+
+    boolean found = false;
+    while (!open.isEmpty()) {
+      int current = open.extractMin();
+      if (current == target) {
+        found = true;
+        break;
+      }
+      //close the node, with a consistent heuristic its cost is final
+      stamps[current] = -stamp;
+      double cost = costs[current];
+
+      int end = m_graph.getAdjacencyEnd(current);
+      for (int a = m_graph.getAdjacencyStart(current); a < end; a++) {
+        int related = m_graph.getTarget(a);
+        if (stamps[related] == -stamp) continue;
+
+        double rcost = cost + m_graph.getWeight(a);
+        if (stamps[related] != stamp || rcost < costs[related]) {
+          stamps[related] = stamp;
+          costs[related] = rcost;
+          parents[related] = a;
+          open.insertOrDecrease(
+            related, heuristic == null ? rcost : rcost + heuristic.estimate(related, target)
+          );
+        }
+      }
+    }
+    if (!found) return(null);
+
+    //walk back the parents to build the path
+    int length = 0;
+    for (int n = target; parents[n] >= 0; length++) {
+      n = source(parents[n]);
+    }
+    int[] nodes = new int[length + 1];
+    int[] edges = new int[length];
+    int n = target;
+    nodes[length] = target;
+    for (int i = length - 1; i >= 0; i--) {
+      int a = parents[n];
+      edges[i] = m_graph.getEdge(a);
+      n = source(a);
+      nodes[i] = n;
+    }
+    return(new CompactPath(nodes, edges, costs[target]));
+  }
+
+  /**
+   * Calculates the cost of the shortest path from the source to every other node with
+   * Dijkstra's algorithm, like {@link DijkstraShortestPathFinder#calculate()} does.
+   *
+   * @param source The source node.
+   * @param costs The array receiving the costs, or null to allocate a new one. Unreachable
+   *        nodes get {@link Double#POSITIVE_INFINITY}.
+   *
+   * @return The costs array.
+   */
+  public double[] calculateCosts(int source, double[] costs) {
+    checkNode(source);
+    if (costs == null) costs = new double[m_graph.getNodeCount()];
+    Arrays.fill(costs, Double.POSITIVE_INFINITY);
+
+    SearchState s = m_state.get();
+    s.reset();
+    final int[] stamps = s.stamps;
+    final IndexedBinaryHeap open = s.open;
+    final int stamp = s.stamp;
+
+    costs[source] = 0;
+    open.insertOrDecrease(source, 0);
+    while (!open.isEmpty()) {
+      int current = open.extractMin();
+      stamps[current] = -stamp;
+      double cost = costs[current];
+
+      int end = m_graph.getAdjacencyEnd(current);
+      for (int a = m_graph.getAdjacencyStart(current); a < end; a++) {
+        int related = m_graph.getTarget(a);
+        if (stamps[related] == -stamp) continue;
+
+        double rcost = cost + m_graph.getWeight(a);
+        if (rcost < costs[related]) {
+          costs[related] = rcost;
+          open.insertOrDecrease(related, rcost);
+        }
+      }
+    }
+    return(costs);
+  }
+
+  /**
+   * Returns the node the adjacency leaves from. The adjacency lists only store the target
+   * node, the source is the last node whose adjacency list starts at or before the adjacency.
+   */
+  private int source(int adjacency) {
+    int lo = 0;
+    int hi = m_graph.getNodeCount() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (m_graph.getAdjacencyStart(mid) <= adjacency) lo = mid;
+      else hi = mid - 1;
+    }
+    return(lo);
+  }
+
+  private void checkNode(int node) {
+    if (node < 0 || node >= m_graph.getNodeCount())
+      throw new IllegalArgumentException("Node " + node + " is not part of the graph");
+  }
+}
@@ -32,6 +32,7 @@ import org.geotools.graph.traverse.standard.DijkstraIterator.NodeWeighter;
  * graph. 
  *  
  * @see DijsktraIterator 
+ * @see CompactPathFinder for large graphs, and many queries on the same graph
  * @author Justin Deoliveira, Refractions Research Inc, jdeolive@refractions.net
  *
  *
@@ -0,0 +1,229 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.graph.structure.compact;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A read only graph stored in compressed sparse row form: nodes and edges are identified by
+ * their index, and the adjacency lists of all the nodes are stored one after the other in
+ * primitive buffers. The outgoing adjacencies of node <code>n</code> are the ones between
+ * {@link #getAdjacencyStart(int)} (included) and {@link #getAdjacencyEnd(int)} (excluded); each
+ * adjacency records the node it leads to, the edge it traverses and the weight of traversing it.
+ * Undirected edges are stored as two adjacencies, one per direction.
+ * <p>
+ * Compared to the object graphs ({@link org.geotools.graph.structure.basic.BasicGraph} and the
+ * like) a compact graph uses a few bytes per edge, and can be backed by memory mapped buffers,
+ * in which case it can be used right away without loading it in the heap.
+ * </p>
+ * <p>
+ * Instances are immutable and can be shared among threads, provided the buffers are not
+ * modified by the code that created them.
+ * </p>
+ *
+ * @see CompactGraphBuilder
+ * @see org.geotools.graph.path.CompactPathFinder
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public final class CompactGraph {
+
+  /** number of nodes **/
+  private final int m_nodeCount;
+
+  /** number of edges **/
+  private final int m_edgeCount;
+
+  /** start of the adjacency list of each node, plus the total number of adjacencies **/
+  private final IntBuffer m_offsets;
+
+  /** node reached by each adjacency **/
+  private final IntBuffer m_targets;
+
+  /** edge traversed by each adjacency **/
+  private final IntBuffer m_edges;
+
+  /** weight of each adjacency **/
+  private final DoubleBuffer m_weights;
+
+  /** x and y of each node, interleaved, or null **/
+  private final DoubleBuffer m_coordinates;
+
+  /**
+   * Creates a new compact graph out of its buffers. The buffers are used from their position
+   * zero, as returned by {@link IntBuffer#get(int)}.
+   *
+   * @param edgeCount The number of edges in the graph.
+   * @param offsets The start of the adjacency list of each node, one entry per node plus a last
+   *        one holding the total number of adjacencies.
+   * @param targets The node reached by each adjacency.
+   * @param edges The edge traversed by each adjacency.
+   * @param weights The weight of each adjacency.
+   * @param coordinates The x and y of each node, interleaved, or null if the nodes are not
+   *        located.
+   */
+  public CompactGraph(
+    int edgeCount, IntBuffer offsets, IntBuffer targets, IntBuffer edges,
+    DoubleBuffer weights, DoubleBuffer coordinates
+  ) {
+    if (offsets.limit() < 1)
+      throw new IllegalArgumentException("The offsets must hold at least one entry");
+
+    m_nodeCount = offsets.limit() - 1;
+    m_edgeCount = edgeCount;
+    m_offsets = offsets;
+    m_targets = targets;
+    m_edges = edges;
+    m_weights = weights;
+    m_coordinates = coordinates;
+
+    int adjacencies = offsets.get(m_nodeCount);
+    if (targets.limit() < adjacencies || edges.limit() < adjacencies
+      || weights.limit() < adjacencies) {
+      throw new IllegalArgumentException(
+        "The adjacency buffers must hold " + adjacencies + " entries"
+      );
+    }
+    if (coordinates != null && coordinates.limit() < m_nodeCount * 2) {
+      throw new IllegalArgumentException(
+        "The coordinates buffer must hold " + m_nodeCount * 2 + " entries"
+      );
+    }
+  }
+
+  /**
+   * Returns the number of nodes, the nodes are numbered from 0 to this value (excluded).
+   */
+  public int getNodeCount() {
+    return(m_nodeCount);
+  }
+
+  /**
+   * Returns the number of edges, the edges are numbered from 0 to this value (excluded).
+   */
+  public int getEdgeCount() {
+    return(m_edgeCount);
+  }
+
+  /**
+   * Returns the total number of adjacencies, that is, the number of directed edges plus twice
+   * the number of undirected ones.
+   */
+  public int getAdjacencyCount() {
+    return(m_offsets.get(m_nodeCount));
+  }
+
+  /**
+   * Returns the first adjacency of the node.
+   */
+  public int getAdjacencyStart(int node) {
+    return(m_offsets.get(node));
+  }
+
+  /**
+   * Returns the adjacency following the last one of the node.
+   */
+  public int getAdjacencyEnd(int node) {
+    return(m_offsets.get(node + 1));
+  }
+
+  /**
+   * Returns the number of adjacencies leaving the node.
+   */
+  public int getDegree(int node) {
+    return(m_offsets.get(node + 1) - m_offsets.get(node));
+  }
+
+  /**
+   * Returns the node reached by the adjacency.
+   */
+  public int getTarget(int adjacency) {
+    return(m_targets.get(adjacency));
+  }
+
+  /**
+   * Returns the edge traversed by the adjacency.
+   */
+  public int getEdge(int adjacency) {
+    return(m_edges.get(adjacency));
+  }
+
+  /**
+   * Returns the cost of traversing the adjacency.
+   */
+  public double getWeight(int adjacency) {
+    return(m_weights.get(adjacency));
+  }
+
+  /**
+   * Returns true if the nodes have coordinates.
+   */
+  public boolean hasCoordinates() {
+    return(m_coordinates != null);
+  }
+
+  public double getX(int node) {
+    return(m_coordinates.get(node * 2));
+  }
+
+  public double getY(int node) {
+    return(m_coordinates.get(node * 2 + 1));
+  }
+
+  /**
+   * Returns a read only view of the adjacency offsets, one per node plus the total.
+   */
+  public IntBuffer getOffsets() {
+    return(m_offsets.asReadOnlyBuffer());
+  }
+
+  /**
+   * Returns a read only view of the adjacency targets.
+   */
+  public IntBuffer getTargets() {
+    return(m_targets.asReadOnlyBuffer());
+  }
+
+  /**
+   * Returns a read only view of the adjacency edges.
+   */
+  public IntBuffer getEdges() {
+    return(m_edges.asReadOnlyBuffer());
+  }
+
+  /**
+   * Returns a read only view of the adjacency weights.
+   */
+  public DoubleBuffer getWeights() {
+    return(m_weights.asReadOnlyBuffer());
+  }
+
+  /**
+   * Returns a read only view of the node coordinates, or null if the nodes are not located.
+   */
+  public DoubleBuffer getCoordinates() {
+    return(m_coordinates == null ? null : m_coordinates.asReadOnlyBuffer());
+  }
+
+  public String toString() {
+    return("CompactGraph[nodes=" + m_nodeCount + ", edges=" + m_edgeCount
+      + ", adjacencies=" + getAdjacencyCount() + "]");
+  }
+}
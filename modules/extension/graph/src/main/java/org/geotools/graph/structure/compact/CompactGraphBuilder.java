@@ -0,0 +1,212 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.graph.structure.compact;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.geotools.graph.path.CompactPath;
+import org.geotools.graph.path.Path;
+import org.geotools.graph.structure.DirectedEdge;
+import org.geotools.graph.structure.Edge;
+import org.geotools.graph.structure.Graph;
+import org.geotools.graph.structure.Node;
+import org.geotools.graph.traverse.standard.DijkstraIterator.EdgeWeighter;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Builds a {@link CompactGraph} out of an object graph, such as the ones created by
+ * {@link org.geotools.graph.build.line.LineStringGraphGenerator}, and keeps the mapping between
+ * the graph components and their indexes so that the results computed on the compact graph can
+ * be related back to the original nodes and edges.
+ * <p>
+ * Nodes and edges are numbered in the order the graph returns them. {@link DirectedEdge}s can
+ * only be traversed from their in node to their out node, other edges are traversed in both
+ * directions. If all the nodes hold a {@link Coordinate} or a {@link Point}, as the ones built by
+ * the line graph generators, their location is stored in the compact graph as well.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class CompactGraphBuilder {
+
+  /** nodes by index **/
+  private Node[] m_nodes;
+
+  /** edges by index **/
+  private Edge[] m_edges;
+
+  /** node to index map **/
+  private Map<Node, Integer> m_node2index;
+
+  /** the compact graph **/
+  private CompactGraph m_graph;
+
+  /**
+   * Builds the compact version of a graph.
+   *
+   * @param graph The graph to be compacted.
+   * @param weighter Associates weights with edges in the graph. If null the length of the
+   *        edge geometry is used, or 1 if the edge does not hold a geometry.
+   */
+  public CompactGraphBuilder(Graph graph, EdgeWeighter weighter) {
+    Collection nodes = graph.getNodes();
+    Collection edges = graph.getEdges();
+
+    m_nodes = new Node[nodes.size()];
+    m_node2index = new HashMap<Node, Integer>(nodes.size() * 4 / 3 + 1);
+    boolean located = true;
+    int i = 0;
+    for (Iterator itr = nodes.iterator(); itr.hasNext(); i++) {
+      Node n = (Node)itr.next();
+      m_nodes[i] = n;
+      m_node2index.put(n, i);
+      located &= location(n) != null;
+    }
+
+    //count the adjacencies leaving each node
+    m_edges = new Edge[edges.size()];
+    int[] offsets = new int[m_nodes.length + 1];
+    int[] from = new int[m_edges.length];
+    int[] to = new int[m_edges.length];
+    int adjacencies = 0;
+    i = 0;
+    for (Iterator itr = edges.iterator(); itr.hasNext(); i++) {
+      Edge e = (Edge)itr.next();
+      m_edges[i] = e;
+      if (e instanceof DirectedEdge) {
+        from[i] = getIndex(((DirectedEdge)e).getInNode());
+        to[i] = getIndex(((DirectedEdge)e).getOutNode());
+      }
+      else {
+        from[i] = getIndex(e.getNodeA());
+        to[i] = getIndex(e.getNodeB());
+        offsets[to[i] + 1]++;
+        adjacencies++;
+      }
+      offsets[from[i] + 1]++;
+      adjacencies++;
+    }
+    for (i = 0; i < m_nodes.length; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+
+    //fill the adjacency lists
+    int[] targets = new int[adjacencies];
+    int[] adjEdges = new int[adjacencies];
+    double[] weights = new double[adjacencies];
+    int[] next = new int[m_nodes.length];
+    System.arraycopy(offsets, 0, next, 0, m_nodes.length);
+    for (i = 0; i < m_edges.length; i++) {
+      double weight = weight(m_edges[i], weighter);
+      int a = next[from[i]]++;
+      targets[a] = to[i];
+      adjEdges[a] = i;
+      weights[a] = weight;
+      if (!(m_edges[i] instanceof DirectedEdge)) {
+        a = next[to[i]]++;
+        targets[a] = from[i];
+        adjEdges[a] = i;
+        weights[a] = weight;
+      }
+    }
+
+    double[] coordinates = null;
+    if (located && m_nodes.length > 0) {
+      coordinates = new double[m_nodes.length * 2];
+      for (i = 0; i < m_nodes.length; i++) {
+        Coordinate c = location(m_nodes[i]);
+        coordinates[i * 2] = c.x;
+        coordinates[i * 2 + 1] = c.y;
+      }
+    }
+
+    m_graph = new CompactGraph(
+      m_edges.length, IntBuffer.wrap(offsets), IntBuffer.wrap(targets),
+      IntBuffer.wrap(adjEdges), DoubleBuffer.wrap(weights),
+      coordinates != null ? DoubleBuffer.wrap(coordinates) : null
+    );
+  }
+
+  private static Coordinate location(Node n) {
+    Object obj = n.getObject();
+    if (obj instanceof Coordinate) return((Coordinate)obj);
+    if (obj instanceof Point) return(((Point)obj).getCoordinate());
+    return(null);
+  }
+
+  private static double weight(Edge e, EdgeWeighter weighter) {
+    if (weighter != null) return(weighter.getWeight(e));
+    if (e.getObject() instanceof Geometry) return(((Geometry)e.getObject()).getLength());
+    return(1d);
+  }
+
+  /**
+   * Returns the compact graph.
+   */
+  public CompactGraph getGraph() {
+    return(m_graph);
+  }
+
+  /**
+   * Returns the index of the node in the compact graph, or -1 if the node is not part of the
+   * graph.
+   */
+  public int getIndex(Node node) {
+    Integer index = m_node2index.get(node);
+    return(index == null ? -1 : index.intValue());
+  }
+
+  /**
+   * Returns the node with the specified index.
+   */
+  public Node getNode(int index) {
+    return(m_nodes[index]);
+  }
+
+  /**
+   * Returns the edge with the specified index.
+   */
+  public Edge getEdge(int index) {
+    return(m_edges[index]);
+  }
+
+  /**
+   * Converts a path computed on the compact graph into a path of the original nodes, going
+   * <B>from</B> the target <B>to</B> the source like the ones returned by the object graph
+   * path finders.
+   *
+   * @see Path#riterator()
+   */
+  public Path toPath(CompactPath path) {
+    Path p = new Path();
+    int[] nodes = path.getNodes();
+    for (int i = nodes.length - 1; i >= 0; i--) {
+      p.add(m_nodes[nodes[i]]);
+    }
+    return(p);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.graph.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min heap of integer items in the range <code>[0, capacity)</code> keyed by doubles,
+ * which keeps track of the position of each item so that its key can be decreased in
+ * logarithmic time. Unlike {@link PriorityQueue} it stores everything in primitive arrays,
+ * and does not need any hashing to locate the items.
+ * <p>
+ * Clearing the heap only costs as much as the items still in it, which makes it suitable to
+ * be reused across many searches on the same graph.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class IndexedBinaryHeap {
+
+  /** items, by heap position **/
+  private final int[] m_items;
+
+  /** keys, by heap position **/
+  private final double[] m_keys;
+
+  /** heap position of each item, or -1 if not in the heap **/
+  private final int[] m_positions;
+
+  /** number of items in the heap **/
+  private int m_size;
+
+  /**
+   * Creates an empty heap.
+   *
+   * @param capacity The number of distinct items the heap can hold.
+   */
+  public IndexedBinaryHeap(int capacity) {
+    m_items = new int[capacity];
+    m_keys = new double[capacity];
+    m_positions = new int[capacity];
+    Arrays.fill(m_positions, -1);
+  }
+
+  public int size() {
+    return(m_size);
+  }
+
+  public boolean isEmpty() {
+    return(m_size == 0);
+  }
+
+  public int capacity() {
+    return(m_items.length);
+  }
+
+  /**
+   * Returns true if the item is in the heap.
+   */
+  public boolean contains(int item) {
+    return(m_positions[item] >= 0);
+  }
+
+  /**
+   * Returns the key of an item in the heap.
+   */
+  public double getKey(int item) {
+    int pos = m_positions[item];
+    if (pos < 0) throw new NoSuchElementException("Item " + item + " is not in the heap");
+    return(m_keys[pos]);
+  }
+
+  /**
+   * Adds the item to the heap, or lowers its key if it is already in the heap with a bigger
+   * one.
+   *
+   * @return true if the heap has been modified.
+   */
+  public boolean insertOrDecrease(int item, double key) {
+    int pos = m_positions[item];
+    if (pos < 0) {
+      pos = m_size++;
+      m_items[pos] = item;
+      m_keys[pos] = key;
+      m_positions[item] = pos;
+      moveUp(pos);
+      return(true);
+    }
+    if (key < m_keys[pos]) {
+      m_keys[pos] = key;
+      moveUp(pos);
+      return(true);
+    }
+    return(false);
+  }
+
+  /**
+   * Returns the item with the lowest key, without removing it.
+   */
+  public int peek() {
+    if (m_size == 0) throw new NoSuchElementException("Heap empty.");
+    return(m_items[0]);
+  }
+
+  /**
+   * Returns the lowest key in the heap.
+   */
+  public double peekKey() {
+    if (m_size == 0) throw new NoSuchElementException("Heap empty.");
+    return(m_keys[0]);
+  }
+
+  /**
+   * Removes and returns the item with the lowest key.
+   */
+  public int extractMin() {
+    if (m_size == 0) throw new NoSuchElementException("Heap empty.");
+    int min = m_items[0];
+    m_positions[min] = -1;
+    m_size--;
+    if (m_size > 0) {
+      m_items[0] = m_items[m_size];
+      m_keys[0] = m_keys[m_size];
+      m_positions[m_items[0]] = 0;
+      moveDown(0);
+    }
+    return(min);
+  }
+
+  /**
+   * Removes all the items from the heap.
+   */
+  public void clear() {
+    for (int i = 0; i < m_size; i++) {
+      m_positions[m_items[i]] = -1;
+    }
+    m_size = 0;
+  }
+
+  private void moveUp(int pos) {
+    int item = m_items[pos];
+    double key = m_keys[pos];
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+      if (m_keys[parent] <= key) break;
+      m_items[pos] = m_items[parent];
+      m_keys[pos] = m_keys[parent];
+      m_positions[m_items[pos]] = pos;
+      pos = parent;
+    }
+    m_items[pos] = item;
+    m_keys[pos] = key;
+    m_positions[item] = pos;
+  }
+
+  private void moveDown(int pos) {
+    int item = m_items[pos];
+    double key = m_keys[pos];
+    int half = m_size >>> 1;
+    while (pos < half) {
+      int child = 2 * pos + 1;
+      int right = child + 1;
+      if (right < m_size && m_keys[right] < m_keys[child]) child = right;
+      if (key <= m_keys[child]) break;
+      m_items[pos] = m_items[child];
+      m_keys[pos] = m_keys[child];
+      m_positions[m_items[pos]] = pos;
+      pos = child;
+    }
+    m_items[pos] = item;
+    m_keys[pos] = key;
+    m_positions[item] = pos;
+  }
+}
@@ -30,6 +30,7 @@ public class AllTests extends TestSuite {
     addTest(new TestSuite(DirectedGraphSerializerTest.class));
     addTest(new TestSuite(OptGraphSerializerTest.class));
     addTest(new TestSuite(OptDirectedGraphSerializerTest.class));
+    addTest(new TestSuite(CompactGraphReaderWriterTest.class));
     
   } 	
     
@@ -0,0 +1,85 @@
+package org.geotools.graph.io.standard;
+
+import java.io.File;
+
+import org.geotools.graph.build.basic.BasicGraphBuilder;
+import org.geotools.graph.path.CompactPathFinder;
+import org.geotools.graph.structure.Graph;
+import org.geotools.graph.structure.compact.CompactGraph;
+
+/**
+ * Compares the startup time and the heap used by a graph loaded with the
+ * {@link SerializedReaderWriter} and with the {@link CompactGraphReaderWriter}, both as an
+ * object graph and as a memory mapped compact graph. Not run as part of the build, launch it
+ * with the grid size as argument (defaults to 300).
+ *
+ * @source $URL$
+ */
+public class CompactGraphReaderWriterBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+
+    Graph graph = CompactGraphReaderWriterTest.grid(n);
+    System.out.println("Grid of " + graph.getNodes().size() + " nodes and "
+      + graph.getEdges().size() + " edges");
+
+    File serialized = File.createTempFile("graph", ".ser");
+    serialized.deleteOnExit();
+    SerializedReaderWriter srw = new SerializedReaderWriter();
+    srw.setProperty(SerializedReaderWriter.FILENAME, serialized.getAbsolutePath());
+    long start = System.currentTimeMillis();
+    srw.write(graph);
+    System.out.println("Serialized written in " + (System.currentTimeMillis() - start)
+      + "ms, " + serialized.length() + " bytes");
+
+    File compact = File.createTempFile("graph", ".gcg");
+    compact.deleteOnExit();
+    CompactGraphReaderWriter crw = new CompactGraphReaderWriter();
+    crw.setProperty(CompactGraphReaderWriter.FILENAME, compact.getAbsolutePath());
+    start = System.currentTimeMillis();
+    crw.write(graph);
+    System.out.println("Compact written in " + (System.currentTimeMillis() - start)
+      + "ms, " + compact.length() + " bytes");
+    graph = null;
+
+    long base = usedMemory();
+    start = System.currentTimeMillis();
+    srw.setProperty(SerializedReaderWriter.BUILDER, new BasicGraphBuilder());
+    Object loaded = srw.read();
+    report("Serialized read", start, base);
+    loaded = null;
+
+    base = usedMemory();
+    start = System.currentTimeMillis();
+    crw.setProperty(CompactGraphReaderWriter.BUILDER, new BasicGraphBuilder());
+    loaded = crw.read();
+    report("Compact read as object graph", start, base);
+    loaded = null;
+
+    base = usedMemory();
+    start = System.currentTimeMillis();
+    CompactGraph cg = crw.readCompact();
+    report("Compact mapped", start, base);
+
+    //time to first answer, the pages touched by the search are loaded on demand
+    start = System.currentTimeMillis();
+    new CompactPathFinder(cg).findPath(0, cg.getNodeCount() - 1);
+    System.out.println("First query on the mapped graph in "
+      + (System.currentTimeMillis() - start) + "ms");
+  }
+
+  static void report(String name, long start, long base) {
+    long elapsed = System.currentTimeMillis() - start;
+    System.out.println(name + " in " + elapsed + "ms, heap used "
+      + ((usedMemory() - base) / 1024) + "KB");
+  }
+
+  static long usedMemory() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return(rt.totalMemory() - rt.freeMemory());
+  }
+}
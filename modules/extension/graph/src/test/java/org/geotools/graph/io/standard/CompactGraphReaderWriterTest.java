@@ -0,0 +1,208 @@
+package org.geotools.graph.io.standard;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.geotools.graph.GraphTestUtil;
+import org.geotools.graph.build.basic.BasicDirectedGraphBuilder;
+import org.geotools.graph.build.basic.BasicGraphBuilder;
+import org.geotools.graph.build.line.LineStringGraphGenerator;
+import org.geotools.graph.path.CompactPathFinder;
+import org.geotools.graph.structure.DirectedEdge;
+import org.geotools.graph.structure.Edge;
+import org.geotools.graph.structure.Graph;
+import org.geotools.graph.structure.Node;
+import org.geotools.graph.structure.compact.CompactGraph;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class CompactGraphReaderWriterTest extends TestCase {
+
+  private File m_file;
+  private CompactGraphReaderWriter m_rw;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_file = File.createTempFile("graph", ".gcg");
+    m_file.deleteOnExit();
+    m_rw = new CompactGraphReaderWriter();
+    m_rw.setProperty(CompactGraphReaderWriter.FILENAME, m_file.getAbsolutePath());
+  }
+
+  protected void tearDown() throws Exception {
+    m_file.delete();
+    super.tearDown();
+  }
+
+  /**
+   * Builds a road network shaped as a grid of n x n nodes one unit apart.
+   */
+  static Graph grid(int n) {
+    GeometryFactory gf = new GeometryFactory();
+    LineStringGraphGenerator gen = new LineStringGraphGenerator();
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (i < n - 1) {
+          gen.add(gf.createLineString(new Coordinate[] {
+            new Coordinate(i, j), new Coordinate(i + 1, j)
+          }));
+        }
+        if (j < n - 1) {
+          gen.add(gf.createLineString(new Coordinate[] {
+            new Coordinate(i, j), new Coordinate(i, j + 1)
+          }));
+        }
+      }
+    }
+    return(gen.getGraph());
+  }
+
+  public void testLineGraph() throws Exception {
+    Graph before = grid(5);
+    m_rw.write(before);
+
+    CompactGraph graph = m_rw.readCompact();
+    assertEquals(25, graph.getNodeCount());
+    assertEquals(40, graph.getEdgeCount());
+    assertEquals(80, graph.getAdjacencyCount());
+    assertTrue(graph.hasCoordinates());
+    for (int a = 0; a < graph.getAdjacencyCount(); a++) {
+      assertEquals(1d, graph.getWeight(a), 0d);
+    }
+
+    //the mapped graph can be searched right away
+    int source = -1, target = -1;
+    for (int i = 0; i < graph.getNodeCount(); i++) {
+      if (graph.getX(i) == 0 && graph.getY(i) == 0) source = i;
+      if (graph.getX(i) == 4 && graph.getY(i) == 4) target = i;
+    }
+    assertEquals(8d, new CompactPathFinder(graph).findPath(source, target).getCost(), 0d);
+
+    //the object graph gets back ids, points and structure
+    Graph after = m_rw.read();
+    assertEquals(25, after.getNodes().size());
+    assertEquals(40, after.getEdges().size());
+    Map<Integer, Node> id2node = new HashMap<Integer, Node>();
+    for (Iterator itr = after.getNodes().iterator(); itr.hasNext();) {
+      Node n = (Node)itr.next();
+      id2node.put(n.getID(), n);
+    }
+    for (Iterator itr = before.getNodes().iterator(); itr.hasNext();) {
+      Node n = (Node)itr.next();
+      Node m = id2node.get(n.getID());
+      assertNotNull(m);
+      assertTrue(m.getObject() instanceof Point);
+      assertTrue(((Point)n.getObject()).equalsExact((Point)m.getObject()));
+      assertEquals(n.getDegree(), m.getDegree());
+    }
+  }
+
+  public void testDirectedGraph() throws Exception {
+    BasicDirectedGraphBuilder builder = new BasicDirectedGraphBuilder();
+    GraphTestUtil.buildNoBifurcations(builder, 10);
+    m_rw.write(builder.getGraph());
+
+    CompactGraph graph = m_rw.readCompact();
+    assertEquals(10, graph.getNodeCount());
+    assertEquals(9, graph.getAdjacencyCount());
+    assertFalse(graph.hasCoordinates());
+
+    m_rw.setProperty(CompactGraphReaderWriter.BUILDER, new BasicDirectedGraphBuilder());
+    Graph after = m_rw.read();
+    assertEquals(9, after.getEdges().size());
+    for (Iterator itr = after.getEdges().iterator(); itr.hasNext();) {
+      DirectedEdge e = (DirectedEdge)itr.next();
+      assertEquals(e.getID(), e.getInNode().getID());
+      assertEquals(e.getID() + 1, e.getOutNode().getID());
+    }
+  }
+
+  public void testConvertSerialized() throws Exception {
+    BasicGraphBuilder builder = new BasicGraphBuilder();
+    Node[] ends = GraphTestUtil.buildNoBifurcations(builder, 100);
+
+    //disconnect the end nodes, they must survive the conversion
+    HashSet toRemove = new HashSet();
+    toRemove.addAll(ends[0].getEdges());
+    toRemove.addAll(ends[1].getEdges());
+    builder.removeEdges(toRemove);
+
+    File serialized = File.createTempFile("graph", null);
+    serialized.deleteOnExit();
+    SerializedReaderWriter source = new SerializedReaderWriter();
+    source.setProperty(SerializedReaderWriter.FILENAME, serialized.getAbsolutePath());
+    source.write(builder.getGraph());
+    source.setProperty(SerializedReaderWriter.BUILDER, new BasicGraphBuilder());
+
+    CompactGraphConverter.convert(source, m_file.getAbsolutePath(), null);
+    serialized.delete();
+
+    Graph after = m_rw.read();
+    assertEquals(100, after.getNodes().size());
+    assertEquals(97, after.getEdges().size());
+    for (Iterator itr = after.getNodes().iterator(); itr.hasNext();) {
+      Node n = (Node)itr.next();
+      if (n.getID() == 0 || n.getID() == 99) assertEquals(0, n.getDegree());
+      else if (n.getID() == 1 || n.getID() == 98) assertEquals(1, n.getDegree());
+      else assertEquals(2, n.getDegree());
+    }
+    for (Iterator itr = after.getEdges().iterator(); itr.hasNext();) {
+      Edge e = (Edge)itr.next();
+      assertEquals(e.getID(), e.getNodeA().getID());
+      assertEquals(e.getID() + 1, e.getNodeB().getID());
+    }
+  }
+
+  public void testInvalidFiles() throws Exception {
+    FileOutputStream out = new FileOutputStream(m_file);
+    out.write("not a graph".getBytes("UTF-8"));
+    out.close();
+    try {
+      m_rw.readCompact();
+      fail("Expected an invalid file error");
+    }
+    catch (IOException expected) {}
+
+    //newer versions are rejected
+    m_rw.write(grid(2));
+    RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+    raf.seek(4);
+    boolean little = raf.read() == 1;
+    raf.seek(8);
+    int version = CompactGraphReaderWriter.VERSION + 1;
+    raf.writeInt(little ? Integer.reverseBytes(version) : version);
+    raf.close();
+    try {
+      m_rw.readCompact();
+      fail("Expected an unsupported version error");
+    }
+    catch (IOException expected) {}
+
+    //truncated files are rejected
+    m_rw.write(grid(2));
+    raf = new RandomAccessFile(m_file, "rw");
+    raf.setLength(raf.length() - 8);
+    raf.close();
+    try {
+      m_rw.read();
+      fail("Expected a corrupted file error");
+    }
+    catch (IOException expected) {}
+  }
+}
@@ -0,0 +1,118 @@
+package org.geotools.graph.path;
+
+import java.util.Random;
+
+import org.geotools.graph.build.line.LineStringGraphGenerator;
+import org.geotools.graph.structure.Graph;
+import org.geotools.graph.structure.Node;
+import org.geotools.graph.structure.compact.CompactGraphBuilder;
+import org.geotools.graph.traverse.standard.AStarIterator.AStarFunctions;
+import org.geotools.graph.traverse.standard.AStarIterator.AStarNode;
+import org.geotools.graph.traverse.standard.DijkstraIterator.EdgeWeighter;
+
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Compares the queries per second of the object graph path finders and of the
+ * {@link CompactPathFinder} on a grid shaped road network. Not run as part of the build, launch
+ * it with the grid size and the number of queries as arguments (defaults to 200 and 200).
+ *
+ * @source $URL$
+ */
+public class CompactPathFinderBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+    long start = System.currentTimeMillis();
+    LineStringGraphGenerator gen = CompactPathFinderTest.grid(n);
+    Graph graph = gen.getGraph();
+    System.out.println("Built a graph of " + graph.getNodes().size() + " nodes and "
+      + graph.getEdges().size() + " edges in " + (System.currentTimeMillis() - start) + "ms");
+
+    final EdgeWeighter weighter = CompactPathFinderTest.weighter();
+    start = System.currentTimeMillis();
+    CompactGraphBuilder builder = new CompactGraphBuilder(graph, weighter);
+    CompactPathFinder finder = new CompactPathFinder(builder.getGraph());
+    CompactPathFinder.Heuristic h = CompactPathFinder.euclidean(builder.getGraph(), 1);
+    System.out.println("Compacted in " + (System.currentTimeMillis() - start) + "ms");
+
+    //the same random queries for all the finders
+    Random random = new Random(42);
+    int[] sources = new int[queries];
+    int[] targets = new int[queries];
+    for (int i = 0; i < queries; i++) {
+      sources[i] = random.nextInt(builder.getGraph().getNodeCount());
+      targets[i] = random.nextInt(builder.getGraph().getNodeCount());
+    }
+
+    //object graph, Dijkstra
+    start = System.currentTimeMillis();
+    double checksum = 0;
+    for (int i = 0; i < queries; i++) {
+      DijkstraShortestPathFinder pf = new DijkstraShortestPathFinder(
+        graph, builder.getNode(sources[i]), weighter
+      );
+      pf.calculate();
+      checksum += pf.getCost(builder.getNode(targets[i]));
+    }
+    report("Object Dijkstra", queries, start, checksum);
+
+    //object graph, A*
+    start = System.currentTimeMillis();
+    checksum = 0;
+    for (int i = 0; i < queries; i++) {
+      final Node target = builder.getNode(targets[i]);
+      AStarFunctions functions = new AStarFunctions(target) {
+        public double cost(AStarNode n1, AStarNode n2) {
+          return(weighter.getWeight(n1.getNode().getEdge(n2.getNode())));
+        }
+
+        public double h(Node node) {
+          return(((Point)node.getObject()).distance((Point)target.getObject()));
+        }
+      };
+      AStarShortestPathFinder pf = new AStarShortestPathFinder(
+        graph, builder.getNode(sources[i]), target, functions
+      );
+      pf.calculate();
+      checksum += cost(pf.getPath(), weighter);
+    }
+    report("Object A*", queries, start, checksum);
+
+    //compact graph, warm up first
+    for (int i = 0; i < queries; i++) {
+      finder.findPath(sources[i], targets[i], h);
+    }
+    start = System.currentTimeMillis();
+    checksum = 0;
+    for (int i = 0; i < queries; i++) {
+      checksum += finder.findPath(sources[i], targets[i]).getCost();
+    }
+    report("Compact Dijkstra", queries, start, checksum);
+
+    start = System.currentTimeMillis();
+    checksum = 0;
+    for (int i = 0; i < queries; i++) {
+      checksum += finder.findPath(sources[i], targets[i], h).getCost();
+    }
+    report("Compact A*", queries, start, checksum);
+  }
+
+  static double cost(Path path, EdgeWeighter weighter) {
+    double cost = 0;
+    for (int i = 1; i < path.size(); i++) {
+      Node a = (Node)path.get(i - 1);
+      Node b = (Node)path.get(i);
+      cost += weighter.getWeight(a.getEdge(b));
+    }
+    return(cost);
+  }
+
+  static void report(String name, int queries, long start, double checksum) {
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    System.out.println(name + ": " + (queries * 1000d / elapsed) + " queries/s (total cost "
+      + checksum + ")");
+  }
+}
@@ -0,0 +1,175 @@
+package org.geotools.graph.path;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.geotools.graph.build.basic.BasicDirectedGraphBuilder;
+import org.geotools.graph.build.line.LineStringGraphGenerator;
+import org.geotools.graph.structure.Edge;
+import org.geotools.graph.structure.Graph;
+import org.geotools.graph.structure.Node;
+import org.geotools.graph.structure.compact.CompactGraph;
+import org.geotools.graph.structure.compact.CompactGraphBuilder;
+import org.geotools.graph.traverse.standard.DijkstraIterator.EdgeWeighter;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class CompactPathFinderTest extends TestCase {
+
+  /**
+   * Builds a road network shaped as a grid of n x n nodes one unit apart.
+   */
+  static LineStringGraphGenerator grid(int n) {
+    GeometryFactory gf = new GeometryFactory();
+    LineStringGraphGenerator gen = new LineStringGraphGenerator();
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (i < n - 1) {
+          gen.add(gf.createLineString(new Coordinate[] {
+            new Coordinate(i, j), new Coordinate(i + 1, j)
+          }));
+        }
+        if (j < n - 1) {
+          gen.add(gf.createLineString(new Coordinate[] {
+            new Coordinate(i, j), new Coordinate(i, j + 1)
+          }));
+        }
+      }
+    }
+    return(gen);
+  }
+
+  /**
+   * Weights the edges between 1 and 5 depending on their position, the weight is never
+   * smaller than the edge length.
+   */
+  static EdgeWeighter weighter() {
+    return(
+      new EdgeWeighter() {
+        public double getWeight(Edge e) {
+          Coordinate c = ((LineString)e.getObject()).getCoordinateN(0);
+          return(1 + ((int)(c.x * 7 + c.y * 13)) % 5);
+        }
+      }
+    );
+  }
+
+  static Node node(LineStringGraphGenerator gen, double x, double y) {
+    for (Iterator itr = gen.getGraph().getNodes().iterator(); itr.hasNext();) {
+      Node n = (Node)itr.next();
+      if (((Point)n.getObject()).getCoordinate().equals2D(
+        new Coordinate(x, y))) {
+        return(n);
+      }
+    }
+    return(null);
+  }
+
+  public void testBuild() {
+    CompactGraphBuilder builder = new CompactGraphBuilder(grid(10).getGraph(), null);
+    CompactGraph graph = builder.getGraph();
+    assertEquals(100, graph.getNodeCount());
+    assertEquals(180, graph.getEdgeCount());
+    //undirected edges can be traversed both ways
+    assertEquals(360, graph.getAdjacencyCount());
+    assertTrue(graph.hasCoordinates());
+
+    for (int i = 0; i < graph.getNodeCount(); i++) {
+      Node n = builder.getNode(i);
+      assertEquals(i, builder.getIndex(n));
+      assertEquals(n.getDegree(), graph.getDegree(i));
+      for (int a = graph.getAdjacencyStart(i); a < graph.getAdjacencyEnd(i); a++) {
+        Edge e = builder.getEdge(graph.getEdge(a));
+        assertSame(e.getOtherNode(n), builder.getNode(graph.getTarget(a)));
+        assertEquals(1d, graph.getWeight(a), 0d);
+      }
+    }
+  }
+
+  public void testCornerToCorner() {
+    LineStringGraphGenerator gen = grid(10);
+    CompactGraphBuilder builder = new CompactGraphBuilder(gen.getGraph(), null);
+    CompactPathFinder finder = new CompactPathFinder(builder.getGraph());
+    int source = builder.getIndex(node(gen, 0, 0));
+    int target = builder.getIndex(node(gen, 9, 9));
+
+    CompactPath dijkstra = finder.findPath(source, target);
+    assertEquals(18d, dijkstra.getCost(), 0d);
+    assertEquals(18, dijkstra.size());
+    assertEquals(source, dijkstra.getSource());
+    assertEquals(target, dijkstra.getTarget());
+
+    CompactPath astar = finder.findPath(
+      source, target, CompactPathFinder.euclidean(builder.getGraph(), 1)
+    );
+    assertEquals(18d, astar.getCost(), 0d);
+
+    //the object path goes from the target to the source
+    Path path = builder.toPath(astar);
+    assertEquals(19, path.size());
+    assertSame(node(gen, 9, 9), path.getFirst());
+    assertSame(node(gen, 0, 0), path.getLast());
+    assertTrue(path.isValid());
+  }
+
+  public void testSameCostsAsDijkstraIterator() {
+    LineStringGraphGenerator gen = grid(15);
+    Graph graph = gen.getGraph();
+    CompactGraphBuilder builder = new CompactGraphBuilder(graph, weighter());
+    CompactPathFinder finder = new CompactPathFinder(builder.getGraph());
+    CompactPathFinder.Heuristic h = CompactPathFinder.euclidean(builder.getGraph(), 1);
+
+    Node source = node(gen, 3, 2);
+    DijkstraShortestPathFinder pfinder = new DijkstraShortestPathFinder(
+      graph, source, weighter()
+    );
+    pfinder.calculate();
+    double[] costs = finder.calculateCosts(builder.getIndex(source), null);
+
+    for (Iterator itr = graph.getNodes().iterator(); itr.hasNext();) {
+      Node n = (Node)itr.next();
+      int index = builder.getIndex(n);
+      double expected = pfinder.getCost(n);
+      assertEquals(expected, costs[index], 1e-9);
+      assertEquals(expected, finder.findPath(builder.getIndex(source), index).getCost(), 1e-9);
+      assertEquals(
+        expected, finder.findPath(builder.getIndex(source), index, h).getCost(), 1e-9
+      );
+    }
+  }
+
+  public void testDirected() {
+    BasicDirectedGraphBuilder gb = new BasicDirectedGraphBuilder();
+    Node a = gb.buildNode();
+    Node b = gb.buildNode();
+    Node c = gb.buildNode();
+    gb.addNode(a);
+    gb.addNode(b);
+    gb.addNode(c);
+    gb.addEdge(gb.buildEdge(a, b));
+    gb.addEdge(gb.buildEdge(b, c));
+
+    CompactGraphBuilder builder = new CompactGraphBuilder(gb.getGraph(), null);
+    CompactGraph graph = builder.getGraph();
+    assertEquals(2, graph.getAdjacencyCount());
+    assertFalse(graph.hasCoordinates());
+
+    CompactPathFinder finder = new CompactPathFinder(graph);
+    CompactPath path = finder.findPath(builder.getIndex(a), builder.getIndex(c));
+    assertEquals(2d, path.getCost(), 0d);
+    assertNull(finder.findPath(builder.getIndex(c), builder.getIndex(a)));
+
+    //searches can be repeated with the same state
+    assertNotNull(finder.findPath(builder.getIndex(a), builder.getIndex(c)));
+    assertEquals(0, finder.findPath(builder.getIndex(b), builder.getIndex(b)).size());
+  }
+}
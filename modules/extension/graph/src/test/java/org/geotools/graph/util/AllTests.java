@@ -30,5 +30,6 @@ public class AllTests extends TestSuite {
     addTest(new TestSuite(DijkstraShortestPathFinderTest.class));
     addTest(new TestSuite(GraphPartitionerTest.class));
     addTest(new TestSuite(GraphFuserTest.class));
+    addTest(new TestSuite(IndexedBinaryHeapTest.class));
   } 	
 }
@@ -0,0 +1,61 @@
+package org.geotools.graph.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class IndexedBinaryHeapTest extends TestCase {
+
+  public void testExtractInOrder() {
+    int n = 1000;
+    Random random = new Random(42);
+    IndexedBinaryHeap heap = new IndexedBinaryHeap(n);
+    double[] keys = new double[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = random.nextDouble();
+      assertTrue(heap.insertOrDecrease(i, keys[i]));
+    }
+    //decrease half of the keys, trying to increase the others has no effect
+    for (int i = 0; i < n; i++) {
+      if (i % 2 == 0) {
+        keys[i] /= 2;
+        assertTrue(heap.insertOrDecrease(i, keys[i]));
+      }
+      else {
+        assertFalse(heap.insertOrDecrease(i, keys[i] + 1));
+      }
+    }
+    assertEquals(n, heap.size());
+
+    double[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    for (int i = 0; i < n; i++) {
+      assertEquals(sorted[i], heap.peekKey(), 0d);
+      int item = heap.extractMin();
+      assertEquals(keys[item], sorted[i], 0d);
+      assertFalse(heap.contains(item));
+    }
+    assertTrue(heap.isEmpty());
+  }
+
+  public void testClear() {
+    IndexedBinaryHeap heap = new IndexedBinaryHeap(10);
+    heap.insertOrDecrease(3, 1);
+    heap.insertOrDecrease(7, 0.5);
+    heap.clear();
+    assertTrue(heap.isEmpty());
+    assertFalse(heap.contains(3));
+    assertFalse(heap.contains(7));
+
+    //the heap is usable again after being cleared
+    heap.insertOrDecrease(7, 2);
+    assertEquals(2d, heap.getKey(7), 0d);
+    assertEquals(7, heap.peek());
+  }
+}
@@ -36,8 +36,10 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -69,6 +71,7 @@ import org.geotools.xml.impl.GetPropertyExecutor;
 import org.geotools.xml.impl.MismatchedBindingFinder;
 import org.geotools.xml.impl.NamespaceSupportWrapper;
 import org.geotools.xml.impl.SchemaIndexImpl;
+import org.geotools.xml.impl.XMLStreamWriterHandler;
 import org.picocontainer.MutablePicoContainer;
 import org.picocontainer.defaults.DefaultPicoContainer;
 import org.w3c.dom.Attr;
@@ -142,6 +145,19 @@ public class Encoder {
      */
     public static final QName COMMENT = new QName("http://www.geotools.org", "comment");
 
+    /**
+     * Document builders are expensive to look up and create, keep one around per thread
+     */
+    static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>() {
+        protected DocumentBuilder initialValue() {
+            try {
+                return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
     /** the schema + index **/
     private XSDSchema schema;
     private SchemaIndex index;
@@ -182,6 +198,12 @@ public class Encoder {
 
     /** name of type of root element to encode */
     private QName rootElementType;
+
+    /** non abstract substitutes of the abstract elements, by type of the encoded object */
+    private Map<XSDElementDeclaration, Substitutes> substitutes = new HashMap<XSDElementDeclaration, Substitutes>();
+
+    /** reusable buffer for the text nodes */
+    private char[] text = new char[256];
     /**
      * Logger logger;
      */
@@ -593,6 +615,39 @@ public class Encoder {
         }
     }
 
+    /**
+     * Encodes an object to a stax writer.
+     * <p>
+     * The encoder output is written straight to the writer, without going through a
+     * serializer. The writer is flushed, but not closed, at the end of the document.
+     * </p>
+     * @param object The object being encoded.
+     * @param name The name of the element being encoded in the schema.
+     * @param writer The stax writer.
+     *
+     * @throws IOException
+     * @since 9.0
+     */
+    public void encode(Object object, QName name, XMLStreamWriter writer)
+        throws IOException {
+        if ( inline ) {
+            String msg = "Must use 'encode(Object,QName,ContentHandler)' when inline flag is set";
+            throw new IllegalStateException( msg );
+        }
+
+        XMLStreamWriterHandler handler = new XMLStreamWriterHandler(writer,
+                outputFormat.getEncoding(), outputFormat.getOmitXMLDeclaration());
+        try {
+            encode(object, name, handler);
+        } 
+        catch (SAXException e) {
+            if (e.getException() != null && e.getCause() == null) {
+                e.initCause(e.getException());
+            }
+            throw (IOException) new IOException().initCause(e); 
+        }
+    }
+
     public void encode(Object object, QName name, ContentHandler handler)
         throws IOException, SAXException {
         
@@ -640,12 +695,10 @@ public class Encoder {
         }
 
         //create the document
-        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-
         try {
-            doc = docFactory.newDocumentBuilder().newDocument();
-        } catch (ParserConfigurationException e) {
-            new IOException().initCause(e);
+            doc = DOCUMENT_BUILDER.get().newDocument();
+        } catch (RuntimeException e) {
+            throw (IOException) new IOException().initCause(e);
         }
 
         encoded = new Stack();
@@ -740,117 +793,7 @@ public class Encoder {
 
                 //first make sure the element is not abstract
                 if (entry.element.isAbstract()) {
-                    // look for a non abstract substitute - substitution groups are subject to
-                    // changes over time, so we make a copy to avoid being hit with a ConcurrentModificationException
-                    List sub = safeCopy(entry.element.getSubstitutionGroup());
-
-
-                    if (sub.size() > 0) {
-                        //match up by type
-                        List matches = new ArrayList();
-
-                        for (Iterator s = sub.iterator(); s.hasNext();) {
-                            XSDElementDeclaration e = (XSDElementDeclaration) s.next();
-
-                            if (e == null || e.equals(entry.element)) {
-                                continue;
-                            }
-
-                            if (e.getName() == null) {
-                                continue;
-                            }
-
-                            //look up hte binding
-                            Binding binding = bindingLoader.loadBinding(new QName(
-                                        e.getTargetNamespace(), e.getName()), context);
-
-                            if (binding == null) {
-                                //try the type
-                                XSDTypeDefinition type = e.getType();
-
-                                if (type == null || type.getName() == null) {
-                                    continue;
-                                }
-
-                                binding = bindingLoader.loadBinding(new QName(
-                                            type.getTargetNamespace(), type.getName()), context);
-                            }
-
-                            if (binding == null) {
-                                continue;
-                            }
-
-                            if (binding.getType() == null) {
-                                logger.warning( "Binding: " + binding.getTarget() + " returns null type.");
-                                continue;
-                            }
-
-                            //match up the type
-                            if (binding.getType().isAssignableFrom(entry.object.getClass())) {
-                                //we have a match, store as an (element,binding) tuple
-                                matches.add(new Object[] { e, binding });
-                            }
-                        }
-
-                        //if one, we are gold
-                        if (matches.size() == 1) {
-                            entry.element = (XSDElementDeclaration) ((Object[]) matches.get(0))[0];
-                        }
-                        //if multiple we have a problem
-                        else if (matches.size() > 0) {
-                            if (logger.isLoggable(Level.FINE)) {
-                                StringBuffer msg = new StringBuffer(
-                                        "Found multiple non-abstract bindings for ");
-                                msg.append(entry.element.getName()).append(": ");
-
-                                for (Iterator m = matches.iterator(); m.hasNext();) {
-                                    msg.append(m.next().getClass().getName());
-                                    msg.append(", ");
-                                }
-
-                                logger.fine(msg.toString());
-                            }
-
-                            //try sorting by the type of the binding
-                            Collections.sort(matches,
-                                new Comparator() {
-                                    public int compare(Object o1, Object o2) {
-                                        Object[] match1 = (Object[]) o1;
-                                        Object[] match2 = (Object[]) o2;
-
-                                        Binding b1 = (Binding) match1[1];
-                                        Binding b2 = (Binding) match2[1];
-
-                                        if ( b1.getType() != b2.getType() ) {
-                                            if (b2.getType().isAssignableFrom(b1.getType())) {
-                                                return -1;
-                                            }
-    
-                                            if (b1.getType().isAssignableFrom(b2.getType())) {
-                                                return 1;
-                                            }
-                                        }
-                                        
-                                        //use binding comparability
-                                        if (b1 instanceof Comparable) {
-                                            return ((Comparable) b1).compareTo(b2);
-                                        }
-
-                                        if (b2 instanceof Comparable) {
-                                            return -1 * ((Comparable) b2).compareTo(b1);
-                                        }
-
-                                        return 0;
-                                    }
-                                });
-                        }
-
-                        if (matches.size() > 0) {
-                            entry.element = (XSDElementDeclaration) ((Object[]) matches.get(0))[0];
-                        }
-
-                        //if zero, just use the abstract element
-                    }
+                    entry.element = substitute(entry.element, entry.object);
                 }
 
                 if (entry.element.isAbstract()) {
@@ -1070,6 +1013,144 @@ O:
         
     }
     
+    /**
+     * Looks up the non abstract substitute of an abstract element for the object being
+     * encoded, caching the result by type of object.
+     */
+    private XSDElementDeclaration substitute(XSDElementDeclaration element, Object object) {
+        Substitutes cached = substitutes.get(element);
+        int groupSize = element.getSubstitutionGroup().size();
+        if (cached == null || cached.groupSize != groupSize) {
+            //substitution groups might have changed since the last lookup
+            cached = new Substitutes(groupSize);
+            substitutes.put(element, cached);
+        }
+
+        Class clazz = object.getClass();
+        XSDElementDeclaration substitute = cached.byClass.get(clazz);
+        if (substitute == null) {
+            substitute = lookupSubstitute(element, object);
+            cached.byClass.put(clazz, substitute);
+        }
+        return substitute;
+    }
+
+    private XSDElementDeclaration lookupSubstitute(XSDElementDeclaration element, Object object) {
+        // look for a non abstract substitute - substitution groups are subject to
+        // changes over time, so we make a copy to avoid being hit with a ConcurrentModificationException
+        List sub = safeCopy(element.getSubstitutionGroup());
+
+
+        if (sub.size() > 0) {
+            //match up by type
+            List matches = new ArrayList();
+
+            for (Iterator s = sub.iterator(); s.hasNext();) {
+                XSDElementDeclaration e = (XSDElementDeclaration) s.next();
+
+                if (e == null || e.equals(element)) {
+                    continue;
+                }
+
+                if (e.getName() == null) {
+                    continue;
+                }
+
+                //look up hte binding
+                Binding binding = bindingLoader.loadBinding(new QName(
+                            e.getTargetNamespace(), e.getName()), context);
+
+                if (binding == null) {
+                    //try the type
+                    XSDTypeDefinition type = e.getType();
+
+                    if (type == null || type.getName() == null) {
+                        continue;
+                    }
+
+                    binding = bindingLoader.loadBinding(new QName(
+                                type.getTargetNamespace(), type.getName()), context);
+                }
+
+                if (binding == null) {
+                    continue;
+                }
+
+                if (binding.getType() == null) {
+                    logger.warning( "Binding: " + binding.getTarget() + " returns null type.");
+                    continue;
+                }
+
+                //match up the type
+                if (binding.getType().isAssignableFrom(object.getClass())) {
+                    //we have a match, store as an (element,binding) tuple
+                    matches.add(new Object[] { e, binding });
+                }
+            }
+
+            //if one, we are gold
+            if (matches.size() == 1) {
+                element = (XSDElementDeclaration) ((Object[]) matches.get(0))[0];
+            }
+            //if multiple we have a problem
+            else if (matches.size() > 0) {
+                if (logger.isLoggable(Level.FINE)) {
+                    StringBuffer msg = new StringBuffer(
+                            "Found multiple non-abstract bindings for ");
+                    msg.append(element.getName()).append(": ");
+
+                    for (Iterator m = matches.iterator(); m.hasNext();) {
+                        msg.append(m.next().getClass().getName());
+                        msg.append(", ");
+                    }
+
+                    logger.fine(msg.toString());
+                }
+
+                //try sorting by the type of the binding
+                Collections.sort(matches,
+                    new Comparator() {
+                        public int compare(Object o1, Object o2) {
+                            Object[] match1 = (Object[]) o1;
+                            Object[] match2 = (Object[]) o2;
+
+                            Binding b1 = (Binding) match1[1];
+                            Binding b2 = (Binding) match2[1];
+
+                            if ( b1.getType() != b2.getType() ) {
+                                if (b2.getType().isAssignableFrom(b1.getType())) {
+                                    return -1;
+                                }
+
+                                if (b1.getType().isAssignableFrom(b2.getType())) {
+                                    return 1;
+                                }
+                            }
+
+                            //use binding comparability
+                            if (b1 instanceof Comparable) {
+                                return ((Comparable) b1).compareTo(b2);
+                            }
+
+                            if (b2 instanceof Comparable) {
+                                return -1 * ((Comparable) b2).compareTo(b1);
+                            }
+
+                            return 0;
+                        }
+                    });
+            }
+
+            if (matches.size() > 0) {
+                element = (XSDElementDeclaration) ((Object[]) matches.get(0))[0];
+            }
+
+            //if zero, just use the abstract element
+        }
+
+        return element;
+    }
+
     /**
      * Makes a defensive copy of an e-list handling the eventual issues due to concurrent modifications
      * @param substitutionGroup
@@ -1188,8 +1269,13 @@ O:
             Node node = (Node) element.getChildNodes().item(i);
 
             if (node instanceof Text) {
-                char[] ch = ((Text) node).getData().toCharArray();
-                serializer.characters(ch, 0, ch.length);
+                String data = ((Text) node).getData();
+                int length = data.length();
+                if (text.length < length) {
+                    text = new char[Math.max(length, text.length * 2)];
+                }
+                data.getChars(0, length, text, 0);
+                serializer.characters(text, 0, length);
             }
         }
 
@@ -1280,6 +1366,19 @@ O:
         }
     }
 
+    /**
+     * Non abstract substitutes of an abstract element, by type of the encoded object.
+     */
+    private static class Substitutes {
+        /** size of the substitution group when the lookups were made */
+        int groupSize;
+        Map<Class, XSDElementDeclaration> byClass = new HashMap<Class, XSDElementDeclaration>();
+
+        public Substitutes(int groupSize) {
+            this.groupSize = groupSize;
+        }
+    }
+
     /**
      * Encoding stack entries.
      */
@@ -0,0 +1,259 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.xml;
+
+import java.io.InputStream;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.geotools.xml.impl.Buffer;
+import org.geotools.xml.impl.ElementNameStreamingParserHandler;
+import org.geotools.xml.impl.StreamingParserHandler;
+import org.geotools.xml.impl.TypeStreamingParserHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * XML parser capable of streaming, pulling the content from a StAX reader.
+ * <p>
+ * Performs the same task as {@link StreamingParser}, with the same streaming modes, but the
+ * document is parsed on the calling thread: each call to {@link #parse()} reads from the input
+ * just as much as it is needed to build the next object. No parsing thread is started, the
+ * memory used does not depend on the number of objects in the document, and parsing can be
+ * stopped at any time by calling {@link #close()}.
+ * </p>
+ * <p>
+ * Example usage:
+ * <pre>
+ *    Configuration configuration = new GMLConfiguration();
+ *    PullParser parser = new PullParser( configuration, input, SimpleFeature.class );
+ *    try {
+ *       SimpleFeature f = null;
+ *       while ( ( f = (SimpleFeature) parser.parse() ) != null ) {
+ *          ...
+ *       }
+ *    } finally {
+ *       parser.close();
+ *    }
+ * </pre>
+ * </p>
+ *
+ * @source $URL$
+ * @since 9.0
+ */
+public class PullParser {
+
+    /**
+     * Shared factory, they are thread safe once configured
+     */
+    static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    }
+
+    /**
+     * The sax handler, driven by the stax events.
+     */
+    private StreamingParserHandler handler;
+
+    /**
+     * The stax reader.
+     */
+    private XMLStreamReader reader;
+
+    /**
+     * Reused to pass the attributes to the handler.
+     */
+    private AttributesImpl attributes = new AttributesImpl();
+
+    /**
+     * Whether the start of the document has been reported to the handler.
+     */
+    private boolean started;
+
+    /**
+     * Whether the end of the document has been reached, or the parser has been closed.
+     */
+    private boolean done;
+
+    /**
+     * Creates a new instance of the type based pull parser.
+     *
+     * @param configuration Object representing the configuration of the parser.
+     * @param input The input stream representing the instance document to be parsed.
+     * @param type The type of parsed objects to stream back.
+     *
+     * @throws XMLStreamException
+     */
+    public PullParser(Configuration configuration, InputStream input, Class type)
+        throws XMLStreamException {
+        this(configuration, input, new TypeStreamingParserHandler(configuration, type));
+    }
+
+    /**
+     * Creates a new instance of the element name based pull parser.
+     *
+     * @param configuration Object representing the configuration of the parser.
+     * @param input The input stream representing the instance document to be parsed.
+     * @param elementName The name of elements to stream back.
+     *
+     * @throws XMLStreamException
+     */
+    public PullParser(Configuration configuration, InputStream input, QName elementName)
+        throws XMLStreamException {
+        this(configuration, input, new ElementNameStreamingParserHandler(configuration, elementName));
+    }
+
+    /**
+     * Creates a new instance of the xpath based pull parser.
+     *
+     * @param configuration Object representing the configuration of the parser.
+     * @param input The input stream representing the instance document to be parsed.
+     * @param xpath An xpath expression which dictates how the parser streams
+     * objects back to the client.
+     *
+     * @throws ParserConfigurationException
+     * @throws XMLStreamException
+     */
+    public PullParser(Configuration configuration, InputStream input, String xpath)
+        throws ParserConfigurationException, XMLStreamException {
+        this(configuration, input, StreamingParser.createJXpathStreamingParserHandler(configuration, xpath));
+    }
+
+    /**
+     * Internal constructor.
+     */
+    protected PullParser(Configuration configuration, InputStream input,
+        StreamingParserHandler handler) throws XMLStreamException {
+        this.handler = handler;
+        this.reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+    }
+
+    /**
+     * Parses the instance document up to the next object to be streamed back. This method
+     * returns null when there are no more objects to stream, or the parser has been closed.
+     *
+     * @return The next object in the stream, or null if no such object is available.
+     *
+     * @throws XMLStreamException If the input cannot be read, or is not well formed
+     * @throws SAXException If the handler fails to process the document
+     */
+    public Object parse() throws XMLStreamException, SAXException {
+        if (reader == null) {
+            return null;
+        }
+        final Buffer buffer = handler.getBuffer();
+        if (!started && !done) {
+            started = true;
+            handler.startDocument();
+        }
+        // the handler puts the objects in the buffer as it finds them, since we stop
+        // at the first one the buffer never blocks
+        while (buffer.size() == 0 && !done) {
+            next();
+        }
+        return buffer.size() > 0 ? buffer.get() : null;
+    }
+
+    /**
+     * Feeds the next stax event to the handler
+     */
+    private void next() throws XMLStreamException, SAXException {
+        final int event = reader.next();
+        switch (event) {
+        case XMLStreamConstants.START_ELEMENT:
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                handler.startPrefixMapping(prefix(reader.getNamespacePrefix(i)),
+                        uri(reader.getNamespaceURI(i)));
+            }
+            attributes.clear();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                final String prefix = prefix(reader.getAttributePrefix(i));
+                final String localName = reader.getAttributeLocalName(i);
+                attributes.addAttribute(uri(reader.getAttributeNamespace(i)), localName,
+                        qualify(prefix, localName), reader.getAttributeType(i),
+                        reader.getAttributeValue(i));
+            }
+            handler.startElement(uri(reader.getNamespaceURI()), reader.getLocalName(),
+                    qualify(prefix(reader.getPrefix()), reader.getLocalName()), attributes);
+            break;
+        case XMLStreamConstants.END_ELEMENT:
+            handler.endElement(uri(reader.getNamespaceURI()), reader.getLocalName(),
+                    qualify(prefix(reader.getPrefix()), reader.getLocalName()));
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                handler.endPrefixMapping(prefix(reader.getNamespacePrefix(i)));
+            }
+            break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+            handler.characters(reader.getTextCharacters(), reader.getTextStart(),
+                    reader.getTextLength());
+            break;
+        case XMLStreamConstants.END_DOCUMENT:
+            done = true;
+            handler.endDocument();
+            break;
+        default:
+            // comments, processing instructions and dtd events are not reported
+        }
+    }
+
+    static String prefix(String prefix) {
+        return prefix == null ? "" : prefix;
+    }
+
+    static String uri(String uri) {
+        return uri == null ? "" : uri;
+    }
+
+    static String qualify(String prefix, String localName) {
+        return prefix.length() == 0 ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Stops the parsing and releases the resources held by the parser. The input stream is
+     * not closed, it is still up to the caller to close it.
+     *
+     * @throws XMLStreamException
+     */
+    public void close() throws XMLStreamException {
+        if (reader == null) {
+            return;
+        }
+        try {
+            if (started && !done) {
+                // the handler did not get to the end of the document and clean up by itself
+                SchemaIndex index = handler.getSchemaIndex();
+                if (index != null) {
+                    index.destroy();
+                }
+            }
+            handler.getBuffer().close();
+            reader.close();
+        } finally {
+            reader = null;
+            done = true;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.xml.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Content handler writing the sax events it receives straight to a {@link XMLStreamWriter}.
+ * <p>
+ * The prefix mappings are declared on the element following them, as the xerces serializer
+ * does.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class XMLStreamWriterHandler extends DefaultHandler {
+
+    XMLStreamWriter writer;
+
+    String encoding;
+
+    boolean omitXMLDeclaration;
+
+    /** prefix, uri pairs to be declared on the next element */
+    List<String> pending = new ArrayList<String>();
+
+    public XMLStreamWriterHandler(XMLStreamWriter writer, String encoding,
+            boolean omitXMLDeclaration) {
+        this.writer = writer;
+        this.encoding = encoding;
+        this.omitXMLDeclaration = omitXMLDeclaration;
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        if (!omitXMLDeclaration) {
+            try {
+                writer.writeStartDocument(encoding, "1.0");
+            } catch (XMLStreamException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        pending.add(prefix == null ? "" : prefix);
+        pending.add(uri);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+            throws SAXException {
+        try {
+            int idx = qName.indexOf(':');
+            if (idx > 0) {
+                writer.writeStartElement(qName.substring(0, idx), localName,
+                        uri == null ? "" : uri);
+            } else {
+                writer.writeStartElement(localName);
+            }
+
+            for (int i = 0; i < pending.size(); i += 2) {
+                String prefix = pending.get(i);
+                String ns = pending.get(i + 1);
+                if (prefix.length() == 0) {
+                    writer.writeDefaultNamespace(ns);
+                } else {
+                    writer.writeNamespace(prefix, ns);
+                }
+            }
+            pending.clear();
+
+            for (int i = 0; i < atts.getLength(); i++) {
+                String name = atts.getQName(i);
+                String value = atts.getValue(i);
+                if ("xmlns".equals(name)) {
+                    writer.writeDefaultNamespace(value);
+                } else if (name.startsWith("xmlns:")) {
+                    writer.writeNamespace(name.substring(6), value);
+                } else {
+                    idx = name.indexOf(':');
+                    String ns = atts.getURI(i);
+                    if (idx > 0 && ns != null && ns.length() > 0) {
+                        writer.writeAttribute(name.substring(0, idx), ns, name.substring(idx + 1),
+                                value);
+                    } else {
+                        writer.writeAttribute(idx > 0 ? name.substring(idx + 1) : name, value);
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        try {
+            writer.writeCharacters(ch, start, length);
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        try {
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        try {
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+}
@@ -42,6 +42,7 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Geometry;
 
 /**
@@ -177,6 +178,36 @@ public class GML2EncodingUtils {
         e.setMetadata(g, "gml:id", id);
     }
     
+    /**
+     * Writes a coordinate sequence in the gml:coordinates format, <code>x,y[,z] x,y[,z] ...</code>,
+     * to the provided buffer. The ordinates are read straight from the sequence, without
+     * copying the coordinates.
+     */
+    public static void appendCoordinates(CoordinateSequence coordinates, StringBuilder sb) {
+        final int size = coordinates.size();
+        final int dimension = coordinates.getDimension();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(coordinates.getOrdinate(i, CoordinateSequence.X));
+
+            if (dimension > 1) {
+                double y = coordinates.getOrdinate(i, CoordinateSequence.Y);
+                if (!Double.isNaN(y)) {
+                    sb.append(',').append(y);
+
+                    if (dimension > 2) {
+                        double z = coordinates.getOrdinate(i, CoordinateSequence.Z);
+                        if (!Double.isNaN(z)) {
+                            sb.append(',').append(z);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Determines the description (gml:description) of the geometry by checking
      * {@link Geometry#getUserData()}.
@@ -27,7 +27,6 @@ import org.geotools.xml.Node;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 
@@ -182,28 +181,8 @@ public class GMLCoordinatesTypeBinding extends AbstractComplexBinding {
     public Element encode(Object object, Document document, Element value)
         throws Exception {
         CoordinateSequence coordinates = (CoordinateSequence) object;
-        StringBuffer buf = new StringBuffer();
-
-        for (int i = 0; i < coordinates.size(); i++) {
-            Coordinate c = coordinates.getCoordinate(i);
-            buf.append(c.x);
-
-            boolean y = (coordinates.getDimension() > 1) && !new Double(c.y).isNaN();
-
-            if (y) {
-                buf.append("," + c.y);
-            }
-
-            boolean z = y && (coordinates.getDimension() > 2) && !new Double(c.z).isNaN();
-
-            if (z) {
-                buf.append("," + c.z);
-            }
-
-            if (i < (coordinates.size() - 1)) {
-                buf.append(" ");
-            }
-        }
+        StringBuilder buf = new StringBuilder(coordinates.size() * 40);
+        GML2EncodingUtils.appendCoordinates(coordinates, buf);
 
         value.appendChild(document.createTextNode(buf.toString()));
 
@@ -156,22 +156,17 @@ public class DirectPositionListTypeBinding extends AbstractComplexBinding {
     public Element encode(Object object, Document document, Element value) throws Exception {
         // TODO: remove this when the parser can do lists
         CoordinateSequence cs = (CoordinateSequence) object;
-        StringBuffer sb = new StringBuffer();
 
         int dim = CoordinateSequences.coordinateDimension(cs);
         int size = cs.size();
-        int nOrdWithSpace = size * dim - 1;
-        int count = 0;
+        StringBuilder sb = new StringBuilder(size * dim * 20);
         for (int i = 0; i < size; i++) {
-        	for (int d = 0; d < dim; d++) {
-	            sb.append(cs.getOrdinate(i, d));
-	
-	            if (count < nOrdWithSpace) {
-	                sb.append(" ");
-	            }
-	            count++;
-
-        	}
+            for (int d = 0; d < dim; d++) {
+                if (i > 0 || d > 0) {
+                    sb.append(' ');
+                }
+                sb.append(cs.getOrdinate(i, d));
+            }
         }
 
         value.appendChild(document.createTextNode(sb.toString()));
@@ -0,0 +1,82 @@
+package org.geotools.gml3;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.gml3.bindings.GML3MockData;
+import org.geotools.gml3.bindings.TEST;
+import org.geotools.gml3.bindings.TestConfiguration;
+import org.geotools.xml.Encoder;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Measures the features/second encoded as a GML3 feature collection, through the xerces
+ * serializer and through a stax writer.
+ * <p>
+ * Usage: <code>EncoderBenchmark [features]</code>
+ * </p>
+ *
+ * @source $URL$
+ */
+public class EncoderBenchmark {
+
+    /**
+     * Discards the output, we are only interested in the encoding cost
+     */
+    static class NullOutputStream extends OutputStream {
+        public void write(int b) {
+        }
+
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final SimpleFeature template = GML3MockData.feature();
+        final List<SimpleFeature> features = new ArrayList<SimpleFeature>(count);
+        for (int i = 0; i < count; i++) {
+            features.add(SimpleFeatureBuilder.build(template.getFeatureType(),
+                    template.getAttributes(), "fid." + i));
+        }
+        final SimpleFeatureCollection fc = DataUtilities.collection(features);
+        final TestConfiguration configuration = new TestConfiguration();
+
+        // warm up, then measure
+        for (int i = 0; i < 3; i++) {
+            encodeSerializer(configuration, fc);
+            encodeStax(configuration, fc);
+        }
+        long start = System.nanoTime();
+        encodeSerializer(configuration, fc);
+        report("serializer", count, start);
+        start = System.nanoTime();
+        encodeStax(configuration, fc);
+        report("stax writer", count, start);
+    }
+
+    static void report(String name, int count, long start) {
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(name + ": " + Math.round(count / seconds) + " features/s");
+    }
+
+    static void encodeSerializer(TestConfiguration configuration, SimpleFeatureCollection fc)
+            throws Exception {
+        new Encoder(configuration).encode(fc, TEST.TestFeatureCollection, new NullOutputStream());
+    }
+
+    static void encodeStax(TestConfiguration configuration, SimpleFeatureCollection fc)
+            throws Exception {
+        final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(
+                new NullOutputStream(), "UTF-8");
+        new Encoder(configuration).encode(fc, TEST.TestFeatureCollection, writer);
+        writer.close();
+    }
+}
@@ -19,10 +19,17 @@ package org.geotools.gml3;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
 import junit.framework.TestCase;
 
 import org.apache.xerces.parsers.SAXParser;
@@ -36,6 +43,7 @@ import org.geotools.xml.Encoder;
 import org.geotools.xml.Parser;
 import org.opengis.feature.simple.SimpleFeature;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
@@ -221,4 +229,29 @@ public class GML3EncodingTest extends TestCase {
         assertTrue(dom.getDocumentElement().getAttribute("srsName")
             .startsWith("http://www.opengis.net/def/crs/EPSG/0/"));
     }
+
+    public void testEncodeToStreamWriter() throws Exception {
+        GMLConfiguration gml = new GMLConfiguration();
+        Document expected = new Encoder(gml).encodeAsDOM(GML3MockData.polygon(), GML.Polygon);
+
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        new Encoder(gml).encode(GML3MockData.polygon(), GML.Polygon, writer);
+        writer.close();
+
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document dom = dbf.newDocumentBuilder().parse(
+                new InputSource(new StringReader(out.toString())));
+
+        Element root = dom.getDocumentElement();
+        assertEquals(GML.NAMESPACE, root.getNamespaceURI());
+        assertEquals("Polygon", root.getLocalName());
+        assertEquals(expected.getDocumentElement().getAttribute("srsName"),
+            root.getAttribute("srsName"));
+        assertEquals(1, dom.getElementsByTagNameNS(GML.NAMESPACE, "posList").getLength());
+        assertEquals(
+            expected.getElementsByTagNameNS(GML.NAMESPACE, "posList").item(0).getTextContent(),
+            dom.getElementsByTagNameNS(GML.NAMESPACE, "posList").item(0).getTextContent());
+    }
 }
@@ -13,6 +13,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import junit.framework.TestCase;
 
+import org.geotools.xml.PullParser;
 import org.geotools.xml.StreamingParser;
 import org.opengis.feature.simple.SimpleFeature;
 import org.w3c.dom.Document;
@@ -76,4 +77,37 @@ public class GML3ParsingTest extends TestCase {
         
         assertEquals( 49, nfeatures );
     }
+
+    public void testPullParser() throws Exception {
+        InputStream in = getClass().getResourceAsStream( "states.xml");
+        GMLConfiguration gml = new GMLConfiguration();
+        PullParser parser = new PullParser( gml, in, SimpleFeature.class );
+        
+        int nfeatures = 0;
+        SimpleFeature f = null;
+        while( ( f = (SimpleFeature) parser.parse() ) != null ) {
+            nfeatures++;
+            assertNotNull( f.getAttribute( "STATE_NAME"));
+            assertNotNull( f.getAttribute( "STATE_ABBR"));
+            assertTrue( f.getAttribute( "SAMP_POP") instanceof String );
+        }
+        parser.close();
+        in.close();
+        
+        assertEquals( 49, nfeatures );
+    }
+    
+    public void testPullParserEarlyClose() throws Exception {
+        InputStream in = getClass().getResourceAsStream( "states.xml");
+        GMLConfiguration gml = new GMLConfiguration();
+        PullParser parser = new PullParser( gml, in, SimpleFeature.class );
+        
+        SimpleFeature f = (SimpleFeature) parser.parse();
+        assertNotNull( f );
+        assertEquals( "states.1", f.getID() );
+        parser.close();
+        in.close();
+        
+        assertNull( parser.parse() );
+    }
 }
@@ -0,0 +1,90 @@
+package org.geotools.gml3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import org.geotools.xml.PullParser;
+import org.geotools.xml.StreamingParser;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Compares the {@link StreamingParser} and the {@link PullParser} on a large GML3 feature
+ * collection, built by repeating the states of the <code>states.xml</code> test document.
+ * <p>
+ * Usage: <code>PullParserBenchmark [copies]</code>
+ * </p>
+ *
+ * @source $URL$
+ */
+public class PullParserBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int copies = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final byte[] document = buildDocument(copies);
+        System.out.println("Document size: " + document.length / 1024 + " KB");
+
+        // warm up, then measure
+        for (int i = 0; i < 3; i++) {
+            parseStreaming(document);
+            parsePull(document);
+        }
+        long start = System.nanoTime();
+        int count = parseStreaming(document);
+        System.out.println("StreamingParser: " + count + " features in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        start = System.nanoTime();
+        count = parsePull(document);
+        System.out.println("PullParser: " + count + " features in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    static byte[] buildDocument(int copies) throws Exception {
+        final InputStream in = PullParserBenchmark.class.getResourceAsStream("states.xml");
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            bos.write(buffer, 0, read);
+        }
+        in.close();
+
+        final String states = new String(bos.toByteArray(), "UTF-8");
+        final String open = "<gml:featureMembers>";
+        final String close = "</gml:featureMembers>";
+        final int start = states.indexOf(open) + open.length();
+        final int end = states.indexOf(close);
+        final String members = states.substring(start, end);
+        final StringBuilder sb = new StringBuilder(states.length() * copies);
+        sb.append(states.substring(0, start));
+        for (int i = 0; i < copies; i++) {
+            sb.append(members);
+        }
+        sb.append(states.substring(end));
+        return sb.toString().getBytes("UTF-8");
+    }
+
+    static int parseStreaming(byte[] document) throws Exception {
+        final StreamingParser parser = new StreamingParser(new GMLConfiguration(),
+                new ByteArrayInputStream(document), SimpleFeature.class);
+        int count = 0;
+        while (parser.parse() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    static int parsePull(byte[] document) throws Exception {
+        final PullParser parser = new PullParser(new GMLConfiguration(),
+                new ByteArrayInputStream(document), SimpleFeature.class);
+        int count = 0;
+        try {
+            while (parser.parse() != null) {
+                count++;
+            }
+        } finally {
+            parser.close();
+        }
+        return count;
+    }
+}
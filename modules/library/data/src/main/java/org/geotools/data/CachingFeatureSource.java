@@ -72,7 +72,8 @@ import com.vividsolutions.jts.index.strtree.STRtree;
  *
  * @source $URL$
  * @version $Id$
- * @deprecated This class is not tested enough to be considered production ready
+ * @deprecated This class is not tested enough to be considered production ready, use
+ *             {@link org.geotools.data.collection.SpatialIndexCachingFeatureSource} instead
  */
 public class CachingFeatureSource implements SimpleFeatureSource {
     private SimpleFeatureSource wrapped;
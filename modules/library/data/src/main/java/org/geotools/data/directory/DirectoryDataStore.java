@@ -39,6 +39,7 @@ import org.geotools.data.LockingManager;
 import org.geotools.data.Query;
 import org.geotools.data.ServiceInfo;
 import org.geotools.data.Transaction;
+import org.geotools.data.directory.DirectoryTypeCache.FileEntry;
 import org.geotools.data.simple.SimpleFeatureLocking;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.simple.SimpleFeatureStore;
@@ -66,35 +67,88 @@ public class DirectoryDataStore implements DataStore {
     public FeatureReader<SimpleFeatureType, SimpleFeature> getFeatureReader(
             Query query, Transaction transaction) throws IOException {
         String typeName = query.getTypeName();
-        return getDataStore(typeName).getFeatureReader(query, transaction);
+        // keep the store pinned until the reader gets closed
+        FileEntry entry = getEntry(typeName);
+        DataStore store = entry.pin();
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = null;
+        try {
+            reader = store.getFeatureReader(query, transaction);
+            return new DirectoryFeatureReader(reader, entry);
+        } finally {
+            if(reader == null) {
+                entry.unpin();
+            }
+        }
     }
 
     public SimpleFeatureSource getFeatureSource(
             String typeName) throws IOException {
-        SimpleFeatureSource fs = getDataStore(typeName).getFeatureSource(typeName);
-        if(fs instanceof SimpleFeatureLocking) {
-            return new DirectoryFeatureLocking((SimpleFeatureLocking) fs);
-        } else if(fs instanceof FeatureStore) {
-            return new DirectoryFeatureStore((SimpleFeatureStore) fs);
-        } else {
-            return new DirectoryFeatureSource((SimpleFeatureSource) fs);
+        // keep the store pinned as long as the feature source is in use
+        FileEntry entry = getEntry(typeName);
+        DataStore store = entry.pin();
+        DirectoryFeatureSource result = null;
+        try {
+            SimpleFeatureSource fs = store.getFeatureSource(typeName);
+            if(fs instanceof SimpleFeatureLocking) {
+                result = new DirectoryFeatureLocking((SimpleFeatureLocking) fs);
+            } else if(fs instanceof FeatureStore) {
+                result = new DirectoryFeatureStore((SimpleFeatureStore) fs);
+            } else {
+                result = new DirectoryFeatureSource((SimpleFeatureSource) fs);
+            }
+            entry.unpinWhenUnreachable(result);
+            return result;
+        } finally {
+            if(result == null) {
+                entry.unpin();
+            }
         }
     }
 
     public FeatureWriter<SimpleFeatureType, SimpleFeature> getFeatureWriter(
             String typeName, Filter filter, Transaction transaction)
             throws IOException {
-        return getDataStore(typeName).getFeatureWriter(typeName, filter, transaction);
+        FileEntry entry = getEntry(typeName);
+        DataStore store = entry.pin();
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = null;
+        try {
+            writer = store.getFeatureWriter(typeName, filter, transaction);
+            return new DirectoryFeatureWriter(writer, entry);
+        } finally {
+            if(writer == null) {
+                entry.unpin();
+            }
+        }
     }
 
     public FeatureWriter<SimpleFeatureType, SimpleFeature> getFeatureWriter(
             String typeName, Transaction transaction) throws IOException {
-        return getDataStore(typeName).getFeatureWriter(typeName, transaction);
+        FileEntry entry = getEntry(typeName);
+        DataStore store = entry.pin();
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = null;
+        try {
+            writer = store.getFeatureWriter(typeName, transaction);
+            return new DirectoryFeatureWriter(writer, entry);
+        } finally {
+            if(writer == null) {
+                entry.unpin();
+            }
+        }
     }
 
     public FeatureWriter<SimpleFeatureType, SimpleFeature> getFeatureWriterAppend(
             String typeName, Transaction transaction) throws IOException {
-        return getDataStore(typeName).getFeatureWriterAppend(typeName, transaction);
+        FileEntry entry = getEntry(typeName);
+        DataStore store = entry.pin();
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = null;
+        try {
+            writer = store.getFeatureWriterAppend(typeName, transaction);
+            return new DirectoryFeatureWriter(writer, entry);
+        } finally {
+            if(writer == null) {
+                entry.unpin();
+            }
+        }
     }
 
     public LockingManager getLockingManager() {
@@ -105,7 +159,13 @@ public class DirectoryDataStore implements DataStore {
     }
 
     public SimpleFeatureType getSchema(String typeName) throws IOException {
-        return getDataStore(typeName).getSchema(typeName);
+        FileEntry entry = getEntry(typeName);
+        DataStore store = entry.pin();
+        try {
+            return store.getSchema(typeName);
+        } finally {
+            entry.unpin();
+        }
     }
 
     public String[] getTypeNames() throws IOException {
@@ -115,7 +175,13 @@ public class DirectoryDataStore implements DataStore {
 
     public void updateSchema(String typeName, SimpleFeatureType featureType)
             throws IOException {
-        getDataStore(typeName).updateSchema(typeName, featureType);
+        FileEntry entry = getEntry(typeName);
+        DataStore store = entry.pin();
+        try {
+            store.updateSchema(typeName, featureType);
+        } finally {
+            entry.unpin();
+        }
     }
 
     public void createSchema(SimpleFeatureType featureType) throws IOException {
@@ -144,6 +210,45 @@ public class DirectoryDataStore implements DataStore {
         cache.dispose();
     }
 
+    /**
+     * Returns the maximum number of delegate stores kept open, 0 if they are kept behind soft
+     * references
+     */
+    public int getMaxOpenStores() {
+        return cache.maxOpenStores;
+    }
+
+    /**
+     * Bounds the number of delegate stores kept open, disposing the least recently used ones
+     * when more are needed, instead of leaving them to the garbage collector behind soft
+     * references. Stores still used by open readers, writers or reachable feature sources are
+     * disposed only once released, so the limit can be temporarily exceeded. A disposed store
+     * is re-created when its feature types are accessed again.
+     * 
+     * @param maxOpenStores The maximum number of open stores, or 0 to use soft references
+     */
+    public void setMaxOpenStores(int maxOpenStores) {
+        cache.setMaxOpenStores(maxOpenStores);
+    }
+
+    /**
+     * Returns the file the type names are persisted into, or null
+     */
+    public File getTypeNameCatalog() {
+        return cache.catalog;
+    }
+
+    /**
+     * Sets the file the type names of the directory contents are persisted into. On startup the
+     * type names of the files that did not change since they were persisted are read from the
+     * catalog, without opening their stores. Must be set before the store is used.
+     * 
+     * @param catalog The catalog file, or null to disable persistence
+     */
+    public void setTypeNameCatalog(File catalog) {
+        cache.setCatalog(catalog);
+    }
+
     public SimpleFeatureSource getFeatureSource(
             Name typeName) throws IOException {
         return getFeatureSource(typeName.getLocalPart());
@@ -180,7 +285,9 @@ public class DirectoryDataStore implements DataStore {
     }
     
     /**
-     * Returns the native store for a specified type name
+     * Returns the native store for a specified type name. The store is not pinned, when
+     * {@link #setMaxOpenStores(int) bounding the open stores} it can be closed at any time by
+     * the pool, use the readers, writers and feature sources of this store instead.
      * @param typeName
      * @return
      * @throws IOException
@@ -193,4 +300,11 @@ public class DirectoryDataStore implements DataStore {
         return store;
     }
 
+    /**
+     * Returns the cache entry for a specified type name, making sure it's actually there
+     */
+    FileEntry getEntry(String typeName) throws IOException {
+        return cache.getEntry(typeName, true);
+    }
+
 }
@@ -0,0 +1,104 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.directory;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.opengis.feature.FeatureVisitor;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.util.ProgressListener;
+
+/**
+ * Wraps the collections returned by a {@link DirectoryFeatureSource}, keeping the source, and
+ * thus the pin on the store it comes from, reachable as long as the collection and its
+ * iterators are
+ *
+ * @source $URL$
+ */
+class DirectoryFeatureCollection extends DecoratingSimpleFeatureCollection {
+
+    DirectoryFeatureSource source;
+
+    DirectoryFeatureCollection(SimpleFeatureCollection delegate, DirectoryFeatureSource source) {
+        super(delegate);
+        this.source = source;
+    }
+
+    @Override
+    public SimpleFeatureIterator features() {
+        return new DirectoryFeatureIterator(delegate.features());
+    }
+
+    /**
+     * Lets the delegate run the visit, so that its optimizations, progress reporting and error
+     * handling still apply. The source stays reachable during the call, thus the store pinned
+     */
+    @Override
+    public void accepts(FeatureVisitor visitor, ProgressListener progress) {
+        try {
+            delegate.accepts(visitor, progress);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close(FeatureIterator<SimpleFeature> close) {
+        if (close instanceof DirectoryFeatureIterator) {
+            close.close();
+        } else {
+            delegate.close(close);
+        }
+    }
+
+    @Override
+    public SimpleFeatureCollection sort(SortBy order) {
+        return new DirectoryFeatureCollection(delegate.sort(order), source);
+    }
+
+    @Override
+    public SimpleFeatureCollection subCollection(Filter filter) {
+        return new DirectoryFeatureCollection(delegate.subCollection(filter), source);
+    }
+
+    class DirectoryFeatureIterator implements SimpleFeatureIterator {
+        SimpleFeatureIterator delegate;
+
+        DirectoryFeatureIterator(SimpleFeatureIterator delegate) {
+            this.delegate = delegate;
+        }
+
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        public SimpleFeature next() throws NoSuchElementException {
+            return delegate.next();
+        }
+
+        public void close() {
+            delegate.close();
+        }
+    }
+}
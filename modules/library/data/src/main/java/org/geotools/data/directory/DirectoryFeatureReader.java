@@ -0,0 +1,73 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.directory;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.DelegatingFeatureReader;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.directory.DirectoryTypeCache.FileEntry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Wraps the reader of a store of the directory, keeping the store pinned until the reader is
+ * closed
+ *
+ * @source $URL$
+ */
+class DirectoryFeatureReader implements DelegatingFeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    FeatureReader<SimpleFeatureType, SimpleFeature> delegate;
+
+    FileEntry entry;
+
+    DirectoryFeatureReader(FeatureReader<SimpleFeatureType, SimpleFeature> delegate,
+            FileEntry entry) {
+        this.delegate = delegate;
+        this.entry = entry;
+    }
+
+    public FeatureReader<SimpleFeatureType, SimpleFeature> getDelegate() {
+        return delegate;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return delegate.getFeatureType();
+    }
+
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        return delegate.next();
+    }
+
+    public boolean hasNext() throws IOException {
+        return delegate.hasNext();
+    }
+
+    public void close() throws IOException {
+        if (entry != null) {
+            try {
+                delegate.close();
+            } finally {
+                entry.unpin();
+                entry = null;
+            }
+        }
+    }
+}
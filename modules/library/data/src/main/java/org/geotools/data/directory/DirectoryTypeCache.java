@@ -1,396 +1,747 @@
-/*
- *    GeoTools - The Open Source Java GIS Toolkit
- *    http://geotools.org
- *
- *    (C) 2002-2008, Open Source Geospatial Foundation (OSGeo)
- *
- *    This library is free software; you can redistribute it and/or
- *    modify it under the terms of the GNU Lesser General Public
- *    License as published by the Free Software Foundation;
- *    version 2.1 of the License.
- *
- *    This library is distributed in the hope that it will be useful,
- *    but WITHOUT ANY WARRANTY; without even the implied warranty of
- *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
- *    Lesser General Public License for more details.
- */
-
-package org.geotools.data.directory;
-
-import java.io.File;
-import java.io.FileFilter;
-import java.io.IOException;
-import java.lang.ref.SoftReference;
-import java.net.URI;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-import org.geotools.data.DataStore;
-import org.geotools.data.DataStoreFactorySpi;
-import org.geotools.data.DataStoreFinder;
-import org.geotools.data.DataAccessFactory.Param;
-import org.geotools.util.logging.Logging;
-
-/**
- * <p>Handles all of the data stores that a directory data store relies onto,
- * centralizing the gathering and caching policies and code.</p>
- * <p>The class is completely thread safe</p>
- * 
- * @author Andrea Aime - OpenGeo
- */
-class DirectoryTypeCache {
-    static final Logger LOGGER = Logging.getLogger(DirectoryTypeCache.class);
-
-    /**
-     * The feature type cache, a map from the feature type to the 
-     * information of where the feature type is coming from
-     */
-    Map<String, FileEntry> ftCache = new ConcurrentHashMap<String, FileEntry>();
-
-    /**
-     * The directory we're gathering data from
-     */
-    File directory;
-
-    /**
-     * The watcher, which is used to tell when the type cache is stale
-     * and needs updating
-     */
-    DirectoryWatcher watcher;
-    
-    /**
-     * A lock used for isolating cache updates
-     */
-    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-
-    /**
-     * Will create the delegate stores
-     */
-    FileStoreFactory factory;
-    
-    /**
-     * Builds a new cache.
-     * 
-     * @param directory
-     *            a non null File pointing to an existing directory
-     * @throws IOException
-     */
-    DirectoryTypeCache(File directory, FileStoreFactory factory) throws IOException {
-        // some basic checks
-        if (directory == null)
-            throw new NullPointerException(
-                    "Directory parameter should be not null");
-
-        if (!directory.exists()) {
-            throw new IllegalArgumentException(
-                    "Specified directory does not exists: "
-                            + directory.getAbsolutePath());
-        }
-
-        if (!directory.isDirectory()) {
-            throw new IllegalArgumentException(
-                    "Specified path is not a directory, it'a s file instead: "
-                            + directory.getAbsolutePath());
-        }
-        
-        this.directory = directory;
-        this.factory = factory;
-
-        this.watcher = new ImmediateDirectoryWatcher(directory);
-    }
-
-    /**
-     * Returns the data store containing a specific feature type, or null if not
-     * found
-     * 
-     * @param typeName
-     * @param forceUpdate If true, it will force the update
-     * @return
-     */
-    DataStore getDataStore(String typeName, boolean forceUpdate) throws IOException {
-        lock.readLock().lock();
-        try {
-            if(forceUpdate)
-                updateCache();
-            // TODO: check about re-creating the datastore when the cache
-            // is turned into a soft map
-            FileEntry fileEntry = ftCache.get(typeName);
-            if( fileEntry == null){
-                throw new IOException("Not available: "+typeName );
-            }
-            return fileEntry.getStore(true);
-        } finally {
-            lock.readLock().unlock();
-        }
-    }
-    
-    /**
-     * Returns all the type names known
-     * @return
-     */
-    Set<String> getTypeNames() throws IOException {
-        lock.readLock().lock();
-        
-        try {
-            updateCache();
-            return ftCache.keySet();
-        } finally {
-            lock.readLock().unlock();
-        }
-    }
-    
-    /**
-     * Returns all active data stores available in the cache. 
-     * Won't force the creation of a new data store if it has been disposed of and
-     * it's currently not needed for the functionality of the whole thing
-     */
-    List<DataStore> getDataStores() {
-        List<DataStore> stores = new ArrayList<DataStore>();
-        lock.readLock().lock();
-        
-        try {
-            for (FileEntry entry : ftCache.values()) {
-                try {
-                    DataStore store = entry.getStore(false);
-                    if(store != null)
-                        stores.add(store);
-                } catch(Exception e) {
-                    LOGGER.log(Level.FINE, "Error occurred trying to grab a datastore", e);
-                }
-            }
-        } finally {
-            lock.readLock().unlock();
-        }
-        
-        return stores;
-    }
-    
-    /**
-     * Checks if the feature type cache contents needs updating, does so in case.
-     * The code assumes the caller already owns a read only lock that needs upgrading
-     * in case the information is stale.
-     */
-    private void updateCache() throws IOException {
-        if(watcher.isStale()) {
-            // upgrade lock so that we have exclusive access to ftCache
-            lock.readLock().unlock();
-            lock.writeLock().lock();
-            
-            try {
-                // still stale?
-                if(watcher.isStale()) {
-                    watcher.mark();
-                    refreshCacheContents();
-                }
-            } finally {
-                // downgrade lock
-                lock.readLock().lock();
-                lock.writeLock().unlock();
-            }
-        }
-    }
-
-    /**
-     * Here we try to refresh the contents of the feature type cache.
-     * <p>
-     * Basically we want to:
-     * <ul>
-     * <li>remove all data stores associated to files that have been removed</li>
-     * <li>add all data stores associated to new files</li>
-     * <li>remove all feature types that are no more there, and add all feature
-     * types that are new
-     * <li>
-     * </ul>
-     * All of this should be done trying to avoid re-creating all of the
-     * datastores already loaded. We assume a properly written datastore will be
-     * able to detect changes in its own feature type list and feature type
-     * schemas on its own.
-     * 
-     * @throws IOException
-     */
-    void refreshCacheContents() throws IOException {
-        // prepare the replacement ft cache
-        Map<String, FileEntry> result = new TreeMap<String, FileEntry>();
-
-        // build support structure used to quickly find files that need updating
-        Map<File, FileEntry> fileCache = new HashMap<File, FileEntry>();
-        for (FileEntry entry : ftCache.values()) {
-            fileCache.put(entry.file, entry);
-        }
-        
-        // grab all the candidate files
-        for (File file : directory.listFiles()) {
-            // skip over directories, we don't recurse
-            if(file.isDirectory()) {
-                continue;
-            }
-            
-            // do we have the same datastore in the current cache? If so keep it, we don't
-            // want to rebuild over and over the same stores
-            FileEntry entry = fileCache.get(file);
-            
-            // if missing build a new one
-            if(entry == null) {
-                DataStore store = factory.getDataStore(file);
-                if(store != null) {
-                    entry = new FileEntry(file, store);
-                }
-            }
-            
-            // if we managed to build an entry collect its feature types
-            if(entry != null) {
-                for (String typeName : entry.getStore(true).getTypeNames()) {
-                    // don't override existing entries
-                    if (!result.containsKey(typeName))
-                        result.put(typeName, entry);
-                    else {
-                        LOGGER.log(Level.WARNING, "Type name " + typeName
-                                + " is available from multiple datastores");
-                    }
-                }
-            }
-        }
-        
-        // update the cache. We need to remove the missing elements, disposing
-        // the data stores that are not referenced anymore, and add the new ones
-        // we are going to update the ftCache as we go, this is thread safe
-        // since we are using a concurrent hash map for ftCache, and won't
-        // hinder users of live data stores since we are not going to touch
-        // the ones that are not being removed (the ones that we are going to
-        // remove should be not working anyways)
-        Set<String> removedFTs = new HashSet<String>(ftCache.keySet());
-        removedFTs.removeAll(result.keySet());
-        
-        // collect all data stores that are referred by a feature type that we 
-        // are going to remove, but are not referred by any feature type we're
-        // going to keep. Clean the ftCache from removed feature types at the same
-        // time.
-        Set<FileEntry> disposable = new HashSet<FileEntry>(); 
-        for (String removedFT : removedFTs) {
-            disposable.add(ftCache.remove(removedFT));
-        }
-        for (FileEntry entry : result.values()) {
-            disposable.remove(entry);
-        }
-        for (FileEntry entry : disposable) {
-            entry.dispose();
-        }
-        
-        // now let's add all the new ones
-        Set<String> added = new HashSet<String>(result.keySet());
-        added.removeAll(ftCache.keySet());
-        for (String newFeatureType : added) {
-            ftCache.put(newFeatureType, result.get(newFeatureType));
-        }
-    }
-
-    /**
-     * Looks up in the registry data store factories that do look like file data
-     * store ones, that is, they accept a File/URL and a namespace, and returns
-     * an adapter that can be used to build a datastore given a File and a
-     * namespace.
-     */
-    List<FactoryAdapter> lookupFileDataStores() {
-        List<FactoryAdapter> adapters = new ArrayList<FactoryAdapter>();
-
-        // look for factories that do accept a file/url and a namespace
-        Iterator<DataStoreFactorySpi> it = DataStoreFinder.getAllDataStores();
-        while(it.hasNext()) {
-            DataStoreFactorySpi factory = it.next();
-            Param[] params = factory.getParametersInfo();
-            
-            if(params == null) {
-                LOGGER.fine("DataStore factory " + factory + " returns null from getParametersInfo!");
-                continue;
-            }
-            
-            Param fileParam = null;
-            Param nsParam = null;
-            for (Param param : params) {
-                Class<?> type = param.type;
-                String key = param.key;
-                if (File.class.isAssignableFrom(type)
-                        || URL.class.isAssignableFrom(type))
-                    fileParam = param;
-                else if (key.equalsIgnoreCase("namespace")
-                        && (String.class.isAssignableFrom(type) || URI.class
-                                .isAssignableFrom(type)))
-                    nsParam = param;
-            }
-    
-            if (fileParam != null) {
-                adapters.add(new FactoryAdapter(factory, fileParam, nsParam));
-            }
-        }
-        return adapters;
-    }
-    
-    /**
-     * Disposes of the file cache and all the cached data stores
-     */
-    void dispose() {
-        // dispose all of the entries, they can be disposed more than
-        // once so just scanning the values is ok (generally speaking we'll
-        // find the same entry more than once among the values, once per
-        // registered feature type in the same data store in general)
-        for (FileEntry entry : ftCache.values()) {
-            entry.dispose();
-        }
-    }
-
-    /**
-     * Excludes directories from a file listing
-     * 
-     * @author Administrator
-     * 
-     */
-    class DirectoryFilter implements FileFilter {
-
-        public boolean accept(File pathname) {
-            return !pathname.isDirectory();
-        }
-
-    }
-
-    class FileEntry {
-        File file;
-
-        SoftReference<DataStore> ref;
-        
-        public FileEntry(File file, DataStore store) {
-            this.file = file;
-            ref = new DataStoreSoftReference(store);
-        }
-        
-        DataStore getStore(boolean force) throws IOException {
-            DataStore store = ref != null ? ref.get() : null;
-            if(store == null && force) {
-                store = factory.getDataStore(file);
-                ref = new DataStoreSoftReference(store);
-            } 
-            return store;
-        }
-        
-        void dispose() {
-            DataStore store = ref != null ? ref.get() : null;
-            if(store != null)
-                store.dispose();
-            ref.clear();
-        }
-    }
-    
-    
-}
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2002-2008, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package org.geotools.data.directory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.DataStoreFactorySpi;
+import org.geotools.data.DataStoreFinder;
+import org.geotools.data.DataAccessFactory.Param;
+import org.geotools.util.WeakCollectionCleaner;
+import org.geotools.util.logging.Logging;
+
+/**
+ * <p>Handles all of the data stores that a directory data store relies onto,
+ * centralizing the gathering and caching policies and code.</p>
+ * <p>The class is completely thread safe</p>
+ * <p>Refreshes are incremental: the stores of the files already known are neither rebuilt nor
+ * asked again for their type names, unless the file changed. The type names can also be
+ * persisted in a catalog file, so that the stores are not opened at all on startup, and the
+ * number of open stores can be bounded, closing the least recently used ones. A store is
+ * pinned while the readers, writers and feature sources handed out by the directory store use
+ * it, an evicted store is closed only once the last of them is released.</p>
+ * 
+ * @author Andrea Aime - OpenGeo
+ */
+class DirectoryTypeCache {
+    static final Logger LOGGER = Logging.getLogger(DirectoryTypeCache.class);
+
+    /**
+     * The feature type cache, a map from the feature type to the 
+     * information of where the feature type is coming from
+     */
+    Map<String, FileEntry> ftCache = new ConcurrentHashMap<String, FileEntry>();
+
+    /**
+     * The directory we're gathering data from
+     */
+    File directory;
+
+    /**
+     * The watcher, which is used to tell when the type cache is stale
+     * and needs updating
+     */
+    DirectoryWatcher watcher;
+    
+    /**
+     * A lock used for isolating cache updates
+     */
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Will create the delegate stores
+     */
+    FileStoreFactory factory;
+
+    /**
+     * The maximum number of open stores, or 0 to keep them behind soft references
+     */
+    volatile int maxOpenStores;
+
+    /**
+     * The open stores, least recently used first, filled only when {@link #maxOpenStores} is
+     * positive
+     */
+    LinkedHashMap<FileEntry, DataStore> openStores = new LinkedHashMap<FileEntry, DataStore>(
+            16, 0.75f, true);
+
+    /**
+     * The file the type names are persisted into, or null
+     */
+    File catalog;
+
+    /**
+     * The catalog contents last read or written
+     */
+    Properties catalogContents;
+    
+    /**
+     * Builds a new cache.
+     * 
+     * @param directory
+     *            a non null File pointing to an existing directory
+     * @throws IOException
+     */
+    DirectoryTypeCache(File directory, FileStoreFactory factory) throws IOException {
+        // some basic checks
+        if (directory == null)
+            throw new NullPointerException(
+                    "Directory parameter should be not null");
+
+        if (!directory.exists()) {
+            throw new IllegalArgumentException(
+                    "Specified directory does not exists: "
+                            + directory.getAbsolutePath());
+        }
+
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException(
+                    "Specified path is not a directory, it'a s file instead: "
+                            + directory.getAbsolutePath());
+        }
+        
+        this.directory = directory;
+        this.factory = factory;
+
+        this.watcher = new ImmediateDirectoryWatcher(directory);
+    }
+
+    /**
+     * Sets the maximum number of open stores, the least recently used ones are disposed when
+     * more are open and no longer pinned. When 0 or negative the stores are kept behind soft
+     * references instead.
+     */
+    void setMaxOpenStores(int maxOpenStores) {
+        this.maxOpenStores = maxOpenStores;
+        if (maxOpenStores <= 0) {
+            synchronized (openStores) {
+                openStores.clear();
+            }
+        }
+    }
+
+    /**
+     * Sets the file the type names are persisted into, so that they can be read on startup
+     * without opening the stores. Only the entries whose file did not change since they were
+     * persisted are used.
+     */
+    void setCatalog(File catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Returns the data store containing a specific feature type, or null if not
+     * found
+     * 
+     * @param typeName
+     * @param forceUpdate If true, it will force the update
+     * @return
+     */
+    DataStore getDataStore(String typeName, boolean forceUpdate) throws IOException {
+        // TODO: check about re-creating the datastore when the cache
+        // is turned into a soft map
+        return getEntry(typeName, forceUpdate).getStore(true);
+    }
+
+    /**
+     * Returns the entry of the data store containing a specific feature type, use
+     * {@link FileEntry#pin()} to grab a store that won't be closed while in use
+     * 
+     * @param typeName
+     * @param forceUpdate If true, it will force the update
+     * @return
+     */
+    FileEntry getEntry(String typeName, boolean forceUpdate) throws IOException {
+        lock.readLock().lock();
+        try {
+            if(forceUpdate)
+                updateCache();
+            FileEntry fileEntry = ftCache.get(typeName);
+            if( fileEntry == null){
+                throw new IOException("Not available: "+typeName );
+            }
+            return fileEntry;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns all the type names known
+     * @return
+     */
+    Set<String> getTypeNames() throws IOException {
+        lock.readLock().lock();
+        
+        try {
+            updateCache();
+            return ftCache.keySet();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns all active data stores available in the cache. 
+     * Won't force the creation of a new data store if it has been disposed of and
+     * it's currently not needed for the functionality of the whole thing
+     */
+    List<DataStore> getDataStores() {
+        List<DataStore> stores = new ArrayList<DataStore>();
+        lock.readLock().lock();
+        
+        try {
+            for (FileEntry entry : ftCache.values()) {
+                try {
+                    DataStore store = entry.getStore(false);
+                    if(store != null)
+                        stores.add(store);
+                } catch(Exception e) {
+                    LOGGER.log(Level.FINE, "Error occurred trying to grab a datastore", e);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        return stores;
+    }
+    
+    /**
+     * Checks if the feature type cache contents needs updating, does so in case.
+     * The code assumes the caller already owns a read only lock that needs upgrading
+     * in case the information is stale.
+     */
+    private void updateCache() throws IOException {
+        if(watcher.isStale()) {
+            // upgrade lock so that we have exclusive access to ftCache
+            lock.readLock().unlock();
+            lock.writeLock().lock();
+            
+            try {
+                // still stale?
+                if(watcher.isStale()) {
+                    watcher.mark();
+                    refreshCacheContents();
+                }
+            } finally {
+                // downgrade lock
+                lock.readLock().lock();
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Here we try to refresh the contents of the feature type cache.
+     * <p>
+     * Basically we want to:
+     * <ul>
+     * <li>remove all data stores associated to files that have been removed</li>
+     * <li>add all data stores associated to new files</li>
+     * <li>remove all feature types that are no more there, and add all feature
+     * types that are new
+     * <li>
+     * </ul>
+     * All of this should be done trying to avoid re-creating all of the
+     * datastores already loaded. We assume a properly written datastore will be
+     * able to detect changes in its own feature type list and feature type
+     * schemas on its own.
+     * 
+     * @throws IOException
+     */
+    void refreshCacheContents() throws IOException {
+        // prepare the replacement ft cache
+        Map<String, FileEntry> result = new TreeMap<String, FileEntry>();
+
+        // build support structure used to quickly find files that need updating
+        Map<File, FileEntry> fileCache = new HashMap<File, FileEntry>();
+        if (ftCache.isEmpty()) {
+            // startup, use the persisted type names if possible
+            fileCache.putAll(loadCatalog());
+        }
+        for (FileEntry entry : ftCache.values()) {
+            fileCache.put(entry.file, entry);
+        }
+        
+        // grab all the candidate files
+        for (File file : directory.listFiles()) {
+            // skip over directories, we don't recurse
+            if(file.isDirectory()) {
+                continue;
+            }
+            
+            // do we have the same datastore in the current cache? If so keep it, we don't
+            // want to rebuild over and over the same stores
+            FileEntry entry = fileCache.get(file);
+            if (entry != null && entry.lastModified != file.lastModified()) {
+                // the file changed, its type names may have too
+                entry.typeNames = null;
+                entry.lastModified = file.lastModified();
+            }
+            
+            // if missing build a new one
+            if(entry == null) {
+                DataStore store = factory.getDataStore(file);
+                if(store != null) {
+                    entry = new FileEntry(file, store);
+                }
+            }
+            
+            // if we managed to build an entry collect its feature types
+            if(entry != null) {
+                for (String typeName : entry.getTypeNames()) {
+                    // don't override existing entries
+                    if (!result.containsKey(typeName))
+                        result.put(typeName, entry);
+                    else {
+                        LOGGER.log(Level.WARNING, "Type name " + typeName
+                                + " is available from multiple datastores");
+                    }
+                }
+            }
+        }
+        
+        // update the cache. We need to remove the missing elements, disposing
+        // the data stores that are not referenced anymore, and add the new ones
+        // we are going to update the ftCache as we go, this is thread safe
+        // since we are using a concurrent hash map for ftCache, and won't
+        // hinder users of live data stores since we are not going to touch
+        // the ones that are not being removed (the ones that we are going to
+        // remove should be not working anyways)
+        Set<String> removedFTs = new HashSet<String>(ftCache.keySet());
+        removedFTs.removeAll(result.keySet());
+        
+        // collect all data stores that are referred by a feature type that we 
+        // are going to remove, but are not referred by any feature type we're
+        // going to keep. Clean the ftCache from removed feature types at the same
+        // time.
+        Set<FileEntry> disposable = new HashSet<FileEntry>(); 
+        for (String removedFT : removedFTs) {
+            disposable.add(ftCache.remove(removedFT));
+        }
+        for (FileEntry entry : result.values()) {
+            disposable.remove(entry);
+        }
+        for (FileEntry entry : disposable) {
+            entry.dispose();
+        }
+        
+        // now let's add all the new ones
+        Set<String> added = new HashSet<String>(result.keySet());
+        added.removeAll(ftCache.keySet());
+        for (String newFeatureType : added) {
+            ftCache.put(newFeatureType, result.get(newFeatureType));
+        }
+
+        storeCatalog();
+    }
+
+    /**
+     * Reads the persisted type names, returning the entries whose file did not change since
+     * they were persisted
+     */
+    Map<File, FileEntry> loadCatalog() {
+        Map<File, FileEntry> entries = new HashMap<File, FileEntry>();
+        if (catalog == null || !catalog.exists()) {
+            return entries;
+        }
+
+        Properties props = new Properties();
+        try {
+            InputStream is = new FileInputStream(catalog);
+            try {
+                props.load(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the type name catalog " + catalog, e);
+            return entries;
+        }
+
+        for (Map.Entry<Object, Object> property : props.entrySet()) {
+            File file = new File(directory, (String) property.getKey());
+            // the value is the last modified time, followed by the type names
+            String[] values = ((String) property.getValue()).split("\t");
+            try {
+                long lastModified = Long.parseLong(values[0]);
+                if (file.exists() && file.lastModified() == lastModified) {
+                    String[] typeNames = new String[values.length - 1];
+                    System.arraycopy(values, 1, typeNames, 0, typeNames.length);
+                    entries.put(file, new FileEntry(file, lastModified, typeNames));
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.FINE, "Skipping invalid catalog entry " + property.getKey(), e);
+            }
+        }
+        catalogContents = props;
+        return entries;
+    }
+
+    /**
+     * Persists the type names in the catalog file, if any, when they changed
+     */
+    void storeCatalog() {
+        if (catalog == null) {
+            return;
+        }
+
+        Properties props = new Properties();
+        for (FileEntry entry : ftCache.values()) {
+            if (entry.typeNames == null) {
+                continue;
+            }
+            StringBuilder sb = new StringBuilder(String.valueOf(entry.lastModified));
+            for (String typeName : entry.typeNames) {
+                sb.append('\t').append(typeName);
+            }
+            props.put(entry.file.getName(), sb.toString());
+        }
+        if (props.equals(catalogContents)) {
+            return;
+        }
+
+        // write a temporary file and rename it, so that a failure won't leave a broken catalog
+        File tmp = new File(catalog.getParentFile(), catalog.getName() + ".tmp");
+        try {
+            OutputStream os = new FileOutputStream(tmp);
+            try {
+                props.store(os, "Type names of the files in " + directory.getAbsolutePath());
+            } finally {
+                os.close();
+            }
+            if (!tmp.renameTo(catalog)) {
+                // some platforms cannot rename over an existing file
+                if (!catalog.delete() || !tmp.renameTo(catalog)) {
+                    throw new IOException("Could not replace " + catalog + " with " + tmp);
+                }
+            }
+            catalogContents = props;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write the type name catalog " + catalog, e);
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Marks the store as the most recently used one, evicting the least recently used stores
+     * if there are more than {@link #maxOpenStores}
+     */
+    void touch(FileEntry entry, DataStore store) {
+        if (maxOpenStores <= 0) {
+            return;
+        }
+
+        List<FileEntry> evicted = null;
+        synchronized (openStores) {
+            openStores.put(entry, store);
+            synchronized (entry) {
+                // back in the pool, if it was evicted while pinned it must stay open
+                entry.evicted = false;
+            }
+            Iterator<FileEntry> it = openStores.keySet().iterator();
+            while (openStores.size() > maxOpenStores) {
+                if (evicted == null) {
+                    evicted = new ArrayList<FileEntry>();
+                }
+                evicted.add(it.next());
+                it.remove();
+            }
+        }
+
+        // evict outside of the lock, disposing a store can take time
+        if (evicted != null) {
+            for (FileEntry e : evicted) {
+                e.evict();
+            }
+        }
+    }
+
+    /**
+     * Looks up in the registry data store factories that do look like file data
+     * store ones, that is, they accept a File/URL and a namespace, and returns
+     * an adapter that can be used to build a datastore given a File and a
+     * namespace.
+     */
+    List<FactoryAdapter> lookupFileDataStores() {
+        List<FactoryAdapter> adapters = new ArrayList<FactoryAdapter>();
+
+        // look for factories that do accept a file/url and a namespace
+        Iterator<DataStoreFactorySpi> it = DataStoreFinder.getAllDataStores();
+        while(it.hasNext()) {
+            DataStoreFactorySpi factory = it.next();
+            Param[] params = factory.getParametersInfo();
+            
+            if(params == null) {
+                LOGGER.fine("DataStore factory " + factory + " returns null from getParametersInfo!");
+                continue;
+            }
+            
+            Param fileParam = null;
+            Param nsParam = null;
+            for (Param param : params) {
+                Class<?> type = param.type;
+                String key = param.key;
+                if (File.class.isAssignableFrom(type)
+                        || URL.class.isAssignableFrom(type))
+                    fileParam = param;
+                else if (key.equalsIgnoreCase("namespace")
+                        && (String.class.isAssignableFrom(type) || URI.class
+                                .isAssignableFrom(type)))
+                    nsParam = param;
+            }
+    
+            if (fileParam != null) {
+                adapters.add(new FactoryAdapter(factory, fileParam, nsParam));
+            }
+        }
+        return adapters;
+    }
+    
+    /**
+     * Disposes of the file cache and all the cached data stores
+     */
+    void dispose() {
+        // dispose all of the entries, they can be disposed more than
+        // once so just scanning the values is ok (generally speaking we'll
+        // find the same entry more than once among the values, once per
+        // registered feature type in the same data store in general)
+        for (FileEntry entry : ftCache.values()) {
+            entry.dispose();
+        }
+        synchronized (openStores) {
+            openStores.clear();
+        }
+    }
+
+    /**
+     * Excludes directories from a file listing
+     * 
+     * @author Administrator
+     * 
+     */
+    class DirectoryFilter implements FileFilter {
+
+        public boolean accept(File pathname) {
+            return !pathname.isDirectory();
+        }
+
+    }
+
+    class FileEntry {
+        File file;
+
+        long lastModified;
+
+        String[] typeNames;
+
+        SoftReference<DataStore> ref;
+
+        /**
+         * The number of readers, writers and feature sources using the store
+         */
+        int pins;
+
+        /**
+         * Keeps the store strongly reachable while pinned, outside of the pool only the soft
+         * reference would hold it
+         */
+        DataStore pinnedStore;
+
+        /**
+         * True if the pool evicted the store while pinned, it will be closed once released
+         */
+        boolean evicted;
+
+        /**
+         * The references to the feature sources pinning the store
+         */
+        Set<PinReference> pinReferences = new HashSet<PinReference>();
+        
+        public FileEntry(File file, DataStore store) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            ref = new DataStoreSoftReference(store);
+            touch(this, store);
+        }
+
+        /**
+         * Builds an entry from persisted type names, the store will be created on demand
+         */
+        FileEntry(File file, long lastModified, String[] typeNames) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.typeNames = typeNames;
+        }
+        
+        DataStore getStore(boolean force) throws IOException {
+            return getStore(force, false);
+        }
+
+        /**
+         * Returns the store, creating it if needed, making sure it won't be closed by the pool
+         * until {@link #unpin()} is called
+         */
+        DataStore pin() throws IOException {
+            DataStore store = getStore(true, true);
+            if (store == null) {
+                throw new IOException("Could not open a data store on " + file);
+            }
+            return store;
+        }
+
+        /**
+         * Releases a pin taken with {@link #pin()}, closing the store if it was evicted in the
+         * meantime and this was the last pin
+         */
+        synchronized void unpin() {
+            pins--;
+            if (pins <= 0) {
+                pinnedStore = null;
+                if (evicted) {
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Keeps the pin taken with {@link #pin()} until the specified feature source gets
+         * garbage collected
+         */
+        void unpinWhenUnreachable(Object featureSource) {
+            synchronized (pinReferences) {
+                pinReferences.add(new PinReference(featureSource));
+            }
+        }
+
+        /**
+         * Called when the pool evicts the store, closes it unless it's pinned
+         */
+        synchronized void evict() {
+            if (pins > 0) {
+                evicted = true;
+            } else {
+                close();
+            }
+        }
+
+        private DataStore getStore(boolean force, boolean pin) throws IOException {
+            DataStore store;
+            synchronized (this) {
+                store = ref != null ? ref.get() : null;
+                if(store == null && force) {
+                    store = factory.getDataStore(file);
+                    ref = new DataStoreSoftReference(store);
+                }
+                if(store != null && pin) {
+                    pinnedStore = store;
+                    pins++;
+                }
+            }
+            // outside of the entry lock, touching may close other entries
+            if(store != null && force) {
+                touch(this, store);
+            }
+            return store;
+        }
+
+        /**
+         * Returns the type names, asking the store for them only if not known yet
+         */
+        String[] getTypeNames() throws IOException {
+            String[] names = typeNames;
+            if (names == null) {
+                names = getStore(true).getTypeNames();
+                typeNames = names;
+            }
+            return names;
+        }
+
+        /**
+         * Disposes the store, which will be re-created on demand
+         */
+        synchronized void close() {
+            evicted = false;
+            if (ref != null) {
+                // disposes the store, see DataStoreSoftReference
+                ref.clear();
+                ref = null;
+            }
+        }
+        
+        void dispose() {
+            synchronized (openStores) {
+                openStores.remove(this);
+            }
+            close();
+        }
+
+        /**
+         * Releases the pin of a feature source once the source gets garbage collected, the
+         * {@link WeakCollectionCleaner} calls {@link #clear()} on it
+         */
+        class PinReference extends WeakReference<Object> {
+
+            PinReference(Object featureSource) {
+                super(featureSource, WeakCollectionCleaner.DEFAULT.getReferenceQueue());
+            }
+
+            @Override
+            public void clear() {
+                super.clear();
+                boolean pinned;
+                synchronized (pinReferences) {
+                    pinned = pinReferences.remove(this);
+                }
+                if (pinned) {
+                    unpin();
+                }
+            }
+        }
+    }
+    
+    
+}
@@ -18,11 +18,14 @@ package org.geotools.data.store;
 
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -53,6 +56,8 @@ import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.Hints;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.feature.visitor.CountVisitor;
+import org.geotools.feature.visitor.GroupByVisitor;
 import org.geotools.filter.function.Collection_AverageFunction;
 import org.geotools.filter.function.Collection_BoundsFunction;
 import org.geotools.filter.function.Collection_MaxFunction;
@@ -70,6 +75,7 @@ import org.opengis.feature.type.Name;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.Id;
+import org.opengis.filter.expression.Expression;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.geometry.BoundingBox;
@@ -676,6 +682,9 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
         }
 
         //subclass could not handle, resort to manually walkign through
+        if ( visitor instanceof GroupByVisitor ) {
+            query = groupByQuery( query, (GroupByVisitor) visitor );
+        }
         FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
         try{
             float size = progress instanceof NullProgressListener ? 0.0f : (float) getCount( query );
@@ -697,6 +706,53 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
             reader.close();
         }
     }
+
+    /**
+     * Narrows the properties read for a group by visitor to the ones used by the groups, the
+     * aggregate and the query filter, so that stores able to read a subset of the attributes,
+     * like the shapefile one, decode only the needed columns. The query is returned unchanged
+     * if it already lists its properties, or if the attributes used by the aggregate visitor
+     * cannot be determined.
+     */
+    Query groupByQuery( Query query, GroupByVisitor visitor ) throws IOException {
+        if ( query.getPropertyNames() != Query.ALL_NAMES ) {
+            return query;
+        }
+        
+        SimpleFeatureType schema = getSchema();
+        Set<String> names = new LinkedHashSet<String>();
+        for ( Expression group : visitor.getGroupByExpressions() ) {
+            names.addAll( Arrays.asList( DataUtilities.attributeNames( group, schema ) ) );
+        }
+        FeatureVisitor aggregate = visitor.getAggregateVisitor();
+        if ( !(aggregate instanceof CountVisitor) ) {
+            // there is no common interface for the visitor expressions, see GEOT-2325
+            try {
+                Method getter = aggregate.getClass().getMethod( "getExpression" );
+                Expression expression = (Expression) getter.invoke( aggregate );
+                if ( expression != null ) {
+                    names.addAll( Arrays.asList( DataUtilities.attributeNames( expression, schema ) ) );
+                }
+            } catch ( Exception e ) {
+                return query;
+            }
+        }
+        if ( query.getFilter() != null ) {
+            names.addAll( Arrays.asList( DataUtilities.attributeNames( query.getFilter(), schema ) ) );
+        }
+        if ( names.isEmpty() ) {
+            return query;
+        }
+        for ( String name : names ) {
+            if ( schema.getDescriptor( name ) == null ) {
+                return query;
+            }
+        }
+        
+        Query narrowed = new Query( query );
+        narrowed.setPropertyNames( names.toArray( new String[names.size()] ) );
+        return narrowed;
+    }
     
     /**
      * Subclass method which allows subclasses to natively handle a visitor.
@@ -144,6 +144,19 @@ public abstract class BasicSQLDialect extends SQLDialect {
     public void onDelete(Statement delete, Connection cx, SimpleFeatureType featureType) throws SQLException {
     }
 
+    /**
+     * Returns true if the database can insert multiple rows with a single 
+     * <code>INSERT INTO table (columns) VALUES (row1), (row2), ...</code> statement. 
+     * <p>
+     * Used when inserting features in batches, if the dialect returns false the inserts are
+     * sent as a JDBC statement batch instead. The default implementation returns false, subclasses
+     * should override if the database supports the multi row syntax.
+     * </p>
+     */
+    public boolean isMultiRowInsertSupported() {
+        return false;
+    }
+
     /**
      * Callback invoked before an INSERT statement is executed against the database.
      * <p>
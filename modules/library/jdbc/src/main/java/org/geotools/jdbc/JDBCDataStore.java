@@ -69,11 +69,15 @@ import org.geotools.data.store.ContentState;
 import org.geotools.factory.Hints;
 import org.geotools.feature.NameImpl;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.feature.visitor.AverageVisitor;
 import org.geotools.feature.visitor.CountVisitor;
+import org.geotools.feature.visitor.GroupByVisitor;
 import org.geotools.filter.FilterCapabilities;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.jdbc.JoinInfo.JoinPart;
 import org.geotools.referencing.CRS;
+import org.geotools.renderer.ScreenMap;
 import org.geotools.util.Converters;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
@@ -255,6 +259,12 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected int fetchSize;
     
+    /**
+     * The number of features to bufferize while inserting in order to do batch inserts.
+     * Set to a value less or equal to 1 to insert one feature at a time.
+     */
+    protected int batchInsertSize = 1;
+    
     /**
      * flag controlling whether primary key columns of a table are exposed via the 
      * feature type.
@@ -372,6 +382,24 @@ public final class JDBCDataStore extends ContentDataStore
         this.fetchSize = fetchSize;
     }
 
+    /**
+     * The current batch insert size. The batch insert size controls how many features are
+     * sent to the dbms in the same batch when inserting. A value less or equal to 1 means
+     * that features are inserted one at a time.
+     * @return
+     */
+    public int getBatchInsertSize() {
+        return batchInsertSize;
+    }
+
+    /**
+     * Changes the batch insert size.
+     * @param batchInsertSize
+     */
+    public void setBatchInsertSize(int batchInsertSize) {
+        this.batchInsertSize = batchInsertSize;
+    }
+
     /**
      * Determines if the datastore creates feature types which include those columns / attributes
      * which compose the primary key.
@@ -1262,21 +1290,16 @@ public final class JDBCDataStore extends ContentDataStore
     protected Object getAggregateValue(FeatureVisitor visitor, SimpleFeatureType featureType, Query query, Connection cx ) 
         throws IOException {
         
+        if ( visitor instanceof GroupByVisitor ) {
+            return getGroupByValue((GroupByVisitor) visitor, featureType, query, cx);
+        }
+        
         //get the name of the function
-        String function = getAggregateFunctions().get( visitor.getClass() );
+        String function = getAggregateFunction( visitor );
         if ( function == null ) {
-            //try walking up the hierarchy
-            Class clazz = visitor.getClass();
-            while( clazz != null && function == null ) {
-                clazz = clazz.getSuperclass();
-                function = getAggregateFunctions().get( clazz );
-            }
-            
-            if ( function == null ) {
-                //not supported
-                LOGGER.info( "Unable to find aggregate function matching visitor: " + visitor.getClass());
-                return null;
-            }
+            //not supported
+            LOGGER.info( "Unable to find aggregate function matching visitor: " + visitor.getClass());
+            return null;
         }
         
         AttributeDescriptor att = null;
@@ -1326,6 +1349,187 @@ public final class JDBCDataStore extends ContentDataStore
         }
     }
 
+    /**
+     * Computes a group by visitor with a <code>GROUP BY</code> query, in the form
+     * <code>SELECT g1, .., fn(att) AS aggregate FROM table WHERE .. GROUP BY g1, ..</code>.
+     * When the visitor has a <code>having</code> filter the query is wrapped into an outer
+     * select filtering on the group values and the aggregate.
+     * <p>
+     * The query can be run only if the groups are plain non geometric attributes, the aggregate
+     * visitor maps to a registered aggregate function, and the <code>having</code> filter can be
+     * encoded, otherwise null is returned and the visitor is left untouched.
+     * </p>
+     */
+    protected Object getGroupByValue(GroupByVisitor visitor, SimpleFeatureType featureType, 
+            Query query, Connection cx) throws IOException {
+        if ( !query.getJoins().isEmpty() ) {
+            return null;
+        }
+        
+        FeatureVisitor aggregate = visitor.getAggregateVisitor();
+        String function = getAggregateFunction( aggregate );
+        if ( function == null || "distinct".equalsIgnoreCase( function ) ) {
+            LOGGER.fine( "Unable to group by with aggregate visitor: " + aggregate.getClass());
+            return null;
+        }
+        
+        AttributeDescriptor att = null;
+        Expression expression = getExpression(aggregate);
+        if ( expression != null ) {
+            att = (AttributeDescriptor) expression.evaluate( featureType );
+            if ( att == null ) {
+                return null;
+            }
+        }
+        
+        List<AttributeDescriptor> groups = new ArrayList<AttributeDescriptor>();
+        for ( Expression group : visitor.getGroupByExpressions() ) {
+            AttributeDescriptor ad = group instanceof PropertyName ? 
+                (AttributeDescriptor) group.evaluate( featureType ) : null;
+            if ( ad == null || ad instanceof GeometryDescriptor ) {
+                return null;
+            }
+            groups.add( ad );
+        }
+        
+        Filter having = visitor.getHaving();
+        FilterToSQL havingToSQL = null;
+        if ( having != null && !Filter.INCLUDE.equals( having ) ) {
+            // the outer query sees the group columns and the aggregate
+            SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+            tb.setName( featureType.getName() );
+            for ( int i = 0; i < groups.size(); i++ ) {
+                tb.add( visitor.getGroupName( i ), 
+                        groups.get( i ).getType().getBinding() );
+            }
+            Class binding = att == null ? Long.class : att.getType().getBinding();
+            if ( aggregate instanceof AverageVisitor ) {
+                binding = Double.class;
+            }
+            tb.add( GroupByVisitor.AGGREGATE, binding );
+            SimpleFeatureType groupType = tb.buildFeatureType();
+            
+            havingToSQL = dialect instanceof PreparedStatementSQLDialect ? 
+                createPreparedFilterToSQL( groupType ) : createFilterToSQL( groupType );
+            if ( !havingToSQL.getCapabilities().fullySupports( having ) ) {
+                LOGGER.fine( "Unable to encode the having filter: " + having );
+                return null;
+            }
+        }
+        
+        try {
+            StringBuffer sql = new StringBuffer();
+            List<FilterToSQL> toSQL = new ArrayList<FilterToSQL>();
+            
+            sql.append( "SELECT " );
+            for ( AttributeDescriptor ad : groups ) {
+                dialect.encodeColumnName( ad.getLocalName(), sql );
+                sql.append( ", " );
+            }
+            encodeFunction( function, att, query, sql );
+            sql.append( " AS " );
+            dialect.encodeColumnName( GroupByVisitor.AGGREGATE, sql );
+            sql.append( " FROM " );
+            
+            boolean limitOffset = checkLimitOffset( query );
+            if ( limitOffset ) {
+                sql.append( "(SELECT * FROM " );
+            }
+            encodeTableName( featureType.getTypeName(), sql, query.getHints() );
+            Filter filter = query.getFilter();
+            if ( filter != null && !Filter.INCLUDE.equals( filter ) ) {
+                sql.append( " WHERE " );
+                toSQL.add( filter( featureType, filter, sql ) );
+            }
+            if ( limitOffset ) {
+                applyLimitOffset( sql, query );
+                sql.append( ") gt_limited_" );
+            }
+            
+            sql.append( " GROUP BY " );
+            for ( int i = 0; i < groups.size(); i++ ) {
+                if ( i > 0 ) {
+                    sql.append( ", " );
+                }
+                dialect.encodeColumnName( groups.get( i ).getLocalName(), sql );
+            }
+            
+            if ( havingToSQL != null ) {
+                sql.insert( 0, "SELECT * FROM (" );
+                sql.append( ") gt_grouped_ WHERE " );
+                havingToSQL.setInline( true );
+                sql.append( havingToSQL.encodeToString( having ) );
+                toSQL.add( havingToSQL );
+            }
+            
+            Statement st = null;
+            ResultSet rs = null;
+            try {
+                LOGGER.fine( sql.toString() );
+                if ( dialect instanceof PreparedStatementSQLDialect ) {
+                    PreparedStatement ps = cx.prepareStatement( sql.toString(), 
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+                    st = ps;
+                    ps.setFetchSize( fetchSize );
+                    setPreparedFilterValues( ps, toSQL, cx );
+                    rs = ps.executeQuery();
+                }
+                else {
+                    st = cx.createStatement();
+                    st.setFetchSize( fetchSize );
+                    rs = st.executeQuery( sql.toString() );
+                }
+                
+                visitor.reset();
+                while ( rs.next() ) {
+                    List<Object> key = new ArrayList<Object>( groups.size() );
+                    for ( int i = 0; i < groups.size(); i++ ) {
+                        Object value = rs.getObject( i + 1 );
+                        Class binding = groups.get( i ).getType().getBinding();
+                        if ( value != null && !binding.isInstance( value ) ) {
+                            Object converted = Converters.convert( value, binding );
+                            if ( converted != null ) {
+                                value = converted;
+                            }
+                        }
+                        key.add( value );
+                    }
+                    Object value = rs.getObject( groups.size() + 1 );
+                    FeatureVisitor group = visitor.getGroupVisitor( key );
+                    if ( value != null && !setResult( group, value ) ) {
+                        // the aggregate visitor cannot take the value, visit the features instead
+                        visitor.reset();
+                        return null;
+                    }
+                }
+            } finally {
+                closeSafe( rs );
+                closeSafe( st );
+            }
+            
+            return visitor.getResult();
+        }
+        catch( FilterToSQLException e ) {
+            throw (IOException) new IOException().initCause(e);
+        }
+        catch( SQLException e ) {
+            throw (IOException) new IOException().initCause(e);
+        }
+    }
+
+    /**
+     * Looks up the aggregate function registered for a visitor, walking up its class hierarchy
+     */
+    String getAggregateFunction(FeatureVisitor visitor) {
+        Class clazz = visitor.getClass();
+        String function = null;
+        while( clazz != null && function == null ) {
+            function = getAggregateFunctions().get( clazz );
+            clazz = clazz.getSuperclass();
+        }
+        return function;
+    }
+
     /**
      * Helper method for getting the expression from a visitor
      * TODO: Remove this method when there is an interface for aggregate visitors.
@@ -1404,6 +1608,11 @@ public final class JDBCDataStore extends ContentDataStore
     /**
      * Inserts a collection of new features into the database for a particular
      * feature type / table.
+     * <p>
+     * If the {@link #getBatchInsertSize() batch insert size} is greater than one, and the primary
+     * key values can be computed before the insert, the features are sent to the database in
+     * batches, see {@link #insertBatch(Collection, SimpleFeatureType, PrimaryKey, Connection)}
+     * </p>
      */
     protected void insert(Collection features, SimpleFeatureType featureType, Connection cx)
         throws IOException {
@@ -1412,6 +1621,16 @@ public final class JDBCDataStore extends ContentDataStore
         // we do this in a synchronized block because we need to do two queries,
         // first to figure out what the id will be, then the insert statement
         synchronized (this) {
+            // figure out if we should determine what the fid is pre or post insert
+            boolean postInsert = dialect.lookupGeneratedValuesPostInsert() && isGenerated(key);
+            
+            // there is no portable way to grab the generated keys of a batch, so we batch
+            // only when the key values are known before the insert
+            if (batchInsertSize > 1 && features.size() > 1 && !postInsert) {
+                insertBatch(features, featureType, key, cx);
+                return;
+            }
+            
             Statement st = null;
 
             try {
@@ -1419,9 +1638,6 @@ public final class JDBCDataStore extends ContentDataStore
                     st = cx.createStatement();    
                 }
                 
-                // figure out if we should determine what the fid is pre or post insert
-                boolean postInsert = dialect.lookupGeneratedValuesPostInsert() && isGenerated(key);
-                
                 for (Iterator f = features.iterator(); f.hasNext();) {
                     SimpleFeature feature = (SimpleFeature) f.next();
                     
@@ -1445,7 +1661,6 @@ public final class JDBCDataStore extends ContentDataStore
                     } else {
                         String sql = insertSQL(featureType, feature, keyValues, cx);
                         
-                        //TODO: execute in batch to improve performance?
                         ((BasicSQLDialect)dialect).onInsert(st, cx, featureType);
                         
                         LOGGER.log(Level.FINE, "Inserting new feature: {0}", sql);
@@ -1461,8 +1676,6 @@ public final class JDBCDataStore extends ContentDataStore
                     String fid = featureType.getTypeName() + "." + encodeFID(keyValues);
                     feature.getUserData().put("fid", fid);
                 }
-
-                //st.executeBatch();
             } catch (SQLException e) {
                 String msg = "Error inserting features";
                 throw (IOException) new IOException(msg).initCause(e);
@@ -1471,6 +1684,153 @@ public final class JDBCDataStore extends ContentDataStore
             }
         }
     }
+    
+    /**
+     * Inserts a collection of new features in batches of {@link #getBatchInsertSize()} features.
+     * <p>
+     * Prepared statement dialects use JDBC statement batches, basic dialects use a multi row
+     * <code>INSERT INTO ... VALUES (...), (...)</code> statement when 
+     * {@link BasicSQLDialect#isMultiRowInsertSupported()} is true, statement batches otherwise. 
+     * The primary key values are computed before the insert and reported back as the "fid" 
+     * user data once the batch containing the feature has been executed.
+     * </p>
+     */
+    void insertBatch(Collection features, SimpleFeatureType featureType, PrimaryKey key, 
+            Connection cx) throws IOException {
+        Set<String> pkColumnNames = getColumnNames(key);
+        List<SimpleFeature> batch = new ArrayList<SimpleFeature>(batchInsertSize);
+        List<List<Object>> batchKeys = new ArrayList<List<Object>>(batchInsertSize);
+        
+        try {
+            for (Iterator f = features.iterator(); f.hasNext();) {
+                SimpleFeature feature = (SimpleFeature) f.next();
+                
+                List<Object> keyValues = null;
+                boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
+                if(useExisting) {
+                    keyValues = decodeFID(key, feature.getID(), true);
+                } else {
+                    keyValues = getNextValues( key, cx );
+                }
+                batch.add(feature);
+                batchKeys.add(keyValues);
+                
+                if(batch.size() >= batchInsertSize) {
+                    executeInsertBatch(batch, batchKeys, featureType, key, pkColumnNames, cx);
+                    batch.clear();
+                    batchKeys.clear();
+                }
+            }
+            
+            if(!batch.isEmpty()) {
+                executeInsertBatch(batch, batchKeys, featureType, key, pkColumnNames, cx);
+            }
+        } catch (SQLException e) {
+            String msg = "Error inserting features";
+            throw (IOException) new IOException(msg).initCause(e);
+        }
+    }
+    
+    /**
+     * Sends a single batch of features to the database and reports back the feature ids
+     */
+    void executeInsertBatch(List<SimpleFeature> batch, List<List<Object>> batchKeys, 
+            SimpleFeatureType featureType, PrimaryKey key, Set<String> pkColumnNames, 
+            Connection cx) throws IOException, SQLException {
+        if ( dialect instanceof PreparedStatementSQLDialect ) {
+            PreparedStatementSQLDialect psDialect = (PreparedStatementSQLDialect) dialect;
+            PreparedStatement ps = null;
+            String psSql = null;
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    SimpleFeature feature = batch.get(i);
+                    boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
+                    
+                    // the sql can change from feature to feature (e.g., null geometries, 
+                    // provided fids), features sharing the same sql go in the same batch
+                    String sql = insertSQLPSStatement(featureType, feature, key, pkColumnNames, useExisting);
+                    if(ps != null && !sql.equals(psSql)) {
+                        psDialect.onInsert(ps, cx, featureType);
+                        ps.executeBatch();
+                        closeSafe(ps);
+                        ps = null;
+                    }
+                    if(ps == null) {
+                        LOGGER.log(Level.FINE, "Inserting new features in batch with ps: {0}", sql);
+                        ps = cx.prepareStatement(sql);
+                        psSql = sql;
+                    }
+                    
+                    setInsertValues(ps, featureType, feature, batchKeys.get(i), key, pkColumnNames, 
+                            useExisting, cx);
+                    ps.addBatch();
+                }
+                
+                if(ps != null) {
+                    psDialect.onInsert(ps, cx, featureType);
+                    ps.executeBatch();
+                }
+            } finally {
+                closeSafe(ps);
+            }
+        } else {
+            BasicSQLDialect basicDialect = (BasicSQLDialect) dialect;
+            Statement st = cx.createStatement();
+            try {
+                if(basicDialect.isMultiRowInsertSupported()) {
+                    StringBuffer sql = new StringBuffer();
+                    Boolean lastUseExisting = null;
+                    for (int i = 0; i < batch.size(); i++) {
+                        SimpleFeature feature = batch.get(i);
+                        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
+                        
+                        // the column list changes with provided fids, start a new statement then
+                        if(lastUseExisting != null && lastUseExisting != useExisting) {
+                            executeMultiRowInsert(st, sql, featureType, cx);
+                        }
+                        if(sql.length() == 0) {
+                            insertSQLColumns(featureType, key, pkColumnNames, useExisting, sql);
+                        } else {
+                            sql.append(", ");
+                        }
+                        insertSQLValues(featureType, feature, batchKeys.get(i), key, pkColumnNames, 
+                                useExisting, sql);
+                        lastUseExisting = useExisting;
+                    }
+                    executeMultiRowInsert(st, sql, featureType, cx);
+                } else {
+                    for (int i = 0; i < batch.size(); i++) {
+                        String sql = insertSQL(featureType, batch.get(i), batchKeys.get(i), cx);
+                        LOGGER.log(Level.FINE, "Adding insert to batch: {0}", sql);
+                        st.addBatch(sql);
+                    }
+                    basicDialect.onInsert(st, cx, featureType);
+                    st.executeBatch();
+                }
+            } finally {
+                closeSafe(st);
+            }
+        }
+        
+        // the batch went through, report the feature ids as user data since we cant set the fid
+        for (int i = 0; i < batch.size(); i++) {
+            String fid = featureType.getTypeName() + "." + encodeFID(batchKeys.get(i));
+            batch.get(i).getUserData().put("fid", fid);
+        }
+    }
+    
+    /**
+     * Executes and clears a multi row insert statement
+     */
+    void executeMultiRowInsert(Statement st, StringBuffer sql, SimpleFeatureType featureType, 
+            Connection cx) throws SQLException {
+        ((BasicSQLDialect) dialect).onInsert(st, cx, featureType);
+        if ( LOGGER.isLoggable( Level.FINE ) ) {
+            LOGGER.fine( "Inserting new features: " + sql );    
+        }
+        st.execute(sql.toString());
+        sql.setLength(0);
+    }
 
     /**
      * Updates an existing feature(s) in the database for a particular feature type / table.
@@ -2869,6 +3229,7 @@ public final class JDBCDataStore extends ContentDataStore
 
         //column names
         selectColumns(featureType, null, query, sql);
+        selectRowEnvelope(featureType, query, sql);
         sql.setLength(sql.length() - 1);
         dialect.encodePostSelect(featureType, sql);
 
@@ -2986,6 +3347,33 @@ public final class JDBCDataStore extends ContentDataStore
         }
     }
 
+    /**
+     * Returns the screen map to be used while reading the features of a query, or null if the
+     * query does not carry one, the dialect cannot encode the per row envelopes or the feature
+     * type has no default geometry.
+     */
+    ScreenMap getScreenMap(SimpleFeatureType featureType, Query query) {
+        Hints hints = query.getHints();
+        if (hints == null || featureType.getGeometryDescriptor() == null
+                || !dialect.isRowEnvelopeSupported()) {
+            return null;
+        }
+        return (ScreenMap) hints.get(Hints.SCREENMAP);
+    }
+
+    /**
+     * Appends the envelope of the default geometry as the last column of the select, if a
+     * screen map is to be used, so that the reader can decide whether to skip the row or not
+     * before decoding the geometry
+     */
+    void selectRowEnvelope(SimpleFeatureType featureType, Query query, StringBuffer sql) {
+        if (getScreenMap(featureType, query) != null) {
+            dialect.encodeGeometryRowEnvelope(featureType.getTypeName(),
+                    featureType.getGeometryDescriptor().getLocalName(), sql);
+            sql.append(",");
+        }
+    }
+
     FilterToSQL filter(SimpleFeatureType featureType, Filter filter, StringBuffer sql) throws IOException {
         
         try {
@@ -3068,6 +3456,7 @@ public final class JDBCDataStore extends ContentDataStore
 
         //column names
         selectColumns(featureType, null, query, sql);
+        selectRowEnvelope(featureType, query, sql);
         sql.setLength(sql.length() - 1);
         dialect.encodePostSelect(featureType, sql);
 
@@ -3514,8 +3903,6 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected String insertSQL(SimpleFeatureType featureType, SimpleFeature feature, 
             List keyValues, Connection cx) throws SQLException {
-        BasicSQLDialect dialect = (BasicSQLDialect) getSQLDialect();
-        
         // grab the primary key and collect the pk column names 
         PrimaryKey key = null; 
         try {
@@ -3524,8 +3911,21 @@ public final class JDBCDataStore extends ContentDataStore
             throw new RuntimeException( e );
         }
         Set<String> pkColumnNames = getColumnNames(key);
+        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
        
         StringBuffer sql = new StringBuffer();
+        insertSQLColumns(featureType, key, pkColumnNames, useExisting, sql);
+        insertSQLValues(featureType, feature, keyValues, key, pkColumnNames, useExisting, sql);
+
+        return sql.toString();
+    }
+
+    /**
+     * Encodes the 'INSERT INTO table ( columns ) VALUES ' part of an insert statement, 
+     * shared by all the rows of a multi row insert.
+     */
+    void insertSQLColumns(SimpleFeatureType featureType, PrimaryKey key, Set<String> pkColumnNames,
+            boolean useExisting, StringBuffer sql) {
         sql.append("INSERT INTO ");
         encodeTableName(featureType.getTypeName(), sql, null);
 
@@ -3543,7 +3943,6 @@ public final class JDBCDataStore extends ContentDataStore
         }
 
         //primary key values
-        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
         for (PrimaryKeyColumn col : key.getColumns() ) {
             //only include if its non auto generating
             if ( !(col instanceof AutoGeneratedPrimaryKeyColumn )  || useExisting) {
@@ -3553,8 +3952,18 @@ public final class JDBCDataStore extends ContentDataStore
         } 
         sql.setLength(sql.length() - 1);
 
+        sql.append(" ) VALUES ");
+    }
+
+    /**
+     * Encodes the '( values )' row of an insert statement for the specified feature.
+     */
+    void insertSQLValues(SimpleFeatureType featureType, SimpleFeature feature, List keyValues,
+            PrimaryKey key, Set<String> pkColumnNames, boolean useExisting, StringBuffer sql) {
+        BasicSQLDialect dialect = (BasicSQLDialect) getSQLDialect();
+        
         //values
-        sql.append(" ) VALUES ( ");
+        sql.append("( ");
 
         for (int i = 0; i < featureType.getAttributeCount(); i++) {
             AttributeDescriptor att = featureType.getDescriptor(i);
@@ -3611,8 +4020,6 @@ public final class JDBCDataStore extends ContentDataStore
         sql.setLength(sql.length() - 1);
 
         sql.append(")");
-
-        return sql.toString();
     }
 
     /**
@@ -3633,8 +4040,6 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected PreparedStatement insertSQLPS(SimpleFeatureType featureType, SimpleFeature feature, List keyValues, Connection cx) 
         throws IOException, SQLException {
-        PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getSQLDialect();
-        
         // grab the primary key and collect the pk column names 
         PrimaryKey key = null; 
         try {
@@ -3643,6 +4048,25 @@ public final class JDBCDataStore extends ContentDataStore
             throw new RuntimeException( e );
         }
         Set<String> pkColumnNames = getColumnNames(key);
+        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
+        
+        String sql = insertSQLPSStatement(featureType, feature, key, pkColumnNames, useExisting);
+        LOGGER.log(Level.FINE, "Inserting new feature with ps: {0}", sql);
+        
+        //create the prepared statement
+        PreparedStatement ps = cx.prepareStatement(sql);
+        setInsertValues(ps, featureType, feature, keyValues, key, pkColumnNames, useExisting, cx);
+        
+        return ps;
+    }
+
+    /**
+     * Builds the sql of a 'INSERT INTO' prepared statement for the specified feature. Features
+     * generating the same sql can share the same prepared statement in a batch. 
+     */
+    String insertSQLPSStatement(SimpleFeatureType featureType, SimpleFeature feature,
+            PrimaryKey key, Set<String> pkColumnNames, boolean useExisting) throws IOException {
+        PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getSQLDialect();
         
         StringBuffer sql = new StringBuffer();
         sql.append("INSERT INTO ");
@@ -3663,7 +4087,6 @@ public final class JDBCDataStore extends ContentDataStore
         }
 
         // primary key values
-        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
         for (PrimaryKeyColumn col : key.getColumns() ) {
             //only include if its non auto generating
             if ( !(col instanceof AutoGeneratedPrimaryKeyColumn ) || useExisting ) {
@@ -3701,10 +4124,18 @@ public final class JDBCDataStore extends ContentDataStore
         
         sql.setLength(sql.length()-1);
         sql.append(")");
-        LOGGER.log(Level.FINE, "Inserting new feature with ps: {0}", sql);
         
-        //create the prepared statement
-        PreparedStatement ps = cx.prepareStatement(sql.toString());
+        return sql.toString();
+    }
+
+    /**
+     * Sets the feature attribute and primary key values into a 'INSERT INTO' prepared statement
+     * built by {@link #insertSQLPSStatement(SimpleFeatureType, SimpleFeature, PrimaryKey, Set, boolean)}
+     */
+    void setInsertValues(PreparedStatement ps, SimpleFeatureType featureType, SimpleFeature feature,
+            List keyValues, PrimaryKey key, Set<String> pkColumnNames, boolean useExisting,
+            Connection cx) throws IOException, SQLException {
+        PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getSQLDialect();
         
         //set the attribute values
         int i = 1;
@@ -3754,8 +4185,6 @@ public final class JDBCDataStore extends ContentDataStore
                 }
             }
         }
-        
-        return ps;
     }
     
     /**
@@ -97,6 +97,12 @@ public abstract class JDBCDataStoreFactory extends AbstractDataStoreFactory {
     public static final Param FETCHSIZE = new Param("fetch size", Integer.class,
             "number of records read with each iteraction with the dbms", false, 1000);
     
+    /** Number of records inserted in the same batch **/
+    public static final Param BATCH_INSERT_SIZE = new Param("Batch insert size", Integer.class,
+            "Number of records inserted in the same batch (default, 1). Values greater than 1 " +
+            "enable batched inserts, a value around 100 is a good starting point for bulk loads", 
+            false, 1);
+    
     /** Maximum amount of time the pool will wait when trying to grab a new connection **/
     public static final Param MAXWAIT = new Param("Connection timeout", Integer.class,
             "number of seconds the connection pool will wait before timing out attempting to get a new connection (default, 20 seconds)", false, 20);
@@ -180,6 +186,11 @@ public abstract class JDBCDataStoreFactory extends AbstractDataStoreFactory {
         Integer fetchSize = (Integer) FETCHSIZE.lookUp(params);
         if(fetchSize != null && fetchSize > 0)
             dataStore.setFetchSize(fetchSize);
+        
+        // batch insert size
+        Integer batchInsertSize = (Integer) BATCH_INSERT_SIZE.lookUp(params);
+        if(batchInsertSize != null && batchInsertSize > 0)
+            dataStore.setBatchInsertSize(batchInsertSize);
 
         // namespace
         String namespace = (String) NAMESPACE.lookUp(params);
@@ -308,6 +319,7 @@ public abstract class JDBCDataStoreFactory extends AbstractDataStoreFactory {
         parameters.put(MAXCONN.key, MAXCONN);
         parameters.put(MINCONN.key, MINCONN);
         parameters.put(FETCHSIZE.key, FETCHSIZE);
+        parameters.put(BATCH_INSERT_SIZE.key, BATCH_INSERT_SIZE);
         parameters.put(MAXWAIT.key, MAXWAIT);
         if(getValidationQuery() != null)
             parameters.put(VALIDATECONN.key, VALIDATECONN);
@@ -40,6 +40,7 @@ import org.geotools.feature.IllegalAttributeException;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.filter.identity.FeatureIdImpl;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.renderer.ScreenMap;
 import org.geotools.util.Converters;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.FeatureFactory;
@@ -52,10 +53,13 @@ import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.feature.type.Name;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.geometry.BoundingBox;
+import org.opengis.referencing.operation.TransformException;
 
 import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
 
 /**
  * Reader for jdbc datastore
@@ -127,6 +131,21 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
      */
     protected int offset = 0;
     
+    /**
+     * screen map used to skip the features falling in already painted pixels, if any
+     */
+    protected ScreenMap screenMap;
+    
+    /**
+     * position of the envelope column in the result set, computed once when the screen map is set
+     */
+    protected int envelopeColumn;
+    
+    /**
+     * envelope of the default geometry in the current row, read only when using the screen map
+     */
+    protected Envelope rowEnvelope;
+    
     public JDBCFeatureReader( String sql, Connection cx, JDBCFeatureSource featureSource, SimpleFeatureType featureType, Hints hints ) 
         throws SQLException {
         init( featureSource, featureType, hints );
@@ -225,6 +244,19 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
         this.next = next;
     }
 
+    /**
+     * Sets the screen map used to skip the features whose default geometry falls in a pixel
+     * that has already been painted. The select must contain the envelope of the default
+     * geometry as its last column, as encoded by
+     * {@link SQLDialect#encodeGeometryRowEnvelope(String, String, StringBuffer)}
+     */
+    public void setScreenMap(ScreenMap screenMap) {
+        this.screenMap = screenMap;
+        if (screenMap != null) {
+            this.envelopeColumn = envelopeRsIndex();
+        }
+    }
+
     public SimpleFeatureType getFeatureType() {
         return featureType;
     }
@@ -238,7 +270,14 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
         
         if (next == null) {
             try {
-                next = Boolean.valueOf(rs.next());
+                boolean available = rs.next();
+                if (screenMap != null) {
+                    // skip the rows falling in already painted pixels without decoding them
+                    while (available && skipRow(envelopeColumn)) {
+                        available = rs.next();
+                    }
+                }
+                next = Boolean.valueOf(available);
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -247,6 +286,48 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
         return next.booleanValue();
     }
 
+    /**
+     * Reads the envelope of the current row and checks it against the screen map, returns true
+     * if the row falls in a pixel that has already been set
+     */
+    boolean skipRow(int column) throws SQLException, IOException {
+        Connection cx = st.getConnection();
+        rowEnvelope = dataStore.getSQLDialect().decodeGeometryEnvelope(rs, column, cx);
+        if (rowEnvelope == null || rowEnvelope.isNull()) {
+            // null geometry, we don't know where it falls
+            rowEnvelope = null;
+            return false;
+        }
+        if (!screenMap.canSimplify(rowEnvelope)) {
+            rowEnvelope = null;
+            return false;
+        }
+        try {
+            return screenMap.checkAndSet(rowEnvelope);
+        } catch (TransformException e) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Failed to check the row envelope against the screen map", e);
+            }
+            rowEnvelope = null;
+            return false;
+        }
+    }
+
+    /**
+     * The position of the envelope column in the result set, it follows the primary key
+     * and the attribute columns
+     */
+    int envelopeRsIndex() {
+        LinkedHashSet<String> pkColumns = dataStore.getColumnNames(pkey);
+        int exposedPks = 0;
+        for (AttributeDescriptor ad : featureType.getAttributeDescriptors()) {
+            if (pkColumns.contains(ad.getLocalName())) {
+                exposedPks++;
+            }
+        }
+        return offset + pkColumns.size() + featureType.getAttributeCount() - exposedPks + 1;
+    }
+
     protected void ensureNext() {
         if (next == null) {
             throw new IllegalStateException("Must call hasNext before calling next");
@@ -305,13 +386,22 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
                     if (type instanceof GeometryDescriptor) {
                         GeometryDescriptor gatt = (GeometryDescriptor) type;
                         
-                        //read the geometry
-                        try {
-                            value = dataStore.getSQLDialect()
-                                             .decodeGeometryValue(gatt, rs, offset+attributeRsIndex[i],
-                                    geometryFactory, cx);
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
+                        //read the geometry, unless it's small enough to be replaced
+                        //by a pixel sized shape
+                        Class binding = gatt.getType().getBinding();
+                        if (rowEnvelope != null && gatt == featureType.getGeometryDescriptor()
+                                && binding != Geometry.class
+                                && !Point.class.isAssignableFrom(binding)) {
+                            value = screenMap.getSimplifiedShape(rowEnvelope.getMinX(),
+                                    rowEnvelope.getMinY(), rowEnvelope.getMaxX(),
+                                    rowEnvelope.getMaxY(), geometryFactory, binding);
+                        } else {
+                            try {
+                                value = dataStore.getSQLDialect().decodeGeometryValue(gatt, rs,
+                                        offset + attributeRsIndex[i], geometryFactory, cx);
+                            } catch (IOException e) {
+                                throw new RuntimeException(e);
+                            }
                         }
                         
                         if (value != null) {
@@ -361,6 +451,7 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
             // move to the next record no matter what, if the current one could
             // not be read there is no salvation for it anyways
             next = null;
+            rowEnvelope = null;
         }
     }
 
@@ -51,6 +51,7 @@ import org.geotools.filter.visitor.PostPreProcessFilterSplittingVisitor;
 import org.geotools.filter.visitor.SimplifyingFilterVisitor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.renderer.ScreenMap;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.Association;
 import org.opengis.feature.FeatureVisitor;
@@ -107,6 +108,11 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         // mark the features as detached, that is, the user can directly alter them
         // without altering the state of the datastore
         hints.add(Hints.FEATURE_DETACHED);
+        // the reader can skip the features falling in already painted pixels if the
+        // dialect allows it to read the envelopes before the geometries
+        if (getDataStore().getSQLDialect().isRowEnvelopeSupported()) {
+            hints.add(Hints.SCREENMAP);
+        }
         getDataStore().getSQLDialect().addSupportedHints(hints);
     }
 
@@ -579,6 +585,11 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         
                     reader = new JDBCFeatureReader( sql, cx, this, querySchema, query.getHints() );
                 }
+                // the select included the row envelopes if a screen map is available
+                ScreenMap screenMap = getDataStore().getScreenMap(querySchema, preQuery);
+                if (screenMap != null) {
+                    ((JDBCFeatureReader) reader).setScreenMap(screenMap);
+                }
             }
             else {
                 JoinInfo join = JoinInfo.create(preQuery, this);
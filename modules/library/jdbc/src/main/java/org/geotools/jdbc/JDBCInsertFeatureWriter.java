@@ -20,16 +20,26 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.geotools.data.FeatureWriter;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentState;
 import org.geotools.factory.Hints;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.filter.identity.FeatureIdImpl;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 /**
- * 
+ * Feature writer inserting new features.
+ * <p>
+ * When the datastore {@link JDBCDataStore#getBatchInsertSize() batch insert size} is greater
+ * than one the written features are buffered and inserted in batches, the feature ids
+ * of the buffered features are updated when the batch is sent to the database, at the
+ * latest when the writer is closed.
+ * </p>
  *
  * @source $URL$
  */
@@ -38,6 +48,13 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
     
     ResultSetFeature last;
     
+    /**
+     * Features waiting to be inserted in batch, along with the feature ids handed out to the
+     * callers when they were written
+     */
+    List<SimpleFeature> batch;
+    List<FeatureIdImpl> batchIds;
+    
     public JDBCInsertFeatureWriter(String sql, Connection cx,
             JDBCFeatureSource featureSource, Hints hints) throws SQLException, IOException {
         super(sql, cx, featureSource, featureSource.getSchema(), hints);
@@ -71,6 +88,11 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
     }
 
     public void write() throws IOException {
+        if ( dataStore.getBatchInsertSize() > 1 ) {
+            bufferLast();
+            return;
+        }
+        
         try {
             //do the insert
             dataStore.insert(last, featureType, st.getConnection());
@@ -87,8 +109,67 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
         }
     }
 
+    /**
+     * Copies the last feature into the batch, flushing it if it reached the batch size
+     */
+    void bufferLast() throws IOException {
+        if ( batch == null ) {
+            batch = new ArrayList<SimpleFeature>();
+            batchIds = new ArrayList<FeatureIdImpl>();
+        }
+        
+        // last gets re-initialized at each next(), take a detached copy of it
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        for ( int i = 0; i < featureType.getAttributeCount(); i++ ) {
+            builder.set(i, last.getAttribute(i));
+        }
+        SimpleFeature copy = builder.buildFeature(last.getID());
+        copy.getUserData().putAll(last.getUserData());
+        batch.add(copy);
+        batchIds.add((FeatureIdImpl) last.getIdentifier());
+        
+        if ( batch.size() >= dataStore.getBatchInsertSize() ) {
+            flush();
+        }
+    }
+    
+    /**
+     * Inserts the buffered features, if any, and updates their feature ids
+     */
+    void flush() throws IOException {
+        if ( batch == null || batch.isEmpty() ) {
+            return;
+        }
+        
+        try {
+            dataStore.insert(batch, featureType, st.getConnection());
+            
+            ContentEntry entry = featureSource.getEntry();
+            ContentState state = entry.getState( this.tx );
+            for ( int i = 0; i < batch.size(); i++ ) {
+                SimpleFeature feature = batch.get(i);
+                
+                //the datastore sets as userData, grab it and update the fid
+                String fid = (String) feature.getUserData().get( "fid" );
+                batchIds.get(i).setID( fid );
+                ((FeatureIdImpl) feature.getIdentifier()).setID( fid );
+                
+                state.fireFeatureAdded( featureSource, feature );
+            }
+        } catch (SQLException e) {
+            throw (IOException) new IOException().initCause(e);
+        } finally {
+            batch.clear();
+            batchIds.clear();
+        }
+    }
+
     public void close() throws IOException {
-        super.close();
+        try {
+            flush();
+        } finally {
+            super.close();
+        }
         
         if ( last != null ) {
             last.close();
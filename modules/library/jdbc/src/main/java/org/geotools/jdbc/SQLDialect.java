@@ -646,6 +646,41 @@ public abstract class SQLDialect {
     public abstract Envelope decodeGeometryEnvelope(ResultSet rs, int column, Connection cx )
         throws SQLException, IOException;
 
+    /**
+     * Returns true if this dialect can encode the envelope of each single geometry in a
+     * SELECT statement, see {@link #encodeGeometryRowEnvelope(String, String, StringBuffer)}.
+     * <p>
+     * When supported the datastore will honor the {@link Hints#SCREENMAP} hint, reading the
+     * envelope of each row before the geometry itself, and skipping the rows whose envelope
+     * falls into a pixel that has already been painted.
+     * </p>
+     * <p>
+     * This default implementation returns false, subclasses must override.
+     * </p>
+     */
+    public boolean isRowEnvelopeSupported() {
+        return false;
+    }
+
+    /**
+     * Encodes the envelope of a geometry column, evaluated row by row, in a SELECT statement.
+     * <p>
+     * Unlike {@link #encodeGeometryEnvelope(String, String, StringBuffer)} this is not an
+     * aggregate, the value must be computed for each row and be readable by
+     * {@link #decodeGeometryEnvelope(ResultSet, int, Connection)}.
+     * </p>
+     * <p>
+     * This method is called only if {@link #isRowEnvelopeSupported()} returns true.
+     * </p>
+     * @param tableName The table the geometry column belongs to
+     * @param geometryColumn The geometry column
+     * @param sql The buffer to encode the envelope into
+     */
+    public void encodeGeometryRowEnvelope(String tableName, String geometryColumn,
+            StringBuffer sql) {
+        throw new UnsupportedOperationException("Ovveride this method when isRowEnvelopeSupported returns true");
+    }
+
     /**
      * Encodes the name of a geometry column in a SELECT statement.
      * <p>
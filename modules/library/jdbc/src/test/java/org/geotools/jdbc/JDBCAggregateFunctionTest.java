@@ -16,11 +16,17 @@
  */
 package org.geotools.jdbc;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.geotools.data.DefaultQuery;
 import org.geotools.data.Query;
+import org.geotools.feature.visitor.CountVisitor;
+import org.geotools.feature.visitor.GroupByVisitor;
 import org.geotools.feature.visitor.MaxVisitor;
+import org.geotools.feature.visitor.MergeableFeatureCalc;
 import org.geotools.feature.visitor.MinVisitor;
 import org.geotools.feature.visitor.SumVisitor;
 import org.geotools.feature.visitor.UniqueVisitor;
@@ -286,4 +292,62 @@ public abstract class JDBCAggregateFunctionTest extends JDBCTestSupport {
         Set result = v.getResult().toSet();
         assertEquals(2, result.size());
     }
+    
+    class MyGroupByVisitor extends GroupByVisitor {
+
+        public MyGroupByVisitor(List<Expression> groupBy, MergeableFeatureCalc aggregate,
+                Filter having) {
+            super(groupBy, aggregate, having);
+        }
+        
+        public void visit(Feature feature) {
+            super.visit(feature);
+            visited = true;
+        }
+    }
+    
+    public void testGroupBy() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        List<Expression> groupBy = Collections.singletonList( 
+                (Expression) ff.property( aname("stringProperty") ) );
+        
+        GroupByVisitor v = new MyGroupByVisitor(groupBy, 
+                new SumVisitor(ff.property( aname("doubleProperty") )), null);
+        dataStore.getFeatureSource(tname("ft1")).accepts(Query.ALL, v, null);
+        assertFalse(visited);
+        Map result = (Map) v.getResult().getValue();
+        assertEquals(3, result.size());
+        assertEquals(1.1, ((Number) result.get(Collections.singletonList("one"))).doubleValue(), 0.01);
+        assertEquals(2.2, ((Number) result.get(Collections.singletonList("two"))).doubleValue(), 0.01);
+    }
+    
+    public void testGroupByWithFilter() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        List<Expression> groupBy = Collections.singletonList( 
+                (Expression) ff.property( aname("stringProperty") ) );
+        
+        GroupByVisitor v = new MyGroupByVisitor(groupBy, new CountVisitor(), null);
+        Filter f = ff.less( ff.property( aname("doubleProperty") ), ff.literal(2) );
+        dataStore.getFeatureSource(tname("ft1")).accepts(new Query(tname("ft1"), f), v, null);
+        assertFalse(visited);
+        Map result = (Map) v.getResult().getValue();
+        assertEquals(2, result.size());
+        assertEquals(1, ((Number) result.get(Collections.singletonList("zero"))).intValue());
+        assertEquals(1, ((Number) result.get(Collections.singletonList("one"))).intValue());
+    }
+    
+    public void testGroupByHaving() throws Exception {
+        FilterFactory ff = dataStore.getFilterFactory();
+        List<Expression> groupBy = Collections.singletonList( 
+                (Expression) ff.property( aname("stringProperty") ) );
+        Filter having = ff.greater( ff.property( GroupByVisitor.AGGREGATE ), ff.literal(1) );
+        
+        GroupByVisitor v = new MyGroupByVisitor(groupBy, 
+                new MaxVisitor(ff.property( aname("doubleProperty") )), having);
+        dataStore.getFeatureSource(tname("ft1")).accepts(Query.ALL, v, null);
+        assertFalse(visited);
+        Map result = (Map) v.getResult().getValue();
+        assertEquals(2, result.size());
+        assertFalse(result.containsKey(Collections.singletonList("zero")));
+    }
 }
@@ -16,6 +16,7 @@
  */
 package org.geotools.jdbc;
 
+import java.awt.geom.AffineTransform;
 import java.sql.Connection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -35,6 +36,8 @@ import org.geotools.feature.FeatureIterator;
 import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.referencing.operation.transform.AffineTransform2D;
+import org.geotools.renderer.ScreenMap;
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
@@ -355,6 +358,31 @@ public abstract class JDBCFeatureSourceTest extends JDBCTestSupport {
         fi.close();
     }
     
+    public void testScreenMap() throws Exception {
+        if (!featureSource.getSupportedHints().contains(Hints.SCREENMAP)) {
+            return;
+        }
+
+        // the points at 0,0 and 1,1 end up in the same pixel, 2,2 in another one
+        ScreenMap screenMap = new ScreenMap(0, 0, 3, 3, new AffineTransform2D(AffineTransform
+                .getScaleInstance(0.5, 0.5)));
+        screenMap.setSpans(1, 1);
+        DefaultQuery query = new DefaultQuery(featureSource.getSchema().getTypeName());
+        query.setHints(new Hints(Hints.SCREENMAP, screenMap));
+        FeatureIterator fi = featureSource.getFeatures(query).features();
+        int count = 0;
+        try {
+            while (fi.hasNext()) {
+                SimpleFeature f = (SimpleFeature) fi.next();
+                assertNotNull(f.getDefaultGeometry());
+                count++;
+            }
+        } finally {
+            fi.close();
+        }
+        assertEquals(2, count);
+    }
+    
     public void testQueryCapabilitiesSort() throws Exception {
         FilterFactory ff = dataStore.getFilterFactory();
         QueryCapabilities caps = featureSource.getQueryCapabilities();
@@ -145,6 +145,73 @@ public abstract class JDBCFeatureStoreTest extends JDBCTestSupport {
         }
     }
     
+    public void testAddFeaturesBatch() throws IOException {
+        // a batch size smaller than the collection size forces a full batch plus a partial one
+        dataStore.setBatchInsertSize(2);
+        
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
+                featureStore.getSchema());
+        
+        FeatureEventWatcher watcher = new FeatureEventWatcher();
+        
+        for (int i = 3; i < 6; i++) {
+            b.set(aname("intProperty"), new Integer(i));
+            b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(i, i)));
+            collection.add(b.buildFeature(null));
+        }
+        featureStore.addFeatureListener( watcher );
+        List<FeatureId> fids = featureStore.addFeatures(collection);
+        assertEquals( watcher.bounds, collection.getBounds() );
+        
+        assertEquals(3, fids.size());
+        assertEquals(3, new HashSet<FeatureId>(fids).size());
+
+        SimpleFeatureCollection features = featureStore.getFeatures();
+        assertEquals(6, features.size());
+
+        FilterFactory ff = dataStore.getFilterFactory();
+        for (FeatureId identifier : fids) {
+            Id filter = ff.id(Collections.singleton(identifier));
+
+            features = featureStore.getFeatures(filter);
+            assertEquals(1, features.size());
+
+            Iterator iterator = features.iterator();
+            assertTrue(iterator.hasNext());
+
+            SimpleFeature feature = (SimpleFeature) iterator.next();
+            assertEquals(identifier.getID(), feature.getID());
+            assertFalse(iterator.hasNext());
+
+            features.close(iterator);
+        }
+    }
+    
+    public void testAddFeaturesBatchUseProvidedFid() throws IOException {
+        dataStore.setBatchInsertSize(2);
+        
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
+                featureStore.getSchema());
+        
+        String typeName = b.getFeatureType().getTypeName();
+        for (int i = 3; i < 6; i++) {
+            b.set(aname("intProperty"), new Integer(i));
+            b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(i, i)));
+            b.featureUserData(Hints.USE_PROVIDED_FID, Boolean.TRUE);
+            collection.add(b.buildFeature(typeName + "." + (i * 10)));
+        }
+        List<FeatureId> fids = featureStore.addFeatures(collection);
+        
+        assertEquals(3, fids.size());
+        assertTrue(fids.contains(SimpleFeatureBuilder.createDefaultFeatureIdentifier(typeName + ".30")));
+        assertTrue(fids.contains(SimpleFeatureBuilder.createDefaultFeatureIdentifier(typeName + ".40")));
+        assertTrue(fids.contains(SimpleFeatureBuilder.createDefaultFeatureIdentifier(typeName + ".50")));
+
+        assertEquals(6, featureStore.getFeatures().size());
+    }
+    
     public void testAddInTransaction() throws IOException {
         SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
         DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
@@ -0,0 +1,133 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.geotools.feature.IllegalAttributeException;
+import org.geotools.feature.simple.CompactFeatureLayout;
+import org.geotools.feature.simple.CompactSimpleFeature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * A {@link FeatureReader} building {@link CompactSimpleFeature} out of an {@link AttributeReader}
+ * and a {@link FIDReader}, the compact equivalent of {@link FIDFeatureReader}.
+ * <p>
+ * In reuse mode the same feature instance is returned by each call to {@link #next()}, and its
+ * attributes are read from the attribute reader only when accessed. The feature contents are
+ * valid only until the next call to {@link #hasNext()} or {@link #next()}, so the caller must copy
+ * the feature if it needs to retain it.
+ * </p>
+ *
+ * @see org.geotools.factory.Hints#FEATURE_COMPACT
+ * @see org.geotools.factory.Hints#FEATURE_REUSE
+ * @source $URL$
+ */
+public class CompactFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    private final AttributeReader attributeReader;
+
+    private final FIDReader fidReader;
+
+    private final SimpleFeatureType schema;
+
+    private final CompactFeatureLayout layout;
+
+    private final boolean reuse;
+
+    private CompactSimpleFeature current;
+
+    private Boolean hasNextFlag;
+
+    private final CompactSimpleFeature.AttributeLoader loader = new CompactSimpleFeature.AttributeLoader() {
+
+        public Object load(int index) throws IOException {
+            return attributeReader.read(index);
+        }
+    };
+
+    /**
+     * Creates a new reader
+     *
+     * @param attributeReader The attribute source
+     * @param fidReader The feature id source
+     * @param schema The feature type, the attribute reader must return its attributes in order
+     * @param reuse If true the same feature object will be returned by each call to
+     *        {@link #next()}, and its attributes will be read lazily
+     */
+    public CompactFeatureReader(AttributeReader attributeReader, FIDReader fidReader,
+            SimpleFeatureType schema, boolean reuse) {
+        this.attributeReader = attributeReader;
+        this.fidReader = fidReader;
+        this.schema = schema;
+        this.layout = CompactFeatureLayout.getLayout(schema);
+        this.reuse = reuse;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return schema;
+    }
+
+    public SimpleFeature next() throws IOException, IllegalAttributeException,
+            NoSuchElementException {
+        if (hasNext()) {
+            hasNextFlag = null;
+            attributeReader.next();
+            String fid = fidReader.next();
+
+            if (reuse) {
+                if (current == null) {
+                    current = new CompactSimpleFeature(layout, fid);
+                } else {
+                    current.reset(fid);
+                }
+                current.setLoader(loader);
+                return current;
+            } else {
+                CompactSimpleFeature feature = new CompactSimpleFeature(layout, fid);
+                for (int i = 0, ii = attributeReader.getAttributeCount(); i < ii; i++) {
+                    feature.setAttribute(i, attributeReader.read(i));
+                }
+                return feature;
+            }
+        } else {
+            throw new NoSuchElementException("There are no more Features to be read");
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        if (hasNextFlag == null) {
+            // the attribute reader is going to move on, the current feature cannot load anymore
+            if (current != null) {
+                current.invalidate();
+            }
+            hasNextFlag = Boolean.valueOf(attributeReader.hasNext());
+        }
+        return hasNextFlag;
+    }
+
+    public void close() throws IOException {
+        if (current != null) {
+            current.invalidate();
+        }
+        fidReader.close();
+        attributeReader.close();
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.collection;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A memory budget shared by a set of {@link SpatialIndexCachingFeatureSource}. When a source
+ * needs to cache more data than the budget allows, the least recently used sources are evicted
+ * until there is enough room.
+ * <p>
+ * The budget is only consulted when the cached contents change, the queries served from the
+ * cache do not access it.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class SpatialIndexCache {
+
+    static SpatialIndexCache DEFAULT;
+
+    Map<SpatialIndexCachingFeatureSource, Long> entries =
+            new IdentityHashMap<SpatialIndexCachingFeatureSource, Long>();
+
+    long maxMemory;
+
+    long usedMemory;
+
+    long evictionCount;
+
+    /**
+     * Returns the cache shared by all the caching sources that do not specify their own, its
+     * budget is a quarter of the max heap size
+     */
+    public static synchronized SpatialIndexCache getDefault() {
+        if (DEFAULT == null) {
+            DEFAULT = new SpatialIndexCache(Runtime.getRuntime().maxMemory() / 4);
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Builds a new cache
+     *
+     * @param maxMemory The max amount of memory, in bytes, the cached features can use
+     */
+    public SpatialIndexCache(long maxMemory) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("The max memory must be positive");
+        }
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Installs the snapshot in the source, evicting the least recently used sources if necessary.
+     * A null snapshot releases the memory used by the source.
+     *
+     * @return false if the snapshot is too big to fit in the budget, in that case the source is
+     *         left without contents
+     */
+    synchronized boolean install(SpatialIndexCachingFeatureSource source,
+            SpatialIndexCachingFeatureSource.Snapshot snapshot) {
+        Long previous = entries.remove(source);
+        if (previous != null) {
+            usedMemory -= previous;
+        }
+        if (snapshot == null || snapshot.memory > maxMemory) {
+            source.snapshot = null;
+            return snapshot == null;
+        }
+
+        while (usedMemory + snapshot.memory > maxMemory) {
+            SpatialIndexCachingFeatureSource lru = null;
+            for (SpatialIndexCachingFeatureSource candidate : entries.keySet()) {
+                if (lru == null || candidate.lastAccess < lru.lastAccess) {
+                    lru = candidate;
+                }
+            }
+            usedMemory -= entries.remove(lru);
+            lru.snapshot = null;
+            lru.evictions.incrementAndGet();
+            evictionCount++;
+        }
+
+        entries.put(source, snapshot.memory);
+        usedMemory += snapshot.memory;
+        source.snapshot = snapshot;
+        return true;
+    }
+
+    /**
+     * The max amount of memory, in bytes, the cached features can use
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * The estimated amount of memory, in bytes, currently used by the cached features
+     */
+    public synchronized long getUsedMemory() {
+        return usedMemory;
+    }
+
+    /**
+     * The number of sources currently holding their contents in memory
+     */
+    public synchronized int getCachedSourceCount() {
+        return entries.size();
+    }
+
+    /**
+     * The number of times a source contents have been evicted to make room for others
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+}
@@ -0,0 +1,489 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.collection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DataAccess;
+import org.geotools.data.DataSourceException;
+import org.geotools.data.FeatureEvent;
+import org.geotools.data.FeatureListener;
+import org.geotools.data.Query;
+import org.geotools.data.QueryCapabilities;
+import org.geotools.data.ResourceInfo;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.Name;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.Id;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * A caching wrapper for a {@link SimpleFeatureSource}, keeping the whole contents of the wrapped
+ * source in memory in a {@link SpatialIndexFeatureCollection}, and serving the queries out of it
+ * via {@link SpatialIndexFeatureSource}.
+ * <p>
+ * The cache is designed to be queried by many threads at the same time (e.g., the ones rendering
+ * map tiles):
+ * <ul>
+ * <li>The cached contents are an immutable snapshot, queries read it without taking any lock</li>
+ * <li>Loading the contents is performed by a single thread, the others wait for it to complete
+ * only if there is no snapshot at all to serve from</li>
+ * <li>The {@link FeatureEvent} fired by the wrapped source are used to refresh only the
+ * modified features, a new snapshot is built and then replaces the old one, so the readers never
+ * see a partially updated cache</li>
+ * <li>The memory used by the snapshot is estimated and charged to a {@link SpatialIndexCache},
+ * which evicts the least recently used sources when its budget is exceeded. If the contents of
+ * the wrapped source do not fit in the budget the queries are passed down to the wrapped source
+ * until its contents change</li>
+ * </ul>
+ * The sources register a listener on the wrapped source, call {@link #dispose()} to remove it and
+ * release the cached contents once the source is no longer needed.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class SpatialIndexCachingFeatureSource implements SimpleFeatureSource {
+
+    static final Logger LOGGER = Logging.getLogger(SpatialIndexCachingFeatureSource.class);
+
+    static final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    SimpleFeatureSource wrapped;
+
+    SpatialIndexCache cache;
+
+    /**
+     * The current contents, only {@link SpatialIndexCache} modifies this field
+     */
+    volatile Snapshot snapshot;
+
+    /**
+     * When true the wrapped contents do not fit in the memory budget, no point trying to load
+     * them again until they change
+     */
+    volatile boolean bypass;
+
+    volatile long lastAccess;
+
+    ReentrantLock loadLock = new ReentrantLock();
+
+    FeatureListener listener;
+
+    AtomicLong hits = new AtomicLong();
+
+    AtomicLong misses = new AtomicLong();
+
+    AtomicLong loads = new AtomicLong();
+
+    AtomicLong refreshes = new AtomicLong();
+
+    AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Wraps the specified source, using the default {@link SpatialIndexCache}
+     */
+    public SpatialIndexCachingFeatureSource(SimpleFeatureSource wrapped) {
+        this(wrapped, SpatialIndexCache.getDefault());
+    }
+
+    /**
+     * Wraps the specified source, charging the cached contents to the specified cache
+     */
+    public SpatialIndexCachingFeatureSource(SimpleFeatureSource wrapped, SpatialIndexCache cache) {
+        this.wrapped = wrapped;
+        this.cache = cache;
+        this.listener = new FeatureListener() {
+
+            public void changed(FeatureEvent event) {
+                featuresChanged(event);
+            }
+        };
+        wrapped.addFeatureListener(listener);
+    }
+
+    /**
+     * Returns the current snapshot, loading it if necessary, or null if the contents cannot be
+     * cached
+     */
+    Snapshot getSnapshot() throws IOException {
+        Snapshot result = snapshot;
+        if (result != null) {
+            hits.incrementAndGet();
+            lastAccess = System.nanoTime();
+            return result;
+        }
+
+        misses.incrementAndGet();
+        if (bypass) {
+            return null;
+        }
+        loadLock.lock();
+        try {
+            result = snapshot;
+            if (result == null && !bypass) {
+                result = load();
+            }
+            lastAccess = System.nanoTime();
+            return result;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the whole wrapped source contents, giving up as soon as they exceed the budget
+     */
+    Snapshot load() throws IOException {
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        long memory = 0;
+        long maxMemory = cache.getMaxMemory();
+        SimpleFeatureIterator fi = wrapped.getFeatures(new Query(getTypeName(), Filter.INCLUDE))
+                .features();
+        try {
+            while (fi.hasNext()) {
+                SimpleFeature feature = fi.next();
+                memory += estimateSize(feature);
+                if (memory > maxMemory) {
+                    LOGGER.log(Level.FINE, "The contents of " + getName()
+                            + " are too big to be cached, the queries will be passed down");
+                    bypass = true;
+                    return null;
+                } else if (!isIndexable(feature)) {
+                    LOGGER.log(Level.FINE, "The contents of " + getName() + " contain features "
+                            + "without a geometry, the queries will be passed down");
+                    bypass = true;
+                    return null;
+                }
+                features.add(feature);
+            }
+        } finally {
+            fi.close();
+        }
+
+        loads.incrementAndGet();
+        return install(features, memory);
+    }
+
+    Snapshot install(List<SimpleFeature> features, long memory) {
+        SpatialIndexFeatureCollection contents = new SpatialIndexFeatureCollection(getSchema());
+        contents.addAll(features);
+        // builds the tree, after this point the index is only read
+        contents.size();
+        Snapshot result = new Snapshot(contents, memory);
+        if (!cache.install(this, result)) {
+            bypass = true;
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Applies the changes to the cached contents, re-reading only the modified features when the
+     * event allows to identify them, or dropping the contents otherwise
+     */
+    void featuresChanged(FeatureEvent event) {
+        if (event.getType() == FeatureEvent.Type.ROLLBACK) {
+            return;
+        }
+
+        loadLock.lock();
+        try {
+            bypass = false;
+            Snapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+
+            Filter filter = event.getFilter();
+            ReferencedEnvelope bounds = event.getBounds();
+            GeometryDescriptor gd = getSchema().getGeometryDescriptor();
+            if (filter instanceof Id) {
+                refresh(current, (Id) filter, null);
+            } else if (bounds != null && !bounds.isNull() && gd != null) {
+                refresh(current, ff.bbox(ff.property(gd.getLocalName()), bounds), bounds);
+            } else {
+                cache.install(this, null);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to refresh the cached contents of " + getName()
+                    + ", dropping them", e);
+            cache.install(this, null);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Builds a new snapshot replacing the features matching the filter with the current ones in
+     * the wrapped source. When the filter is spatial, the bounds are used to also remove the
+     * cached features that are no longer in the wrapped source
+     */
+    void refresh(Snapshot current, Filter filter, Envelope bounds) throws IOException {
+        List<SimpleFeature> reloaded = new ArrayList<SimpleFeature>();
+        Set<String> fids = new HashSet<String>();
+        SimpleFeatureIterator fi = wrapped.getFeatures(new Query(getTypeName(), filter))
+                .features();
+        try {
+            while (fi.hasNext()) {
+                SimpleFeature feature = fi.next();
+                if (!isIndexable(feature)) {
+                    // cannot be put in the spatial index
+                    cache.install(this, null);
+                    bypass = true;
+                    return;
+                }
+                reloaded.add(feature);
+                fids.add(feature.getID());
+            }
+        } finally {
+            fi.close();
+        }
+
+        Geometry area = bounds != null ? new GeometryFactory().toGeometry(bounds) : null;
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>(current.contents.size());
+        long memory = 0;
+        for (Iterator<SimpleFeature> it = current.contents.iterator(); it.hasNext();) {
+            SimpleFeature feature = it.next();
+            if (fids.contains(feature.getID())) {
+                continue;
+            } else if (area == null && filter.evaluate(feature)) {
+                continue;
+            } else if (area != null) {
+                Geometry g = (Geometry) feature.getDefaultGeometry();
+                if (g != null && g.getEnvelopeInternal().intersects(bounds) && g.intersects(area)) {
+                    continue;
+                }
+            }
+            features.add(feature);
+            memory += estimateSize(feature);
+        }
+        for (SimpleFeature feature : reloaded) {
+            features.add(feature);
+            memory += estimateSize(feature);
+        }
+
+        refreshes.incrementAndGet();
+        install(features, memory);
+    }
+
+    /**
+     * Estimates the memory used by a feature and its entry in the spatial index
+     */
+    static long estimateSize(SimpleFeature feature) {
+        // feature, values array, fid, index entry with its envelope
+        long size = 160 + 8 * feature.getAttributeCount() + 2 * feature.getID().length();
+        for (Object value : feature.getAttributes()) {
+            if (value instanceof Geometry) {
+                size += 100 + 40L * ((Geometry) value).getNumPoints();
+            } else if (value instanceof String) {
+                size += 40 + 2 * ((String) value).length();
+            } else if (value != null) {
+                size += 24;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The spatial index silently skips features with empty bounds, we cannot cache them
+     */
+    static boolean isIndexable(SimpleFeature feature) {
+        return !ReferencedEnvelope.reference(feature.getBounds()).isNull();
+    }
+
+    String getTypeName() {
+        return wrapped.getSchema().getName().getLocalPart();
+    }
+
+    /**
+     * Removes the listener from the wrapped source and releases the cached contents
+     */
+    public void dispose() {
+        wrapped.removeFeatureListener(listener);
+        loadLock.lock();
+        try {
+            cache.install(this, null);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * The number of queries served from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * The number of queries that found no cached contents, either because they had to be loaded
+     * or because they did not fit in the budget
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The number of times the whole contents have been loaded from the wrapped source
+     */
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    /**
+     * The number of incremental refreshes performed in response to feature events
+     */
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    /**
+     * The number of times the cached contents have been evicted to make room for other sources
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns true if the contents are currently held in memory
+     */
+    public boolean isCached() {
+        return snapshot != null;
+    }
+
+    public void addFeatureListener(FeatureListener listener) {
+        wrapped.addFeatureListener(listener);
+    }
+
+    public void removeFeatureListener(FeatureListener listener) {
+        wrapped.removeFeatureListener(listener);
+    }
+
+    public DataAccess<SimpleFeatureType, SimpleFeature> getDataStore() {
+        return wrapped.getDataStore();
+    }
+
+    public ReferencedEnvelope getBounds() throws IOException {
+        Snapshot current = getSnapshot();
+        if (current == null) {
+            return wrapped.getBounds();
+        }
+        return current.contents.getBounds();
+    }
+
+    public ReferencedEnvelope getBounds(Query query) throws IOException {
+        Snapshot current = getSnapshot();
+        if (current == null) {
+            return wrapped.getBounds(query);
+        }
+        return current.source.getBounds(query);
+    }
+
+    public int getCount(Query query) throws IOException {
+        Snapshot current = getSnapshot();
+        if (current == null) {
+            return wrapped.getCount(query);
+        }
+        return current.source.getCount(query);
+    }
+
+    public SimpleFeatureType getSchema() {
+        return wrapped.getSchema();
+    }
+
+    public SimpleFeatureCollection getFeatures() throws IOException {
+        return getFeatures(Filter.INCLUDE);
+    }
+
+    public SimpleFeatureCollection getFeatures(Filter filter) throws IOException {
+        return getFeatures(new Query(getTypeName(), filter));
+    }
+
+    public SimpleFeatureCollection getFeatures(Query query) throws IOException {
+        String typeName = getTypeName();
+        if (query.getTypeName() != null && !typeName.equals(query.getTypeName())) {
+            throw new DataSourceException("Typename mismatch, query asks for '"
+                    + query.getTypeName() + " but this feature source provides '" + typeName
+                    + "'");
+        }
+
+        Snapshot current = getSnapshot();
+        if (current == null) {
+            return wrapped.getFeatures(query);
+        }
+        return current.source.getFeatures(query);
+    }
+
+    public ResourceInfo getInfo() {
+        return wrapped.getInfo();
+    }
+
+    public Name getName() {
+        return wrapped.getName();
+    }
+
+    public QueryCapabilities getQueryCapabilities() {
+        return wrapped.getQueryCapabilities();
+    }
+
+    public Set getSupportedHints() {
+        // the cached features are shared among all the callers
+        HashSet hints = new HashSet(wrapped.getSupportedHints());
+        hints.remove(Hints.FEATURE_DETACHED);
+        return hints;
+    }
+
+    /**
+     * An immutable view of the cached contents
+     */
+    static class Snapshot {
+        SpatialIndexFeatureCollection contents;
+
+        SpatialIndexFeatureSource source;
+
+        long memory;
+
+        Snapshot(SpatialIndexFeatureCollection contents, long memory) {
+            this.contents = contents;
+            this.source = new SpatialIndexFeatureSource(contents);
+            this.memory = memory;
+        }
+    }
+
+}
@@ -16,6 +16,7 @@ import org.geotools.feature.CollectionEvent;
 import org.geotools.feature.CollectionListener;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.util.NullProgressListener;
 import org.geotools.util.logging.Logging;
@@ -124,8 +125,35 @@ public class SpatialIndexFeatureCollection implements SimpleFeatureCollection {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Returns the features matching the filter, using the spatial index to narrow down the
+     * candidates to the ones in the filter bounds. The result is a copy, so it can be used
+     * while other threads are accessing this collection.
+     */
+    @SuppressWarnings("unchecked")
     public SimpleFeatureCollection subCollection(Filter filter) {
-        throw new UnsupportedOperationException();
+        if (filter == null || filter == Filter.INCLUDE) {
+            List<SimpleFeature> all = (List<SimpleFeature>) index.query(everything());
+            return new ListFeatureCollection(schema, all);
+        } else if (filter == Filter.EXCLUDE) {
+            return new ListFeatureCollection(schema);
+        }
+        Envelope bounds = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                null);
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        if (bounds != null && !bounds.isNull()) {
+            for (SimpleFeature feature : (List<SimpleFeature>) index.query(bounds)) {
+                if (filter.evaluate(feature)) {
+                    result.add(feature);
+                }
+            }
+        }
+        return new ListFeatureCollection(schema, result);
+    }
+
+    static Envelope everything() {
+        return new Envelope(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
     }
 
     public void accepts(final FeatureVisitor visitor, ProgressListener listener) throws IOException {
@@ -231,6 +259,9 @@ public class SpatialIndexFeatureCollection implements SimpleFeatureCollection {
 
     public ReferencedEnvelope getBounds() {
         CoordinateReferenceSystem crs = schema.getCoordinateReferenceSystem();
+        if (index.size() == 0) {
+            return new ReferencedEnvelope(crs);
+        }
         Envelope bounds = (Envelope) index.getRoot().getBounds();
         return new ReferencedEnvelope(bounds, crs);
     }
@@ -0,0 +1,246 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.sort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Comparator;
+import java.util.List;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * A sorted sequence of features taking part in the merge-sort, either kept in memory or spilled
+ * to a temporary file using the {@link FeatureSpillCodec} format
+ */
+abstract class FeatureRun {
+
+    static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    static final int READ_BUFFER_SIZE = 32 * 1024;
+
+    /**
+     * Returns the current feature, or null if the run is exhausted
+     */
+    public abstract SimpleFeature feature() throws IOException;
+
+    /**
+     * Moves to the next feature and returns it, or returns null if the run is exhausted
+     */
+    public abstract SimpleFeature next() throws IOException;
+
+    /**
+     * Releases the resources associated to the run
+     */
+    public abstract void close() throws IOException;
+
+    /**
+     * Writes the features in the specified range, which must be already sorted, to a temporary
+     * file and returns a run reading them back
+     */
+    static FeatureRun spill(SimpleFeatureType schema, SimpleFeature[] features, int from, int to)
+            throws IOException {
+        File file = File.createTempFile("sorted", ".features");
+        boolean success = false;
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Channels.newOutputStream(fos.getChannel()), WRITE_BUFFER_SIZE));
+                new FeatureSpillCodec(schema).write(out, features, from, to);
+                out.flush();
+            } finally {
+                fos.close();
+            }
+            success = true;
+            return new FileRun(schema, file);
+        } finally {
+            if (!success) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Merges the runs into a single one written to a temporary file, one page at a time. The runs
+     * are closed, and their files removed, once the merge is done
+     */
+    static FeatureRun merge(SimpleFeatureType schema, List<FeatureRun> runs,
+            Comparator<SimpleFeature> comparator) throws IOException {
+        MergeSortReader reader = new MergeSortReader(schema, runs, comparator);
+        try {
+            File file = File.createTempFile("sorted", ".features");
+            boolean success = false;
+            try {
+                FileOutputStream fos = new FileOutputStream(file);
+                try {
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                            Channels.newOutputStream(fos.getChannel()), WRITE_BUFFER_SIZE));
+                    FeatureSpillCodec codec = new FeatureSpillCodec(schema);
+                    SimpleFeature[] page = new SimpleFeature[FeatureSpillCodec.PAGE_SIZE];
+                    int count = 0;
+                    while (reader.hasNext()) {
+                        page[count++] = reader.next();
+                        if (count == page.length) {
+                            codec.writePage(out, page, 0, count);
+                            count = 0;
+                        }
+                    }
+                    codec.write(out, page, 0, count);
+                    out.flush();
+                } finally {
+                    fos.close();
+                }
+                success = true;
+                return new FileRun(schema, file);
+            } finally {
+                if (!success) {
+                    file.delete();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * A run over a sorted range of an in memory array
+     */
+    static class MemoryRun extends FeatureRun {
+
+        SimpleFeature[] features;
+
+        int position;
+
+        int end;
+
+        public MemoryRun(SimpleFeature[] features, int from, int to) {
+            this.features = features;
+            this.position = from;
+            this.end = to;
+        }
+
+        public SimpleFeature feature() {
+            return position < end ? features[position] : null;
+        }
+
+        public SimpleFeature next() {
+            if (position < end) {
+                // release the reference, the merge is the only user of the array
+                features[position++] = null;
+            }
+            return feature();
+        }
+
+        public void close() {
+            position = end;
+            features = null;
+        }
+    }
+
+    /**
+     * A run reading back the features spilled to a temporary file, one page at a time. The file
+     * is opened only when the run is first read, so that only the runs taking part in the current
+     * merge hold an open file and a read buffer
+     */
+    static class FileRun extends FeatureRun {
+
+        File file;
+
+        SimpleFeatureType schema;
+
+        FileInputStream fis;
+
+        DataInputStream in;
+
+        FeatureSpillCodec codec;
+
+        int count;
+
+        int position;
+
+        SimpleFeature curr;
+
+        boolean opened;
+
+        public FileRun(SimpleFeatureType schema, File file) {
+            this.file = file;
+            this.schema = schema;
+        }
+
+        void open() throws IOException {
+            this.fis = new FileInputStream(file);
+            opened = true;
+            this.in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(fis.getChannel()), READ_BUFFER_SIZE));
+            this.codec = new FeatureSpillCodec(schema);
+            next();
+        }
+
+        public SimpleFeature feature() throws IOException {
+            if (!opened) {
+                open();
+            }
+            return curr;
+        }
+
+        public SimpleFeature next() throws IOException {
+            if (!opened) {
+                open();
+            }
+            if (in == null) {
+                return null;
+            }
+            if (position >= count) {
+                count = codec.readPage(in);
+                position = 0;
+                if (count == 0) {
+                    curr = null;
+                    close();
+                    return null;
+                }
+            }
+            curr = codec.getFeature(position++);
+            return curr;
+        }
+
+        public void close() throws IOException {
+            if (!opened) {
+                // never read, just remove the file
+                opened = true;
+                file.delete();
+            } else if (fis != null) {
+                try {
+                    fis.close();
+                } finally {
+                    fis = null;
+                    in = null;
+                    file.delete();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,421 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.sort;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.List;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Encodes and decodes features in the binary format used to spill the sorted runs to disk.
+ * <p>
+ * The features are written in pages of {@link #PAGE_SIZE} features, each page is organized by
+ * columns: first the feature ids, then for each attribute a null bitmap followed by the non null
+ * values. The encoding of each column is resolved once from the schema, so no type metadata is
+ * written, geometries are stored as WKB and only the attributes that cannot be optimized fall
+ * back on Java serialization. A page with no features marks the end of the run.
+ * </p>
+ * <p>
+ * Instances are not thread safe, each run writer and reader should use its own.
+ * </p>
+ */
+class FeatureSpillCodec {
+
+    static final int PAGE_SIZE = 512;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final byte BOOLEAN = 0;
+
+    static final byte BYTE = 1;
+
+    static final byte SHORT = 2;
+
+    static final byte INTEGER = 3;
+
+    static final byte LONG = 4;
+
+    static final byte FLOAT = 5;
+
+    static final byte DOUBLE = 6;
+
+    static final byte STRING = 7;
+
+    static final byte DATE = 8;
+
+    static final byte SQL_DATE = 9;
+
+    static final byte SQL_TIME = 10;
+
+    static final byte TIMESTAMP = 11;
+
+    static final byte GEOMETRY = 12;
+
+    static final byte OBJECT = 13;
+
+    SimpleFeatureType schema;
+
+    byte[] types;
+
+    WKBWriter wkbWriter;
+
+    WKBReader wkbReader;
+
+    SimpleFeatureBuilder builder;
+
+    String[] fids;
+
+    Object[][] columns;
+
+    public FeatureSpillCodec(SimpleFeatureType schema) {
+        this.schema = schema;
+        List<AttributeDescriptor> attributes = schema.getAttributeDescriptors();
+        this.types = new byte[attributes.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = getType(attributes.get(i).getType().getBinding());
+        }
+    }
+
+    /**
+     * Returns the column encoding for the specified binding. As no type information is written in
+     * the stream, we have to be 100% sure the class is the one we can optimize for, and not some
+     * subclass, when we read back it must be as if we did not serialize stuff at all
+     */
+    static byte getType(Class<?> binding) {
+        if (binding == Boolean.class || binding == boolean.class) {
+            return BOOLEAN;
+        } else if (binding == Byte.class || binding == byte.class) {
+            return BYTE;
+        } else if (binding == Short.class || binding == short.class) {
+            return SHORT;
+        } else if (binding == Integer.class || binding == int.class) {
+            return INTEGER;
+        } else if (binding == Long.class || binding == long.class) {
+            return LONG;
+        } else if (binding == Float.class || binding == float.class) {
+            return FLOAT;
+        } else if (binding == Double.class || binding == double.class) {
+            return DOUBLE;
+        } else if (binding == String.class) {
+            return STRING;
+        } else if (binding == java.util.Date.class) {
+            return DATE;
+        } else if (binding == java.sql.Date.class) {
+            return SQL_DATE;
+        } else if (binding == java.sql.Time.class) {
+            return SQL_TIME;
+        } else if (binding == java.sql.Timestamp.class) {
+            return TIMESTAMP;
+        } else if (Geometry.class.isAssignableFrom(binding)) {
+            return GEOMETRY;
+        } else {
+            return OBJECT;
+        }
+    }
+
+    /**
+     * Writes the features between <code>from</code> (included) and <code>to</code> (excluded),
+     * followed by the end of run marker
+     */
+    public void write(DataOutputStream out, SimpleFeature[] features, int from, int to)
+            throws IOException {
+        for (int start = from; start < to; start += PAGE_SIZE) {
+            writePage(out, features, start, Math.min(start + PAGE_SIZE, to));
+        }
+        writeVarInt(out, 0);
+    }
+
+    void writePage(DataOutputStream out, SimpleFeature[] features, int from, int to)
+            throws IOException {
+        int count = to - from;
+        writeVarInt(out, count);
+        for (int i = from; i < to; i++) {
+            writeString(out, features[i].getID());
+        }
+
+        byte[] nulls = new byte[(count + 7) / 8];
+        for (int c = 0; c < types.length; c++) {
+            for (int i = 0; i < nulls.length; i++) {
+                nulls[i] = 0;
+            }
+            for (int i = from; i < to; i++) {
+                if (features[i].getAttribute(c) == null) {
+                    int bit = i - from;
+                    nulls[bit >> 3] |= 1 << (bit & 7);
+                }
+            }
+            out.write(nulls);
+
+            byte type = types[c];
+            for (int i = from; i < to; i++) {
+                Object value = features[i].getAttribute(c);
+                if (value != null) {
+                    writeValue(out, type, value);
+                }
+            }
+        }
+    }
+
+    void writeValue(DataOutputStream out, byte type, Object value) throws IOException {
+        switch (type) {
+        case BOOLEAN:
+            out.writeBoolean((Boolean) value);
+            break;
+        case BYTE:
+            out.writeByte(((Number) value).byteValue());
+            break;
+        case SHORT:
+            out.writeShort(((Number) value).shortValue());
+            break;
+        case INTEGER:
+            out.writeInt(((Number) value).intValue());
+            break;
+        case LONG:
+            out.writeLong(((Number) value).longValue());
+            break;
+        case FLOAT:
+            out.writeFloat(((Number) value).floatValue());
+            break;
+        case DOUBLE:
+            out.writeDouble(((Number) value).doubleValue());
+            break;
+        case STRING:
+            writeString(out, (String) value);
+            break;
+        case DATE:
+        case SQL_DATE:
+        case SQL_TIME:
+            out.writeLong(((Date) value).getTime());
+            break;
+        case TIMESTAMP:
+            java.sql.Timestamp ts = (java.sql.Timestamp) value;
+            out.writeLong(ts.getTime());
+            out.writeInt(ts.getNanos());
+            break;
+        case GEOMETRY:
+            if (wkbWriter == null) {
+                wkbWriter = new WKBWriter();
+            }
+            writeBytes(out, wkbWriter.write((Geometry) value));
+            break;
+        default:
+            // can't optimize, in this case we use an ObjectOutputStream to write out
+            // full metadata
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(value);
+            oos.flush();
+            writeBytes(out, bos.toByteArray());
+        }
+    }
+
+    /**
+     * Reads the next page of features, returning the number of features read, zero if the end of
+     * the run has been reached. The features are then available via {@link #getFeature(int)}
+     */
+    public int readPage(DataInputStream in) throws IOException {
+        int count = readVarInt(in);
+        if (count == 0) {
+            return 0;
+        }
+        if (fids == null || fids.length < count) {
+            fids = new String[Math.max(count, PAGE_SIZE)];
+            columns = new Object[types.length][fids.length];
+        }
+
+        for (int i = 0; i < count; i++) {
+            fids[i] = readString(in);
+        }
+        byte[] nulls = new byte[(count + 7) / 8];
+        for (int c = 0; c < types.length; c++) {
+            in.readFully(nulls);
+            byte type = types[c];
+            Object[] column = columns[c];
+            for (int i = 0; i < count; i++) {
+                if ((nulls[i >> 3] & (1 << (i & 7))) != 0) {
+                    column[i] = null;
+                } else {
+                    column[i] = readValue(in, type);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    Object readValue(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+        case BOOLEAN:
+            return in.readBoolean();
+        case BYTE:
+            return in.readByte();
+        case SHORT:
+            return in.readShort();
+        case INTEGER:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case FLOAT:
+            return in.readFloat();
+        case DOUBLE:
+            return in.readDouble();
+        case STRING:
+            return readString(in);
+        case DATE:
+            return new java.util.Date(in.readLong());
+        case SQL_DATE:
+            return new java.sql.Date(in.readLong());
+        case SQL_TIME:
+            return new java.sql.Time(in.readLong());
+        case TIMESTAMP:
+            java.sql.Timestamp ts = new java.sql.Timestamp(in.readLong());
+            ts.setNanos(in.readInt());
+            return ts;
+        case GEOMETRY:
+            if (wkbReader == null) {
+                wkbReader = new WKBReader();
+            }
+            try {
+                return wkbReader.read(readBytes(in));
+            } catch (ParseException e) {
+                throw new IOException("Failed to parse the geometry WKB", e);
+            }
+        default:
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)));
+            try {
+                return ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Could not read back object", e);
+            }
+        }
+    }
+
+    /**
+     * Builds the i-th feature of the last page read
+     */
+    public SimpleFeature getFeature(int i) {
+        if (builder == null) {
+            builder = new SimpleFeatureBuilder(schema);
+        }
+        for (int c = 0; c < types.length; c++) {
+            builder.add(columns[c][i]);
+            columns[c][i] = null;
+        }
+        return builder.buildFeature(fids[i]);
+    }
+
+    /**
+     * Estimates the memory used by the feature, looking at its attribute values. The estimate
+     * does not need to be precise, it is used to decide when to spill a run to disk
+     */
+    public long estimateSize(SimpleFeature feature) {
+        // object headers, the values array, the fid
+        long size = 64 + types.length * 8 + 40 + 2 * feature.getID().length();
+        for (int c = 0; c < types.length; c++) {
+            Object value = feature.getAttribute(c);
+            if (value == null) {
+                continue;
+            }
+            switch (types[c]) {
+            case STRING:
+                size += 40 + 2 * ((String) value).length();
+                break;
+            case DATE:
+            case SQL_DATE:
+            case SQL_TIME:
+            case TIMESTAMP:
+                size += 32;
+                break;
+            case GEOMETRY:
+                // geometry wrappers, plus a coordinate object and its reference for each point
+                size += 128 + 48L * ((Geometry) value).getNumPoints();
+                break;
+            case OBJECT:
+                if (value instanceof byte[]) {
+                    size += 16 + ((byte[]) value).length;
+                } else {
+                    size += 64;
+                }
+                break;
+            default:
+                size += 16;
+            }
+        }
+        return size;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(UTF8));
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), UTF8);
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes a non negative int using 7 bits per byte, small values (like most lengths) take a
+     * single byte
+     */
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
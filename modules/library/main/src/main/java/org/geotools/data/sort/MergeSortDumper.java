@@ -16,17 +16,20 @@
  */
 package org.geotools.data.sort;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.geotools.data.Query;
 import org.geotools.data.collection.ListFeatureCollection;
@@ -41,7 +44,6 @@ import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.io.WKBWriter;
 
 class MergeSortDumper {
 
@@ -74,21 +76,99 @@ class MergeSortDumper {
         return true;
     }
 
+    /**
+     * The memory budget used when neither {@link Hints#MAX_MEMORY_SORT} nor
+     * {@link Hints#MAX_MEMORY_SORT_SIZE} is set: a sixteenth of the max heap, between 4MB and
+     * 128MB
+     */
+    static final long DEFAULT_MAX_MEMORY = Math.max(4 * 1024 * 1024, Math.min(Runtime
+            .getRuntime().maxMemory() / 16, 128 * 1024 * 1024));
+
+    /**
+     * The maximum number of runs merged at once. When more runs are spilled, they are merged in
+     * groups into bigger runs first, so that the final merge does not have to keep open a file
+     * and a read buffer for each of them
+     */
+    static final int DEFAULT_MAX_FAN_IN = 64;
+
+    /**
+     * The executor shared by all the sorts that are not given one, created on first use
+     */
+    static ExecutorService sharedExecutor;
+
+    static synchronized ExecutorService getSharedExecutor() {
+        if (sharedExecutor == null) {
+            sharedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime()
+                    .availableProcessors(), new SpillThreadFactory());
+        }
+        return sharedExecutor;
+    }
+
     static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, Query query)
             throws IOException {
         Hints hints = query.getHints();
-        int maxFeatures = 1000;
-        if (hints != null && hints.get(Hints.MAX_MEMORY_SORT) != null) {
-            maxFeatures = (Integer) hints.get(Hints.MAX_MEMORY_SORT);
-        } else if (Hints.getSystemDefault(Hints.MAX_MEMORY_SORT) != null) {
-            maxFeatures = (Integer) Hints.getSystemDefault(Hints.MAX_MEMORY_SORT);
+        Integer maxFeatures = (Integer) lookupHint(hints, Hints.MAX_MEMORY_SORT);
+        Long maxMemory = (Long) lookupHint(hints, Hints.MAX_MEMORY_SORT_SIZE);
+        ExecutorService executor = null;
+        if (hints != null && hints.get(Hints.EXECUTOR_SERVICE) instanceof ExecutorService) {
+            executor = (ExecutorService) hints.get(Hints.EXECUTOR_SERVICE);
         }
 
-        return getDelegateReader(reader, query.getSortBy(), maxFeatures);
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (maxMemory == null && maxFeatures != null) {
+            return getDelegateReader(reader, query.getSortBy(), maxFeatures, -1, threads,
+                    executor, DEFAULT_MAX_FAN_IN);
+        } else {
+            long memory = maxMemory != null ? maxMemory : DEFAULT_MAX_MEMORY;
+            return getDelegateReader(reader, query.getSortBy(), -1, memory, threads, executor,
+                    DEFAULT_MAX_FAN_IN);
+        }
+    }
+
+    private static Object lookupHint(Hints hints, Hints.Key key) {
+        if (hints != null && hints.get(key) != null) {
+            return hints.get(key);
+        } else {
+            return Hints.getSystemDefault(key);
+        }
     }
 
     static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, SortBy[] sortBy,
             int maxFeatures) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (maxFeatures > 0) {
+            return getDelegateReader(reader, sortBy, maxFeatures, -1, threads);
+        } else {
+            Long maxMemory = (Long) Hints.getSystemDefault(Hints.MAX_MEMORY_SORT_SIZE);
+            long memory = maxMemory != null ? maxMemory : DEFAULT_MAX_MEMORY;
+            return getDelegateReader(reader, sortBy, -1, memory, threads);
+        }
+    }
+
+    /**
+     * Sorts the reader contents, spilling sorted runs to disk when the features in memory exceed
+     * either <code>maxFeatures</code> or, if the latter is not positive, the estimated
+     * <code>maxMemory</code> size in bytes. The runs are sorted and written using up to
+     * <code>threads</code> parallel threads of the shared executor, and then merged back while
+     * reading
+     */
+    static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, SortBy[] sortBy,
+            int maxFeatures, long maxMemory, int threads) throws IOException {
+        return getDelegateReader(reader, sortBy, maxFeatures, maxMemory, threads, null,
+                DEFAULT_MAX_FAN_IN);
+    }
+
+    /**
+     * Sorts the reader contents, spilling sorted runs to disk when the features in memory exceed
+     * either <code>maxFeatures</code> or, if the latter is not positive, the estimated
+     * <code>maxMemory</code> size in bytes. The runs are sorted and written using up to
+     * <code>threads</code> parallel tasks on the given executor, or on the shared one if
+     * <code>null</code>, and then merged back while reading, at most <code>maxFanIn</code> runs
+     * at a time
+     */
+    static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, SortBy[] sortBy,
+            int maxFeatures, long maxMemory, int threads, ExecutorService executor, int maxFanIn)
+            throws IOException {
         Comparator<SimpleFeature> comparator = getComparator(sortBy);
 
         // easy case, no sorting needed
@@ -104,35 +184,40 @@ class MergeSortDumper {
                             + "sorting properties are not comparable or the attributes are not serializable");
         }
 
-        int count = 0;
-        File file = null;
-        RandomAccessFile raf = null;
+        FeatureSpillCodec codec = maxFeatures > 0 ? null : new FeatureSpillCodec(schema);
+        long memory = 0;
         List<SimpleFeature> features = new ArrayList<SimpleFeature>();
-        List<FeatureBlockReader> readers = new ArrayList<FeatureBlockReader>();
-        boolean cleanFile = true;
+        List<FeatureRun> runs = new ArrayList<FeatureRun>();
+        if (threads <= 1) {
+            executor = null;
+        }
+        boolean cleanRuns = true;
         try {
             // read and store into files as necessary
             while (reader.hasNext()) {
                 SimpleFeature f = reader.next();
                 features.add(f);
-                count++;
-
-                if (count > maxFeatures) {
-                    Collections.sort(features, comparator);
-                    if (raf == null) {
-                        file = File.createTempFile("sorted", ".features");
-                        file.delete();
-                        raf = new RandomAccessFile(file, "rw");
+
+                boolean full;
+                if (codec == null) {
+                    full = features.size() > maxFeatures;
+                } else {
+                    memory += codec.estimateSize(f);
+                    full = memory > maxMemory;
+                }
+                if (full) {
+                    if (executor == null && threads > 1) {
+                        executor = getSharedExecutor();
                     }
-                    FeatureBlockReader fbr = storeToFile(raf, features, schema);
-                    readers.add(fbr);
-                    count = 0;
+                    SimpleFeature[] array = features.toArray(new SimpleFeature[features.size()]);
+                    runs.addAll(spill(schema, array, comparator, threads, executor));
+                    memory = 0;
                     features.clear();
                 }
             }
 
             // return the appropriate reader
-            if (raf == null) {
+            if (runs.isEmpty()) {
                 // simple case, we managed to keep everything in memory, sort and return a
                 // reader based on the collection contents
                 Collections.sort(features, comparator);
@@ -140,15 +225,26 @@ class MergeSortDumper {
                 SimpleFeatureIterator fi = new ListFeatureCollection(schema, features).features();
                 return new DelegateSimpleFeatureReader(schema, fi);
             } else {
-                // go merge-sort
-                cleanFile = false;
-                return new MergeSortReader(schema, raf, file, readers, comparator);
+                // merge the spilled runs in groups until there are few enough of them, leaving
+                // room for the leftovers
+                runs = reduceRuns(schema, runs, comparator, maxFanIn);
+
+                // the leftovers become the last run, then go merge-sort
+                if (!features.isEmpty()) {
+                    SimpleFeature[] array = features.toArray(new SimpleFeature[features.size()]);
+                    Arrays.sort(array, comparator);
+                    runs.add(new FeatureRun.MemoryRun(array, 0, array.length));
+                }
+                MergeSortReader result = new MergeSortReader(schema, runs, comparator);
+                cleanRuns = false;
+                return result;
             }
 
         } finally {
-            if (cleanFile && raf != null) {
-                raf.close();
-                file.delete();
+            if (cleanRuns) {
+                for (FeatureRun run : runs) {
+                    run.close();
+                }
             }
 
             reader.close();
@@ -156,85 +252,134 @@ class MergeSortDumper {
     }
 
     /**
-     * Writes the feature attributes to a binary file
-     * 
-     * @param features
-     * @return
-     * @throws IOException
+     * Splits the features in up to <code>threads</code> chunks, then sorts and writes each one to
+     * its own run file, in parallel if an executor is available
      */
-    static FeatureBlockReader storeToFile(RandomAccessFile raf, List<SimpleFeature> features,
-            SimpleFeatureType schema) throws IOException {
-        long start = raf.getFilePointer();
-
-        // write each attribute in the random access file
-        List<AttributeDescriptor> attributes = schema.getAttributeDescriptors();
-        for (SimpleFeature sf : features) {
-            // write feature id
-            raf.writeUTF(sf.getID());
-            // write the attributes
-            for (AttributeDescriptor ad : attributes) {
-                Object value = sf.getAttribute(ad.getLocalName());
-                writeAttribute(raf, ad, value);
+    static List<FeatureRun> spill(final SimpleFeatureType schema, final SimpleFeature[] features,
+            final Comparator<SimpleFeature> comparator, int threads, ExecutorService executor)
+            throws IOException {
+        int chunks = executor == null ? 1 : Math.min(threads, features.length);
+        int chunkSize = (features.length + chunks - 1) / chunks;
+        List<Callable<FeatureRun>> tasks = new ArrayList<Callable<FeatureRun>>();
+        for (int from = 0; from < features.length; from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(from + chunkSize, features.length);
+            tasks.add(new Callable<FeatureRun>() {
+
+                public FeatureRun call() throws Exception {
+                    // the chunks are disjoint, so they can be sorted in place concurrently
+                    Arrays.sort(features, start, end, comparator);
+                    return FeatureRun.spill(schema, features, start, end);
+                }
+            });
+        }
+
+        List<FeatureRun> runs = new ArrayList<FeatureRun>();
+        if (executor == null) {
+            try {
+                for (Callable<FeatureRun> task : tasks) {
+                    runs.add(task.call());
+                }
+            } catch (IOException e) {
+                closeRuns(runs);
+                throw e;
+            } catch (Exception e) {
+                closeRuns(runs);
+                throw new IOException("Failed to write the sorted features to disk", e);
+            }
+        } else {
+            List<Future<FeatureRun>> futures;
+            try {
+                futures = executor.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while writing the sorted features to disk", e);
+            }
+            // collect all results, so that we can clean up every written file on failure
+            IOException failure = null;
+            for (Future<FeatureRun> future : futures) {
+                try {
+                    runs.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof IOException ? (IOException) cause
+                                : new IOException("Failed to write the sorted features to disk",
+                                        cause);
+                    }
+                } catch (InterruptedException e) {
+                    if (failure == null) {
+                        failure = new IOException(
+                                "Interrupted while writing the sorted features to disk", e);
+                    }
+                }
+            }
+            if (failure != null) {
+                closeRuns(runs);
+                throw failure;
             }
         }
 
-        return new FeatureBlockReader(raf, start, features.size(), schema);
+        return runs;
     }
 
-    static void writeAttribute(RandomAccessFile raf, AttributeDescriptor ad, Object value)
-            throws IOException {
-        if (value == null) {
-            // null marker
-            raf.writeBoolean(true);
-        } else {
-            // not null, write the contents. This one requires some explanation. We are not
-            // writing any type metadata in the stream for the types we can optimize (primitives,
-            // numbers,
-            // strings and the like). This means we have to be 100% sure the class we're writing is
-            // actually the one we can optimize for, and not some subclass. Thus, we are authorized
-            // to use identity comparison instead of isAssignableFrom or equality, when we read back
-            // it must be as if we did not serialize stuff at all
-            raf.writeBoolean(false);
-            Class<?> binding = ad.getType().getBinding();
-            if (binding == Boolean.class) {
-                raf.writeBoolean((Boolean) value);
-            } else if (binding == Byte.class || binding == byte.class) {
-                raf.writeByte((Byte) value);
-            } else if (binding == Short.class || binding == short.class) {
-                raf.writeShort((Short) value);
-            } else if (binding == Integer.class || binding == int.class) {
-                raf.writeInt((Integer) value);
-            } else if (binding == Long.class || binding == long.class) {
-                raf.writeLong((Long) value);
-            } else if (binding == Float.class || binding == float.class) {
-                raf.writeFloat((Float) value);
-            } else if (binding == Double.class || binding == double.class) {
-                raf.writeDouble((Double) value);
-            } else if (binding == String.class) {
-                raf.writeUTF((String) value);
-            } else if (binding == java.sql.Date.class || binding == java.sql.Time.class
-                    || binding == java.sql.Timestamp.class || binding == java.util.Date.class) {
-                raf.writeLong(((Date) value).getTime());
-            } else if (Geometry.class.isAssignableFrom(binding)) {
-                WKBWriter writer = new WKBWriter();
-                byte[] buffer = writer.write((Geometry) value);
-                int length = buffer.length;
-                raf.writeInt(length);
-                raf.write(buffer);
-            } else {
-                // can't optimize, in this case we use an ObjectOutputStream to write out
-                // full metadata
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                ObjectOutputStream oos = new ObjectOutputStream(bos);
-                oos.writeObject(value);
-                oos.flush();
-                byte[] bytes = bos.toByteArray();
-                raf.writeInt(bytes.length);
-                raf.write(bytes);
+    /**
+     * Merges groups of up to <code>maxFanIn</code> consecutive runs into single runs, as many
+     * times as needed to get less than <code>maxFanIn</code> runs. Merging consecutive runs keeps
+     * the sort stable. The runs are closed on failure
+     */
+    static List<FeatureRun> reduceRuns(SimpleFeatureType schema, List<FeatureRun> runs,
+            Comparator<SimpleFeature> comparator, int maxFanIn) throws IOException {
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("The max fan in must be at least 2, was "
+                    + maxFanIn);
+        }
+        while (runs.size() >= maxFanIn) {
+            List<FeatureRun> merged = new ArrayList<FeatureRun>();
+            try {
+                for (int i = 0; i < runs.size(); i += maxFanIn) {
+                    List<FeatureRun> group = runs.subList(i, Math.min(i + maxFanIn, runs.size()));
+                    if (group.size() == 1) {
+                        merged.add(group.get(0));
+                    } else {
+                        merged.add(FeatureRun.merge(schema, new ArrayList<FeatureRun>(group),
+                                comparator));
+                    }
+                }
+            } catch (IOException e) {
+                // the runs already merged are closed, closing them again does no harm
+                closeRuns(merged);
+                closeRuns(runs);
+                throw e;
+            }
+            runs = merged;
+        }
+        return runs;
+    }
+
+    private static void closeRuns(List<FeatureRun> runs) {
+        for (FeatureRun run : runs) {
+            try {
+                run.close();
+            } catch (IOException e) {
+                // nothing to do, we are already reporting a failure
             }
         }
     }
 
+    /**
+     * Daemon threads, so that a non closed sort cannot prevent the JVM from shutting down
+     */
+    static class SpillThreadFactory implements ThreadFactory {
+
+        static final AtomicInteger COUNTER = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "GeoTools-MergeSort-" + COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     /**
      * Builds a comparator out of the sortBy list
      * 
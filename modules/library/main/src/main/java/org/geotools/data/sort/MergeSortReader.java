@@ -1,9 +1,9 @@
 /*
  *    GeoTools - The Open Source Java GIS Toolkit
  *    http://geotools.org
- * 
+ *
  *    (C) 2004-2008, Open Source Geospatial Foundation (OSGeo)
- *    
+ *
  *    This library is free software; you can redistribute it and/or
  *    modify it under the terms of the GNU Lesser General Public
  *    License as published by the Free Software Foundation;
@@ -16,43 +16,54 @@
  */
 package org.geotools.data.sort;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.Comparator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 import org.geotools.data.simple.SimpleFeatureReader;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 /**
- * Reads from a list of {@link FeatureBlockReader} backed by a {@link RandomAccessFile} and performs
- * the classic merge-sort algorithm
- * 
+ * Reads from a list of sorted {@link FeatureRun} and performs a k-way merge, keeping the runs in
+ * a heap ordered by their current feature
+ *
  * @author Andrea Aime - GeoSolutions
- * 
+ *
  */
 class MergeSortReader implements SimpleFeatureReader {
 
-    List<FeatureBlockReader> readers;
-
-    RandomAccessFile raf;
+    List<FeatureRun> runs;
 
-    File file;
+    PriorityQueue<RunEntry> queue;
 
     SimpleFeatureType schema;
 
-    Comparator<SimpleFeature> comparator;
-
-    public MergeSortReader(SimpleFeatureType schema, RandomAccessFile raf, File file,
-            List<FeatureBlockReader> readers, Comparator<SimpleFeature> comparator) {
+    public MergeSortReader(SimpleFeatureType schema, List<FeatureRun> runs,
+            final Comparator<SimpleFeature> comparator) throws IOException {
         this.schema = schema;
-        this.comparator = comparator;
-        this.readers = readers;
-        this.raf = raf;
-        this.file = file;
+        this.runs = runs;
+        this.queue = new PriorityQueue<RunEntry>(Math.max(1, runs.size()),
+                new Comparator<RunEntry>() {
+
+                    public int compare(RunEntry e1, RunEntry e2) {
+                        int result = comparator.compare(e1.feature, e2.feature);
+                        if (result == 0) {
+                            // keep the sort stable, the runs are in input order
+                            result = e1.index - e2.index;
+                        }
+                        return result;
+                    }
+                });
+        for (int i = 0; i < runs.size(); i++) {
+            FeatureRun run = runs.get(i);
+            SimpleFeature feature = run.feature();
+            if (feature != null) {
+                queue.add(new RunEntry(run, i, feature));
+            }
+        }
     }
 
     public SimpleFeatureType getFeatureType() {
@@ -61,25 +72,16 @@ class MergeSortReader implements SimpleFeatureReader {
 
     public SimpleFeature next() throws IOException, IllegalArgumentException,
             NoSuchElementException {
-        if (readers.size() == 0) {
+        RunEntry entry = queue.poll();
+        if (entry == null) {
             throw new NoSuchElementException();
         }
 
-        // find the smallest feature
-        int selected = 0;
-        for (int i = 1; i < readers.size(); i++) {
-            SimpleFeature sf = readers.get(selected).feature();
-            SimpleFeature cf = readers.get(i).feature();
-            if (comparator.compare(sf, cf) > 0) {
-                selected = i;
-            }
-        }
-
-        // move on the reader of the selected feature
-        FeatureBlockReader reader = readers.get(selected);
-        SimpleFeature sf = reader.feature();
-        if (reader.next() == null) {
-            readers.remove(selected);
+        // move on the run of the selected feature, and put it back in the queue if not exhausted
+        SimpleFeature sf = entry.feature;
+        entry.feature = entry.run.next();
+        if (entry.feature != null) {
+            queue.add(entry);
         }
 
         // return the selected feature
@@ -87,14 +89,35 @@ class MergeSortReader implements SimpleFeatureReader {
     }
 
     public boolean hasNext() throws IOException {
-        return readers.size() > 0;
+        return !queue.isEmpty();
     }
 
     public void close() throws IOException {
-        try {
-            raf.close();
-        } finally {
-            file.delete();
+        queue.clear();
+        IOException failure = null;
+        for (FeatureRun run : runs) {
+            try {
+                run.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static class RunEntry {
+        FeatureRun run;
+
+        int index;
+
+        SimpleFeature feature;
+
+        public RunEntry(FeatureRun run, int index, SimpleFeature feature) {
+            this.run = run;
+            this.index = index;
+            this.feature = feature;
         }
     }
 
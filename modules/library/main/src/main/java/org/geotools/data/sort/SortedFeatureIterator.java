@@ -23,6 +23,7 @@ import java.util.NoSuchElementException;
 import org.geotools.data.simple.DelegateSimpleFeatureReader;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureReader;
+import org.geotools.factory.Hints;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.sort.SortBy;
@@ -54,7 +55,8 @@ public class SortedFeatureIterator implements SimpleFeatureIterator {
      * @param iterator The iterator to be sorted
      * @param schema The iterator schema
      * @param sortBy The sorting directives
-     * @param maxFeatures The maximum number of features to keep in memory
+     * @param maxFeatures The maximum number of features to keep in memory, if not positive the
+     *        features are kept in memory up to the {@link Hints#MAX_MEMORY_SORT_SIZE} size
      * @throws IOException
      */
     public SortedFeatureIterator(SimpleFeatureIterator iterator, SimpleFeatureType schema,
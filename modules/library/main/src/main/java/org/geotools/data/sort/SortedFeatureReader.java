@@ -55,7 +55,8 @@ public class SortedFeatureReader implements SimpleFeatureReader {
      * 
      * @param reader The reader to be sorted
      * @param query The query holding the SortBy directives, and the eventual max features in memory
-     *        hint {@link Hints#MAX_MEMORY_SORT}
+     *        hint {@link Hints#MAX_MEMORY_SORT} or max memory size hint
+     *        {@link Hints#MAX_MEMORY_SORT_SIZE}
      */
     public SortedFeatureReader(SimpleFeatureReader reader, Query query) throws IOException {
         this.delegate = MergeSortDumper.getDelegateReader(reader, query);
@@ -66,7 +67,8 @@ public class SortedFeatureReader implements SimpleFeatureReader {
      * 
      * @param reader The reader to be sorted
      * @param sortBy The sorting directives
-     * @param maxFeatures The maximum number of features to keep in memory
+     * @param maxFeatures The maximum number of features to keep in memory, if not positive the
+     *        features are kept in memory up to the {@link Hints#MAX_MEMORY_SORT_SIZE} size
      * @throws IOException
      */
     public SortedFeatureReader(SimpleFeatureReader reader, SortBy[] sortBy, int maxFeatures)
@@ -15,7 +15,7 @@ import org.opengis.filter.sort.SortBy;
 /**
  * A wrapper that will sort a feature collection using a size sensitive algorithm, in main memory
  * for small collections, using secondary memory otherwise. The threshold is defined by the
- * {@link Hints#MAX_MEMORY_SORT} feature count
+ * estimated memory used by the features, see {@link Hints#MAX_MEMORY_SORT_SIZE}
  * 
  * @author Andrea Aime - GeoSolutions
  * 
@@ -0,0 +1,178 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.simple;
+
+import java.util.Map;
+
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Describes how the attributes of a {@link CompactSimpleFeature} are laid out: the integral and
+ * boolean attributes are stored in a <code>long[]</code>, the floating point ones in a
+ * <code>double[]</code>, everything else in an <code>Object[]</code>.
+ * <p>
+ * The layout is computed once per feature type and shared by all the features of that type, use
+ * {@link #getLayout(SimpleFeatureType)} to get it.
+ * </p>
+ *
+ * @source $URL$
+ */
+public final class CompactFeatureLayout {
+
+    static final String LAYOUT_KEY = "compactLayout";
+
+    static final byte OBJECT = 0;
+
+    static final byte BOOLEAN = 1;
+
+    static final byte BYTE = 2;
+
+    static final byte SHORT = 3;
+
+    static final byte INTEGER = 4;
+
+    static final byte LONG = 5;
+
+    static final byte FLOAT = 6;
+
+    static final byte DOUBLE = 7;
+
+    /**
+     * The wrapper class of the values stored for each kind, indexed by kind
+     */
+    static final Class<?>[] WRAPPERS = new Class<?>[] { Object.class, Boolean.class, Byte.class,
+            Short.class, Integer.class, Long.class, Float.class, Double.class };
+
+    final SimpleFeatureType featureType;
+
+    final Map<String, Integer> index;
+
+    /**
+     * The storage kind of each attribute
+     */
+    final byte[] kinds;
+
+    /**
+     * The position of each attribute in the array holding its kind
+     */
+    final int[] slots;
+
+    final int longCount;
+
+    final int doubleCount;
+
+    final int objectCount;
+
+    /**
+     * The position of the default geometry, or -1 if there is none
+     */
+    final int defaultGeometry;
+
+    final boolean threeD;
+
+    CompactFeatureLayout(SimpleFeatureType featureType) {
+        this.featureType = featureType;
+        this.index = SimpleFeatureImpl.index(featureType);
+
+        int count = featureType.getAttributeCount();
+        kinds = new byte[count];
+        slots = new int[count];
+        int longs = 0;
+        int doubles = 0;
+        int objects = 0;
+        for (int i = 0; i < count; i++) {
+            byte kind = getKind(featureType.getDescriptor(i).getType().getBinding());
+            kinds[i] = kind;
+            if (kind == OBJECT) {
+                slots[i] = objects++;
+            } else if (kind == FLOAT || kind == DOUBLE) {
+                slots[i] = doubles++;
+            } else {
+                slots[i] = longs++;
+            }
+        }
+        this.longCount = longs;
+        this.doubleCount = doubles;
+        this.objectCount = objects;
+
+        GeometryDescriptor gd = featureType.getGeometryDescriptor();
+        Integer geometryIndex = gd != null ? index.get(gd.getLocalName()) : null;
+        this.defaultGeometry = geometryIndex != null ? geometryIndex : -1;
+
+        CoordinateReferenceSystem crs = featureType.getCoordinateReferenceSystem();
+        this.threeD = crs != null && crs.getCoordinateSystem().getDimension() == 3;
+    }
+
+    static byte getKind(Class<?> binding) {
+        if (binding == Boolean.class || binding == boolean.class) {
+            return BOOLEAN;
+        } else if (binding == Byte.class || binding == byte.class) {
+            return BYTE;
+        } else if (binding == Short.class || binding == short.class) {
+            return SHORT;
+        } else if (binding == Integer.class || binding == int.class) {
+            return INTEGER;
+        } else if (binding == Long.class || binding == long.class) {
+            return LONG;
+        } else if (binding == Float.class || binding == float.class) {
+            return FLOAT;
+        } else if (binding == Double.class || binding == double.class) {
+            return DOUBLE;
+        } else {
+            return OBJECT;
+        }
+    }
+
+    /**
+     * Returns the layout for the specified feature type, computing it only the first time
+     */
+    public static CompactFeatureLayout getLayout(SimpleFeatureType featureType) {
+        synchronized (featureType) {
+            // the user data might have been copied over from another type, check it's ours
+            Object cached = featureType.getUserData().get(LAYOUT_KEY);
+            if (cached instanceof CompactFeatureLayout
+                    && ((CompactFeatureLayout) cached).featureType == featureType) {
+                return (CompactFeatureLayout) cached;
+            }
+            CompactFeatureLayout layout = new CompactFeatureLayout(featureType);
+            featureType.getUserData().put(LAYOUT_KEY, layout);
+            return layout;
+        }
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return featureType;
+    }
+
+    /**
+     * Returns true if the attribute is stored as a primitive, and can thus be accessed without
+     * boxing via {@link CompactSimpleFeature#getLong(int)} or
+     * {@link CompactSimpleFeature#getDouble(int)}
+     */
+    public boolean isPrimitive(int index) {
+        return kinds[index] != OBJECT;
+    }
+
+    /**
+     * Returns true if the attribute is stored as a floating point number
+     */
+    public boolean isFloatingPoint(int index) {
+        return kinds[index] == FLOAT || kinds[index] == DOUBLE;
+    }
+}
@@ -0,0 +1,764 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.simple;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.feature.GeometryAttributeImpl;
+import org.geotools.feature.IllegalAttributeException;
+import org.geotools.feature.type.AttributeDescriptorImpl;
+import org.geotools.feature.type.Types;
+import org.geotools.filter.identity.FeatureIdImpl;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.ReferencedEnvelope3D;
+import org.geotools.util.Converters;
+import org.geotools.util.Utilities;
+import org.opengis.feature.GeometryAttribute;
+import org.opengis.feature.Property;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.AttributeType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.GeometryType;
+import org.opengis.feature.type.Name;
+import org.opengis.filter.identity.FeatureId;
+import org.opengis.filter.identity.Identifier;
+import org.opengis.geometry.BoundingBox;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A {@link SimpleFeature} storing numbers and booleans in primitive arrays instead of boxed
+ * values, and sharing all the per type information in a {@link CompactFeatureLayout}. The
+ * primitive values can be accessed without boxing using {@link #getLong(int)},
+ * {@link #getDouble(int)} and {@link #isNull(int)}.
+ * <p>
+ * The feature can also be used as a flyweight by a reader: {@link #reset(String)} clears it for
+ * the next feature, and {@link #setLoader(AttributeLoader)} makes the attribute values load
+ * lazily, only when accessed. Once the reader moves on it calls {@link #invalidate()}, after which
+ * accessing the attributes that were not loaded results in an {@link IllegalStateException}.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class CompactSimpleFeature implements SimpleFeature {
+
+    /**
+     * Loads the value of an attribute on demand
+     */
+    public interface AttributeLoader {
+        Object load(int index) throws IOException;
+    }
+
+    protected CompactFeatureLayout layout;
+
+    protected String id;
+
+    protected FeatureId featureId;
+
+    protected long[] longs;
+
+    protected double[] doubles;
+
+    protected Object[] objects;
+
+    /**
+     * Null flags for the attributes stored as primitives
+     */
+    protected boolean[] nulls;
+
+    /**
+     * Which attributes have been loaded, null if the feature is not lazy
+     */
+    protected boolean[] loaded;
+
+    protected AttributeLoader loader;
+
+    protected boolean stale;
+
+    /**
+     * The set of user data attached to the feature (lazily created)
+     */
+    protected Map<Object, Object> userData;
+
+    /**
+     * The set of user data attached to each attribute (lazily created)
+     */
+    protected Map<Object, Object>[] attributeUserData;
+
+    /**
+     * Builds a new feature with all attributes set to null
+     *
+     * @param layout The layout, shared among all the features of the same type
+     * @param id The feature id
+     */
+    public CompactSimpleFeature(CompactFeatureLayout layout, String id) {
+        this.layout = layout;
+        this.id = id;
+        this.longs = new long[layout.longCount];
+        this.doubles = new double[layout.doubleCount];
+        this.objects = new Object[layout.objectCount];
+        this.nulls = new boolean[layout.kinds.length];
+        Arrays.fill(nulls, true);
+    }
+
+    /**
+     * Builds a new feature with all attributes set to null
+     */
+    public CompactSimpleFeature(SimpleFeatureType featureType, String id) {
+        this(CompactFeatureLayout.getLayout(featureType), id);
+    }
+
+    /**
+     * Clears the feature contents so that it can be reused for another feature of the same type
+     */
+    public void reset(String id) {
+        this.id = id;
+        this.featureId = null;
+        Arrays.fill(nulls, true);
+        Arrays.fill(objects, null);
+        this.userData = null;
+        this.attributeUserData = null;
+        this.loader = null;
+        this.loaded = null;
+        this.stale = false;
+    }
+
+    /**
+     * Makes all attributes load lazily from the specified loader, until they are set or accessed
+     */
+    public void setLoader(AttributeLoader loader) {
+        this.loader = loader;
+        this.stale = false;
+        if (loaded == null) {
+            loaded = new boolean[nulls.length];
+        } else {
+            Arrays.fill(loaded, false);
+        }
+    }
+
+    /**
+     * Marks the loader as no longer usable, the attributes not loaded so far cannot be accessed
+     * anymore
+     */
+    public void invalidate() {
+        if (loaded != null) {
+            stale = true;
+        }
+    }
+
+    void load(int index) {
+        if (loaded != null && !loaded[index]) {
+            if (stale) {
+                throw new IllegalStateException("The attribute "
+                        + getFeatureType().getDescriptor(index).getLocalName() + " of feature "
+                        + id + " cannot be read anymore, the reader moved on to the next feature");
+            }
+            Object value;
+            try {
+                value = loader.load(index);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read attribute "
+                        + getFeatureType().getDescriptor(index).getLocalName(), e);
+            }
+            store(index, value);
+            loaded[index] = true;
+        }
+    }
+
+    /**
+     * Stores the value without further checks, converting it only if it's not of the expected
+     * type (the wrapper of the attribute binding)
+     */
+    void store(int index, Object value) {
+        byte kind = layout.kinds[index];
+        int slot = layout.slots[index];
+        if (kind == CompactFeatureLayout.OBJECT) {
+            objects[slot] = value;
+            return;
+        }
+
+        Class<?> binding = CompactFeatureLayout.WRAPPERS[kind];
+        if (value != null && !binding.isInstance(value)) {
+            value = Converters.convert(value, binding);
+        }
+        if (value == null) {
+            nulls[index] = true;
+        } else {
+            nulls[index] = false;
+            if (kind == CompactFeatureLayout.BOOLEAN) {
+                longs[slot] = ((Boolean) value).booleanValue() ? 1 : 0;
+            } else if (kind == CompactFeatureLayout.FLOAT || kind == CompactFeatureLayout.DOUBLE) {
+                doubles[slot] = ((Number) value).doubleValue();
+            } else {
+                longs[slot] = ((Number) value).longValue();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the attribute value is null
+     */
+    public boolean isNull(int index) {
+        load(index);
+        if (layout.kinds[index] == CompactFeatureLayout.OBJECT) {
+            return objects[layout.slots[index]] == null;
+        } else {
+            return nulls[index];
+        }
+    }
+
+    /**
+     * Returns the value of a numeric attribute without boxing it, zero if the value is null
+     *
+     * @throws IllegalArgumentException if the attribute is not a number nor a boolean
+     */
+    public long getLong(int index) {
+        load(index);
+        byte kind = layout.kinds[index];
+        int slot = layout.slots[index];
+        if (kind == CompactFeatureLayout.OBJECT) {
+            return toNumber(index, objects[slot]).longValue();
+        } else if (nulls[index]) {
+            return 0;
+        } else if (kind == CompactFeatureLayout.FLOAT || kind == CompactFeatureLayout.DOUBLE) {
+            return (long) doubles[slot];
+        } else {
+            return longs[slot];
+        }
+    }
+
+    /**
+     * Returns the value of a numeric attribute without boxing it, NaN if the value is null
+     *
+     * @throws IllegalArgumentException if the attribute is not a number nor a boolean
+     */
+    public double getDouble(int index) {
+        load(index);
+        byte kind = layout.kinds[index];
+        int slot = layout.slots[index];
+        if (kind == CompactFeatureLayout.OBJECT) {
+            Object value = objects[slot];
+            return value == null ? Double.NaN : toNumber(index, value).doubleValue();
+        } else if (nulls[index]) {
+            return Double.NaN;
+        } else if (kind == CompactFeatureLayout.FLOAT || kind == CompactFeatureLayout.DOUBLE) {
+            return doubles[slot];
+        } else {
+            return longs[slot];
+        }
+    }
+
+    private Number toNumber(int index, Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return (Number) value;
+        }
+        throw new IllegalArgumentException("Attribute "
+                + getFeatureType().getDescriptor(index).getLocalName() + " is not numeric");
+    }
+
+    /**
+     * Sets the value of a primitive attribute without boxing it
+     */
+    public void setLong(int index, long value) {
+        byte kind = layout.kinds[index];
+        if (kind == CompactFeatureLayout.OBJECT) {
+            setAttribute(index, value);
+        } else {
+            if (kind == CompactFeatureLayout.FLOAT || kind == CompactFeatureLayout.DOUBLE) {
+                doubles[layout.slots[index]] = value;
+            } else {
+                longs[layout.slots[index]] = value;
+            }
+            markSet(index);
+        }
+    }
+
+    /**
+     * Sets the value of a primitive attribute without boxing it
+     */
+    public void setDouble(int index, double value) {
+        byte kind = layout.kinds[index];
+        if (kind == CompactFeatureLayout.OBJECT) {
+            setAttribute(index, value);
+        } else {
+            if (kind == CompactFeatureLayout.FLOAT || kind == CompactFeatureLayout.DOUBLE) {
+                doubles[layout.slots[index]] = value;
+            } else {
+                longs[layout.slots[index]] = (long) value;
+            }
+            markSet(index);
+        }
+    }
+
+    private void markSet(int index) {
+        nulls[index] = false;
+        if (loaded != null) {
+            loaded[index] = true;
+        }
+    }
+
+    public CompactFeatureLayout getLayout() {
+        return layout;
+    }
+
+    public FeatureId getIdentifier() {
+        if (featureId == null && id != null) {
+            featureId = new FeatureIdImpl(id);
+        }
+        return featureId;
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public int getNumberOfAttributes() {
+        return nulls.length;
+    }
+
+    public Object getAttribute(int index) throws IndexOutOfBoundsException {
+        load(index);
+        byte kind = layout.kinds[index];
+        int slot = layout.slots[index];
+        if (kind == CompactFeatureLayout.OBJECT) {
+            return objects[slot];
+        } else if (nulls[index]) {
+            return null;
+        }
+        switch (kind) {
+        case CompactFeatureLayout.BOOLEAN:
+            return Boolean.valueOf(longs[slot] != 0);
+        case CompactFeatureLayout.BYTE:
+            return Byte.valueOf((byte) longs[slot]);
+        case CompactFeatureLayout.SHORT:
+            return Short.valueOf((short) longs[slot]);
+        case CompactFeatureLayout.INTEGER:
+            return Integer.valueOf((int) longs[slot]);
+        case CompactFeatureLayout.LONG:
+            return Long.valueOf(longs[slot]);
+        case CompactFeatureLayout.FLOAT:
+            return Float.valueOf((float) doubles[slot]);
+        default:
+            return Double.valueOf(doubles[slot]);
+        }
+    }
+
+    public Object getAttribute(String name) {
+        Integer idx = layout.index.get(name);
+        if (idx != null) {
+            return getAttribute(idx);
+        } else {
+            return null;
+        }
+    }
+
+    public Object getAttribute(Name name) {
+        return getAttribute(name.getLocalPart());
+    }
+
+    public int getAttributeCount() {
+        return nulls.length;
+    }
+
+    public List<Object> getAttributes() {
+        List<Object> result = new ArrayList<Object>(nulls.length);
+        for (int i = 0; i < nulls.length; i++) {
+            result.add(getAttribute(i));
+        }
+        return result;
+    }
+
+    public Object getDefaultGeometry() {
+        return layout.defaultGeometry >= 0 ? getAttribute(layout.defaultGeometry) : null;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return layout.featureType;
+    }
+
+    public SimpleFeatureType getType() {
+        return layout.featureType;
+    }
+
+    public void setAttribute(int index, Object value) throws IndexOutOfBoundsException {
+        // first do conversion
+        Object converted = Converters.convert(value, getFeatureType().getDescriptor(index)
+                .getType().getBinding());
+        store(index, converted);
+        if (loaded != null) {
+            loaded[index] = true;
+        }
+    }
+
+    public void setAttribute(String name, Object value) {
+        final Integer idx = layout.index.get(name);
+        if (idx == null) {
+            throw new IllegalAttributeException("Unknown attribute " + name);
+        }
+        setAttribute(idx.intValue(), value);
+    }
+
+    public void setAttribute(Name name, Object value) {
+        setAttribute(name.getLocalPart(), value);
+    }
+
+    public void setAttributes(List<Object> values) {
+        for (int i = 0; i < nulls.length; i++) {
+            setAttribute(i, values.get(i));
+        }
+    }
+
+    public void setAttributes(Object[] values) {
+        setAttributes(Arrays.asList(values));
+    }
+
+    public void setDefaultGeometry(Object geometry) {
+        if (layout.defaultGeometry >= 0) {
+            setAttribute(layout.defaultGeometry, geometry);
+        }
+    }
+
+    public BoundingBox getBounds() {
+        SimpleFeatureType featureType = getFeatureType();
+        Envelope bounds;
+        if (layout.threeD) {
+            // supporting 3D envelopes for 3D geometries
+            bounds = new ReferencedEnvelope3D(featureType.getCoordinateReferenceSystem());
+        } else {
+            bounds = new ReferencedEnvelope(featureType.getCoordinateReferenceSystem());
+        }
+
+        for (int i = 0; i < nulls.length; i++) {
+            if (layout.kinds[i] != CompactFeatureLayout.OBJECT) {
+                continue;
+            }
+            Object o = getAttribute(i);
+            if (o instanceof Geometry) {
+                Geometry g = (Geometry) o;
+                if (bounds.isNull()) {
+                    bounds.init(g.getEnvelopeInternal());
+                } else {
+                    bounds.expandToInclude(g.getEnvelopeInternal());
+                }
+            }
+        }
+
+        return (BoundingBox) bounds;
+    }
+
+    public GeometryAttribute getDefaultGeometryProperty() {
+        GeometryDescriptor geometryDescriptor = getFeatureType().getGeometryDescriptor();
+        GeometryAttribute geometryAttribute = null;
+        if (geometryDescriptor != null) {
+            Object defaultGeometry = getDefaultGeometry();
+            geometryAttribute = new GeometryAttributeImpl(defaultGeometry, geometryDescriptor,
+                    null);
+        }
+        return geometryAttribute;
+    }
+
+    public void setDefaultGeometryProperty(GeometryAttribute geometryAttribute) {
+        if (geometryAttribute != null) {
+            setDefaultGeometry(geometryAttribute.getValue());
+        } else {
+            setDefaultGeometry(null);
+        }
+    }
+
+    public Collection<Property> getProperties() {
+        return new AttributeList();
+    }
+
+    public Collection<Property> getProperties(Name name) {
+        return getProperties(name.getLocalPart());
+    }
+
+    public Collection<Property> getProperties(String name) {
+        final Integer idx = layout.index.get(name);
+        if (idx != null) {
+            // cast temporarily to a plain collection to avoid type problems with generics
+            Collection c = Collections.singleton(getProperty(idx.intValue()));
+            return c;
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    public Property getProperty(Name name) {
+        return getProperty(name.getLocalPart());
+    }
+
+    public Property getProperty(String name) {
+        final Integer idx = layout.index.get(name);
+        if (idx == null) {
+            return null;
+        } else {
+            return getProperty(idx.intValue());
+        }
+    }
+
+    Property getProperty(int index) {
+        if (getFeatureType().getDescriptor(index) instanceof GeometryDescriptor) {
+            return new GeometryAttribute(index);
+        } else {
+            return new Attribute(index);
+        }
+    }
+
+    public Collection<? extends Property> getValue() {
+        return getProperties();
+    }
+
+    public void setValue(Collection<Property> values) {
+        int i = 0;
+        for (Property p : values) {
+            setAttribute(i++, p.getValue());
+        }
+    }
+
+    public void setValue(Object newValue) {
+        setValue((Collection<Property>) newValue);
+    }
+
+    /**
+     * @see org.opengis.feature.Attribute#getDescriptor()
+     */
+    public AttributeDescriptor getDescriptor() {
+        return new AttributeDescriptorImpl(getFeatureType(), getFeatureType().getName(), 0,
+                Integer.MAX_VALUE, true, null);
+    }
+
+    /**
+     * @return same name than this feature's {@link SimpleFeatureType}
+     * @see org.opengis.feature.Property#getName()
+     */
+    public Name getName() {
+        return getFeatureType().getName();
+    }
+
+    public boolean isNillable() {
+        return true;
+    }
+
+    public Map<Object, Object> getUserData() {
+        if (userData == null) {
+            userData = new HashMap<Object, Object>();
+        }
+        return userData;
+    }
+
+    public void validate() {
+        for (int i = 0; i < nulls.length; i++) {
+            AttributeDescriptor descriptor = getType().getDescriptor(i);
+            Types.validate(descriptor, getAttribute(i));
+        }
+    }
+
+    public int hashCode() {
+        return (id == null ? 0 : id.hashCode()) * getFeatureType().hashCode();
+    }
+
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof CompactSimpleFeature)) {
+            return false;
+        }
+
+        CompactSimpleFeature other = (CompactSimpleFeature) obj;
+        if (!Utilities.equals(id, other.getID())) {
+            return false;
+        }
+        if (!other.getFeatureType().equals(getFeatureType())) {
+            return false;
+        }
+        for (int i = 0; i < nulls.length; i++) {
+            if (!Utilities.equals(getAttribute(i), other.getAttribute(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toString() {
+        StringBuffer sb = new StringBuffer("CompactSimpleFeature:");
+        sb.append(getType().getName().getLocalPart());
+        sb.append("=");
+        sb.append(getValue());
+        return sb.toString();
+    }
+
+    /**
+     * Live collection backed directly on the feature
+     */
+    class AttributeList extends AbstractList<Property> {
+
+        public Property get(int index) {
+            return getProperty(index);
+        }
+
+        public Property set(int index, Property element) {
+            setAttribute(index, element.getValue());
+            return null;
+        }
+
+        public int size() {
+            return nulls.length;
+        }
+    }
+
+    /**
+     * Attribute that delegates directly to the feature
+     */
+    class Attribute implements org.opengis.feature.Attribute {
+        int index;
+
+        Attribute(int index) {
+            this.index = index;
+        }
+
+        public Identifier getIdentifier() {
+            return null;
+        }
+
+        public AttributeDescriptor getDescriptor() {
+            return getFeatureType().getDescriptor(index);
+        }
+
+        public AttributeType getType() {
+            return getFeatureType().getType(index);
+        }
+
+        public Name getName() {
+            return getDescriptor().getName();
+        }
+
+        @SuppressWarnings("unchecked")
+        public Map<Object, Object> getUserData() {
+            // lazily create the user data holder
+            if (attributeUserData == null) {
+                attributeUserData = new HashMap[nulls.length];
+            }
+            // lazily create the attribute user data
+            if (attributeUserData[index] == null) {
+                attributeUserData[index] = new HashMap<Object, Object>();
+            }
+            return attributeUserData[index];
+        }
+
+        public Object getValue() {
+            return getAttribute(index);
+        }
+
+        public boolean isNillable() {
+            return getDescriptor().isNillable();
+        }
+
+        public void setValue(Object newValue) {
+            setAttribute(index, newValue);
+        }
+
+        public int hashCode() {
+            Object value = getValue();
+            return 37 * getDescriptor().hashCode() + (37 * (value == null ? 0 : value.hashCode()));
+        }
+
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Attribute)) {
+                return false;
+            }
+            Attribute other = (Attribute) obj;
+            if (!Utilities.equals(getDescriptor(), other.getDescriptor())) {
+                return false;
+            }
+            return Utilities.deepEquals(getValue(), other.getValue());
+        }
+
+        public void validate() {
+            Types.validate(getDescriptor(), getValue());
+        }
+
+        public String toString() {
+            return "CompactSimpleFeature.Attribute: " + getDescriptor().getLocalName() + "="
+                    + getValue();
+        }
+    }
+
+    class GeometryAttribute extends Attribute implements org.opengis.feature.GeometryAttribute {
+
+        GeometryAttribute(int index) {
+            super(index);
+        }
+
+        @Override
+        public GeometryType getType() {
+            return (GeometryType) super.getType();
+        }
+
+        @Override
+        public GeometryDescriptor getDescriptor() {
+            return (GeometryDescriptor) super.getDescriptor();
+        }
+
+        public BoundingBox getBounds() {
+            ReferencedEnvelope bounds = new ReferencedEnvelope(getFeatureType()
+                    .getCoordinateReferenceSystem());
+            Object value = getAttribute(index);
+            if (value instanceof Geometry) {
+                bounds.init(((Geometry) value).getEnvelopeInternal());
+            }
+            return bounds;
+        }
+
+        public void setBounds(BoundingBox bounds) {
+            // do nothing, this property is strictly derived
+        }
+
+        @Override
+        public int hashCode() {
+            return 17 * super.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof GeometryAttribute)) {
+                return false;
+            }
+            return super.equals(obj);
+        }
+    }
+}
@@ -35,7 +35,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class AverageVisitor implements FeatureCalc {
+public class AverageVisitor implements MergeableFeatureCalc {
     private Expression expr;
 
     /**
@@ -151,6 +151,36 @@ public class AverageVisitor implements FeatureCalc {
         isOptimized = false;
     }
 
+    public MergeableFeatureCalc createPartial() {
+        return new AverageVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        AverageVisitor other = (AverageVisitor) partial;
+        if (other.strategy == null) {
+            return;
+        }
+        if (isOptimized || other.isOptimized) {
+            throw new IllegalArgumentException(
+                    "Optimized average results do not carry the count and cannot be merged.");
+        }
+        Number otherSum = (Number) other.strategy.getSum();
+        if (strategy == null) {
+            strategy = createStrategy(otherSum.getClass());
+            strategy.set(other.strategy.getCount(), otherSum);
+        } else {
+            Number sum = (Number) strategy.getSum();
+            Object total;
+            if (sum instanceof Double || sum instanceof Float || otherSum instanceof Double
+                    || otherSum instanceof Float) {
+                total = new Double(sum.doubleValue() + otherSum.doubleValue());
+            } else {
+                total = new Long(sum.longValue() + otherSum.longValue());
+            }
+            strategy.set(strategy.getCount() + other.strategy.getCount(), total);
+        }
+    }
+
     /**
      * Returns a CalcResult object (containing the Average)
      *
@@ -0,0 +1,205 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.factory.CommonFactoryFinder;
+import org.opengis.feature.Feature;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.expression.Expression;
+
+/**
+ * Counts the distinct non null values of an expression in a collection.
+ * <p>
+ * By default the values are kept in a set, like {@link UniqueVisitor} does, and the count is
+ * exact. With {@link #setRelativeError(double)} the visitor switches to an approximate mode, in
+ * which the values are summarized by a {@link HyperLogLog} sketch using a fixed amount of memory
+ * regardless of the number of distinct values.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class DistinctCountVisitor implements MergeableFeatureCalc {
+    private Expression expr;
+
+    private Set set = new HashSet();
+
+    /**
+     * The sketch used in approximate mode, null in exact mode
+     */
+    private HyperLogLog sketch;
+
+    public DistinctCountVisitor(String attributeTypeName) {
+        FilterFactory factory = CommonFactoryFinder.getFilterFactory(null);
+        expr = factory.property(attributeTypeName);
+    }
+
+    public DistinctCountVisitor(Expression expr) {
+        this.expr = expr;
+    }
+
+    public void init(SimpleFeatureCollection collection) {
+        // do nothing
+    }
+
+    public void visit(Feature feature) {
+        Object value = expr.evaluate(feature);
+        if (value != null) {
+            if (sketch != null) {
+                sketch.add(value);
+            } else {
+                set.add(value);
+            }
+        }
+    }
+
+    public Expression getExpression() {
+        return expr;
+    }
+
+    /**
+     * Switches between the exact and the approximate mode, resetting the visitor.
+     *
+     * @param relativeError The typical relative error allowed in approximate mode, used to
+     *        size the {@link HyperLogLog} sketch, or 0 to count exactly
+     */
+    public void setRelativeError(double relativeError) {
+        if (relativeError > 0) {
+            sketch = new HyperLogLog(HyperLogLog.precision(relativeError));
+        } else {
+            sketch = null;
+        }
+        set = new HashSet();
+    }
+
+    /**
+     * Returns the typical relative error of the count, 0 in exact mode
+     */
+    public double getRelativeError() {
+        return sketch != null ? sketch.getRelativeError() : 0;
+    }
+
+    /**
+     * Returns the number of distinct values visited so far
+     */
+    public long getCount() {
+        return sketch != null ? sketch.cardinality() : set.size();
+    }
+
+    public void reset() {
+        set = new HashSet();
+        if (sketch != null) {
+            sketch = new HyperLogLog(sketch.getPrecision());
+        }
+    }
+
+    public MergeableFeatureCalc createPartial() {
+        DistinctCountVisitor partial = new DistinctCountVisitor(expr);
+        if (sketch != null) {
+            partial.sketch = new HyperLogLog(sketch.getPrecision());
+        }
+        return partial;
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        DistinctCountVisitor other = (DistinctCountVisitor) partial;
+        if ((sketch == null) != (other.sketch == null)) {
+            throw new IllegalArgumentException(
+                    "Exact and approximate distinct count visitors cannot be merged.");
+        }
+        if (sketch != null) {
+            sketch.merge(other.sketch);
+        } else {
+            set.addAll(other.set);
+        }
+    }
+
+    public CalcResult getResult() {
+        if (sketch != null) {
+            if (sketch.cardinality() == 0) {
+                return CalcResult.NULL_RESULT;
+            }
+            return new DistinctCountResult(sketch.copy());
+        }
+        if (set.isEmpty()) {
+            return CalcResult.NULL_RESULT;
+        }
+        return new DistinctCountResult(new HashSet(set));
+    }
+
+    public static class DistinctCountResult extends AbstractCalcResult {
+        private Set set;
+
+        private HyperLogLog sketch;
+
+        public DistinctCountResult(Set set) {
+            this.set = set;
+        }
+
+        public DistinctCountResult(HyperLogLog sketch) {
+            this.sketch = sketch;
+        }
+
+        /**
+         * Returns the count as a {@link Long}
+         */
+        public Object getValue() {
+            return Long.valueOf(sketch != null ? sketch.cardinality() : set.size());
+        }
+
+        public boolean isCompatible(CalcResult targetResults) {
+            return targetResults instanceof DistinctCountResult
+                    || targetResults == CalcResult.NULL_RESULT;
+        }
+
+        public CalcResult merge(CalcResult resultsToAdd) {
+            if (!isCompatible(resultsToAdd)) {
+                throw new IllegalArgumentException("Parameter is not a compatible type");
+            }
+
+            if (resultsToAdd == CalcResult.NULL_RESULT) {
+                return this;
+            }
+
+            DistinctCountResult other = (DistinctCountResult) resultsToAdd;
+            if (sketch == null && other.sketch == null) {
+                Set merged = new HashSet(set);
+                merged.addAll(other.set);
+                return new DistinctCountResult(merged);
+            }
+
+            // approximate results absorb the exact ones
+            HyperLogLog merged;
+            if (sketch != null && other.sketch != null) {
+                merged = sketch.copy();
+                merged.merge(other.sketch);
+            } else {
+                merged = sketch != null ? sketch.copy() : other.sketch.copy();
+                Set values = sketch != null ? other.set : set;
+                for (Object value : values) {
+                    merged.add(value);
+                }
+            }
+            return new DistinctCountResult(merged);
+        }
+    }
+}
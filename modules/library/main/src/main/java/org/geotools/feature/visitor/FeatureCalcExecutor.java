@@ -0,0 +1,364 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.opengis.feature.Feature;
+import org.opengis.util.ProgressListener;
+
+/**
+ * Runs a {@link MergeableFeatureCalc} over feature collections using several threads, each one
+ * working on its own partial visitor, and merges the partial results back into the visitor
+ * once done. Two strategies are available:
+ * <ul>
+ * <li>{@link #visit(List, MergeableFeatureCalc, ProgressListener)} visits a list of partitions
+ * of the data, each one in its own task, through {@link FeatureCollection#accepts}, so that the
+ * store optimizations for the visitor still apply to each partition</li>
+ * <li>{@link #visit(FeatureCollection, MergeableFeatureCalc, ProgressListener)} reads a single
+ * collection in the calling thread, and hands batches of features to the worker threads, which
+ * pays off when evaluating the visitor is more expensive than reading the features. Whenever
+ * the workers fall behind, or do not get to run at all because the pool is busy, the calling
+ * thread visits the batches itself</li>
+ * </ul>
+ * The threads come from the pool set with {@link #setThreadPool(ExecutorService)}, if none is
+ * set a pool of daemon threads sized on the available processors, shared by all the executors,
+ * is used.
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class FeatureCalcExecutor {
+
+    /**
+     * The default number of features handed to a worker thread at a time
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * How long an idle worker waits for a batch before checking whether the reading is over
+     */
+    static final long POLL_TIMEOUT = 100;
+
+    /**
+     * The thread pool shared by the executors that have not been given one, created on first use
+     */
+    private static ExecutorService defaultThreadPool;
+
+    private ExecutorService threadPool;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Sets the thread pool used to run the partial visitors. If not set a pool shared by all the
+     * executors is used.
+     */
+    public void setThreadPool(ExecutorService threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    public ExecutorService getThreadPool() {
+        return threadPool;
+    }
+
+    /**
+     * Returns the thread pool shared by the executors that have not been given one
+     */
+    static synchronized ExecutorService getDefaultThreadPool() {
+        if (defaultThreadPool == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            defaultThreadPool = Executors.newFixedThreadPool(Runtime.getRuntime()
+                    .availableProcessors(), new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    // daemon threads, the pool is never shut down
+                    Thread t = new Thread(r, "GeoTools-FeatureCalc-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return defaultThreadPool;
+    }
+
+    private ExecutorService getPool() {
+        return threadPool != null ? threadPool : getDefaultThreadPool();
+    }
+
+    /**
+     * Sets the number of partial visitors run in parallel on a single collection, defaults to
+     * the number of available processors
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of features handed to a worker thread at a time when visiting a single
+     * collection
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Visits each partition with its own partial visitor, in parallel, and merges the partial
+     * results into the visitor, in the order of the partitions.
+     *
+     * @param partitions The partitions of the data, which should not overlap
+     * @param visitor The visitor receiving the merged result
+     * @param progress Used to cancel the visit, can be null
+     * @throws IOException If visiting a partition failed
+     */
+    public void visit(List<? extends FeatureCollection<?, ?>> partitions,
+            MergeableFeatureCalc visitor, final ProgressListener progress) throws IOException {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        List<Callable<MergeableFeatureCalc>> tasks = new ArrayList<Callable<MergeableFeatureCalc>>();
+        for (final FeatureCollection<?, ?> partition : partitions) {
+            final MergeableFeatureCalc partial = visitor.createPartial();
+            tasks.add(new Callable<MergeableFeatureCalc>() {
+
+                public MergeableFeatureCalc call() throws Exception {
+                    if (progress == null || !progress.isCanceled()) {
+                        partition.accepts(partial, null);
+                    }
+                    return partial;
+                }
+            });
+        }
+
+        List<MergeableFeatureCalc> partials = run(tasks);
+        if (progress != null && progress.isCanceled()) {
+            return;
+        }
+        for (MergeableFeatureCalc partial : partials) {
+            visitor.merge(partial);
+        }
+    }
+
+    /**
+     * Reads the collection in the calling thread and visits its features in batches, spread
+     * over a number of partial visitors equal to the parallelism, plus one visiting in the
+     * calling thread the batches the others could not take yet, then merges the partial results
+     * into the visitor.
+     *
+     * @param collection The collection to be visited
+     * @param visitor The visitor receiving the merged result
+     * @param progress Used to cancel the visit, can be null
+     * @throws IOException If reading or visiting the features failed
+     */
+    public void visit(FeatureCollection<?, ?> collection, MergeableFeatureCalc visitor,
+            ProgressListener progress) throws IOException {
+        final BlockingQueue<List<Feature>> queue = new ArrayBlockingQueue<List<Feature>>(
+                parallelism * 2);
+        final List<Feature> end = Collections.emptyList();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        List<Callable<MergeableFeatureCalc>> tasks = new ArrayList<Callable<MergeableFeatureCalc>>();
+        final List<AtomicBoolean> claims = new ArrayList<AtomicBoolean>();
+        for (int i = 0; i < parallelism; i++) {
+            final MergeableFeatureCalc partial = visitor.createPartial();
+            // claimed by the task when it starts, or by the caller if it never did
+            final AtomicBoolean claimed = new AtomicBoolean(false);
+            claims.add(claimed);
+            tasks.add(new Callable<MergeableFeatureCalc>() {
+
+                public MergeableFeatureCalc call() throws Exception {
+                    if (!claimed.compareAndSet(false, true)) {
+                        // the visit is over already
+                        return null;
+                    }
+                    try {
+                        while (true) {
+                            List<Feature> batch = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                            if (batch == end || (batch == null && done.get())) {
+                                return partial;
+                            } else if (batch != null) {
+                                visit(partial, batch);
+                            }
+                        }
+                    } catch (Exception e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                }
+            });
+        }
+
+        ExecutorService pool = getPool();
+        List<Future<MergeableFeatureCalc>> futures = new ArrayList<Future<MergeableFeatureCalc>>();
+        for (Callable<MergeableFeatureCalc> task : tasks) {
+            futures.add(pool.submit(task));
+        }
+
+        // read the features and hand them to the workers, never blocking on them: if they
+        // cannot keep up, or the pool is busy with other work, visit in the calling thread
+        MergeableFeatureCalc local = visitor.createPartial();
+        try {
+            FeatureIterator<?> it = collection.features();
+            try {
+                List<Feature> batch = new ArrayList<Feature>(batchSize);
+                while (it.hasNext() && !failed.get()
+                        && (progress == null || !progress.isCanceled())) {
+                    batch.add(it.next());
+                    if (batch.size() == batchSize) {
+                        if (!queue.offer(batch)) {
+                            visit(local, batch);
+                        }
+                        batch = new ArrayList<Feature>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty() && !queue.offer(batch)) {
+                    visit(local, batch);
+                }
+
+                // help with the batches still queued
+                while (!failed.get() && (batch = queue.poll()) != null) {
+                    visit(local, batch);
+                }
+            } finally {
+                it.close();
+                done.set(true);
+                for (int i = 0; i < tasks.size(); i++) {
+                    queue.offer(end);
+                }
+            }
+        } catch (RuntimeException e) {
+            started(futures, claims);
+            throw e;
+        }
+
+        // the workers that did not start yet are not needed anymore, wait for the others
+        List<Future<MergeableFeatureCalc>> started = started(futures, claims);
+        try {
+            List<MergeableFeatureCalc> partials = collect(started);
+            if (progress != null && progress.isCanceled()) {
+                return;
+            }
+            visitor.merge(local);
+            for (MergeableFeatureCalc partial : partials) {
+                visitor.merge(partial);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while visiting the features", e);
+        }
+    }
+
+    static void visit(MergeableFeatureCalc partial, List<Feature> batch) {
+        for (Feature f : batch) {
+            partial.visit(f);
+        }
+    }
+
+    /**
+     * Claims the tasks that did not start yet, so that they won't, and returns the futures of
+     * the ones that did, whose partial results must be merged
+     */
+    private List<Future<MergeableFeatureCalc>> started(List<Future<MergeableFeatureCalc>> futures,
+            List<AtomicBoolean> claims) {
+        List<Future<MergeableFeatureCalc>> started = new ArrayList<Future<MergeableFeatureCalc>>();
+        for (int i = 0; i < futures.size(); i++) {
+            if (claims.get(i).compareAndSet(false, true)) {
+                // never started, and it will do nothing if it ever does
+                futures.get(i).cancel(false);
+            } else {
+                started.add(futures.get(i));
+            }
+        }
+        return started;
+    }
+
+    private List<MergeableFeatureCalc> run(List<Callable<MergeableFeatureCalc>> tasks)
+            throws IOException {
+        ExecutorService pool = getPool();
+        try {
+            List<Future<MergeableFeatureCalc>> futures = new ArrayList<Future<MergeableFeatureCalc>>();
+            for (Callable<MergeableFeatureCalc> task : tasks) {
+                futures.add(pool.submit(task));
+            }
+            return collect(futures);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while visiting the features", e);
+        }
+    }
+
+    /**
+     * Waits for all the tasks, and reports the first failure
+     */
+    private List<MergeableFeatureCalc> collect(List<Future<MergeableFeatureCalc>> futures)
+            throws IOException, InterruptedException {
+        List<MergeableFeatureCalc> partials = new ArrayList<MergeableFeatureCalc>();
+        Throwable failure = null;
+        for (Future<MergeableFeatureCalc> future : futures) {
+            try {
+                partials.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IOException("Failed to visit the features", failure);
+        }
+        return partials;
+    }
+}
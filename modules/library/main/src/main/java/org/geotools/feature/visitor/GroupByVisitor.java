@@ -0,0 +1,273 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Splits the features in groups sharing the same values for a list of expressions, and runs a
+ * copy of an aggregate visitor on each group, the equivalent of a SQL
+ * <code>SELECT g1, g2, aggregate(att) FROM table GROUP BY g1, g2</code>.
+ * <p>
+ * The groups are kept in a hash map keyed by the list of group values, each group owning a
+ * partial visitor created by {@link MergeableFeatureCalc#createPartial()}, so any mergeable
+ * visitor can be grouped. An optional <code>having</code> filter selects the groups returned by
+ * {@link #getResult()}: it is evaluated against a feature made of the group values, named after
+ * the grouping properties (or <code>group0</code>, <code>group1</code>, ... for other
+ * expressions), and the aggregate value, named {@value #AGGREGATE}.
+ * </p>
+ * <p>
+ * Stores able to compute the groups natively, like the JDBC ones, fill the groups using
+ * {@link #getGroupVisitor(List)} instead of visiting the features.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class GroupByVisitor implements MergeableFeatureCalc {
+
+    /**
+     * The name of the aggregate value in the <code>having</code> filter
+     */
+    public static final String AGGREGATE = "aggregate";
+
+    private List<Expression> groupBy;
+
+    private MergeableFeatureCalc aggregate;
+
+    private Filter having;
+
+    private Map<List<Object>, MergeableFeatureCalc> groups = new HashMap<List<Object>, MergeableFeatureCalc>();
+
+    public GroupByVisitor(List<Expression> groupBy, MergeableFeatureCalc aggregate) {
+        this(groupBy, aggregate, null);
+    }
+
+    /**
+     * Builds a new visitor
+     *
+     * @param groupBy The expressions whose values identify a group, at least one
+     * @param aggregate The visitor computed on each group, used as a template and never visited
+     * @param having The filter selecting the groups in the result, or null to return them all
+     */
+    public GroupByVisitor(List<Expression> groupBy, MergeableFeatureCalc aggregate, Filter having) {
+        if (groupBy == null || groupBy.isEmpty()) {
+            throw new IllegalArgumentException("At least one group by expression is required");
+        }
+        if (aggregate == null) {
+            throw new IllegalArgumentException("The aggregate visitor is required");
+        }
+        this.groupBy = Collections.unmodifiableList(new ArrayList<Expression>(groupBy));
+        this.aggregate = aggregate;
+        this.having = having;
+    }
+
+    public void init(SimpleFeatureCollection collection) {
+        // do nothing
+    }
+
+    public void visit(Feature feature) {
+        List<Object> key;
+        if (groupBy.size() == 1) {
+            key = Collections.singletonList(groupBy.get(0).evaluate(feature));
+        } else {
+            Object[] values = new Object[groupBy.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = groupBy.get(i).evaluate(feature);
+            }
+            key = Arrays.asList(values);
+        }
+        getGroupVisitor(key).visit(feature);
+    }
+
+    /**
+     * Returns the visitor of the group with the given values, creating it if missing
+     *
+     * @param key The group values, in the same order as the group by expressions
+     */
+    public MergeableFeatureCalc getGroupVisitor(List<Object> key) {
+        MergeableFeatureCalc visitor = groups.get(key);
+        if (visitor == null) {
+            if (key.size() != groupBy.size()) {
+                throw new IllegalArgumentException("Expected " + groupBy.size()
+                        + " group values, got " + key);
+            }
+            visitor = aggregate.createPartial();
+            groups.put(key, visitor);
+        }
+        return visitor;
+    }
+
+    public List<Expression> getGroupByExpressions() {
+        return groupBy;
+    }
+
+    public MergeableFeatureCalc getAggregateVisitor() {
+        return aggregate;
+    }
+
+    public Filter getHaving() {
+        return having;
+    }
+
+    /**
+     * Returns the number of groups found so far, before applying the <code>having</code> filter
+     */
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    public void reset() {
+        groups = new HashMap<List<Object>, MergeableFeatureCalc>();
+    }
+
+    public MergeableFeatureCalc createPartial() {
+        return new GroupByVisitor(groupBy, aggregate, having);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        GroupByVisitor other = (GroupByVisitor) partial;
+        for (Map.Entry<List<Object>, MergeableFeatureCalc> entry : other.groups.entrySet()) {
+            MergeableFeatureCalc visitor = groups.get(entry.getKey());
+            if (visitor == null) {
+                groups.put(entry.getKey(), entry.getValue());
+            } else {
+                visitor.merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the i-th group value in the <code>having</code> filter
+     */
+    public String getGroupName(int i) {
+        Expression expression = groupBy.get(i);
+        if (expression instanceof PropertyName) {
+            return ((PropertyName) expression).getPropertyName();
+        }
+        return "group" + i;
+    }
+
+    public CalcResult getResult() {
+        if (groups.isEmpty()) {
+            return CalcResult.NULL_RESULT;
+        }
+
+        SimpleFeatureBuilder builder = null;
+        if (having != null && having != Filter.INCLUDE) {
+            SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+            tb.setName("groups");
+            for (int i = 0; i < groupBy.size(); i++) {
+                tb.add(getGroupName(i), Object.class);
+            }
+            tb.add(AGGREGATE, Object.class);
+            builder = new SimpleFeatureBuilder(tb.buildFeatureType());
+        }
+
+        Map<List<Object>, CalcResult> results = new LinkedHashMap<List<Object>, CalcResult>();
+        for (Map.Entry<List<Object>, MergeableFeatureCalc> entry : groups.entrySet()) {
+            CalcResult result = entry.getValue().getResult();
+            if (builder != null) {
+                builder.addAll(entry.getKey());
+                builder.add(result.getValue());
+                SimpleFeature group = builder.buildFeature(null);
+                if (!having.evaluate(group)) {
+                    continue;
+                }
+            }
+            results.put(entry.getKey(), result);
+        }
+        return new GroupByResult(results);
+    }
+
+    /**
+     * The result of a group by, whose value is a map from the group values to the aggregate
+     * values
+     */
+    public static class GroupByResult extends AbstractCalcResult {
+        private Map<List<Object>, CalcResult> results;
+
+        public GroupByResult(Map<List<Object>, CalcResult> results) {
+            this.results = results;
+        }
+
+        /**
+         * Returns the results of each group, keyed by the group values
+         */
+        public Map<List<Object>, CalcResult> getGroupResults() {
+            return results;
+        }
+
+        /**
+         * Returns a {@link Map} from the group values to the aggregate values
+         */
+        public Object getValue() {
+            Map<List<Object>, Object> values = new LinkedHashMap<List<Object>, Object>();
+            for (Map.Entry<List<Object>, CalcResult> entry : results.entrySet()) {
+                values.put(entry.getKey(), entry.getValue().getValue());
+            }
+            return values;
+        }
+
+        public boolean isCompatible(CalcResult targetResults) {
+            return targetResults instanceof GroupByResult
+                    || targetResults == CalcResult.NULL_RESULT;
+        }
+
+        /**
+         * Merges the results group by group. The groups discarded by a <code>having</code>
+         * filter are not part of either result, so the merge is exact only when no such filter
+         * is used.
+         */
+        public CalcResult merge(CalcResult resultsToAdd) {
+            if (!isCompatible(resultsToAdd)) {
+                throw new IllegalArgumentException("Parameter is not a compatible type");
+            }
+
+            if (resultsToAdd == CalcResult.NULL_RESULT) {
+                return this;
+            }
+
+            Map<List<Object>, CalcResult> merged = new LinkedHashMap<List<Object>, CalcResult>(
+                    results);
+            for (Map.Entry<List<Object>, CalcResult> entry : ((GroupByResult) resultsToAdd).results
+                    .entrySet()) {
+                CalcResult current = merged.get(entry.getKey());
+                merged.put(entry.getKey(), current == null ? entry.getValue() : current
+                        .merge(entry.getValue()));
+            }
+            return new GroupByResult(merged);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+/**
+ * Estimates the number of distinct values in a stream using the HyperLogLog algorithm by
+ * Flajolet et al., in a fixed amount of memory: 2<sup>precision</sup> bytes, for a typical
+ * relative error of <code>1.04 / sqrt(2<sup>precision</sup>)</code> (about 0.8% with the
+ * default precision of 14, using 16KB). Small cardinalities are estimated with linear counting,
+ * which is close to exact.
+ * <p>
+ * Values are hashed to 64 bits: strings and numbers with a hash computed from their content,
+ * other objects by mixing their {@link Object#hashCode()}. Sketches with the same precision can
+ * be merged, the result being the same as if all the values had been added to a single sketch.
+ * This class is not thread safe.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class HyperLogLog {
+
+    /**
+     * The default precision
+     */
+    public static final int DEFAULT_PRECISION = 14;
+
+    static final int MIN_PRECISION = 4;
+
+    static final int MAX_PRECISION = 18;
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    /**
+     * Creates a new sketch
+     *
+     * @param precision The number of bits used to pick a register, between 4 and 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION
+                    + " and " + MAX_PRECISION + ", was " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Returns the smallest precision whose typical relative error does not exceed the given one
+     */
+    public static int precision(double relativeError) {
+        if (!(relativeError > 0)) {
+            throw new IllegalArgumentException("The relative error must be positive, was "
+                    + relativeError);
+        }
+        double m = Math.pow(1.04 / relativeError, 2);
+        int precision = (int) Math.ceil(Math.log(m) / Math.log(2));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Returns the typical relative error of the estimates
+     */
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * Adds a value to the sketch, null values are ignored
+     */
+    public void add(Object value) {
+        if (value != null) {
+            addHash(hash(value));
+        }
+    }
+
+    /**
+     * Adds a value already hashed to 64 well distributed bits
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the guard bit bounds the rank to 64 - precision + 1
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Merges the content of another sketch into this one
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with different precisions, "
+                    + precision + " and " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Returns a new sketch with the same content as this one
+     */
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    /**
+     * Returns the estimated number of distinct values added to the sketch
+     */
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            sum += 1d / (1L << registers[i]);
+            if (registers[i] == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+        case 16:
+            return 0.673;
+        case 32:
+            return 0.697;
+        case 64:
+            return 0.709;
+        default:
+            return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    /**
+     * Hashes a value to 64 bits. Integral numbers are hashed by value, so that an Integer and a
+     * Long with the same value are counted once.
+     */
+    static long hash(Object value) {
+        long h;
+        if (value instanceof CharSequence) {
+            // FNV-1a over the chars
+            CharSequence cs = (CharSequence) value;
+            h = 0xcbf29ce484222325L;
+            for (int i = 0; i < cs.length(); i++) {
+                h ^= cs.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            h = Double.doubleToLongBits(d == 0 ? 0d : d);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            h = ((Number) value).longValue();
+        } else {
+            h = value.hashCode();
+        }
+        return mix(h);
+    }
+
+    /**
+     * The MurmurHash3 64 bit finalizer, spreads the entropy over all the bits
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog[precision=" + precision + ", cardinality=" + cardinality() + "]";
+    }
+}
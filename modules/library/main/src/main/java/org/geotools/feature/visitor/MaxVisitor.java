@@ -34,7 +34,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class MaxVisitor implements FeatureCalc {
+public class MaxVisitor implements MergeableFeatureCalc {
     private Expression expr;
     Comparable maxvalue;
     Comparable curvalue;
@@ -141,6 +141,18 @@ public class MaxVisitor implements FeatureCalc {
         this.countNull = 0;
     }
 
+    public MergeableFeatureCalc createPartial() {
+        return new MaxVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        MaxVisitor other = (MaxVisitor) partial;
+        if (other.visited && (!visited || other.maxvalue.compareTo(maxvalue) > 0)) {
+            maxvalue = other.maxvalue;
+            visited = true;
+        }
+    }
+
     public Expression getExpression() {
         return expr;
     }
@@ -30,6 +30,12 @@ import org.opengis.filter.expression.Expression;
 
 /**
  * Calculates the median of an attribute in all features of a collection
+ * <p>
+ * By default all the values are kept in memory and sorted to find the exact median. For large
+ * collections of numbers the visitor can be switched to an approximate mode with
+ * {@link #setCompression(double)}, in which the values are summarized in a {@link TDigest}
+ * using bounded memory.
+ * </p>
  *
  * @author Cory Horner, Refractions
  *
@@ -38,7 +44,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class MedianVisitor implements FeatureCalc {
+public class MedianVisitor implements MergeableFeatureCalc {
     private Expression expr;
     private List list = new ArrayList();
     /**
@@ -49,6 +55,10 @@ public class MedianVisitor implements FeatureCalc {
 	 * takes priority over list.
 	 */
     private Object median = null;
+    /**
+     * The digest summarizing the values in approximate mode, null in exact mode
+     */
+    private TDigest digest;
 
     public MedianVisitor(String attributeTypeName) {
         FilterFactory factory = CommonFactoryFinder.getFilterFactory(null);
@@ -83,7 +93,16 @@ public class MedianVisitor implements FeatureCalc {
          * Visitor function
          */
         Object result = expr.evaluate(feature);
-        if (result instanceof Comparable) {
+        if (digest != null) {
+            if (result instanceof Number) {
+                double value = ((Number) result).doubleValue();
+                if (!Double.isNaN(value)) {
+                    digest.add(value);
+                }
+            } else if (result != null) {
+                throw new IllegalStateException("Expression is not numeric, the approximate median cannot be computed!");
+            }
+        } else if (result instanceof Comparable) {
             Comparable value = (Comparable) result;
             list.add(value);
         } else {
@@ -94,6 +113,25 @@ public class MedianVisitor implements FeatureCalc {
     public Expression getExpression() {
         return expr;
     }
+
+    /**
+     * Switches between the exact and the approximate mode, resetting the visitor.
+     * 
+     * @param compression The compression of the {@link TDigest} summarizing the values in
+     *        approximate mode, the higher the more accurate (see
+     *        {@link TDigest#DEFAULT_COMPRESSION}), or 0 to compute the exact median
+     */
+    public void setCompression(double compression) {
+        reset();
+        this.digest = compression > 0 ? new TDigest(compression) : null;
+    }
+
+    /**
+     * Returns the compression used in approximate mode, or 0 in exact mode
+     */
+    public double getCompression() {
+        return digest != null ? digest.getCompression() : 0;
+    }
     
     /**
      * Return the median of all features in the collection
@@ -102,6 +140,12 @@ public class MedianVisitor implements FeatureCalc {
 		if (median != null) {
 			//median was overwritten by an optimization
 			return median;
+		} else if (digest != null) {
+		    if (digest.getCount() == 0) {
+		        throw new IllegalStateException(
+                        "Must visit before median value is ready!");
+		    }
+		    return digest.quantile(0.5);
 		} else {
 			//we're got a list of items, determine the median...
 			Object newMedian = findMedian(list);
@@ -119,12 +163,42 @@ public class MedianVisitor implements FeatureCalc {
     public void reset() {
         this.list.clear();
         this.median = null;
+        if (digest != null) {
+            digest = new TDigest(digest.getCompression());
+        }
+    }
+
+    public MergeableFeatureCalc createPartial() {
+        MedianVisitor partial = new MedianVisitor(expr);
+        partial.setCompression(getCompression());
+        return partial;
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        MedianVisitor other = (MedianVisitor) partial;
+        if (median != null || other.median != null) {
+            throw new IllegalArgumentException("Optimized median results cannot be merged.");
+        }
+        if ((digest == null) != (other.digest == null)) {
+            throw new IllegalArgumentException(
+                    "Exact and approximate median visitors cannot be merged.");
+        }
+        if (digest != null) {
+            digest.merge(other.digest);
+        } else {
+            list.addAll(other.list);
+        }
     }
 
     public CalcResult getResult() {
 		if (median != null) {
 			// median was overwritten by an optimization
 			return new MedianResult(median);
+		} else if (digest != null) {
+		    if (digest.getCount() == 0) {
+		        return CalcResult.NULL_RESULT;
+		    }
+		    return new MedianResult(digest.copy());
 		} else if (list.size() < 1) {
 			// no items in the list
             return CalcResult.NULL_RESULT;
@@ -151,6 +225,10 @@ public class MedianVisitor implements FeatureCalc {
 		 * not. This var takes priority over list.
 		 */
         private Object median;
+        /**
+         * In approximate mode the digest of the values, used instead of the list
+         */
+        private TDigest digest;
 
         public MedianResult(List newList) {
             this.list = newList;
@@ -161,6 +239,22 @@ public class MedianVisitor implements FeatureCalc {
             this.list = null;
             this.median = median;
         }
+
+        /**
+         * Creates a result for the approximate median of the values summarized by the digest
+         */
+        public MedianResult(TDigest digest) {
+            this.list = null;
+            this.median = null;
+            this.digest = digest;
+        }
+
+        /**
+         * Returns the digest of the values in approximate mode, or null otherwise
+         */
+        public TDigest getDigest() {
+            return digest;
+        }
         
         public List getList() {
         	return list;
@@ -169,6 +263,8 @@ public class MedianVisitor implements FeatureCalc {
         public Object getValue() {
         	if (median != null) {
         		return median;
+        	} else if (digest != null) {
+        	    return digest.quantile(0.5);
         	} else {
         		return findMedian(list);
         	}
@@ -201,6 +297,18 @@ public class MedianVisitor implements FeatureCalc {
             	if (isOptimized() || moreResults.isOptimized()) {
                 	throw new IllegalArgumentException("Optimized median results cannot be merged.");
             	}
+            	//approximate results absorb the exact ones
+            	if (digest != null || moreResults.digest != null) {
+            	    TDigest merged = digest != null ? digest.copy() : moreResults.digest.copy();
+            	    if (digest == null) {
+            	        addAll(merged, list);
+            	    } else if (moreResults.digest == null) {
+            	        addAll(merged, moreResults.getList());
+            	    } else {
+            	        merged.merge(moreResults.digest);
+            	    }
+            	    return new MedianResult(merged);
+            	}
             	//merge away...
             	List toAdd = (ArrayList) moreResults.getList();
                 List newList = new ArrayList();
@@ -224,6 +332,19 @@ public class MedianVisitor implements FeatureCalc {
 				"The CalcResults claim to be compatible, but the appropriate merge method has not been implemented.");
             }
         }
+
+        private static void addAll(TDigest digest, List values) {
+            for (Object value : values) {
+                if (!(value instanceof Number)) {
+                    throw new IllegalArgumentException(
+                            "Non numeric median results cannot be merged with approximate ones.");
+                }
+                double d = ((Number) value).doubleValue();
+                if (!Double.isNaN(d)) {
+                    digest.add(d);
+                }
+            }
+        }
     }
     
     /**
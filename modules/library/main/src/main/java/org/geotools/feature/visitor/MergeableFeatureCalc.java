@@ -0,0 +1,49 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+/**
+ * A {@link FeatureCalc} whose computation can be split over several partitions of the data and
+ * then recombined: each partition is visited by a partial visitor obtained from
+ * {@link #createPartial()}, and the partial states are then merged back into the original
+ * visitor, which ends up with the same result it would have computed visiting all the features.
+ * <p>
+ * Partial visitors are used by a single thread each, the merge happens once they are all done.
+ * </p>
+ *
+ * @see FeatureCalcExecutor
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public interface MergeableFeatureCalc extends FeatureCalc {
+
+    /**
+     * Creates a new visitor with the same configuration as this one and no features visited
+     *
+     * @return the partial visitor
+     */
+    MergeableFeatureCalc createPartial();
+
+    /**
+     * Merges the state accumulated by a partial visitor into this one
+     *
+     * @param partial A visitor created by {@link #createPartial()}
+     * @throws IllegalArgumentException if the partial is not compatible with this visitor
+     */
+    void merge(MergeableFeatureCalc partial);
+}
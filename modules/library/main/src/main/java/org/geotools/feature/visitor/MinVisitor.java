@@ -34,7 +34,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class MinVisitor implements FeatureCalc {
+public class MinVisitor implements MergeableFeatureCalc {
     private Expression expr;
     Comparable minvalue;
     Comparable curvalue;
@@ -121,6 +121,18 @@ public class MinVisitor implements FeatureCalc {
         return new MinResult(minvalue);
     }
 
+    public MergeableFeatureCalc createPartial() {
+        return new MinVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        MinVisitor other = (MinVisitor) partial;
+        if (other.visited && (!visited || other.minvalue.compareTo(minvalue) < 0)) {
+            minvalue = other.minvalue;
+            visited = true;
+        }
+    }
+
     public Expression getExpression() {
         return expr;
     }
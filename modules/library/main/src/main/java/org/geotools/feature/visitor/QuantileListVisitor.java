@@ -28,6 +28,12 @@ import org.opengis.filter.expression.Expression;
  * Obtains the data needed for a Quantile operation (classification of features into classes of equal size). 
  * 
  * The result contains an array of lists with the expression values in each.
+ * <p>
+ * For large collections of numbers the visitor can be switched to an approximate mode with
+ * {@link #setCompression(double)}: the values are then summarized in a {@link TDigest} using
+ * bounded memory, and each list in the result only holds the approximate lower and upper bounds
+ * of its bin, which is all a quantile classification of numbers needs.
+ * </p>
  * 
  * @author Cory Horner, Refractions Research Inc.
  *
@@ -35,12 +41,16 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class QuantileListVisitor implements FeatureCalc {
+public class QuantileListVisitor implements MergeableFeatureCalc {
 	private Expression expr;
 	private int count = 0;
 	private int bins;
 	private List items = new ArrayList();
 	private List[] bin;
+	/**
+	 * The digest summarizing the values in approximate mode, null in exact mode
+	 */
+	private TDigest digest;
 
     boolean visited = false;
     int countNull = 0;
@@ -61,13 +71,27 @@ public class QuantileListVisitor implements FeatureCalc {
 	    	return CalcResult.NULL_RESULT;
 	    }
         
-        // sort the list
-		Collections.sort(items);
-
 		if (bins > count) { //resize
 			bins = count;
 			this.bin = new ArrayList[bins];
 		}
+
+		if (digest != null) {
+		    // each bin holds its approximate bounds
+		    for (int binIndex = 0; binIndex < bins; binIndex++) {
+		        bin[binIndex] = new ArrayList();
+		        bin[binIndex].add(digest.quantile((double) binIndex / bins));
+		        bin[binIndex].add(digest.quantile((double) (binIndex + 1) / bins));
+		    }
+		    return new AbstractCalcResult() {
+		        public Object getValue() {
+		            return bin;
+		        }
+		    };
+		}
+
+        // sort the list
+		Collections.sort(items);
 		
 		// calculate number of items to put into each of the larger bins
 		int binPop = new Double(Math.ceil((double) count / bins)).intValue();
@@ -112,8 +136,61 @@ public class QuantileListVisitor implements FeatureCalc {
 			}
 		}
 		
+		if (digest != null) {
+		    if (!(value instanceof Number)) {
+		        throw new IllegalStateException("Expression is not numeric, the approximate quantiles cannot be computed!");
+		    }
+		    double doubleVal = ((Number) value).doubleValue();
+		    if (Double.isNaN(doubleVal)) {
+		        countNaN++;
+		        return;
+		    }
+		    digest.add(doubleVal);
+		} else {
+		    items.add(value);
+		}
 		count++;
-		items.add(value);
+	}
+
+	/**
+	 * Switches between the exact and the approximate mode, resetting the visitor.
+	 * 
+	 * @param compression The compression of the {@link TDigest} summarizing the values in
+	 *        approximate mode, the higher the more accurate (see
+	 *        {@link TDigest#DEFAULT_COMPRESSION}), or 0 to collect all the values
+	 */
+	public void setCompression(double compression) {
+	    this.digest = compression > 0 ? new TDigest(compression) : null;
+	    reset(bins);
+	}
+
+	/**
+	 * Returns the compression used in approximate mode, or 0 in exact mode
+	 */
+	public double getCompression() {
+	    return digest != null ? digest.getCompression() : 0;
+	}
+
+	public MergeableFeatureCalc createPartial() {
+	    QuantileListVisitor partial = new QuantileListVisitor(expr, bins);
+	    partial.setCompression(getCompression());
+	    return partial;
+	}
+
+	public void merge(MergeableFeatureCalc partial) {
+	    QuantileListVisitor other = (QuantileListVisitor) partial;
+	    if ((digest == null) != (other.digest == null)) {
+	        throw new IllegalArgumentException(
+	                "Exact and approximate quantile visitors cannot be merged.");
+	    }
+	    if (digest != null) {
+	        digest.merge(other.digest);
+	    } else {
+	        items.addAll(other.items);
+	    }
+	    count += other.count;
+	    countNull += other.countNull;
+	    countNaN += other.countNaN;
 	}
 	
 	public void reset(int bins) {
@@ -123,6 +200,9 @@ public class QuantileListVisitor implements FeatureCalc {
 		this.bin = new ArrayList[bins];
 	    this.countNull = 0;
 	    this.countNaN = 0;
+	    if (digest != null) {
+	        this.digest = new TDigest(digest.getCompression());
+	    }
 	}
 
     /**
@@ -39,7 +39,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class SumVisitor implements FeatureCalc {
+public class SumVisitor implements MergeableFeatureCalc {
     private Expression expr;
     SumStrategy strategy;
 
@@ -118,6 +118,22 @@ public class SumVisitor implements FeatureCalc {
         strategy = null;
     }
 
+    public MergeableFeatureCalc createPartial() {
+        return new SumVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        SumVisitor other = (SumVisitor) partial;
+        if (other.strategy == null) {
+            return;
+        }
+        Object otherSum = other.strategy.getResult();
+        if (strategy == null) {
+            strategy = createStrategy(otherSum.getClass());
+        }
+        strategy.add(otherSum);
+    }
+
     public CalcResult getResult() {
     	if(strategy == null) {
     		return CalcResult.NULL_RESULT;
@@ -0,0 +1,303 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import java.util.Arrays;
+
+/**
+ * A streaming summary of a set of numbers, following the t-digest approach by Ted Dunning, that
+ * estimates their quantiles in bounded memory. The values are clustered in weighted centroids,
+ * the centroids being smaller towards the tails of the distribution, so that extreme quantiles
+ * are estimated more accurately than the central ones. The minimum and the maximum are tracked
+ * exactly.
+ * <p>
+ * The compression parameter bounds the number of centroids to about half of it, and thus the
+ * memory used, regardless of the number of values added. The higher the compression, the
+ * smaller the error: with a compression of 100 the rank error of the median is typically below
+ * 1%, and well below that for the tails.
+ * </p>
+ * <p>
+ * Digests built separately, for example on different partitions of a data set, can be merged.
+ * This class is not thread safe.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class TDigest {
+
+    /**
+     * The default compression
+     */
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+
+    /** Centroid means, sorted, and weights */
+    private double[] means;
+
+    private double[] weights;
+
+    private int centroids;
+
+    /** Values added since the last compression */
+    private final double[] buffer;
+
+    private int buffered;
+
+    private long count;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates a new empty digest
+     *
+     * @param compression The compression factor, at least 10
+     */
+    public TDigest(double compression) {
+        if (!(compression >= 10)) {
+            throw new IllegalArgumentException("Compression must be at least 10, was "
+                    + compression);
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression) * 2 + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.buffer = new double[(int) Math.ceil(compression) * 5];
+    }
+
+    public double getCompression() {
+        return compression;
+    }
+
+    /**
+     * Returns the number of values summarized by the digest
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the number of centroids the values are currently clustered in
+     */
+    public int getCentroidCount() {
+        compress(null);
+        return centroids;
+    }
+
+    /**
+     * Adds a value to the digest. NaN values are rejected.
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("Cannot add NaN to a digest");
+        }
+        if (buffered == buffer.length) {
+            compress(null);
+        }
+        buffer[buffered++] = value;
+        count++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds all the values summarized by another digest to this one. The other digest is not
+     * modified, save for compressing the values it buffered.
+     */
+    public void merge(TDigest other) {
+        if (other.count == 0) {
+            return;
+        }
+        other.compress(null);
+        compress(other);
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns a new digest with the same content as this one
+     */
+    public TDigest copy() {
+        TDigest copy = new TDigest(compression);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Estimates the value below which the given fraction of the values falls.
+     *
+     * @param q The quantile, between 0 and 1
+     * @return The estimated quantile, or NaN if the digest is empty
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1, was " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        compress(null);
+        if (q == 0 || centroids == 1 && min == max) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+
+        // interpolate between the centers of the centroids, using min and max at the ends
+        double target = q * count;
+        double before = 0;
+        double prevCenter = 0;
+        double prevValue = min;
+        for (int i = 0; i < centroids; i++) {
+            double center = before + weights[i] / 2;
+            if (target < center) {
+                return interpolate(target, prevCenter, prevValue, center, means[i]);
+            }
+            before += weights[i];
+            prevCenter = center;
+            prevValue = means[i];
+        }
+        return interpolate(target, prevCenter, prevValue, count, max);
+    }
+
+    private static double interpolate(double x, double x0, double y0, double x1, double y1) {
+        if (x1 <= x0) {
+            return y1;
+        }
+        return y0 + (y1 - y0) * (x - x0) / (x1 - x0);
+    }
+
+    /**
+     * Merges the buffered values, and the centroids of the other digest if not null, into the
+     * centroids of this digest
+     */
+    private void compress(TDigest other) {
+        int incoming = buffered + (other != null ? other.centroids : 0);
+        if (incoming == 0) {
+            return;
+        }
+
+        // merge the three sorted sequences in temporary arrays
+        Arrays.sort(buffer, 0, buffered);
+        int total = centroids + incoming;
+        double[] m = new double[total];
+        double[] w = new double[total];
+        int n = mergeSorted(means, weights, centroids, buffer, null, buffered, m, w);
+        if (other != null) {
+            double[] m2 = new double[total];
+            double[] w2 = new double[total];
+            n = mergeSorted(m, w, n, other.means, other.weights, other.centroids, m2, w2);
+            m = m2;
+            w = w2;
+        }
+        buffered = 0;
+
+        double totalWeight = 0;
+        for (int i = 0; i < n; i++) {
+            totalWeight += w[i];
+        }
+
+        // sweep, folding each item into the current centroid while the latter spans less than
+        // one unit of the k1 scale function, k(q) = compression / (2 * PI) * asin(2q - 1), which
+        // keeps the centroids small at the tails and bounds their number to compression / 2
+        centroids = 0;
+        double normalizer = compression / (2 * Math.PI);
+        double weightSoFar = 0;
+        double limit = totalWeight * limitQuantile(0, normalizer);
+        double mean = m[0];
+        double weight = w[0];
+        for (int i = 1; i < n; i++) {
+            double proposed = weight + w[i];
+            if (weightSoFar + proposed <= limit) {
+                mean += (m[i] - mean) * w[i] / proposed;
+                weight = proposed;
+            } else {
+                addCentroid(mean, weight);
+                weightSoFar += weight;
+                limit = totalWeight * limitQuantile(weightSoFar / totalWeight, normalizer);
+                mean = m[i];
+                weight = w[i];
+            }
+        }
+        addCentroid(mean, weight);
+    }
+
+    /**
+     * Returns the quantile one unit of the k1 scale function away from the given one
+     */
+    private static double limitQuantile(double q, double normalizer) {
+        double k = normalizer * Math.asin(2 * q - 1) + 1;
+        if (k >= normalizer * Math.PI / 2) {
+            return 1;
+        }
+        return (Math.sin(k / normalizer) + 1) / 2;
+    }
+
+    private void addCentroid(double mean, double weight) {
+        if (centroids == means.length) {
+            means = Arrays.copyOf(means, centroids * 2);
+            weights = Arrays.copyOf(weights, centroids * 2);
+        }
+        means[centroids] = mean;
+        weights[centroids] = weight;
+        centroids++;
+    }
+
+    /**
+     * Merges two sequences sorted by mean, a null weights array meaning all weights are 1
+     */
+    private static int mergeSorted(double[] m1, double[] w1, int n1, double[] m2, double[] w2,
+            int n2, double[] m, double[] w) {
+        int i = 0, j = 0, k = 0;
+        while (i < n1 || j < n2) {
+            if (j >= n2 || (i < n1 && m1[i] <= m2[j])) {
+                m[k] = m1[i];
+                w[k++] = w1 != null ? w1[i] : 1;
+                i++;
+            } else {
+                m[k] = m2[j];
+                w[k++] = w2 != null ? w2[j] : 1;
+                j++;
+            }
+        }
+        return k;
+    }
+
+    @Override
+    public String toString() {
+        return "TDigest[compression=" + compression + ", count=" + count + ", centroids="
+                + centroids + "]";
+    }
+}
@@ -45,7 +45,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class UniqueVisitor implements FeatureCalc {
+public class UniqueVisitor implements MergeableFeatureCalc {
     private Expression expr;
     Set set = new HashSet();
 
@@ -118,6 +118,14 @@ public class UniqueVisitor implements FeatureCalc {
         this.set = new HashSet();
     }
 
+    public MergeableFeatureCalc createPartial() {
+        return new UniqueVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        set.addAll(((UniqueVisitor) partial).set);
+    }
+
     public CalcResult getResult() {
         if (set.size() < 1) {
             return CalcResult.NULL_RESULT;
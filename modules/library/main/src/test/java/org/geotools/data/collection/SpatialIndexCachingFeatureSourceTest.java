@@ -0,0 +1,208 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.collection;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class SpatialIndexCachingFeatureSourceTest {
+
+    static final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    GeometryFactory gf = new GeometryFactory();
+
+    SimpleFeatureType schema;
+
+    MemoryDataStore store;
+
+    SimpleFeatureStore wrapped;
+
+    SpatialIndexCachingFeatureSource cached;
+
+    @Before
+    public void setup() throws Exception {
+        schema = DataUtilities.createType("points", "geom:Point,name:String");
+        store = new MemoryDataStore(schema);
+        for (int i = 0; i < 10; i++) {
+            store.addFeature(buildFeature("points." + i, i, i));
+        }
+        wrapped = (SimpleFeatureStore) store.getFeatureSource("points");
+        cached = new SpatialIndexCachingFeatureSource(wrapped, new SpatialIndexCache(
+                1024 * 1024));
+    }
+
+    @After
+    public void tearDown() {
+        cached.dispose();
+        store.dispose();
+    }
+
+    SimpleFeature buildFeature(String fid, double x, double y) {
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(schema);
+        fb.add(gf.createPoint(new Coordinate(x, y)));
+        fb.add(fid);
+        return fb.buildFeature(fid);
+    }
+
+    Set<String> getFids(SimpleFeatureCollection fc) {
+        Set<String> fids = new HashSet<String>();
+        SimpleFeatureIterator fi = fc.features();
+        try {
+            while (fi.hasNext()) {
+                fids.add(fi.next().getID());
+            }
+        } finally {
+            fi.close();
+        }
+        return fids;
+    }
+
+    Filter bbox(double minx, double miny, double maxx, double maxy) {
+        return ff.bbox("geom", minx, miny, maxx, maxy, null);
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        assertFalse(cached.isCached());
+        assertEquals(10, cached.getFeatures().size());
+        assertTrue(cached.isCached());
+        assertEquals(1, cached.getMissCount());
+        assertEquals(1, cached.getLoadCount());
+
+        Set<String> fids = getFids(cached.getFeatures(bbox(2.5, 2.5, 5.5, 5.5)));
+        assertEquals(3, fids.size());
+        assertTrue(fids.contains("points.3"));
+        assertTrue(fids.contains("points.5"));
+        assertEquals(1, cached.getHitCount());
+        assertEquals(1, cached.getLoadCount());
+        assertEquals(10, cached.getCount(new Query("points")));
+    }
+
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        assertEquals(10, cached.getFeatures().size());
+
+        // add
+        wrapped.addFeatures(DataUtilities.collection(buildFeature("points.new", 20, 20)));
+        assertEquals(1, cached.getLoadCount());
+        assertEquals(1, cached.getRefreshCount());
+        assertEquals(11, cached.getFeatures().size());
+        assertEquals(1, cached.getFeatures(bbox(19, 19, 21, 21)).size());
+
+        // modify, moving a feature
+        wrapped.modifyFeatures(schema.getDescriptor("geom"), gf.createPoint(new Coordinate(30,
+                30)), ff.id(ff.featureId("points.1")));
+        assertTrue(getFids(cached.getFeatures(bbox(29, 29, 31, 31))).contains("points.1"));
+        assertFalse(getFids(cached.getFeatures(bbox(0.5, 0.5, 1.5, 1.5))).contains("points.1"));
+
+        // remove
+        wrapped.removeFeatures(ff.id(ff.featureId("points.2")));
+        Set<String> fids = getFids(cached.getFeatures());
+        assertEquals(10, fids.size());
+        assertFalse(fids.contains("points.2"));
+
+        // it was all incremental
+        assertEquals(1, cached.getLoadCount());
+        assertTrue(cached.getRefreshCount() >= 3);
+        assertEquals(getFids(wrapped.getFeatures()), getFids(cached.getFeatures()));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        long size = SpatialIndexCachingFeatureSource.estimateSize(buildFeature("points.0", 0, 0));
+        // room for a bit more than one source
+        SpatialIndexCache cache = new SpatialIndexCache(size * 15);
+        SpatialIndexCachingFeatureSource first = new SpatialIndexCachingFeatureSource(wrapped,
+                cache);
+        SpatialIndexCachingFeatureSource second = new SpatialIndexCachingFeatureSource(wrapped,
+                cache);
+        try {
+            assertEquals(10, first.getFeatures().size());
+            assertTrue(first.isCached());
+            assertEquals(10, second.getFeatures().size());
+            assertTrue(second.isCached());
+            assertFalse(first.isCached());
+            assertEquals(1, first.getEvictionCount());
+            assertEquals(1, cache.getEvictionCount());
+            assertEquals(1, cache.getCachedSourceCount());
+
+            // loads again, evicting the second
+            assertEquals(10, first.getFeatures().size());
+            assertEquals(2, first.getLoadCount());
+            assertFalse(second.isCached());
+        } finally {
+            first.dispose();
+            second.dispose();
+        }
+        assertEquals(0, cache.getUsedMemory());
+    }
+
+    @Test
+    public void testTooLarge() throws Exception {
+        SpatialIndexCachingFeatureSource tiny = new SpatialIndexCachingFeatureSource(wrapped,
+                new SpatialIndexCache(100));
+        try {
+            assertEquals(10, tiny.getFeatures().size());
+            assertEquals(3, tiny.getFeatures(bbox(2.5, 2.5, 5.5, 5.5)).size());
+            assertFalse(tiny.isCached());
+            assertEquals(0, tiny.getHitCount());
+            assertEquals(2, tiny.getMissCount());
+            assertEquals(0, tiny.getLoadCount());
+        } finally {
+            tiny.dispose();
+        }
+    }
+
+    @Test
+    public void testSubCollection() throws IOException {
+        SpatialIndexFeatureCollection collection = new SpatialIndexFeatureCollection(wrapped
+                .getFeatures());
+        Set<String> fids = getFids(collection.subCollection(ff.and(bbox(2.5, 2.5, 7.5, 7.5), ff
+                .equals(ff.property("name"), ff.literal("points.4")))));
+        assertEquals(1, fids.size());
+        assertTrue(fids.contains("points.4"));
+        assertEquals(10, collection.subCollection(Filter.INCLUDE).size());
+        assertEquals(0, collection.subCollection(Filter.EXCLUDE).size());
+    }
+}
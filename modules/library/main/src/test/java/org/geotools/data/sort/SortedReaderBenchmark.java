@@ -0,0 +1,105 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.sort;
+
+import java.util.Random;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.DelegateSimpleFeatureReader;
+import org.geotools.data.simple.SimpleFeatureReader;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Compares the throughput of the in memory sort, of the external merge-sort writing the runs
+ * with a single thread and of the one writing them in parallel.
+ * <p>
+ * Usage: <code>SortedReaderBenchmark [features] [max memory in MB]</code>
+ * </p>
+ *
+ * @source $URL$
+ */
+public class SortedReaderBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        long maxMemory = (args.length > 1 ? Long.parseLong(args[1]) : 16) * 1024 * 1024;
+
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("benchmark");
+        tb.add("geom", Point.class, DefaultGeographicCRS.WGS84);
+        tb.add("value", Double.class);
+        tb.add("label", String.class);
+        SimpleFeatureType schema = tb.buildFeatureType();
+
+        ListFeatureCollection features = new ListFeatureCollection(schema);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(schema);
+        GeometryFactory gf = new GeometryFactory();
+        Random random = new Random(0);
+        for (int i = 0; i < count; i++) {
+            fb.add(gf.createPoint(new Coordinate(random.nextDouble() * 360 - 180, random
+                    .nextDouble() * 180 - 90)));
+            fb.add(random.nextDouble());
+            fb.add("label " + i);
+            features.add(fb.buildFeature("benchmark." + i));
+        }
+
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        SortBy[] sortBy = new SortBy[] { ff.sort("value", SortOrder.ASCENDING) };
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        // warm up, then measure
+        for (int i = 0; i < 3; i++) {
+            benchmark("in memory", features, sortBy, Long.MAX_VALUE, 1);
+            benchmark("external, serial", features, sortBy, maxMemory, 1);
+            benchmark("external, " + threads + " threads", features, sortBy, maxMemory, threads);
+        }
+        benchmark("in memory", features, sortBy, Long.MAX_VALUE, 1);
+        benchmark("external, serial", features, sortBy, maxMemory, 1);
+        benchmark("external, " + threads + " threads", features, sortBy, maxMemory, threads);
+    }
+
+    static void benchmark(String name, ListFeatureCollection features, SortBy[] sortBy,
+            long maxMemory, int threads) throws Exception {
+        long start = System.nanoTime();
+        SimpleFeatureReader reader = new DelegateSimpleFeatureReader(features.getSchema(),
+                features.features());
+        SimpleFeatureReader sorted = MergeSortDumper.getDelegateReader(reader, sortBy, -1,
+                maxMemory, threads);
+        int count = 0;
+        try {
+            while (sorted.hasNext()) {
+                sorted.next();
+                count++;
+            }
+        } finally {
+            sorted.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(name + ": " + Math.round(count / seconds) + " features/s");
+    }
+}
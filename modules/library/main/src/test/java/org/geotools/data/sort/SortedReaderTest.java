@@ -5,13 +5,17 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.util.Date;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.geotools.data.Query;
 import org.geotools.data.collection.DelegateFeatureReader;
 import org.geotools.data.simple.DelegateSimpleFeatureReader;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureReader;
 import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
@@ -177,6 +181,133 @@ public class SortedReaderTest {
         }
     }
 
+    @Test
+    public void testFileSortMemoryBudget() throws IOException {
+        // a tiny memory budget forces many runs on disk
+        Query query = new Query("test");
+        query.setSortBy(peopleAsc);
+        query.setHints(new Hints(Hints.MAX_MEMORY_SORT_SIZE, 10 * 1024L));
+        SimpleFeatureReader sr = null;
+        try {
+            sr = new SortedFeatureReader(fr, query);
+            assertTrue(((SortedFeatureReader) sr).delegate instanceof MergeSortReader);
+            assertEquals(fc.size(), assertSortedOnPeopleAsc(sr));
+        } finally {
+            if (sr != null) {
+                sr.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFileSortParallel() throws IOException {
+        SimpleFeatureReader sr = null;
+        try {
+            sr = MergeSortDumper.getDelegateReader(fr, peopleDesc, 50, -1, 4);
+            assertTrue(sr instanceof MergeSortReader);
+            int count = 0;
+            int prev = Integer.MAX_VALUE;
+            while (sr.hasNext()) {
+                SimpleFeature f = sr.next();
+                int curr = (Integer) f.getAttribute("PERSONS");
+                assertTrue(curr <= prev);
+                prev = curr;
+                count++;
+            }
+            assertEquals(fc.size(), count);
+        } finally {
+            if (sr != null) {
+                sr.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFileSortFanIn() throws IOException {
+        // lots of small runs merged at most three at a time, on a provided executor
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        SimpleFeatureReader sr = null;
+        try {
+            sr = MergeSortDumper.getDelegateReader(fr, peopleAsc, 10, -1, 2, executor, 3);
+            assertTrue(sr instanceof MergeSortReader);
+            assertTrue(((MergeSortReader) sr).runs.size() <= 3);
+            assertEquals(fc.size(), assertSortedOnPeopleAsc(sr));
+        } finally {
+            if (sr != null) {
+                sr.close();
+            }
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFileSortRoundTrip() throws IOException {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("strings");
+        tb.add("id", Integer.class);
+        tb.add("name", String.class);
+        tb.add("timestamp", java.sql.Timestamp.class);
+        SimpleFeatureType stringSchema = tb.buildFeatureType();
+
+        // a string longer than the 64k modified UTF-8 limit, and some non ascii chars
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 70000; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        String longString = sb.toString();
+        java.sql.Timestamp timestamp = new java.sql.Timestamp(1000);
+        timestamp.setNanos(123456789);
+
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(stringSchema);
+        DefaultFeatureCollection strings = new DefaultFeatureCollection("strings", stringSchema);
+        final int features = 1500;
+        for (int i = 0; i < features; i++) {
+            fb.add(features - i);
+            if (i == 10) {
+                fb.add(longString);
+            } else if (i % 7 == 0) {
+                fb.add(null);
+            } else {
+                fb.add("f\u00e9ature " + i);
+            }
+            fb.add(i % 5 == 0 ? null : timestamp);
+            strings.add(fb.buildFeature("strings." + i));
+        }
+
+        SimpleFeatureReader sr = null;
+        try {
+            SortBy[] idAsc = new SortBy[] { ff.sort("id", SortOrder.ASCENDING) };
+            sr = new SortedFeatureReader(new DelegateSimpleFeatureReader(stringSchema,
+                    strings.features()), idAsc, 100);
+            int count = 0;
+            while (sr.hasNext()) {
+                SimpleFeature f = sr.next();
+                count++;
+                int id = (Integer) f.getAttribute("id");
+                assertEquals(count, id);
+                int i = features - id;
+                assertEquals("strings." + i, f.getID());
+                if (i == 10) {
+                    assertEquals(longString, f.getAttribute("name"));
+                } else if (i % 7 == 0) {
+                    assertNull(f.getAttribute("name"));
+                } else {
+                    assertEquals("f\u00e9ature " + i, f.getAttribute("name"));
+                }
+                if (i % 5 == 0) {
+                    assertNull(f.getAttribute("timestamp"));
+                } else {
+                    assertEquals(timestamp, f.getAttribute("timestamp"));
+                }
+            }
+            assertEquals(features, count);
+        } finally {
+            if (sr != null) {
+                sr.close();
+            }
+        }
+    }
+
     @Test
     public void testIteratorSortReduce() throws IOException {
         // make it so that we are not going to hit the disk
@@ -235,9 +366,10 @@ public class SortedReaderTest {
         }
     }
 
-    private void assertSortedOnPeopleAsc(SimpleFeatureReader fr) throws IllegalArgumentException,
+    private int assertSortedOnPeopleAsc(SimpleFeatureReader fr) throws IllegalArgumentException,
             NoSuchElementException, IOException {
         double prev = -1;
+        int count = 0;
         while (fr.hasNext()) {
             SimpleFeature f = fr.next();
             int curr = (Integer) f.getAttribute("PERSONS");
@@ -245,7 +377,9 @@ public class SortedReaderTest {
                 assertTrue(curr >= prev);
             }
             prev = curr;
+            count++;
         }
+        return count;
     }
 
     private void assertSortedOnDateAsc(SimpleFeatureReader fr) throws IllegalArgumentException,
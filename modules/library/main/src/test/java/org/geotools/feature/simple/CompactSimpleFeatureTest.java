@@ -0,0 +1,183 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.simple;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.util.Converters;
+import org.opengis.feature.GeometryAttribute;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class CompactSimpleFeatureTest extends TestCase {
+
+    SimpleFeatureType schema;
+
+    Point point;
+
+    @Override
+    protected void setUp() throws Exception {
+        schema = DataUtilities.createType("places",
+                "geom:Point,name:String,population:Integer,area:Double,big:Boolean,code:Long");
+        point = new GeometryFactory().createPoint(new Coordinate(10, 20));
+    }
+
+    CompactSimpleFeature build() {
+        CompactSimpleFeature feature = new CompactSimpleFeature(schema, "places.1");
+        feature.setAttributes(new Object[] { point, "Rome", 2800000, 1285.3, true, 6L });
+        return feature;
+    }
+
+    public void testLayout() {
+        CompactFeatureLayout layout = CompactFeatureLayout.getLayout(schema);
+        assertSame(layout, CompactFeatureLayout.getLayout(schema));
+        assertFalse(layout.isPrimitive(0));
+        assertFalse(layout.isPrimitive(1));
+        assertTrue(layout.isPrimitive(2));
+        assertTrue(layout.isFloatingPoint(3));
+        assertEquals(3, layout.longCount);
+        assertEquals(1, layout.doubleCount);
+        assertEquals(2, layout.objectCount);
+    }
+
+    public void testAttributes() {
+        CompactSimpleFeature feature = build();
+        assertEquals("places.1", feature.getID());
+        assertEquals("places.1", feature.getIdentifier().getID());
+        assertSame(point, feature.getDefaultGeometry());
+        assertEquals("Rome", feature.getAttribute("name"));
+        assertEquals(Integer.valueOf(2800000), feature.getAttribute("population"));
+        assertEquals(Double.valueOf(1285.3), feature.getAttribute(3));
+        assertEquals(Boolean.TRUE, feature.getAttribute("big"));
+        assertEquals(Long.valueOf(6), feature.getAttribute("code"));
+        assertNull(feature.getAttribute("notThere"));
+
+        // primitive access
+        assertEquals(2800000, feature.getLong(2));
+        assertEquals(1285.3, feature.getDouble(3), 0d);
+        assertEquals(1, feature.getLong(4));
+        feature.setDouble(3, 10.5);
+        assertEquals(Double.valueOf(10.5), feature.getAttribute("area"));
+        feature.setLong(2, 15);
+        assertEquals(Integer.valueOf(15), feature.getAttribute("population"));
+    }
+
+    public void testConversionAndNulls() {
+        CompactSimpleFeature feature = new CompactSimpleFeature(schema, "places.2");
+        for (int i = 0; i < schema.getAttributeCount(); i++) {
+            assertTrue(feature.isNull(i));
+            assertNull(feature.getAttribute(i));
+        }
+        assertTrue(Double.isNaN(feature.getDouble(3)));
+
+        feature.setAttribute("population", "123");
+        assertEquals(Integer.valueOf(123), feature.getAttribute("population"));
+        assertFalse(feature.isNull(2));
+        feature.setAttribute("population", null);
+        assertTrue(feature.isNull(2));
+        assertNull(feature.getAttribute("population"));
+    }
+
+    public void testLoadedValueConversion() {
+        // the loaded values skip setAttribute, so store has to convert them on its own
+        final Object[] values = new Object[] { point, "Rome", Boolean.TRUE, 1285.3, 1, 6 };
+        CompactSimpleFeature feature = new CompactSimpleFeature(schema, "places.1");
+        feature.setLoader(new CompactSimpleFeature.AttributeLoader() {
+
+            public Object load(int index) throws IOException {
+                return values[index];
+            }
+        });
+
+        assertEquals(Boolean.TRUE, feature.getAttribute("big"));
+        assertEquals(1, feature.getLong(4));
+        assertEquals(Converters.convert(Boolean.TRUE, Integer.class),
+                feature.getAttribute("population"));
+        assertEquals(Long.valueOf(6), feature.getAttribute("code"));
+    }
+
+    public void testProperties() {
+        CompactSimpleFeature feature = build();
+        assertEquals(6, feature.getProperties().size());
+        assertEquals("Rome", feature.getProperty("name").getValue());
+        assertTrue(feature.getProperty("geom") instanceof GeometryAttribute);
+        assertNull(feature.getProperty("notThere"));
+
+        // the properties are live
+        feature.getProperty("area").setValue(5d);
+        assertEquals(5d, feature.getDouble(3), 0d);
+        assertEquals(10d, feature.getBounds().getMinX(), 0d);
+        assertEquals(20d, feature.getBounds().getMaxY(), 0d);
+    }
+
+    public void testEquals() {
+        assertEquals(build(), build());
+        assertEquals(build().hashCode(), build().hashCode());
+        CompactSimpleFeature other = build();
+        other.setAttribute("name", "Milan");
+        assertFalse(build().equals(other));
+    }
+
+    public void testLazyLoading() {
+        final int[] loads = new int[1];
+        final Object[] values = new Object[] { point, "Rome", 2800000, 1285.3, true, 6L };
+        CompactSimpleFeature feature = new CompactSimpleFeature(schema, "places.1");
+        feature.setLoader(new CompactSimpleFeature.AttributeLoader() {
+
+            public Object load(int index) throws IOException {
+                loads[0]++;
+                return values[index];
+            }
+        });
+
+        assertEquals(0, loads[0]);
+        assertEquals(2800000, feature.getLong(2));
+        assertEquals(2800000, feature.getLong(2));
+        assertEquals(1, loads[0]);
+
+        // setting an attribute does not load it
+        feature.setAttribute("name", "Roma");
+        assertEquals("Roma", feature.getAttribute("name"));
+        assertEquals(1, loads[0]);
+
+        // once invalidated the loaded values are still there, the others cannot be read
+        feature.invalidate();
+        assertEquals(2800000, feature.getLong(2));
+        try {
+            feature.getAttribute("area");
+            fail("Should have failed, the loader is not usable anymore");
+        } catch (IllegalStateException e) {
+            // fine
+        }
+
+        // reset makes it usable again
+        feature.reset("places.3");
+        assertEquals("places.3", feature.getID());
+        assertNull(feature.getAttribute("area"));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class FeatureCalcExecutorTest {
+
+    static final int SIZE = 10000;
+
+    SimpleFeatureCollection collection;
+
+    List<SimpleFeatureCollection> partitions;
+
+    FeatureCalcExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        // values from 1 to SIZE, each name shared by two features
+        SimpleFeatureType type = DataUtilities.createType("sample", "value:0,name:String");
+        SimpleFeature[] features = new SimpleFeature[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            features[i] = SimpleFeatureBuilder.build(type,
+                    new Object[] { new Integer(i + 1), "n" + (i / 2) }, null);
+        }
+        collection = DataUtilities.collection(features);
+
+        partitions = new ArrayList<SimpleFeatureCollection>();
+        for (int i = 0; i < 4; i++) {
+            SimpleFeature[] partition = new SimpleFeature[SIZE / 4];
+            System.arraycopy(features, i * SIZE / 4, partition, 0, partition.length);
+            partitions.add(DataUtilities.collection(partition));
+        }
+
+        executor = new FeatureCalcExecutor();
+        executor.setParallelism(4);
+        executor.setBatchSize(100);
+    }
+
+    @Test
+    public void testExactVisitors() throws Exception {
+        CountVisitor count = new CountVisitor();
+        executor.visit(collection, count, null);
+        assertEquals(SIZE, count.getCount());
+
+        MinVisitor min = new MinVisitor("value");
+        executor.visit(collection, min, null);
+        assertEquals(1, min.getResult().toInt());
+
+        MaxVisitor max = new MaxVisitor("value");
+        executor.visit(partitions, max, null);
+        assertEquals(SIZE, max.getResult().toInt());
+
+        UniqueVisitor unique = new UniqueVisitor("name");
+        executor.visit(collection, unique, null);
+        assertEquals(SIZE / 2, unique.getUnique().size());
+
+        MedianVisitor median = new MedianVisitor("value");
+        executor.visit(partitions, median, null);
+        assertEquals((SIZE + 1) / 2d, ((Number) median.getMedian()).doubleValue(), 0d);
+
+        DistinctCountVisitor distinct = new DistinctCountVisitor("name");
+        executor.visit(partitions, distinct, null);
+        assertEquals(SIZE / 2, distinct.getCount());
+    }
+
+    @Test
+    public void testApproximateVisitors() throws Exception {
+        MedianVisitor median = new MedianVisitor("value");
+        median.setCompression(TDigest.DEFAULT_COMPRESSION);
+        executor.visit(collection, median, null);
+        assertEquals(SIZE / 2d, ((Number) median.getMedian()).doubleValue(), SIZE * 0.01);
+        assertTrue(median.getResult() instanceof MedianVisitor.MedianResult);
+
+        QuantileListVisitor quantiles = new QuantileListVisitor(
+                CommonFactoryFinder.getFilterFactory(null).property("value"), 4);
+        quantiles.setCompression(TDigest.DEFAULT_COMPRESSION);
+        executor.visit(partitions, quantiles, null);
+        List[] bins = (List[]) quantiles.getResult().getValue();
+        assertEquals(4, bins.length);
+        assertEquals(1d, ((Number) bins[0].get(0)).doubleValue(), 0d);
+        assertEquals(SIZE, ((Number) bins[3].get(1)).doubleValue(), 0d);
+        for (int i = 1; i < 4; i++) {
+            assertEquals(SIZE * i / 4d, ((Number) bins[i].get(0)).doubleValue(), SIZE * 0.01);
+        }
+
+        DistinctCountVisitor distinct = new DistinctCountVisitor("name");
+        distinct.setRelativeError(0.01);
+        executor.visit(collection, distinct, null);
+        assertEquals(SIZE / 2d, distinct.getCount(), SIZE / 2d * 0.05);
+        assertEquals(SIZE / 2d, distinct.getResult().toDouble(), SIZE / 2d * 0.05);
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            executor.setThreadPool(pool);
+            CountVisitor count = new CountVisitor();
+            executor.visit(collection, count, null);
+            assertEquals(SIZE, count.getCount());
+            executor.visit(partitions, count, null);
+            assertEquals(SIZE * 2, count.getCount());
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRepeatedVisits() throws Exception {
+        // workers starting late, or while the reading is ending, must still be merged
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            executor.setThreadPool(pool);
+            for (int i = 0; i < 50; i++) {
+                CountVisitor count = new CountVisitor();
+                executor.visit(collection, count, null);
+                assertEquals(SIZE, count.getCount());
+
+                SumVisitor sum = new SumVisitor("value", collection.getSchema());
+                executor.visit(collection, sum, null);
+                assertEquals(SIZE * (SIZE + 1) / 2, sum.getResult().toInt());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSaturatedPool() throws Exception {
+        // the only thread of the pool is busy until the visit is over
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            pool.submit(new Runnable() {
+
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        // just exit
+                    }
+                }
+            });
+            executor.setThreadPool(pool);
+            CountVisitor count = new CountVisitor();
+            executor.visit(collection, count, null);
+            assertEquals(SIZE, count.getCount());
+        } finally {
+            latch.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        // the names are not comparable with the approximate median
+        MedianVisitor median = new MedianVisitor("name");
+        median.setCompression(TDigest.DEFAULT_COMPRESSION);
+        try {
+            executor.visit(collection, median, null);
+            fail("Expected a failure");
+        } catch (IllegalStateException e) {
+            // fine
+        } catch (IOException e) {
+            fail("Runtime exceptions should be rethrown as is");
+        }
+    }
+}
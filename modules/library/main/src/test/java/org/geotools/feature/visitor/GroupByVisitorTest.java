@@ -0,0 +1,137 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.expression.Expression;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class GroupByVisitorTest {
+
+    static final int SIZE = 1000;
+
+    FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+    SimpleFeatureCollection collection;
+
+    @Before
+    public void setUp() throws Exception {
+        // values from 1 to SIZE, in ten classes, and either even or odd
+        SimpleFeatureType type = DataUtilities.createType("sample",
+                "value:0,cls:String,parity:String");
+        SimpleFeature[] features = new SimpleFeature[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            int value = i + 1;
+            features[i] = SimpleFeatureBuilder.build(type, new Object[] { new Integer(value),
+                    "c" + (i % 10), value % 2 == 0 ? "even" : "odd" }, null);
+        }
+        collection = DataUtilities.collection(features);
+    }
+
+    List<Expression> groupBy(String... names) {
+        Expression[] expressions = new Expression[names.length];
+        for (int i = 0; i < names.length; i++) {
+            expressions[i] = ff.property(names[i]);
+        }
+        return Arrays.asList(expressions);
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        GroupByVisitor visitor = new GroupByVisitor(groupBy("cls"), new CountVisitor());
+        collection.accepts(visitor, null);
+        Map result = (Map) visitor.getResult().getValue();
+        assertEquals(10, result.size());
+        assertEquals(SIZE / 10, ((Number) result.get(Collections.singletonList("c3"))).intValue());
+    }
+
+    @Test
+    public void testMultipleGroups() throws Exception {
+        GroupByVisitor visitor = new GroupByVisitor(groupBy("cls", "parity"),
+                new SumVisitor(ff.property("value")));
+        collection.accepts(visitor, null);
+        Map result = (Map) visitor.getResult().getValue();
+        // classes with an even index only hold odd values
+        assertEquals(10, result.size());
+        assertNull(result.get(Arrays.asList("c0", "even")));
+        // 1 + 11 + ... + 991
+        assertEquals(49600, ((Number) result.get(Arrays.asList("c0", "odd"))).intValue());
+    }
+
+    @Test
+    public void testHaving() throws Exception {
+        Filter having = ff.greater(ff.property(GroupByVisitor.AGGREGATE), ff.literal(500));
+        GroupByVisitor visitor = new GroupByVisitor(groupBy("cls"), new AverageVisitor(ff
+                .property("value")), having);
+        collection.accepts(visitor, null);
+        // the averages go from 496 for c0 to 505 for c9
+        Map result = (Map) visitor.getResult().getValue();
+        assertEquals(5, result.size());
+        assertFalse(result.containsKey(Collections.singletonList("c4")));
+        assertTrue(result.containsKey(Collections.singletonList("c5")));
+        assertEquals(10, visitor.getGroupCount());
+
+        having = ff.equals(ff.property("cls"), ff.literal("c9"));
+        visitor = new GroupByVisitor(groupBy("cls"), new CountVisitor(), having);
+        collection.accepts(visitor, null);
+        result = (Map) visitor.getResult().getValue();
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        GroupByVisitor visitor = new GroupByVisitor(groupBy("parity"), new AverageVisitor(ff
+                .property("value")));
+        FeatureCalcExecutor executor = new FeatureCalcExecutor();
+        executor.setParallelism(4);
+        executor.setBatchSize(10);
+        executor.visit(collection, visitor, null);
+
+        Map result = (Map) visitor.getResult().getValue();
+        assertEquals(2, result.size());
+        assertEquals(SIZE / 2d, ((Number) result.get(Collections.singletonList("odd")))
+                .doubleValue(), 0d);
+        assertEquals(SIZE / 2d + 1, ((Number) result.get(Collections.singletonList("even")))
+                .doubleValue(), 0d);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        GroupByVisitor visitor = new GroupByVisitor(groupBy("cls"), new CountVisitor());
+        assertSame(CalcResult.NULL_RESULT, visitor.getResult());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link TDigest} and {@link HyperLogLog} sketches
+ *
+ * @source $URL$
+ */
+public class SketchesTest {
+
+    @Test
+    public void testDigestQuantiles() {
+        Random random = new Random(42);
+        int n = 100000;
+        double[] values = new double[n];
+        TDigest digest = new TDigest(TDigest.DEFAULT_COMPRESSION);
+        for (int i = 0; i < n; i++) {
+            values[i] = Math.exp(random.nextGaussian());
+            digest.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(n, digest.getCount());
+        assertEquals(values[0], digest.quantile(0), 0d);
+        assertEquals(values[n - 1], digest.quantile(1), 0d);
+        assertTrue(digest.getCentroidCount() <= TDigest.DEFAULT_COMPRESSION);
+        for (double q : new double[] { 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999 }) {
+            assertEquals(q, rank(values, digest.quantile(q)), 0.005);
+        }
+    }
+
+    @Test
+    public void testDigestMerge() {
+        Random random = new Random(42);
+        int n = 100000;
+        double[] values = new double[n];
+        TDigest[] parts = new TDigest[] { new TDigest(100), new TDigest(100), new TDigest(100) };
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextDouble() * 1000;
+            parts[i % parts.length].add(values[i]);
+        }
+        Arrays.sort(values);
+
+        TDigest merged = new TDigest(100);
+        for (TDigest part : parts) {
+            merged.merge(part);
+        }
+        assertEquals(n, merged.getCount());
+        assertEquals(values[0], merged.getMin(), 0d);
+        assertEquals(values[n - 1], merged.getMax(), 0d);
+        assertEquals(0.5, rank(values, merged.quantile(0.5)), 0.005);
+        assertEquals(0.9, rank(values, merged.copy().quantile(0.9)), 0.005);
+    }
+
+    @Test
+    public void testDigestSmall() {
+        TDigest digest = new TDigest(100);
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+        digest.add(5);
+        assertEquals(5, digest.quantile(0.5), 0d);
+        digest.add(1);
+        digest.add(3);
+        assertEquals(3, digest.quantile(0.5), 0d);
+        try {
+            digest.add(Double.NaN);
+            fail("NaN should be rejected");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+    }
+
+    double rank(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return (double) index / sorted.length;
+    }
+
+    @Test
+    public void testDistinctCount() {
+        HyperLogLog small = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        for (int i = 0; i < 100; i++) {
+            small.add("value" + (i % 10));
+        }
+        assertEquals(10, small.cardinality());
+
+        HyperLogLog hll = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        HyperLogLog even = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        HyperLogLog odd = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        int n = 200000;
+        for (int i = 0; i < n; i++) {
+            Object value = i % 2 == 0 ? "s" + i : (Object) Long.valueOf(i);
+            hll.add(value);
+            (i % 2 == 0 ? even : odd).add(value);
+        }
+        // three times the typical error
+        double tolerance = n * hll.getRelativeError() * 3;
+        assertEquals(n, hll.cardinality(), tolerance);
+
+        even.merge(odd);
+        assertEquals(hll.cardinality(), even.cardinality());
+    }
+
+    @Test
+    public void testPrecision() {
+        assertEquals(14, HyperLogLog.precision(0.01));
+        assertTrue(new HyperLogLog(HyperLogLog.precision(0.01)).getRelativeError() <= 0.01);
+        try {
+            new HyperLogLog(10).merge(new HyperLogLog(12));
+            fail("Different precisions cannot be merged");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+    }
+}
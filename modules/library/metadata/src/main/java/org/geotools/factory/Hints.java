@@ -589,7 +589,31 @@ public class Hints extends RenderingHints {
      * @since 2.4.1
      */
     public static final Key FEATURE_2D = new Key(Boolean.class);
-    
+
+    /**
+     * Request that the features returned by the feature readers store their numeric
+     * attributes as primitives, in order to reduce the memory and garbage collection
+     * overhead of high volume reads. The features can be cast to
+     * <code>org.geotools.feature.simple.CompactSimpleFeature</code> to access the
+     * primitive values without boxing.
+     *
+     * @since 9.0
+     */
+    public static final Key FEATURE_COMPACT = new Key(Boolean.class);
+
+    /**
+     * Request that the feature readers return the same feature object at each iteration,
+     * reading its attributes only when they are actually accessed. Implies
+     * {@link #FEATURE_COMPACT}.
+     * <p>
+     * The contents of the feature are valid only until the reader moves to the next
+     * feature, so this hint can be used only by code that does not retain the features
+     * (e.g., rendering or computing aggregates)
+     *
+     * @since 9.0
+     */
+    public static final Key FEATURE_REUSE = new Key(Boolean.class);
+
     /**
      * Key to control the maximum number of features that will be kept in memory
      * when performing a fallback merge-sort (used when the datastore does not have
@@ -598,7 +622,17 @@ public class Hints extends RenderingHints {
      * @since 2.7.3
      */
     public static final Key MAX_MEMORY_SORT = new Key(Integer.class);
-    
+
+    /**
+     * Key to control the maximum amount of memory, in bytes, that the features kept
+     * in memory can use when performing a fallback merge-sort. It is used when
+     * {@link #MAX_MEMORY_SORT} is not set, the size of each feature is estimated
+     * from its attribute values
+     *
+     * @since 9.0
+     */
+    public static final Key MAX_MEMORY_SORT_SIZE = new Key(Long.class);
+
     /**
      * Asks a datastore having a vector pyramid (pre-generalized geometries)
      * to return the geometry version whose points have been generalized
@@ -194,6 +194,12 @@ public final class CRS {
      */
     private static CoordinateOperationFactory lenientFactory;
 
+    /**
+     * The cache of the transforms returned by {@link #findMathTransform}.
+     * Will be created only when first needed.
+     */
+    private static volatile MathTransformCache transformCache;
+
     /**
      * Registers a listener automatically invoked when the system-wide configuration changed.
      */
@@ -206,6 +212,10 @@ public final class CRS {
                     strictFactory  = null;
                     lenientFactory = null;
                 }
+                final MathTransformCache cache = transformCache;
+                if (cache != null) {
+                    cache.clear();
+                }
             }
         });
     }
@@ -1146,8 +1156,30 @@ search:             if (DefaultCoordinateSystemAxis.isCompassDirection(axis.getD
             // Slight optimization in order to avoid the overhead of loading the full referencing engine.
             return IdentityTransform.create(sourceCRS.getCoordinateSystem().getDimension());
         }
-        CoordinateOperationFactory operationFactory = getCoordinateOperationFactory(lenient);
-        return operationFactory.createOperation(sourceCRS, targetCRS).getMathTransform();
+        return getMathTransformCache().getMathTransform(sourceCRS, targetCRS, lenient);
+    }
+
+    /**
+     * Returns the cache used by the {@link #findMathTransform(CoordinateReferenceSystem,
+     * CoordinateReferenceSystem) findMathTransform} convenience methods. Its size is controlled
+     * by the {@value MathTransformCache#SIZE_PROPERTY} system property, it can be used to warm
+     * up the cache or to get usage statistics.
+     *
+     * @since 9.0
+     */
+    public static MathTransformCache getMathTransformCache() {
+        MathTransformCache cache = transformCache;
+        if (cache == null) {
+            synchronized (CRS.class) {
+                cache = transformCache;
+                if (cache == null) {
+                    cache = new MathTransformCache(Integer.getInteger(
+                            MathTransformCache.SIZE_PROPERTY, MathTransformCache.DEFAULT_SIZE));
+                    transformCache = cache;
+                }
+            }
+        }
+        return cache;
     }
 
     /**
@@ -1784,6 +1816,11 @@ search:             if (DefaultCoordinateSystemAxis.isCompassDirection(axis.getD
         xyFactory = null;
         strictFactory = null;
         lenientFactory = null;
+        // the transforms might have been created by factories that are now gone
+        final MathTransformCache cache = transformCache;
+        if (cache != null) {
+            cache.clear();
+        }
     }
     
     /**
@@ -0,0 +1,320 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+/**
+ * A bounded cache of the {@linkplain MathTransform math transforms} found by
+ * {@link CRS#findMathTransform(CoordinateReferenceSystem, CoordinateReferenceSystem, boolean)},
+ * keyed by source CRS, target CRS and lenient flag.
+ * <p>
+ * Lookups do not lock, they are served by a {@link ConcurrentHashMap}. When the cache grows
+ * past its maximum size the least recently used entries are evicted in a batch, by a single
+ * thread, while the others keep on reading.
+ * <p>
+ * The cache used by {@link CRS} can be retrieved with {@link CRS#getMathTransformCache()}, its
+ * size is controlled by the {@value #SIZE_PROPERTY} system property (a size of zero disables
+ * caching). Applications knowing in advance which CRS they are going to use can
+ * {@linkplain #warmUp warm it up} at startup.
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public final class MathTransformCache {
+    /**
+     * The system property controlling the size of the cache used by {@link CRS}.
+     */
+    public static final String SIZE_PROPERTY = "org.geotools.referencing.mathTransformCacheSize";
+
+    /**
+     * The default size of the cache used by {@link CRS}.
+     */
+    public static final int DEFAULT_SIZE = 1000;
+
+    static final Logger LOGGER = Logging.getLogger(MathTransformCache.class);
+
+    /**
+     * The key of the cache entries. The CRS hash codes are computed by walking the whole CRS
+     * structure, so we compute the hash only once per lookup.
+     */
+    private static final class Key {
+        final CoordinateReferenceSystem source;
+        final CoordinateReferenceSystem target;
+        final boolean lenient;
+        final int hash;
+
+        Key(CoordinateReferenceSystem source, CoordinateReferenceSystem target, boolean lenient) {
+            this.source = source;
+            this.target = target;
+            this.lenient = lenient;
+            this.hash = (source.hashCode() * 31 + target.hashCode()) * 31 + (lenient ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            // the CRS are usually cached by the authority factories, check identity first
+            return hash == that.hash && lenient == that.lenient
+                    && (source == that.source || source.equals(that.source))
+                    && (target == that.target || target.equals(that.target));
+        }
+    }
+
+    /**
+     * A cached transform, along with the time it was last used.
+     */
+    private static final class Entry {
+        final MathTransform transform;
+        volatile long lastAccess;
+
+        Entry(MathTransform transform, long lastAccess) {
+            this.transform = transform;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final ConcurrentHashMap<Key, Entry> entries;
+
+    private final int maxSize;
+
+    /**
+     * A logical clock used to order the accesses, cheaper than reading the system time.
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize The maximum number of transforms kept in the cache, zero to disable caching.
+     */
+    public MathTransformCache(final int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The cache size cannot be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<Key, Entry>(Math.min(maxSize, 1024) + 16, 0.75f,
+                Math.max(16, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    /**
+     * Returns the math transform between the specified CRS, looking it up with
+     * {@link CRS#getCoordinateOperationFactory(boolean)} only if it is not already cached.
+     *
+     * @param  sourceCRS The source CRS.
+     * @param  targetCRS The target CRS.
+     * @param  lenient {@code true} if the math transform should be created even when there is
+     *         no information available for a datum shift.
+     * @return The math transform from {@code sourceCRS} to {@code targetCRS}.
+     * @throws FactoryException If no math transform can be created for the specified source and
+     *         target CRS.
+     */
+    public MathTransform getMathTransform(final CoordinateReferenceSystem sourceCRS,
+                                          final CoordinateReferenceSystem targetCRS,
+                                          final boolean lenient)
+            throws FactoryException
+    {
+        if (maxSize == 0) {
+            misses.incrementAndGet();
+            return createMathTransform(sourceCRS, targetCRS, lenient);
+        }
+        final Key key = new Key(sourceCRS, targetCRS, lenient);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            entry.lastAccess = clock.incrementAndGet();
+            return entry.transform;
+        }
+
+        // concurrent misses on the same key might both compute the transform, that's fine,
+        // the operation factories are thread safe and the results are equivalent
+        misses.incrementAndGet();
+        final MathTransform transform = createMathTransform(sourceCRS, targetCRS, lenient);
+        entry = new Entry(transform, clock.incrementAndGet());
+        final Entry previous = entries.putIfAbsent(key, entry);
+        if (previous != null) {
+            return previous.transform;
+        }
+        if (entries.size() > maxSize) {
+            evict();
+        }
+        return transform;
+    }
+
+    private static MathTransform createMathTransform(final CoordinateReferenceSystem sourceCRS,
+                                                     final CoordinateReferenceSystem targetCRS,
+                                                     final boolean lenient)
+            throws FactoryException
+    {
+        return CRS.getCoordinateOperationFactory(lenient).createOperation(sourceCRS, targetCRS)
+                .getMathTransform();
+    }
+
+    /**
+     * Evicts the least recently used entries, leaving some room so that we don't have to evict
+     * again at the next miss. Only one thread does the eviction at any given time.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final int target = maxSize - maxSize / 10;
+            final int excess = entries.size() - target;
+            if (excess <= 0) {
+                return;
+            }
+            final List<Map.Entry<Key, Entry>> sorted =
+                    new ArrayList<Map.Entry<Key, Entry>>(entries.entrySet());
+            // snapshot the access times, they may change while sorting
+            final long[] accesses = new long[sorted.size()];
+            final List<Integer> positions = new ArrayList<Integer>(sorted.size());
+            for (int i = 0; i < accesses.length; i++) {
+                accesses[i] = sorted.get(i).getValue().lastAccess;
+                positions.add(i);
+            }
+            Collections.sort(positions, new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    final long a1 = accesses[o1];
+                    final long a2 = accesses[o2];
+                    return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+                }
+            });
+            for (int i = 0; i < excess && i < positions.size(); i++) {
+                final Map.Entry<Key, Entry> victim = sorted.get(positions.get(i));
+                if (entries.remove(victim.getKey(), victim.getValue())) {
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Decodes the specified CRS codes and caches the math transforms between all of them, so
+     * that the first requests do not have to pay for the operation path search. The codes that
+     * cannot be decoded, and the pairs that cannot be transformed, are logged and skipped.
+     *
+     * @param  codes The CRS codes, as accepted by {@link CRS#decode(String)}.
+     * @param  lenient Whether the transforms to be cached are the lenient or the strict ones.
+     * @return The number of transforms successfully cached.
+     */
+    public int warmUp(final Collection<String> codes, final boolean lenient) {
+        final List<CoordinateReferenceSystem> crsList = new ArrayList<CoordinateReferenceSystem>();
+        for (final String code : codes) {
+            try {
+                crsList.add(CRS.decode(code));
+            } catch (FactoryException e) {
+                LOGGER.log(Level.WARNING, "Could not decode " + code + " during the warm up", e);
+            }
+        }
+        int count = 0;
+        for (final CoordinateReferenceSystem source : crsList) {
+            for (final CoordinateReferenceSystem target : crsList) {
+                if (source == target) {
+                    continue;
+                }
+                try {
+                    getMathTransform(source, target, lenient);
+                    count++;
+                } catch (FactoryException e) {
+                    LOGGER.log(Level.FINE, "Could not find a transform between "
+                            + CRS.toSRS(source) + " and " + CRS.toSRS(target), e);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes all the cached transforms. The statistics are not reset.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the maximum number of transforms kept in the cache.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of transforms currently cached.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups served from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that required the creation of a new transform.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of transforms evicted to keep the cache within its maximum size.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+}
@@ -267,6 +267,98 @@ public class AlbersEqualArea extends MapProjection {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset,
+                                       final int numPts) throws ProjectionException
+    {
+        ProjectionException firstException = null;
+        for (int i=offset, end=offset + 2*numPts; i<end; i+=2) {
+            final double x = ordinates[i] * n;
+            final double y = ordinates[i+1];
+            double rho;
+            if (isSpherical) {
+                rho = c - n*2 * sin(y);
+            } else {
+                rho = c - n * qsfn(sin(y));
+            }
+            if (rho < 0.0) {
+                if (rho > -EPSILON) {
+                    rho = 0.0;
+                } else {
+                    ordinates[i  ] = Double.NaN;
+                    ordinates[i+1] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = new ProjectionException(ErrorKeys.TOLERANCE_ERROR);
+                    }
+                    continue;
+                }
+            }
+            rho = sqrt(rho) / n;
+            ordinates[i  ] =        rho * sin(x);
+            ordinates[i+1] = rho0 - rho * cos(x);
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+                                              final int numPts) throws ProjectionException
+    {
+        ProjectionException firstException = null;
+        for (int i=offset, end=offset + 2*numPts; i<end; i+=2) {
+            double x = ordinates[i];
+            double y = rho0 - ordinates[i+1];
+            double rho = hypot(x, y);
+            if (rho > EPSILON) {
+                if (n < 0.0) {
+                    rho = -rho;
+                    x   = -x;
+                    y   = -y;
+                }
+                ordinates[i] = atan2(x, y) / n;
+                y = rho * n;
+                if (isSpherical) {
+                    y = (c - y * y) / (n*2);
+                    if (abs(y) <= 1.0){
+                        y = asin(y);
+                    }
+                    else {
+                        y = (y < 0.0) ? -PI/2.0 : PI/2.0;
+                    }
+                } else {
+                    y = (c - y*y) / n;
+                    if (abs(ec - abs(y)) > EPSILON) {
+                        try {
+                            y = phi1(y);
+                        } catch (ProjectionException exception) {
+                            ordinates[i] = y = Double.NaN;
+                            if (firstException == null) {
+                                firstException = exception;
+                            }
+                        }
+                    } else {
+                        y = (y < 0.0) ? -PI/2.0 : PI/2.0;
+                    }
+                }
+                ordinates[i+1] = y;
+            } else {
+                ordinates[i  ] = 0.0;
+                ordinates[i+1] = n > 0.0 ? PI/2.0 : - PI/2.0;
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
     /**
      * Iteratively solves equation (3-16) from Snyder.
      *
@@ -280,6 +280,91 @@ public abstract class LambertConformal extends MapProjection {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset,
+                                       final int numPts) throws ProjectionException
+    {
+        ProjectionException firstException = null;
+        for (int i=offset, end=offset + 2*numPts; i<end; i+=2) {
+            double x = ordinates[i];
+            final double y = ordinates[i+1];
+            final double rho;
+            // Snyder p. 108
+            if (abs(abs(y) - PI/2) < EPSILON) {
+                if (y*n <= 0) {
+                    ordinates[i  ] = Double.NaN;
+                    ordinates[i+1] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = new ProjectionException(y);
+                    }
+                    continue;
+                } else {
+                    rho = 0;
+                }
+            } else if (isSpherical) {
+                rho = F * pow(tan(PI/4 + 0.5*y), -n);
+            } else {
+                rho = F * pow(tsfn(y, sin(y)), n);
+            }
+            x *= n;
+            if (belgium) {
+                x -= BELGE_A;
+            }
+            ordinates[i  ] =        rho * sin(x);
+            ordinates[i+1] = rho0 - rho * cos(x);
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+                                              final int numPts) throws ProjectionException
+    {
+        ProjectionException firstException = null;
+        for (int i=offset, end=offset + 2*numPts; i<end; i+=2) {
+            double x = ordinates[i];
+            double y = rho0 - ordinates[i+1];
+            double rho = hypot(x, y);  // Zero when the latitude is 90 degrees.
+            if (rho > EPSILON) {
+                if (n < 0) {
+                    rho = -rho;
+                    x = -x;
+                    y = -y;
+                }
+                double theta = atan2(x, y);
+                if (belgium) {
+                    theta += BELGE_A;
+                }
+                ordinates[i] = theta/n;
+                if (isSpherical) {
+                    ordinates[i+1] = 2.0 * atan(pow(F/rho, 1.0/n)) - PI/2;
+                } else try {
+                    ordinates[i+1] = cphi2(pow(rho/F, 1.0/n));
+                } catch (ProjectionException exception) {
+                    ordinates[i  ] = Double.NaN;
+                    ordinates[i+1] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = exception;
+                    }
+                }
+            } else {
+                ordinates[i  ] = 0.0;
+                ordinates[i+1] = n < 0 ? -(PI/2) : (PI/2);
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
     /**
      * Returns a hash value for this projection.
      */
@@ -827,6 +827,90 @@ public abstract class MapProjection extends AbstractMathTransform
     protected abstract Point2D transformNormalized(double lambda, double phi, final Point2D ptDst)
             throws ProjectionException;
 
+    /**
+     * Transforms in place an array of normalized (<var>lambda</var>,<var>phi</var>) pairs, with
+     * the same conventions as {@link #transformNormalized(double, double, Point2D)}. This method
+     * is invoked by {@link #transform(double[], int, double[], int, int)}, once for the whole
+     * array.
+     * <p>
+     * The default implementation invokes {@code transformNormalized(lambda, phi, ptDst)} for
+     * each point. Subclasses can override it with an allocation free loop, but must then keep
+     * it consistent with the single point version in their own subclasses too.
+     *
+     * @param ordinates The (<var>lambda</var>,<var>phi</var>) pairs in radians, replaced by the
+     *                  projected (<var>x</var>,<var>y</var>) pairs on a unit sphere or ellipse.
+     * @param offset    The index of the first ordinate to transform.
+     * @param numPts    The number of points to transform.
+     * @throws ProjectionException if a point can't be transformed. All the other points are
+     *         transformed anyways, the ones that can't be transformed are set to {@link Double#NaN}.
+     *
+     * @since 9.0
+     */
+    protected void transformNormalized(final double[] ordinates, final int offset, final int numPts)
+            throws ProjectionException
+    {
+        final Point2D.Double point = new Point2D.Double();
+        ProjectionException firstException = null;
+        for (int i=offset, end=offset + 2*numPts; i<end; i+=2) {
+            try {
+                transformNormalized(ordinates[i], ordinates[i+1], point);
+                ordinates[i  ] = point.x;
+                ordinates[i+1] = point.y;
+            } catch (ProjectionException exception) {
+                ordinates[i  ] = Double.NaN;
+                ordinates[i+1] = Double.NaN;
+                if (firstException == null) {
+                    firstException = exception;
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Inverse transforms in place an array of normalized (<var>x</var>,<var>y</var>) pairs, with
+     * the same conventions as {@link #inverseTransformNormalized(double, double, Point2D)}. This
+     * method is invoked by the inverse projection once for the whole array.
+     * <p>
+     * The default implementation invokes {@code inverseTransformNormalized(x, y, ptDst)} for
+     * each point. Subclasses can override it with an allocation free loop, but must then keep
+     * it consistent with the single point version in their own subclasses too.
+     *
+     * @param ordinates The (<var>x</var>,<var>y</var>) pairs on a unit sphere or ellipse,
+     *                  replaced by the (<var>lambda</var>,<var>phi</var>) pairs in radians.
+     * @param offset    The index of the first ordinate to transform.
+     * @param numPts    The number of points to transform.
+     * @throws ProjectionException if a point can't be transformed. All the other points are
+     *         transformed anyways, the ones that can't be transformed are set to {@link Double#NaN}.
+     *
+     * @since 9.0
+     */
+    protected void inverseTransformNormalized(final double[] ordinates, final int offset,
+                                              final int numPts)
+            throws ProjectionException
+    {
+        final Point2D.Double point = new Point2D.Double();
+        ProjectionException firstException = null;
+        for (int i=offset, end=offset + 2*numPts; i<end; i+=2) {
+            try {
+                inverseTransformNormalized(ordinates[i], ordinates[i+1], point);
+                ordinates[i  ] = point.x;
+                ordinates[i+1] = point.y;
+            } catch (ProjectionException exception) {
+                ordinates[i  ] = Double.NaN;
+                ordinates[i+1] = Double.NaN;
+                if (firstException == null) {
+                    firstException = exception;
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
     /**
      * Transforms the specified {@code ptSrc} and stores the result in {@code ptDst}.
      * <p>
@@ -882,47 +966,64 @@ public abstract class MapProjection extends AbstractMathTransform
      *         have value {@link Double#NaN}. If more than one point can't be transformed, then this
      *         exception may be about an arbitrary point.
      */
-    public final void transform(final double[] srcPts, int srcOff,
-                                final double[] dstPts, int dstOff, int numPts)
+    public final void transform(final double[] srcPts, final int srcOff,
+                                final double[] dstPts, final int dstOff, final int numPts)
             throws ProjectionException
     {
         /*
-         * Vérifie s'il faudra parcourir le tableau en sens inverse.
-         * Ce sera le cas si les tableaux source et destination se
-         * chevauchent et que la destination est après la source.
+         * Works in place in the destination array: the array copy takes care of overlapping
+         * source and destination, then the normalization, the projection and the
+         * denormalization are each applied to the whole array in a single loop.
          */
-        final boolean reverse = (srcPts == dstPts && srcOff < dstOff &&
-                                 srcOff + (2*numPts) > dstOff);
-        if (reverse) {
-            srcOff += 2*numPts;
-            dstOff += 2*numPts;
-        }
-        final Point2D.Double point = new Point2D.Double();
-        ProjectionException firstException = null;
-        while (--numPts >= 0) {
-            try {
-                point.x = srcPts[srcOff++];
-                point.y = srcPts[srcOff++];
-                transform(point, point);
-                dstPts[dstOff++] = point.x;
-                dstPts[dstOff++] = point.y;
-            } catch (ProjectionException exception) {
-                dstPts[dstOff++] = Double.NaN;
-                dstPts[dstOff++] = Double.NaN;
-                if (firstException == null) {
-                    firstException = exception;
+        double[] original = null;
+        assert (original = copy(srcPts, srcOff, numPts)) != null;
+        System.arraycopy(srcPts, srcOff, dstPts, dstOff, 2*numPts);
+        final int end = dstOff + 2*numPts;
+        for (int i=dstOff; i<end; i+=2) {
+            final double x = dstPts[i];
+            final double y = dstPts[i+1];
+            if (verifyCoordinateRanges()) {
+                if (verifyGeographicRanges(this, x, y)) {
+                    warningLogged();
                 }
             }
-            if (reverse) {
-                srcOff -= 4;
-                dstOff -= 4;
+            // See transform(Point2D, Point2D) for the reason why we don't always roll
+            dstPts[i  ] = centralMeridian != 0 ?
+                    rollLongitude(toRadians(x) - centralMeridian) : toRadians(x);
+            dstPts[i+1] = toRadians(y);
+        }
+        ProjectionException failure = null;
+        try {
+            transformNormalized(dstPts, dstOff, numPts);
+        } catch (ProjectionException exception) {
+            failure = exception;
+        }
+        for (int i=dstOff; i<end; i+=2) {
+            dstPts[i  ] = globalScale*dstPts[i  ] + falseEasting;
+            dstPts[i+1] = globalScale*dstPts[i+1] + falseNorthing;
+        }
+        if (invertible && original != null) {
+            for (int i=0, j=dstOff; j<end; i+=2, j+=2) {
+                if (!Double.isNaN(dstPts[j])) {
+                    assert checkReciprocal(new Point2D.Double(dstPts[j], dstPts[j+1]),
+                            new Point2D.Double(original[i], original[i+1]), true);
+                }
             }
         }
-        if (firstException != null) {
-            throw firstException;
+        if (failure != null) {
+            throw failure;
         }
     }
 
+    /**
+     * Returns a copy of the specified points, used for assertions only.
+     */
+    private static double[] copy(final double[] points, final int offset, final int numPts) {
+        final double[] copy = new double[2*numPts];
+        System.arraycopy(points, offset, copy, 0, 2*numPts);
+        return copy;
+    }
+
     /**
      * Transforms a list of coordinate point ordinal values. Ordinates must be
      * (<var>longitude</var>,<var>latitude</var>) pairs in decimal degrees.
@@ -1049,44 +1150,50 @@ public abstract class MapProjection extends AbstractMathTransform
          *         than one point can't be transformed, then this exception may be about
          *         an arbitrary point.
          */
-        public final void transform(final double[] src,  int srcOffset,
-                                    final double[] dest, int dstOffset, int numPts)
+        public final void transform(final double[] src,  final int srcOffset,
+                                    final double[] dest, final int dstOffset, final int numPts)
                 throws TransformException
         {
             /*
-             * Vérifie s'il faudra parcourir le tableau en sens inverse.
-             * Ce sera le cas si les tableaux source et destination se
-             * chevauchent et que la destination est après la source.
+             * Works in place in the destination array, see MapProjection.transform(double[]...)
              */
-            final boolean reverse = (src==dest && srcOffset<dstOffset &&
-                                     srcOffset+(2*numPts) > dstOffset);
-            if (reverse) {
-                srcOffset += 2*numPts;
-                dstOffset += 2*numPts;
+            double[] original = null;
+            assert (original = copy(src, srcOffset, numPts)) != null;
+            System.arraycopy(src, srcOffset, dest, dstOffset, 2*numPts);
+            final int end = dstOffset + 2*numPts;
+            for (int i=dstOffset; i<end; i+=2) {
+                dest[i  ] = (dest[i  ] - falseEasting ) / globalScale;
+                dest[i+1] = (dest[i+1] - falseNorthing) / globalScale;
             }
-            final Point2D.Double point = new Point2D.Double();
-            ProjectionException firstException = null;
-            while (--numPts>=0) {
-                try {
-                    point.x = src[srcOffset++];
-                    point.y = src[srcOffset++];
-                    transform(point, point);
-                    dest[dstOffset++] = point.x;
-                    dest[dstOffset++] = point.y;
-                } catch (ProjectionException exception) {
-                    dest[dstOffset++] = Double.NaN;
-                    dest[dstOffset++] = Double.NaN;
-                    if (firstException == null) {
-                        firstException = exception;
+            ProjectionException failure = null;
+            try {
+                inverseTransformNormalized(dest, dstOffset, numPts);
+            } catch (ProjectionException exception) {
+                failure = exception;
+            }
+            for (int i=dstOffset; i<end; i+=2) {
+                // See transform(Point2D, Point2D) for the reason why we don't always roll
+                final double x = toDegrees(centralMeridian != 0 ?
+                                 rollLongitude(dest[i] + centralMeridian) : dest[i]);
+                final double y = toDegrees(dest[i+1]);
+                dest[i  ] = x;
+                dest[i+1] = y;
+                if (verifyCoordinateRanges()) {
+                    if (verifyGeographicRanges(this, x, y)) {
+                        warningLogged();
                     }
                 }
-                if (reverse) {
-                    srcOffset -= 4;
-                    dstOffset -= 4;
+            }
+            if (original != null) {
+                for (int i=0, j=dstOffset; j<end; i+=2, j+=2) {
+                    if (!Double.isNaN(dest[j])) {
+                        assert checkReciprocal(new Point2D.Double(dest[j], dest[j+1]),
+                                new Point2D.Double(original[i], original[i+1]), false);
+                    }
                 }
             }
-            if (firstException != null) {
-                throw firstException;
+            if (failure != null) {
+                throw failure;
             }
         }
 
@@ -0,0 +1,96 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Measures the throughput of {@link CRS#findMathTransform} lookups with 1 to 64 threads, with
+ * the transform cache enabled and disabled.
+ * <p>
+ * Usage: <code>MathTransformCacheBenchmark [seconds per run]</code>
+ * </p>
+ *
+ * @source $URL$
+ */
+public class MathTransformCacheBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final long millis = (args.length > 0 ? Long.parseLong(args[0]) : 2) * 1000;
+
+        final List<CoordinateReferenceSystem> crsList = new ArrayList<CoordinateReferenceSystem>();
+        crsList.add(DefaultGeographicCRS.WGS84);
+        crsList.add(CRS.parseWKT(WKT.UTM_10N));
+        crsList.add(CRS.parseWKT(WKT.UTM_58S));
+        crsList.add(CRS.parseWKT(WKT.MERCATOR));
+        crsList.add(CRS.parseWKT(WKT.MERCATOR_GOOGLE));
+        crsList.add(CRS.parseWKT(WKT.POLAR_STEREOGRAPHIC));
+
+        final MathTransformCache cached = new MathTransformCache(MathTransformCache.DEFAULT_SIZE);
+        final MathTransformCache uncached = new MathTransformCache(0);
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            run("cached", cached, crsList, threads, millis);
+            run("uncached", uncached, crsList, threads, millis);
+        }
+        System.out.println("Cache hits: " + cached.getHitCount() + ", misses: "
+                + cached.getMissCount() + ", evictions: " + cached.getEvictionCount());
+    }
+
+    static void run(final String name, final MathTransformCache cache,
+            final List<CoordinateReferenceSystem> crsList, final int threads, final long millis)
+            throws Exception {
+        final AtomicLong lookups = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threads);
+        final long end = System.currentTimeMillis() + millis;
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            new Thread() {
+                public void run() {
+                    try {
+                        long count = 0;
+                        int i = offset;
+                        final int size = crsList.size();
+                        while (System.currentTimeMillis() < end) {
+                            final CoordinateReferenceSystem source = crsList.get(i % size);
+                            final CoordinateReferenceSystem target = crsList.get((i / size + 1 + i)
+                                    % size);
+                            if (source != target) {
+                                cache.getMathTransform(source, target, true);
+                                count++;
+                            }
+                            i++;
+                        }
+                        lookups.addAndGet(count);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        System.out.println(name + ", " + threads + " threads: "
+                + Math.round(lookups.get() * 1000d / millis) + " lookups/s");
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+/**
+ * Tests the {@link MathTransformCache}.
+ *
+ *
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class MathTransformCacheTest {
+    /**
+     * Tests that the transforms are cached, also when looked up with equal but distinct CRS.
+     */
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        final MathTransformCache cache = new MathTransformCache(10);
+        final CoordinateReferenceSystem utm = CRS.parseWKT(WKT.UTM_10N);
+        final MathTransform mt = cache.getMathTransform(DefaultGeographicCRS.WGS84, utm, false);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+
+        assertSame(mt, cache.getMathTransform(DefaultGeographicCRS.WGS84, utm, false));
+        assertSame(mt, cache.getMathTransform(DefaultGeographicCRS.WGS84,
+                CRS.parseWKT(WKT.UTM_10N), false));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        // the lenient flag is part of the key
+        cache.getMathTransform(DefaultGeographicCRS.WGS84, utm, true);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that the cache stays within its bounds, evicting the least recently used entries.
+     */
+    @Test
+    public void testEviction() throws Exception {
+        final MathTransformCache cache = new MathTransformCache(2);
+        final CoordinateReferenceSystem utm10 = CRS.parseWKT(WKT.UTM_10N);
+        final CoordinateReferenceSystem utm58 = CRS.parseWKT(WKT.UTM_58S);
+        final CoordinateReferenceSystem wgs84 = DefaultGeographicCRS.WGS84;
+        cache.getMathTransform(wgs84, utm10, false);
+        cache.getMathTransform(wgs84, utm58, false);
+        // use the first one, so that the second becomes the least recently used
+        cache.getMathTransform(wgs84, utm10, false);
+        cache.getMathTransform(utm10, wgs84, false);
+        assertTrue(cache.size() <= 2);
+        assertEquals(1, cache.getEvictionCount());
+
+        final long misses = cache.getMissCount();
+        cache.getMathTransform(wgs84, utm10, false);
+        assertEquals(misses, cache.getMissCount());
+        cache.getMathTransform(wgs84, utm58, false);
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    /**
+     * Tests that a zero size disables caching.
+     */
+    @Test
+    public void testDisabled() throws Exception {
+        final MathTransformCache cache = new MathTransformCache(0);
+        final CoordinateReferenceSystem utm = CRS.parseWKT(WKT.UTM_10N);
+        cache.getMathTransform(DefaultGeographicCRS.WGS84, utm, false);
+        cache.getMathTransform(DefaultGeographicCRS.WGS84, utm, false);
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * Tests the warm up, invalid codes are skipped.
+     */
+    @Test
+    public void testWarmUp() throws Exception {
+        final MathTransformCache cache = new MathTransformCache(100);
+        final int count = cache.warmUp(Arrays.asList("CRS:84", "AUTO:42001,-100,45",
+                "NOT:A_CODE"), true);
+        assertEquals(2, count);
+        assertEquals(2, cache.size());
+        cache.getMathTransform(CRS.decode("CRS:84"), CRS.decode("AUTO:42001,-100,45"), true);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    /**
+     * Tests that {@link CRS#findMathTransform} goes through the cache.
+     */
+    @Test
+    public void testFindMathTransform() throws Exception {
+        final CoordinateReferenceSystem utm = CRS.parseWKT(WKT.UTM_58S);
+        final MathTransformCache cache = CRS.getMathTransformCache();
+        final long hits = cache.getHitCount();
+        final MathTransform mt = CRS.findMathTransform(DefaultGeographicCRS.WGS84, utm);
+        assertSame(mt, CRS.findMathTransform(DefaultGeographicCRS.WGS84, utm));
+        assertTrue(cache.getHitCount() > hits);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.operation.projection;
+
+import java.awt.geom.Point2D;
+
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.MathTransformFactory;
+import org.opengis.referencing.operation.TransformException;
+
+import org.geotools.referencing.ReferencingFactoryFinder;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests that the bulk array transforms of the map projections give the same results
+ * as the point by point ones.
+ *
+ *
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class BulkTransformTest {
+    /**
+     * The WGS84 ellipsoid axis.
+     */
+    private static final double SEMI_MAJOR = 6378137.0, SEMI_MINOR = 6356752.314245;
+
+    /** factory to use to create projection transforms*/
+    private MathTransformFactory mtFactory;
+
+    @Before
+    public void setUp() {
+        mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
+    }
+
+    private ParameterValueGroup parameters(final String name, final boolean spherical) {
+        final ParameterValueGroup params = mtFactory.getDefaultParameters(name);
+        params.parameter("semi_major").setValue(SEMI_MAJOR);
+        params.parameter("semi_minor").setValue(spherical ? SEMI_MAJOR : SEMI_MINOR);
+        return params;
+    }
+
+    /**
+     * Builds a grid of (longitude, latitude) points.
+     */
+    private static double[] grid(double minLon, double maxLon, double minLat, double maxLat) {
+        final int steps = 20;
+        final double[] points = new double[2 * steps * steps];
+        int k = 0;
+        for (int i=0; i<steps; i++) {
+            for (int j=0; j<steps; j++) {
+                points[k++] = minLon + (maxLon - minLon) * i / (steps - 1);
+                points[k++] = minLat + (maxLat - minLat) * j / (steps - 1);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Checks the bulk transform against the point by point one, in both directions.
+     */
+    private static void assertBulkConsistent(final MathTransform2D mt, final double[] geographic)
+            throws TransformException
+    {
+        final int numPts = geographic.length / 2;
+        final double[] projected = new double[geographic.length];
+        mt.transform(geographic, 0, projected, 0, numPts);
+        final Point2D.Double point = new Point2D.Double();
+        for (int i=0; i<numPts; i++) {
+            point.setLocation(geographic[2*i], geographic[2*i+1]);
+            mt.transform(point, point);
+            assertEquals(point.x, projected[2*i  ], 1E-9);
+            assertEquals(point.y, projected[2*i+1], 1E-9);
+        }
+
+        final MathTransform2D inverse = mt.inverse();
+        final double[] back = new double[projected.length];
+        inverse.transform(projected, 0, back, 0, numPts);
+        for (int i=0; i<numPts; i++) {
+            point.setLocation(projected[2*i], projected[2*i+1]);
+            inverse.transform(point, point);
+            assertEquals(point.x, back[2*i  ], 1E-12);
+            assertEquals(point.y, back[2*i+1], 1E-12);
+            assertEquals(geographic[2*i  ], back[2*i  ], 1E-6);
+            assertEquals(geographic[2*i+1], back[2*i+1], 1E-6);
+        }
+
+        // in place, with overlapping source and destination
+        final double[] shifted = new double[geographic.length + 2];
+        System.arraycopy(geographic, 0, shifted, 0, geographic.length);
+        mt.transform(shifted, 0, shifted, 2, numPts);
+        for (int i=0; i<projected.length; i++) {
+            assertEquals(projected[i], shifted[i+2], 1E-9);
+        }
+    }
+
+    @Test
+    public void testTransverseMercator() throws Exception {
+        for (final boolean spherical : new boolean[] {false, true}) {
+            final ParameterValueGroup params = parameters("Transverse_Mercator", spherical);
+            params.parameter("central_meridian").setValue(9.0);
+            params.parameter("scale_factor")    .setValue(0.9996);
+            params.parameter("false_easting")   .setValue(500000.0);
+            final MathTransform2D mt = (MathTransform2D) mtFactory.createParameterizedTransform(params);
+            assertBulkConsistent(mt, grid(4, 14, -60, 70));
+        }
+    }
+
+    @Test
+    public void testMercator() throws Exception {
+        for (final boolean spherical : new boolean[] {false, true}) {
+            final ParameterValueGroup params = parameters("Mercator_1SP", spherical);
+            params.parameter("central_meridian").setValue(110.0);
+            params.parameter("false_easting")   .setValue(3900000.0);
+            final MathTransform2D mt = (MathTransform2D) mtFactory.createParameterizedTransform(params);
+            assertBulkConsistent(mt, grid(-60, 170, -80, 80));
+        }
+    }
+
+    @Test
+    public void testLambertConformal() throws Exception {
+        for (final boolean spherical : new boolean[] {false, true}) {
+            final ParameterValueGroup params = parameters("Lambert_Conformal_Conic_2SP", spherical);
+            params.parameter("central_meridian")   .setValue(-96.0);
+            params.parameter("latitude_of_origin") .setValue( 39.0);
+            params.parameter("standard_parallel_1").setValue( 33.0);
+            params.parameter("standard_parallel_2").setValue( 45.0);
+            final MathTransform2D mt = (MathTransform2D) mtFactory.createParameterizedTransform(params);
+            assertBulkConsistent(mt, grid(-125, -65, 20, 60));
+        }
+    }
+
+    @Test
+    public void testAlbersEqualArea() throws Exception {
+        for (final boolean spherical : new boolean[] {false, true}) {
+            final ParameterValueGroup params = parameters("Albers_Conic_Equal_Area", spherical);
+            params.parameter("central_meridian")   .setValue(-96.0);
+            params.parameter("latitude_of_origin") .setValue( 23.0);
+            params.parameter("standard_parallel_1").setValue( 29.5);
+            params.parameter("standard_parallel_2").setValue( 45.5);
+            final MathTransform2D mt = (MathTransform2D) mtFactory.createParameterizedTransform(params);
+            assertBulkConsistent(mt, grid(-125, -65, 20, 60));
+        }
+    }
+
+    /**
+     * Tests that the points that cannot be projected are set to NaN, without
+     * preventing the others from being projected.
+     */
+    @Test
+    public void testFailingPoint() throws Exception {
+        final ParameterValueGroup params = parameters("Mercator_1SP", false);
+        final MathTransform2D mt = (MathTransform2D) mtFactory.createParameterizedTransform(params);
+        final double[] points = new double[] {10, 10, 10, 90, 20, 20};
+        try {
+            mt.transform(points, 0, points, 0, 3);
+            fail("The pole cannot be projected in Mercator");
+        } catch (ProjectionException e) {
+            // fine
+        }
+        assertTrue(Double.isNaN(points[2]));
+        assertTrue(Double.isNaN(points[3]));
+        final Point2D p = mt.transform(new Point2D.Double(20, 20), null);
+        assertEquals(p.getX(), points[4], 1E-9);
+        assertEquals(p.getY(), points[5], 1E-9);
+    }
+}
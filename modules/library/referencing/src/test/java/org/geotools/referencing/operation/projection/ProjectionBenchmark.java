@@ -0,0 +1,108 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.operation.projection;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import org.geotools.referencing.ReferencingFactoryFinder;
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.MathTransformFactory;
+
+/**
+ * Compares the points/second of the bulk array transforms of the map projections against
+ * the point by point path, in both directions. Run it without assertions enabled.
+ * <p>
+ * Usage: <code>ProjectionBenchmark [points]</code>
+ * </p>
+ *
+ * @source $URL$
+ */
+public class ProjectionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final MathTransformFactory mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
+
+        ParameterValueGroup tm = mtFactory.getDefaultParameters("Transverse_Mercator");
+        tm.parameter("central_meridian").setValue(-99.0);
+        tm.parameter("scale_factor").setValue(0.9996);
+        tm.parameter("false_easting").setValue(500000.0);
+        ParameterValueGroup mercator = mtFactory.getDefaultParameters("Mercator_1SP");
+        mercator.parameter("central_meridian").setValue(-96.0);
+        ParameterValueGroup lambert = mtFactory.getDefaultParameters("Lambert_Conformal_Conic_2SP");
+        lambert.parameter("central_meridian").setValue(-96.0);
+        lambert.parameter("latitude_of_origin").setValue(39.0);
+        lambert.parameter("standard_parallel_1").setValue(33.0);
+        lambert.parameter("standard_parallel_2").setValue(45.0);
+        ParameterValueGroup albers = mtFactory.getDefaultParameters("Albers_Conic_Equal_Area");
+        albers.parameter("central_meridian").setValue(-96.0);
+        albers.parameter("latitude_of_origin").setValue(23.0);
+        albers.parameter("standard_parallel_1").setValue(29.5);
+        albers.parameter("standard_parallel_2").setValue(45.5);
+
+        // a random set of points in the continental US
+        final Random random = new Random(0);
+        final double[] points = new double[count * 2];
+        for (int i = 0; i < points.length; i += 2) {
+            points[i] = -102 + random.nextDouble() * 6;
+            points[i + 1] = 25 + random.nextDouble() * 24;
+        }
+
+        for (ParameterValueGroup params : new ParameterValueGroup[] { tm, mercator, lambert, albers }) {
+            params.parameter("semi_major").setValue(6378137.0);
+            params.parameter("semi_minor").setValue(6356752.314245);
+            final MathTransform2D mt = (MathTransform2D) mtFactory.createParameterizedTransform(params);
+            final String name = params.getDescriptor().getName().getCode();
+            final double[] projected = new double[points.length];
+            mt.transform(points, 0, projected, 0, count);
+
+            // warm up, then measure
+            for (int i = 0; i < 3; i++) {
+                run(null, mt, points, count);
+                run(null, mt.inverse(), projected, count);
+            }
+            run(name, mt, points, count);
+            run(name + " inverse", mt.inverse(), projected, count);
+        }
+    }
+
+    static void run(String name, MathTransform2D mt, double[] source, int count)
+            throws Exception {
+        final double[] target = new double[source.length];
+        long start = System.nanoTime();
+        final Point2D.Double point = new Point2D.Double();
+        for (int i = 0; i < source.length; i += 2) {
+            point.x = source[i];
+            point.y = source[i + 1];
+            mt.transform(point, point);
+            target[i] = point.x;
+            target[i + 1] = point.y;
+        }
+        final double pointwise = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        mt.transform(source, 0, target, 0, count);
+        final double bulk = (System.nanoTime() - start) / 1e9;
+
+        if (name != null) {
+            System.out.println(name + ": point by point " + Math.round(count / pointwise)
+                    + " points/s, bulk " + Math.round(count / bulk) + " points/s");
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.label;
+
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+/**
+ * A {@link LabelIndex} backed by a uniform grid of packed arrays instead of a quadtree.
+ * <p>
+ * The grid covers the display area, envelopes sticking out of it are registered in the border
+ * cells, so the answers are exactly the same as the ones of the quadtree based index, but
+ * with no tree to balance and no object allocation during the lookups. Best suited for label
+ * dense maps, where the labels are small compared to the display area.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class GridLabelIndex extends LabelIndex {
+
+    /**
+     * The default cell size, in pixels
+     */
+    public static final int DEFAULT_CELL_SIZE = 64;
+
+    final double minX;
+
+    final double minY;
+
+    final double cellSize;
+
+    final int cols;
+
+    final int rows;
+
+    /**
+     * The ids of the envelopes intersecting each cell
+     */
+    final int[][] cells;
+
+    /**
+     * The number of ids actually stored in each cell
+     */
+    final int[] cellCounts;
+
+    /**
+     * The envelopes, as minx, miny, maxx, maxy quadruples
+     */
+    double[] envelopes = new double[256];
+
+    /**
+     * Query stamp of each envelope, avoids testing twice the ones spanning multiple cells
+     */
+    int[] stamps = new int[64];
+
+    int count;
+
+    int stamp;
+
+    public GridLabelIndex(Rectangle2D area) {
+        this(area, DEFAULT_CELL_SIZE);
+    }
+
+    public GridLabelIndex(Rectangle2D area, double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("The cell size must be positive");
+        }
+        this.minX = area.getMinX();
+        this.minY = area.getMinY();
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(area.getWidth() / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(area.getHeight() / cellSize));
+        this.cells = new int[cols * rows][];
+        this.cellCounts = new int[cols * rows];
+    }
+
+    @Override
+    public boolean labelsWithinDistance(Rectangle2D bounds, double distance) {
+        if (distance < 0)
+            return false;
+
+        final double x1 = bounds.getMinX() - distance;
+        final double y1 = bounds.getMinY() - distance;
+        final double x2 = bounds.getMaxX() + distance;
+        final double y2 = bounds.getMaxY() + distance;
+        final int c1 = col(x1);
+        final int c2 = col(x2);
+        final int r1 = row(y1);
+        final int r2 = row(y2);
+        stamp++;
+        for (int r = r1; r <= r2; r++) {
+            for (int c = c1; c <= c2; c++) {
+                final int cell = r * cols + c;
+                final int[] ids = cells[cell];
+                final int n = cellCounts[cell];
+                for (int i = 0; i < n; i++) {
+                    final int id = ids[i];
+                    if (stamps[id] == stamp) {
+                        continue;
+                    }
+                    stamps[id] = stamp;
+                    final int base = id * 4;
+                    // same inclusive test as Envelope.intersects
+                    if (!(envelopes[base] > x2 || envelopes[base + 2] < x1
+                            || envelopes[base + 1] > y2 || envelopes[base + 3] < y1)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void addLabel(LabelCacheItem item, Rectangle2D bounds) {
+        final int id = count++;
+        if (envelopes.length < count * 4) {
+            double[] grown = new double[envelopes.length * 2];
+            System.arraycopy(envelopes, 0, grown, 0, envelopes.length);
+            envelopes = grown;
+            int[] grownStamps = new int[stamps.length * 2];
+            System.arraycopy(stamps, 0, grownStamps, 0, stamps.length);
+            stamps = grownStamps;
+        }
+        final int base = id * 4;
+        envelopes[base] = bounds.getMinX();
+        envelopes[base + 1] = bounds.getMinY();
+        envelopes[base + 2] = bounds.getMaxX();
+        envelopes[base + 3] = bounds.getMaxY();
+
+        final int c1 = col(bounds.getMinX());
+        final int c2 = col(bounds.getMaxX());
+        final int r1 = row(bounds.getMinY());
+        final int r2 = row(bounds.getMaxY());
+        for (int r = r1; r <= r2; r++) {
+            for (int c = c1; c <= c2; c++) {
+                final int cell = r * cols + c;
+                int[] ids = cells[cell];
+                final int n = cellCounts[cell];
+                if (ids == null) {
+                    ids = new int[4];
+                    cells[cell] = ids;
+                } else if (ids.length == n) {
+                    int[] grown = new int[n * 2];
+                    System.arraycopy(ids, 0, grown, 0, n);
+                    ids = grown;
+                    cells[cell] = ids;
+                }
+                ids[n] = id;
+                cellCounts[cell] = n + 1;
+            }
+        }
+    }
+
+    @Override
+    public void reserveArea(List<Rectangle2D> reserved) {
+        for (Rectangle2D area : reserved) {
+            addLabel(null, area);
+        }
+    }
+
+    /**
+     * The column containing the ordinate, clamped to the grid. Clamping preserves the overlap
+     * between intervals, so envelopes outside of the grid are still found
+     */
+    int col(double x) {
+        int c = (int) Math.floor((x - minX) / cellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    int row(double y) {
+        int r = (int) Math.floor((y - minY) / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+}
@@ -23,6 +23,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
@@ -36,6 +37,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -114,6 +121,20 @@ public final class LabelCacheImpl implements LabelCache {
          * for good label/halo centering 
          */
         ADAPTIVE};
+
+    public enum LabelEngineMode {
+        /**
+         * Computes the label candidate locations and lays out the text one label at a time,
+         * while painting, checking for conflicts against a quadtree
+         */
+        SERIAL,
+        /**
+         * Computes the candidate locations and the text layouts of all the labels in parallel
+         * before painting, and checks for conflicts against a packed grid. The priorities and
+         * the placement are the same as in {@link #SERIAL} mode, it pays off on label dense
+         * maps
+         */
+        PARALLEL};
     
     static final Logger LOGGER = Logging.getLogger(LabelCacheImpl.class);
 
@@ -140,6 +161,24 @@ public final class LabelCacheImpl implements LabelCache {
 
     protected LabelRenderingMode labelRenderingMode = LabelRenderingMode.STRING;
 
+    protected LabelEngineMode labelEngineMode = LabelEngineMode.SERIAL;
+
+    /**
+     * The thread pool used to prepare the labels in {@link LabelEngineMode#PARALLEL} mode
+     */
+    private ExecutorService threadPool;
+
+    /**
+     * The thread pool shared by the label caches that have not been given one, created on
+     * first use
+     */
+    private static ExecutorService defaultThreadPool;
+
+    /**
+     * The cache of the label layouts, shared among renders by default
+     */
+    private LabelLayoutCache layoutCache = LabelLayoutCache.getDefaultCache();
+
     protected SLDStyleFactory styleFactory = new SLDStyleFactory();
 
     boolean stop = false;
@@ -172,6 +211,63 @@ public final class LabelCacheImpl implements LabelCache {
         this.labelRenderingMode = mode;
     }
 
+    public LabelEngineMode getLabelEngineMode() {
+        return labelEngineMode;
+    }
+
+    /**
+     * Sets the labelling engine mode
+     */
+    public void setLabelEngineMode(LabelEngineMode mode) {
+        this.labelEngineMode = mode;
+    }
+
+    /**
+     * Sets the thread pool used to prepare the labels in {@link LabelEngineMode#PARALLEL}
+     * mode. If not set, a pool of daemon threads, one per processor, shared by all the label
+     * caches is used
+     * 
+     * @param threadPool
+     */
+    public void setThreadPool(ExecutorService threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    /**
+     * Returns the thread pool shared by the label caches that have not been given one
+     */
+    static synchronized ExecutorService getDefaultThreadPool() {
+        if (defaultThreadPool == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            defaultThreadPool = Executors.newFixedThreadPool(Runtime.getRuntime()
+                    .availableProcessors(), new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    // daemon threads, the pool is never shut down
+                    Thread t = new Thread(r, "GeoTools-Labels-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return defaultThreadPool;
+    }
+
+    public LabelLayoutCache getLayoutCache() {
+        return layoutCache;
+    }
+
+    /**
+     * Sets the cache used to share the label layouts among renders. By default the
+     * {@link LabelLayoutCache#getDefaultCache() shared cache} is used, null disables layout
+     * caching
+     * 
+     * @param layoutCache
+     */
+    public void setLayoutCache(LabelLayoutCache layoutCache) {
+        this.layoutCache = layoutCache;
+    }
+
     public void stop() {
         stop = true;
         activeLayers.clear();
@@ -536,7 +632,12 @@ public final class LabelCacheImpl implements LabelCache {
                     + " are layers that started rendering but have not completed,"
                     + " stop() or endLayer() must be called before end() is called");
         }
-        LabelIndex glyphs = new LabelIndex();
+        LabelIndex glyphs;
+        if (labelEngineMode == LabelEngineMode.PARALLEL) {
+            glyphs = new GridLabelIndex(displayArea);
+        } else {
+            glyphs = new LabelIndex();
+        }
         glyphs.reserveArea( reserved );
 
         // Hack: let's reduce the display area width and height by one pixel.
@@ -560,11 +661,26 @@ public final class LabelCacheImpl implements LabelCache {
             items = getActiveLabels();
         }
         LabelPainter painter = new LabelPainter(graphics, labelRenderingMode);
-        for (LabelCacheItem labelItem : items) {
+        painter.setLayoutCache(layoutCache);
+        LabelCandidate[] candidates = null;
+        if (labelEngineMode == LabelEngineMode.PARALLEL) {
+            candidates = prepareCandidates(items, graphics.getFontRenderContext(), displayArea);
+            if (candidates == null)
+                return;
+        }
+        for (int idx = 0; idx < items.size(); idx++) {
+            LabelCacheItem labelItem = items.get(idx);
             if (stop)
                 return;
             
-            painter.setLabel(labelItem);
+            LabelCandidate candidate = candidates != null ? candidates[idx] : null;
+            if (candidate == null) {
+                painter.setLabel(labelItem);
+            } else if (candidate.layoutError != null) {
+                throw candidate.layoutError;
+            } else {
+                painter.setLabel(labelItem, candidate.layout);
+            }
             try {
                 // LabelCacheItem labelItem = (LabelCacheItem)
                 // labelCache.get(labelIter.next());
@@ -585,15 +701,18 @@ public final class LabelCacheImpl implements LabelCache {
                  */
                 AffineTransform tempTransform = new AffineTransform();
 
+                if (candidate != null && candidate.locationError != null) {
+                    throw candidate.locationError;
+                }
                 Geometry geom = labelItem.getGeometry();
                 if ((geom instanceof Point) || (geom instanceof MultiPoint))
-                    paintPointLabel(painter, tempTransform, displayArea, glyphs);
+                    paintPointLabel(painter, tempTransform, displayArea, glyphs, candidate);
                 else if (((geom instanceof LineString) && !(geom instanceof LinearRing))
                         || (geom instanceof MultiLineString))
-                    paintLineLabels(painter, tempTransform, displayArea, glyphs);
+                    paintLineLabels(painter, tempTransform, displayArea, glyphs, candidate);
                 else if (geom instanceof Polygon || geom instanceof MultiPolygon
                         || geom instanceof LinearRing)
-                    paintPolygonLabel(painter, tempTransform, displayArea, glyphs);
+                    paintPolygonLabel(painter, tempTransform, displayArea, glyphs, candidate);
             } catch (Exception e) {
                 System.out.println("Issues painting " + labelItem.getLabel());
                 // the decimation can cause problems - we try to minimize it
@@ -603,6 +722,130 @@ public final class LabelCacheImpl implements LabelCache {
         }
     }
 
+    /**
+     * Computes the representative locations and the text layouts of the labels in parallel,
+     * returns null if the labelling has been stopped in the meantime
+     */
+    LabelCandidate[] prepareCandidates(List<LabelCacheItem> items, FontRenderContext frc,
+            Rectangle displayArea) {
+        final LabelCandidate[] candidates = new LabelCandidate[items.size()];
+        // the clipping code resets the cached envelopes of the geometries, do it here
+        // once for all as the same geometry might be shared among different labels
+        for (LabelCacheItem item : items) {
+            for (Geometry g : item.getGeoms()) {
+                g.geometryChanged();
+            }
+        }
+
+        ExecutorService localThreadPool = threadPool;
+        final int threads = Runtime.getRuntime().availableProcessors();
+        if (localThreadPool == null) {
+            localThreadPool = getDefaultThreadPool();
+        }
+        try {
+            // a few chunks per thread, the cost of the single labels varies a lot
+            final int chunk = Math.max(64, items.size() / (threads * 4) + 1);
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int start = 0; start < items.size(); start += chunk) {
+                futures.add(localThreadPool.submit(new CandidatePreparer(items, candidates, start,
+                        Math.min(start + chunk, items.size()), frc, displayArea)));
+            }
+            for (Future<?> future : futures) {
+                if (stop) {
+                    for (Future<?> f : futures) {
+                        f.cancel(true);
+                    }
+                    return null;
+                }
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to prepare the labels", e.getCause());
+        }
+
+        return stop ? null : candidates;
+    }
+
+    /**
+     * Computes the representative location of a label, according to the type of the first
+     * geometry, as the painting code does
+     */
+    Object getRepresentativeLocation(LabelCacheItem labelItem, Rectangle displayArea) {
+        Geometry geom = labelItem.getGeometry();
+        if ((geom instanceof Point) || (geom instanceof MultiPoint))
+            return getPointSetRepresentativeLocation(labelItem.getGeoms(), displayArea);
+        else if (((geom instanceof LineString) && !(geom instanceof LinearRing))
+                || (geom instanceof MultiLineString))
+            return getLineSetRepresentativeLocation(labelItem.getGeoms(), displayArea,
+                    labelItem.removeGroupOverlaps(), false);
+        else if (geom instanceof Polygon || geom instanceof MultiPolygon
+                || geom instanceof LinearRing)
+            return getPolySetRepresentativeLocation(labelItem.getGeoms(), displayArea, false);
+        return null;
+    }
+
+    /**
+     * The label layout and location computed in advance, along with the errors found
+     * computing them, which are reported when painting the label
+     */
+    static class LabelCandidate {
+        LabelPainter.LabelLayout layout;
+
+        RuntimeException layoutError;
+
+        Object location;
+
+        Exception locationError;
+    }
+
+    /**
+     * Prepares the candidates for a range of labels
+     */
+    class CandidatePreparer implements Runnable {
+        List<LabelCacheItem> items;
+
+        LabelCandidate[] candidates;
+
+        int start;
+
+        int end;
+
+        FontRenderContext frc;
+
+        Rectangle displayArea;
+
+        CandidatePreparer(List<LabelCacheItem> items, LabelCandidate[] candidates, int start,
+                int end, FontRenderContext frc, Rectangle displayArea) {
+            this.items = items;
+            this.candidates = candidates;
+            this.start = start;
+            this.end = end;
+            this.frc = frc;
+            this.displayArea = displayArea;
+        }
+
+        public void run() {
+            for (int i = start; i < end && !stop; i++) {
+                LabelCacheItem item = items.get(i);
+                LabelCandidate candidate = new LabelCandidate();
+                try {
+                    candidate.layout = LabelPainter.layout(item, frc, layoutCache);
+                } catch (RuntimeException e) {
+                    candidate.layoutError = e;
+                }
+                try {
+                    candidate.location = getRepresentativeLocation(item, displayArea);
+                } catch (Exception e) {
+                    candidate.locationError = e;
+                }
+                candidates[i] = candidate;
+            }
+        }
+    }
+
     private Envelope toEnvelope(Rectangle2D bounds) {
         return new Envelope(bounds.getMinX(), bounds.getMaxX(), bounds.getMinY(), bounds.getMaxY());
     }
@@ -684,10 +927,16 @@ public final class LabelCacheImpl implements LabelCache {
     }
 
     private boolean paintLineLabels(LabelPainter painter, AffineTransform originalTransform,
-            Rectangle displayArea, LabelIndex paintedBounds) throws Exception {
+            Rectangle displayArea, LabelIndex paintedBounds, LabelCandidate candidate)
+            throws Exception {
         final LabelCacheItem labelItem = painter.getLabel();
-        List<LineString> lines = (List<LineString>) getLineSetRepresentativeLocation(labelItem
-                .getGeoms(), displayArea, labelItem.removeGroupOverlaps());
+        List<LineString> lines;
+        if (candidate != null) {
+            lines = (List<LineString>) candidate.location;
+        } else {
+            lines = (List<LineString>) getLineSetRepresentativeLocation(labelItem.getGeoms(),
+                    displayArea, labelItem.removeGroupOverlaps());
+        }
 
         if (lines == null || lines.size() == 0)
             return false;
@@ -986,10 +1235,15 @@ public final class LabelCacheImpl implements LabelCache {
      * up until the radius of the circle becomes bigger than the max displacement
      */
     private boolean paintPointLabel(LabelPainter painter, AffineTransform tempTransform,
-            Rectangle displayArea, LabelIndex glyphs) throws Exception {
+            Rectangle displayArea, LabelIndex glyphs, LabelCandidate candidate) throws Exception {
         LabelCacheItem labelItem = painter.getLabel();
         // get the point onto the shape has to be painted
-        Point point = getPointSetRepresentativeLocation(labelItem.getGeoms(), displayArea);
+        Point point;
+        if (candidate != null) {
+            point = (Point) candidate.location;
+        } else {
+            point = getPointSetRepresentativeLocation(labelItem.getGeoms(), displayArea);
+        }
         if (point == null)
             return false;
 
@@ -1122,9 +1376,14 @@ public final class LabelCacheImpl implements LabelCache {
      * the outside line and label it, but spec is unclear)
      */
     private boolean paintPolygonLabel(LabelPainter painter, AffineTransform tempTransform,
-            Rectangle displayArea, LabelIndex glyphs) throws Exception {
+            Rectangle displayArea, LabelIndex glyphs, LabelCandidate candidate) throws Exception {
         LabelCacheItem labelItem = painter.getLabel();
-        Polygon geom = getPolySetRepresentativeLocation(labelItem.getGeoms(), displayArea);
+        Polygon geom;
+        if (candidate != null) {
+            geom = (Polygon) candidate.location;
+        } else {
+            geom = getPolySetRepresentativeLocation(labelItem.getGeoms(), displayArea);
+        }
         if (geom == null) {
             return false;
         }
@@ -1367,6 +1626,15 @@ public final class LabelCacheImpl implements LabelCache {
      */
     List<LineString> getLineSetRepresentativeLocation(List<Geometry> geoms, Rectangle displayArea,
             boolean removeOverlaps) {
+        return getLineSetRepresentativeLocation(geoms, displayArea, removeOverlaps, true);
+    }
+
+    /**
+     * @param geometryChanged if false the geometries are assumed to have up to date
+     *        cached envelopes already
+     */
+    List<LineString> getLineSetRepresentativeLocation(List<Geometry> geoms, Rectangle displayArea,
+            boolean removeOverlaps, boolean geometryChanged) {
 
         // go through each geometry in the set.
         // if its a polygon or multipolygon, get the boundary (reduce to a line)
@@ -1383,7 +1651,7 @@ public final class LabelCacheImpl implements LabelCache {
         List<LineString> clippedLines = new ArrayList<LineString>();
         for (LineString ls : lines) {
             // more robust clipper -- see its dox
-            MultiLineString ll = clipLineString(ls);
+            MultiLineString ll = clipLineString(ls, geometryChanged);
             if ((ll != null) && (!(ll.isEmpty()))) {
                 for (int t = 0; t < ll.getNumGeometries(); t++)
                     clippedLines.add((LineString) ll.getGeometryN(t));
@@ -1480,10 +1748,15 @@ public final class LabelCacheImpl implements LabelCache {
      *            MUST BE A BOUNDING BOX
      */
     public MultiLineString clipLineString(LineString line) {
+        return clipLineString(line, true);
+    }
+
+    MultiLineString clipLineString(LineString line, boolean geometryChanged) {
 
         Geometry clip = line;
         // djb -- jessie should do this during generalization
-        line.geometryChanged();
+        if (geometryChanged)
+            line.geometryChanged();
         if (clipper.getBounds().contains(line.getEnvelopeInternal())) {
             // shortcut -- entirely inside the display rectangle -- no clipping
             // required!
@@ -1519,6 +1792,15 @@ public final class LabelCacheImpl implements LabelCache {
      * @param displayGeometry
      */
     Polygon getPolySetRepresentativeLocation(List<Geometry> geoms, Rectangle displayArea) {
+        return getPolySetRepresentativeLocation(geoms, displayArea, true);
+    }
+
+    /**
+     * @param geometryChanged if false the geometries are assumed to have up to date
+     *        cached envelopes already
+     */
+    Polygon getPolySetRepresentativeLocation(List<Geometry> geoms, Rectangle displayArea,
+            boolean geometryChanged) {
         List<Polygon> polys = new ArrayList<Polygon>(); // points that are
                                                         // inside the
         Geometry displayGeometry = gf.toGeometry(toEnvelope(displayArea));
@@ -1548,7 +1830,8 @@ public final class LabelCacheImpl implements LabelCache {
         List<Polygon> clippedPolys = new ArrayList<Polygon>();
         Envelope displayGeomEnv = displayGeometry.getEnvelopeInternal();
         for (Polygon p : polys) {
-            MultiPolygon pp = clipPolygon(p, (Polygon) displayGeometry, displayGeomEnv);
+            MultiPolygon pp = clipPolygon(p, (Polygon) displayGeometry, displayGeomEnv,
+                    geometryChanged);
             if ((pp != null) && (!(pp.isEmpty()))) {
                 for (int t = 0; t < pp.getNumGeometries(); t++)
                     clippedPolys.add((Polygon) pp.getGeometryN(t)); 
@@ -1591,9 +1874,15 @@ public final class LabelCacheImpl implements LabelCache {
      * @return a MutliPolygon
      */
     public MultiPolygon clipPolygon(Polygon poly, Polygon bbox, Envelope displayGeomEnv) {
+        return clipPolygon(poly, bbox, displayGeomEnv, true);
+    }
+
+    MultiPolygon clipPolygon(Polygon poly, Polygon bbox, Envelope displayGeomEnv,
+            boolean geometryChanged) {
 
         Geometry clip = poly;
-        poly.geometryChanged();// djb -- jessie should do this during
+        if (geometryChanged)
+            poly.geometryChanged();// djb -- jessie should do this during
         // generalization
         if (displayGeomEnv.contains(poly.getEnvelopeInternal())) {
             // shortcut -- entirely inside the display rectangle -- no clipping
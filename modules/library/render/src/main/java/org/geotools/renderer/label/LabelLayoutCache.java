@@ -0,0 +1,279 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.label;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.renderer.label.LabelPainter.LabelLayout;
+
+/**
+ * A bounded, thread safe cache of the label layouts (glyph vectors, text layouts, outlines and
+ * bounds) computed by {@link LabelPainter}, keyed by text, font, font render context and
+ * wrapping options.
+ * <p>
+ * Map renders, and tiled ones in particular, keep on laying out the same street and place names
+ * with the same fonts, caching the layouts allows to skip the font shaping altogether. The
+ * least recently used layouts are evicted once the cache reaches its maximum size.
+ * </p>
+ * <p>
+ * The layouts are shared among the renders, and are never modified after being created.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public final class LabelLayoutCache {
+
+    /**
+     * The default maximum number of layouts kept in the cache
+     */
+    public static final int DEFAULT_SIZE = 2000;
+
+    static final LabelLayoutCache DEFAULT = new LabelLayoutCache(DEFAULT_SIZE);
+
+    /**
+     * The key of the cache entries
+     */
+    static final class Key {
+        final String text;
+
+        final Font font;
+
+        final FontRenderContext frc;
+
+        final double autoWrap;
+
+        final boolean singleLine;
+
+        final double anchorX;
+
+        final int hash;
+
+        Key(String text, Font font, FontRenderContext frc, double autoWrap,
+                boolean singleLine, double anchorX) {
+            this.text = text;
+            this.font = font;
+            this.frc = frc;
+            this.autoWrap = autoWrap;
+            this.singleLine = singleLine;
+            this.anchorX = anchorX;
+            long bits = Double.doubleToLongBits(autoWrap) * 31
+                    + Double.doubleToLongBits(anchorX);
+            this.hash = ((text.hashCode() * 31 + font.hashCode()) * 31 + frc.hashCode()) * 31
+                    + (int) (bits ^ (bits >>> 32)) + (singleLine ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return hash == that.hash && singleLine == that.singleLine
+                    && autoWrap == that.autoWrap && anchorX == that.anchorX
+                    && text.equals(that.text) && font.equals(that.font)
+                    && frc.equals(that.frc);
+        }
+    }
+
+    private final LinkedHashMap<Key, LabelLayout> layouts;
+
+    private int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Returns the cache shared by all the {@link LabelCacheImpl} instances, unless they are
+     * given a different one
+     */
+    public static LabelLayoutCache getDefaultCache() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize The maximum number of layouts kept in the cache, zero to disable caching.
+     */
+    public LabelLayoutCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The cache size cannot be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        // access ordered, so that the eldest entry is the least recently used one
+        this.layouts = new LinkedHashMap<Key, LabelLayout>(Math.min(maxSize, 1024) + 16, 0.75f,
+                true) {
+            private static final long serialVersionUID = -6219826734720315398L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, LabelLayout> eldest) {
+                if (size() > LabelLayoutCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the layout of the label, computing it only if not already cached
+     */
+    LabelLayout getLayout(LabelCacheItem labelItem, FontRenderContext frc) {
+        final int size = getMaxSize();
+        if (size == 0) {
+            misses.incrementAndGet();
+            return LabelPainter.computeLayout(labelItem, frc);
+        }
+
+        final String text = labelItem.getLabel();
+        final boolean singleLine = LabelPainter.isSingleLine(labelItem);
+        // the anchor only affects the alignment of multiline labels
+        final Key key = new Key(text, labelItem.getTextStyle().getFont(), frc,
+                singleLine ? 0 : labelItem.getAutoWrap(), singleLine, singleLine ? 0
+                        : labelItem.getTextStyle().getAnchorX());
+        LabelLayout layout;
+        synchronized (layouts) {
+            layout = layouts.get(key);
+        }
+        if (layout != null) {
+            hits.incrementAndGet();
+            return layout;
+        }
+
+        // the layout is computed out of the lock, concurrent misses on the same key
+        // will compute equivalent layouts
+        misses.incrementAndGet();
+        layout = LabelPainter.computeLayout(labelItem, frc);
+        synchronized (layouts) {
+            layouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * The maximum number of layouts kept in the cache
+     */
+    public int getMaxSize() {
+        synchronized (layouts) {
+            return maxSize;
+        }
+    }
+
+    /**
+     * Sets the maximum number of layouts kept in the cache, evicting the least recently used
+     * ones if the cache is currently bigger. Zero disables caching.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The cache size cannot be negative: " + maxSize);
+        }
+        synchronized (layouts) {
+            this.maxSize = maxSize;
+            int excess = layouts.size() - maxSize;
+            if (excess > 0) {
+                Iterator<Key> it = layouts.keySet().iterator();
+                for (int i = 0; i < excess; i++) {
+                    it.next();
+                    it.remove();
+                }
+                evictions.addAndGet(excess);
+            }
+        }
+    }
+
+    /**
+     * The number of layouts currently cached
+     */
+    public int size() {
+        synchronized (layouts) {
+            return layouts.size();
+        }
+    }
+
+    /**
+     * Removes all the cached layouts. The statistics are not reset.
+     */
+    public void clear() {
+        synchronized (layouts) {
+            layouts.clear();
+        }
+    }
+
+    /**
+     * The number of lookups served by the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The number of lookups that required the label to be laid out
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of layouts evicted to respect the maximum size
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * The ratio between the hits and the total lookups, or zero if no lookup has been made
+     */
+    public double getHitRate() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total == 0 ? 0 : ((double) h) / total;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LabelLayoutCache[size=" + size() + ", maxSize=" + getMaxSize() + ", hits="
+                + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+    }
+}
@@ -116,6 +116,11 @@ public class LabelPainter {
      */
     Rectangle2D labelBounds;
 
+    /**
+     * The cache of the label layouts, if any
+     */
+    LabelLayoutCache layoutCache;
+
     /**
      * Builds a new painter
      * 
@@ -127,6 +132,16 @@ public class LabelPainter {
         this.labelRenderingMode = labelRenderingMode;
     }
 
+    /**
+     * Sets the cache used to share the label layouts among renders, or null to disable
+     * layout caching
+     * 
+     * @param layoutCache
+     */
+    public void setLayoutCache(LabelLayoutCache layoutCache) {
+        this.layoutCache = layoutCache;
+    }
+
     /**
      * Sets the current label. The label will be laid out according to the label
      * item settings (curved lines, auto wrapping, curved line usage) and the
@@ -135,26 +150,77 @@ public class LabelPainter {
      * @param labelItem
      */
     public void setLabel(LabelCacheItem labelItem) {
+        setLabel(labelItem, layout(labelItem, graphics.getFontRenderContext(), layoutCache));
+    }
+
+    /**
+     * Sets the current label, using a layout computed in advance with
+     * {@link #layout(LabelCacheItem, FontRenderContext, LabelLayoutCache)}
+     * 
+     * @param labelItem
+     * @param layout
+     */
+    void setLabel(LabelCacheItem labelItem, LabelLayout layout) {
         this.labelItem = labelItem;
         labelItem.getTextStyle().setLabel(labelItem.getLabel());
+        this.lines = layout.lines;
+        this.labelBounds = layout.labelBounds;
+    }
+
+    /**
+     * Lays out the label according to the label item settings (curved lines, auto wrapping,
+     * curved line usage), looking up the layout in the cache first, if one is provided. The
+     * method does not alter the painter state, so it can be called from multiple threads to
+     * prepare the labels in advance
+     * 
+     * @param labelItem
+     * @param frc
+     * @param cache the layout cache, or null
+     * @return
+     */
+    static LabelLayout layout(LabelCacheItem labelItem, FontRenderContext frc,
+            LabelLayoutCache cache) {
+        if (cache == null) {
+            return computeLayout(labelItem, frc);
+        } else {
+            return cache.getLayout(labelItem, frc);
+        }
+    }
+
+    /**
+     * Returns true if the label is going to be laid out on a single line
+     * 
+     * @param labelItem
+     * @return
+     */
+    static boolean isSingleLine(LabelCacheItem labelItem) {
+        // use the multiline labeller only if we're not using curved labels, and
+        // also only if makes sense to have multiple lines (at least a newline
+        String text = labelItem.getLabel();
+        return !(text.contains("\n") || labelItem.getAutoWrap() > 0)
+                || labelItem.isFollowLineEnabled();
+    }
 
-        // reset previous caches
-        labelBounds = null;
-        lines = null;
+    /**
+     * Lays out the label, without looking into any cache
+     * 
+     * @param labelItem
+     * @param frc
+     * @return
+     */
+    static LabelLayout computeLayout(LabelCacheItem labelItem, FontRenderContext frc) {
+        Rectangle2D labelBounds = null;
+        List<LineInfo> lines;
 
         // split the label into lines
         String text = labelItem.getLabel();
-        // set the multiline labeller only if we're not using curved labels, and
-        // also only if makes sense to have multiple lines (at least a newline
-        if (!(text.contains("\n") || labelItem.getAutoWrap() > 0)
-                || labelItem.isFollowLineEnabled()) {
-            FontRenderContext frc = graphics.getFontRenderContext();
+        if (isSingleLine(labelItem)) {
             TextLayout layout = new TextLayout(text, labelItem.getTextStyle().getFont(), frc);
-            LineInfo line = new LineInfo(text, layoutSentence(text, labelItem), layout);
-            labelBounds = line.gv.getVisualBounds();
+            LineInfo line = new LineInfo(text, layoutSentence(text, labelItem, frc), layout);
+            labelBounds = line.getVisualBounds();
             normalizeBounds(labelBounds);
             lines = Collections.singletonList(line);
-            return;
+            return new LabelLayout(lines, labelBounds);
         } 
         
         // first split along the newlines
@@ -164,9 +230,8 @@ public class LabelPainter {
         if(labelItem.getAutoWrap() <= 0) {
             // no need for auto-wrapping, we already have the proper split
             for (String line : splitted) {
-                FontRenderContext frc = graphics.getFontRenderContext();
                 TextLayout layout = new TextLayout(line, labelItem.getTextStyle().getFont(), frc);
-                LineInfo info = new LineInfo(line, layoutSentence(line, labelItem), layout);
+                LineInfo info = new LineInfo(line, layoutSentence(line, labelItem, frc), layout);
                 lines.add(info);
             }
         } else {
@@ -187,7 +252,7 @@ public class LabelPainter {
                 AttributedString attributed = new AttributedString(line, map);
                 AttributedCharacterIterator iter = attributed.getIterator();
                 LineBreakMeasurer lineMeasurer = new LineBreakMeasurer(iter, BreakIterator
-                        .getWordInstance(), graphics.getFontRenderContext());
+                        .getWordInstance(), frc);
                 BreakIterator breaks = BreakIterator.getWordInstance();
                 breaks.setText(line);
 
@@ -208,7 +273,7 @@ public class LabelPainter {
                             newPosition = nextBoundary;
                         }
                         AttributedCharacterIterator subIter = attributed.getIterator(null, prevPosition, newPosition);
-                        layout = new TextLayout(subIter, graphics.getFontRenderContext());
+                        layout = new TextLayout(subIter, frc);
                         lineMeasurer.setPosition(newPosition);
                     }
 
@@ -219,7 +284,7 @@ public class LabelPainter {
 
                     String extracted = line.substring(prevPosition, newPosition).trim();
                     if(!"".equals(extracted)) {
-	                    LineInfo info = new LineInfo(extracted, layoutSentence(extracted, labelItem),
+	                    LineInfo info = new LineInfo(extracted, layoutSentence(extracted, labelItem, frc),
 	                            layout);
 	                    lines.add(info);
                     }
@@ -231,7 +296,7 @@ public class LabelPainter {
         // compute the max line length
         double maxWidth = 0;
         for (LineInfo line : lines) {
-            maxWidth = Math.max(line.gv.getVisualBounds().getWidth(), maxWidth);
+            maxWidth = Math.max(line.visualBounds.getWidth(), maxWidth);
         }
 
         // now that we know how big each line and how big is the longest,
@@ -239,7 +304,7 @@ public class LabelPainter {
         double boundsY = 0;
         double labelY = 0;
         for (LineInfo info : lines) {
-            Rectangle2D currBounds = info.gv.getVisualBounds();
+            Rectangle2D currBounds = info.getVisualBounds();
             TextLayout layout = info.layout;
 
             // the position at which we start to draw, x and y
@@ -266,6 +331,7 @@ public class LabelPainter {
             info.y = labelY;
         }
         normalizeBounds(labelBounds);
+        return new LabelLayout(lines, labelBounds);
     }
 
     /**
@@ -274,7 +340,7 @@ public class LabelPainter {
      * and orientations. Enlarge the envelope a tiny bit
      * @param bounds
      */
-    void normalizeBounds(Rectangle2D bounds) {
+    static void normalizeBounds(Rectangle2D bounds) {
         if(bounds.isEmpty()) {
             bounds.setRect(bounds.getCenterX() -1 , bounds.getCenterY() -1, 2, 2);
         }
@@ -288,13 +354,17 @@ public class LabelPainter {
      * @return
      */
     GlyphVector layoutSentence(String label, LabelCacheItem item) {
+        return layoutSentence(label, item, graphics.getFontRenderContext());
+    }
+
+    static GlyphVector layoutSentence(String label, LabelCacheItem item, FontRenderContext frc) {
         final Font font = item.getTextStyle().getFont();
         final char[] chars = label.toCharArray();
         final int length = label.length();
         if (Bidi.requiresBidi(chars, 0, length)) {
             Bidi bidi = new Bidi(label, Bidi.DIRECTION_DEFAULT_LEFT_TO_RIGHT);
             if (bidi.isRightToLeft()) {
-                return font.layoutGlyphVector(graphics.getFontRenderContext(), chars, 0, length,
+                return font.layoutGlyphVector(frc, chars, 0, length,
                         Font.LAYOUT_RIGHT_TO_LEFT);
             } else if (bidi.isMixed()) {
                 String r = "";
@@ -306,11 +376,11 @@ public class LabelPainter {
                     r = r + s1;
                 }
                 char[] chars2 = r.toCharArray();
-                return font.layoutGlyphVector(graphics.getFontRenderContext(), chars2, 0, length,
+                return font.layoutGlyphVector(frc, chars2, 0, length,
                         Font.LAYOUT_RIGHT_TO_LEFT);
             } 
         } 
-        return font.createGlyphVector(graphics.getFontRenderContext(), chars);
+        return font.createGlyphVector(frc, chars);
     }
 
     /**
@@ -329,7 +399,7 @@ public class LabelPainter {
      * @return
      */
     public double getLineHeight() {
-        return lines.get(0).gv.getVisualBounds().getHeight() - lines.get(0).layout.getDescent();
+        return lines.get(0).visualBounds.getHeight() - lines.get(0).layout.getDescent();
     }
     
     /**
@@ -476,7 +546,7 @@ public class LabelPainter {
 
             // draw the label
             if (lines.size() == 1) {
-                drawGlyphVector(lines.get(0).gv);
+                drawGlyphVector(lines.get(0));
             } else {
                 // for multiline labels we have to go thru the lines and apply
                 // the proper transformation
@@ -486,7 +556,7 @@ public class LabelPainter {
                     lineTx.setTransform(transform);
                     lineTx.translate(line.x, line.y);
                     graphics.setTransform(lineTx);
-                    drawGlyphVector(line.gv);
+                    drawGlyphVector(line);
                 }
             }
         } finally {
@@ -594,12 +664,12 @@ public class LabelPainter {
     }
 
     /**
-     * Draws the glyph vector respecting the label item options
+     * Draws the glyph vector of the line respecting the label item options
      * 
-     * @param gv
+     * @param line
      */
-    private void drawGlyphVector(GlyphVector gv) {
-        java.awt.Shape outline = gv.getOutline();
+    private void drawGlyphVector(LineInfo line) {
+        java.awt.Shape outline = line.getOutline();
         if (labelItem.getTextStyle().getHaloFill() != null) {
             configureHalo();
             graphics.draw(outline);
@@ -607,7 +677,7 @@ public class LabelPainter {
         configureLabelStyle();
         
         if(labelRenderingMode == LabelRenderingMode.STRING) {
-            graphics.drawGlyphVector(gv, 0, 0);
+            graphics.drawGlyphVector(line.getGlyphVector(), 0, 0);
         } else if(labelRenderingMode == LabelRenderingMode.OUTLINE) {
             graphics.fill(outline);
         } else {
@@ -615,7 +685,7 @@ public class LabelPainter {
             if (Math.abs(tx.getShearX()) >= EPS || Math.abs(tx.getShearY()) > EPS) {
                 graphics.fill(outline);
             } else {
-                graphics.drawGlyphVector(gv, 0, 0);
+                graphics.drawGlyphVector(line.getGlyphVector(), 0, 0);
             }
         }
     }
@@ -666,7 +736,7 @@ public class LabelPainter {
         if(labelItem.getTextStyle().getFont().getSize() == 0)
             return;
         
-        GlyphVector glyphVector = lines.get(0).gv;
+        GlyphVector glyphVector = lines.get(0).getGlyphVector();
         AffineTransform oldTransform = graphics.getTransform();
         try {
             // first off, check if we are walking the line so that the label is
@@ -765,7 +835,24 @@ public class LabelPainter {
     }
 
     /**
-     * Core information needed to draw out a line of text
+     * The result of laying out a label: the lines it has been split into and its bounds
+     */
+    static class LabelLayout {
+        final List<LineInfo> lines;
+
+        final Rectangle2D labelBounds;
+
+        LabelLayout(List<LineInfo> lines, Rectangle2D labelBounds) {
+            this.lines = lines;
+            this.labelBounds = labelBounds;
+        }
+    }
+
+    /**
+     * Core information needed to draw out a line of text. Once laid out the line can be shared
+     * among renders by the layout cache, so it only keeps immutable data: glyph vectors are not
+     * thread safe, and initialize their caches lazily, so a private one is rebuilt from the
+     * glyph codes and positions every time it's needed
      */
     private static class LineInfo {
         // the coordinates at which the label should be drawn withing the global
@@ -777,23 +864,65 @@ public class LabelPainter {
         // the text to be drawn
         String text;
 
-        // the text represented as a glyph vector
-        GlyphVector gv;
-
         // the text layout
         TextLayout layout;
 
+        // the glyph vector visual bounds, not to be modified
+        final Rectangle2D visualBounds;
+
+        // the font and render context of the glyph vector
+        final Font font;
+
+        final FontRenderContext frc;
+
+        // the glyph codes and positions of the glyph vector
+        final int[] glyphCodes;
+
+        final float[] glyphPositions;
+
+        // the glyph vector outline, computed on demand and never modified
+        Shape outline;
+
         public LineInfo(String text, GlyphVector gv, TextLayout layout) {
             super();
             this.text = text;
-            this.gv = gv;
             this.layout = layout;
+            this.visualBounds = gv.getVisualBounds();
+            this.font = gv.getFont();
+            this.frc = gv.getFontRenderContext();
+            final int numGlyphs = gv.getNumGlyphs();
+            this.glyphCodes = gv.getGlyphCodes(0, numGlyphs, null);
+            this.glyphPositions = gv.getGlyphPositions(0, numGlyphs, null);
         }
 
         public LineInfo(String text, GlyphVector gv) {
-            super();
-            this.text = text;
-            this.gv = gv;
+            this(text, gv, null);
+        }
+
+        /**
+         * Returns a copy of the visual bounds that the caller can modify
+         */
+        Rectangle2D getVisualBounds() {
+            return (Rectangle2D) visualBounds.clone();
+        }
+
+        /**
+         * Builds a new glyph vector for the line, without going through the text shaping
+         */
+        GlyphVector getGlyphVector() {
+            GlyphVector gv = font.createGlyphVector(frc, glyphCodes);
+            for (int i = 0; i < glyphCodes.length; i++) {
+                gv.setGlyphPosition(i, new Point2D.Float(glyphPositions[i * 2],
+                        glyphPositions[i * 2 + 1]));
+            }
+            return gv;
+        }
+
+        synchronized Shape getOutline() {
+            if (outline == null) {
+                outline = getGlyphVector().getOutline();
+            }
+            return outline;
         }
 
     }
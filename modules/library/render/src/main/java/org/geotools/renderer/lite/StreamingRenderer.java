@@ -45,6 +45,9 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -103,6 +106,7 @@ import org.geotools.renderer.crs.ProjectionHandler;
 import org.geotools.renderer.crs.ProjectionHandlerFinder;
 import org.geotools.renderer.label.LabelCacheImpl;
 import org.geotools.renderer.label.LabelCacheImpl.LabelRenderingMode;
+import org.geotools.renderer.label.LabelLayoutCache;
 import org.geotools.renderer.lite.gridcoverage2d.GridCoverageRenderer;
 import org.geotools.renderer.style.SLDStyleFactory;
 import org.geotools.renderer.style.Style2D;
@@ -251,12 +255,6 @@ public final class StreamingRenderer implements GTRenderer {
     /** Geographic map extent, as provided by the caller */
     private ReferencedEnvelope originalMapExtent;
 
-    /**
-     * The handler that will be called to process the geometries to deal with projections 
-     * singularities and dateline wrapping
-     */
-    private ProjectionHandler projectionHandler;
-
     /** The size of the output area in output units. */
     private Rectangle screenSize;
 
@@ -264,7 +262,7 @@ public final class StreamingRenderer implements GTRenderer {
      * This flag is set to false when starting rendering, and will be checked
      * during the rendering loop in order to make it stop forcefully
      */
-    private boolean renderingStopRequested = false;
+    private volatile boolean renderingStopRequested = false;
 
     /**
      * The ratio required to scale the features to be rendered so that they fit
@@ -345,6 +343,17 @@ public final class StreamingRenderer implements GTRenderer {
      * declared against it</p>
      */
     public static final String OPTIMIZE_FTS_RENDERING_KEY = "optimizeFTSRendering";
+    
+    /**
+     * Boolean flag enabling the parallel preparation of layers.
+     * <p>When enabled, and a thread pool has been provided with {@link #setThreadPool(ExecutorService)},
+     * each layer is read, filtered, transformed and styled on the thread pool, in parallel with the
+     * other layers. The resulting drawing and labelling operations are still handed to the painter
+     * thread one layer at a time, in map order, so the output is the same as the one obtained
+     * with the sequential preparation (the default).</p>
+     * <p>Render listeners will be notified about rendered features from multiple threads</p>
+     */
+    public static final String PARALLEL_LAYER_PREPARATION_KEY = "parallelLayerPreparation";
 
 
     /**
@@ -369,6 +378,14 @@ public final class StreamingRenderer implements GTRenderer {
     private static boolean VECTOR_RENDERING_ENABLED_DEFAULT = false;
 
     public static final String LABEL_CACHE_KEY = "labelCache";
+
+    /**
+     * The maximum number of label layouts kept in the {@link LabelLayoutCache} of the
+     * {@link LabelCacheImpl}, which is shared among renders by default. A size other than the
+     * shared cache one makes the renderer use its own cache. Zero disables layout caching for
+     * the render.
+     */
+    public static final String LABEL_LAYOUT_CACHE_SIZE_KEY = "labelLayoutCacheSize";
     public static final String FORCE_EPSG_AXIS_ORDER_KEY = "ForceEPSGAxisOrder";
     public static final String DPI_KEY = "dpi";
     public static final String DECLARED_SCALE_DENOM_KEY = "declaredScaleDenominator";
@@ -382,6 +399,7 @@ public final class StreamingRenderer implements GTRenderer {
      *  "dpi"                        - Integer  number of dots per inch of the display 90 DPI is the default (as declared by OGC)      
      *  "forceCRS"                   - CoordinateReferenceSystem declares to the renderer that all layers are of the CRS declared in this hint                               
      *  "labelCache"                 - Declares the label cache that will be used by the renderer.
+     *  "labelLayoutCacheSize"       - Integer  the maximum number of label layouts cached across renders, zero disables the cache
      *  "forceEPSGAxisOrder"         - When doing spatial filter reprojection (from the SLD towards the native CRS) assume the geometries 
      *                                 are expressed with the axis order suggested by the official EPSG database, regardless of how the 
      *                                 CRS system might be configured                               
@@ -399,7 +417,38 @@ public final class StreamingRenderer implements GTRenderer {
      * For each layer we will set this flag depending on whether the datastore can do full
      * generalization for us, or not
      */
-    private boolean inMemoryGeneralization = true;
+    private ThreadLocal<Boolean> inMemoryGeneralization = new ThreadLocal<Boolean>() {
+        protected Boolean initialValue() {
+            return Boolean.TRUE;
+        }
+    };
+    
+    /**
+     * The layer being prepared by the current thread, holding the layer specific rendering
+     * state. If not set the requests are sent straight to the painter thread
+     */
+    private ThreadLocal<LayerPreparation> currentLayer = new ThreadLocal<LayerPreparation>();
+    
+    /**
+     * Whether layers are being prepared in parallel during the current paint
+     */
+    private boolean parallelLayerPreparation;
+    
+    /**
+     * The label layout cache used when the {@link #LABEL_LAYOUT_CACHE_SIZE_KEY} hint asks for
+     * a size other than the shared cache one
+     */
+    private LabelLayoutCache layoutCache;
+    
+    /**
+     * The layout cache the label cache was using before the current paint
+     */
+    private LabelLayoutCache previousLayoutCache;
+    
+    /**
+     * Whether the layout cache of the label cache has been replaced for the current paint
+     */
+    private boolean layoutCacheReplaced;
     
     /**
      * The thread pool used to submit the painter workers. 
@@ -750,12 +799,6 @@ public final class StreamingRenderer implements GTRenderer {
                     mapExtent.getCoordinateReferenceSystem()); 
         }
 
-        // enable advanced projection handling with the updated map extent
-        if(isAdvancedProjectionHandlingEnabled()) {
-            // get the projection handler and set a tentative envelope
-            projectionHandler = ProjectionHandlerFinder.getHandler(mapExtent, isMapWrappingEnabled());
-        }
-        
         // Setup the secondary painting thread
         requests = new ArrayBlockingQueue<RenderingRequest>(10000);
         PainterThread painterThread = new PainterThread(requests);
@@ -780,45 +823,34 @@ public final class StreamingRenderer implements GTRenderer {
             labelCache.start();
             if(labelCache instanceof LabelCacheImpl) {
                 ((LabelCacheImpl) labelCache).setLabelRenderingMode(LabelRenderingMode.valueOf(getTextRenderingMethod()));
+                configureLayoutCache((LabelCacheImpl) labelCache);
             }
-            final int layersNumber = mapContent.layers().size();
-            for (int i = 0; i < layersNumber; i++) // DJB: for each layer (ie. one
-            {
-                Layer layer = mapContent.layers().get(i);
-    
-                if (!layer.isVisible()) {
-                    // Only render layer when layer is visible
-                    continue;
+            parallelLayerPreparation = isParallelLayerPreparationEnabled();
+            if(parallelLayerPreparation) {
+                try {
+                    paintLayersInParallel(graphics);
+                } catch (InterruptedException e) {
+                    fireErrorEvent(e);
                 }
+            } else {
+                final int layersNumber = mapContent.layers().size();
+                for (int i = 0; i < layersNumber; i++) // DJB: for each layer (ie. one
+                {
+                    Layer layer = mapContent.layers().get(i);
     
-                if (renderingStopRequested) {
-                    return;
-                }
-                labelCache.startLayer(i+"");
-                
-                if (layer instanceof DirectLayer) {
-                    RenderingRequest request = new RenderDirectLayerRequest(
-                            graphics, (DirectLayer) layer);
-                    try {
-                        requests.put(request);
-                    } catch (InterruptedException e) {
-                        fireErrorEvent(e);
+                    if (!layer.isVisible()) {
+                        // Only render layer when layer is visible
+                        continue;
                     }
-                    
-                } else {
-                    MapLayer currLayer = new MapLayer(layer);
-                    try {
-
-                        // extract the feature type stylers from the style object
-                        // and process them
-                        processStylers(graphics, currLayer, worldToScreenTransform,
-                                destinationCrs, mapExtent, screenSize, i + "");
-                    } catch (Throwable t) {
-                        fireErrorEvent(t);
+    
+                    if (renderingStopRequested) {
+                        restoreLayoutCache();
+                        return;
                     }
+                    labelCache.startLayer(i+"");
+                    new LayerPreparation(graphics, layer, i + "", null).prepare(requests);
+                    labelCache.endLayer(i+"", graphics, screenSize);
                 }
-    
-                labelCache.endLayer(i+"", graphics, screenSize);
             }
         } finally {
             try {
@@ -834,7 +866,11 @@ public final class StreamingRenderer implements GTRenderer {
             }
         }
         
-        labelCache.end(graphics, paintArea);
+        try {
+            labelCache.end(graphics, paintArea);
+        } finally {
+            restoreLayoutCache();
+        }
     
         if (LOGGER.isLoggable(Level.FINE))
             LOGGER.fine(new StringBuffer("Style cache hit ratio: ").append(
@@ -868,6 +904,90 @@ public final class StreamingRenderer implements GTRenderer {
                 envelope.getMaxY() + bufferY);
     }
 
+    /**
+     * Prepares the visible layers in parallel on the thread pool. Each layer accumulates its
+     * rendering requests in its own bounded queue, the calling thread forwards them to the
+     * painter thread one layer at a time, in map order, along with the label cache layer
+     * boundaries, so that painting and labelling happen exactly as in the sequential case.
+     * Layers the thread pool did not start preparing yet when their turn comes are prepared
+     * directly by the calling thread.
+     */
+    private void paintLayersInParallel(Graphics2D graphics) throws InterruptedException {
+        final int layersNumber = mapContent.layers().size();
+        List<LayerPreparation> preparations = new ArrayList<LayerPreparation>();
+        for (int i = 0; i < layersNumber; i++) {
+            Layer layer = mapContent.layers().get(i);
+            if (layer.isVisible()) {
+                preparations.add(new LayerPreparation(graphics, layer, i + "",
+                        new LayerRequestQueue(10000)));
+            }
+        }
+        
+        try {
+            for (LayerPreparation preparation : preparations) {
+                try {
+                    threadPool.execute(preparation);
+                } catch (RejectedExecutionException e) {
+                    // fine, the layer will be prepared by this thread when its turn comes
+                    LOGGER.log(Level.FINE, "Layer preparation rejected by the thread pool", e);
+                }
+            }
+            
+            for (LayerPreparation preparation : preparations) {
+                if (renderingStopRequested) {
+                    return;
+                }
+                requests.put(new StartLayerRequest(preparation.layerId));
+                preparation.forward(requests);
+                requests.put(new EndLayerRequest(preparation.layerId, graphics));
+            }
+        } finally {
+            // don't leave preparations blocked on their queues if we stopped early
+            for (LayerPreparation preparation : preparations) {
+                preparation.abandon();
+            }
+        }
+    }
+    
+    /**
+     * Returns the queue the rendering requests of the layer being prepared by the current
+     * thread should be sent to
+     */
+    private BlockingQueue<RenderingRequest> getLayerRequests() {
+        LayerPreparation preparation = currentLayer.get();
+        return preparation != null ? preparation.target : requests;
+    }
+    
+    /**
+     * Returns the rendering envelope of the layer being prepared by the current thread, that
+     * is, the map extent grown by the layer rendering buffer
+     */
+    private ReferencedEnvelope getLayerEnvelope() {
+        LayerPreparation preparation = currentLayer.get();
+        if (preparation != null && preparation.envelope != null) {
+            return preparation.envelope;
+        }
+        return mapExtent;
+    }
+    
+    /**
+     * Returns the projection handler of the layer being prepared by the current thread, or
+     * null if advanced projection handling is disabled
+     */
+    private ProjectionHandler getLayerProjectionHandler() {
+        LayerPreparation preparation = currentLayer.get();
+        return preparation != null ? preparation.projectionHandler : null;
+    }
+    
+    /**
+     * Builds the {@link Style2D} for the specified feature and symbolizer. The style factory
+     * can be used concurrently, no need to serialize the access when the layers are prepared
+     * in parallel
+     */
+    private Style2D createStyle(Object feature, Symbolizer symbolizer, NumberRange scaleRange) {
+        return styleFactory.createStyle(feature, symbolizer, scaleRange);
+    }
+
     /**
      * Queries a given layer's <code>Source</code> instance to be rendered. 
      * <p>
@@ -997,8 +1117,18 @@ public final class StreamingRenderer implements GTRenderer {
         }
 
         ReferencedEnvelope envelope = new ReferencedEnvelope(mapArea, mapCRS);
-        // update the current rendering extent
-        mapExtent = envelope;
+        // enable advanced projection handling with the envelope eventually grown by the
+        // rendering buffer. The handler and the envelope are kept in the layer state, as the
+        // layers might be prepared in parallel
+        ProjectionHandler projectionHandler = null;
+        if(isAdvancedProjectionHandlingEnabled()) {
+            projectionHandler = ProjectionHandlerFinder.getHandler(envelope, isMapWrappingEnabled());
+        }
+        LayerPreparation preparation = currentLayer.get();
+        if(preparation != null) {
+            preparation.envelope = envelope;
+            preparation.projectionHandler = projectionHandler;
+        }
         // see what attributes we really need by exploring the styles
         // for testing purposes we have a null case -->
 
@@ -1009,8 +1139,6 @@ public final class StreamingRenderer implements GTRenderer {
             // default geometric ones
             List<ReferencedEnvelope> envelopes;
             if (projectionHandler != null) {
-                // update the envelope with the one eventually grown by the rendering buffer
-                projectionHandler.setRenderingEnvelope(envelope);
                 envelopes = projectionHandler.getQueryEnvelopes(featCrs);
             } else {
                 if (mapCRS != null && featCrs != null && !CRS.equalsIgnoreMetadata(featCrs, mapCRS)) {
@@ -1106,7 +1234,7 @@ public final class StreamingRenderer implements GTRenderer {
                     // good, we don't need to perform in memory generalization, the datastore
                     // does it all for us
                     hints.put(Hints.GEOMETRY_SIMPLIFICATION, distance);
-                    inMemoryGeneralization = false;
+                    inMemoryGeneralization.set(Boolean.FALSE);
                 } else if(fsHints.contains(Hints.GEOMETRY_DISTANCE)) {
                     // in this case the datastore can get us close, but we can still
                     // perform some in memory generalization
@@ -1342,6 +1470,17 @@ public final class StreamingRenderer implements GTRenderer {
         return Boolean.TRUE.equals(result);
     }
 
+    /**
+     * Checks if the layers should be prepared in parallel, or not.
+     * See {@link #PARALLEL_LAYER_PREPARATION_KEY} description for a full explanation.
+     */
+    private boolean isParallelLayerPreparationEnabled() {
+        if (rendererHints == null || threadPool == null)
+            return false;
+        Object result = rendererHints.get(PARALLEL_LAYER_PREPARATION_KEY);
+        return Boolean.TRUE.equals(result);
+    }
+
     /**
      * Checks if the advanced projection handling is enabled
      * @return
@@ -1972,7 +2111,7 @@ public final class StreamingRenderer implements GTRenderer {
                 
                 // ... assume we have to do the generalization, the query layer process will
                 // turn down the flag if we don't 
-                inMemoryGeneralization = true;
+                inMemoryGeneralization.set(Boolean.TRUE);
                 Query query = getLayerQuery(currLayer, featureSource, schema,
                         uniform, mapArea, destinationCrs, sourceCrs, screenSize,
                         geometryAttribute, at);
@@ -2565,7 +2704,7 @@ public final class StreamingRenderer implements GTRenderer {
             }
             
             // submit the merge request
-            requests.put(new MergeLayersRequest(graphics, fts_array));
+            getLayerRequests().put(new MergeLayersRequest(graphics, fts_array));
         }catch(InterruptedException e) {
             fireErrorEvent(e);
         } finally {
@@ -2717,7 +2856,7 @@ public final class StreamingRenderer implements GTRenderer {
                         coverage = (GridCoverage2D) grid;
                     } else if (grid instanceof AbstractGridCoverage2DReader) {
                         final Object params = paramsPropertyName.evaluate(drawMe.content);
-                        GridGeometry2D readGG = new GridGeometry2D(new GridEnvelope2D(screenSize), mapExtent);
+                        GridGeometry2D readGG = new GridGeometry2D(new GridEnvelope2D(screenSize), getLayerEnvelope());
                         AbstractGridCoverage2DReader reader = (AbstractGridCoverage2DReader) grid;
                         coverage = readCoverage(reader, params, readGG);
                         disposeCoverage = true;
@@ -2731,7 +2870,7 @@ public final class StreamingRenderer implements GTRenderer {
                 }
                 
                 if(coverage != null) {
-                    requests.put(new RenderRasterRequest(graphics, coverage, disposeCoverage,
+                    getLayerRequests().put(new RenderRasterRequest(graphics, coverage, disposeCoverage,
                             (RasterSymbolizer) symbolizer, destinationCrs, at));
                 }
             } else {
@@ -2747,11 +2886,16 @@ public final class StreamingRenderer implements GTRenderer {
                 }
                 
                 if (symbolizer instanceof TextSymbolizer && drawMe.content instanceof Feature) {
-                    labelCache.put(layerId, (TextSymbolizer) symbolizer, (Feature) drawMe.content,
-                            shape, scaleRange);
+                    if(parallelLayerPreparation) {
+                        // the label cache is driven by the painter thread, in layer order
+                        getLayerRequests().put(new PutLabelRequest(layerId, (TextSymbolizer) symbolizer, 
+                                (Feature) drawMe.content, shape, scaleRange));
+                    } else {
+                        labelCache.put(layerId, (TextSymbolizer) symbolizer, (Feature) drawMe.content,
+                                shape, scaleRange);
+                    }
                 } else {
-                    Style2D style = styleFactory.createStyle(drawMe.content,
-                            symbolizer, scaleRange);
+                    Style2D style = createStyle(drawMe.content, symbolizer, scaleRange);
                     
                     // clip to the visible area + the size of the symbolizer (with some extra 
                     // to make sure we get no artefacts from polygon new borders)
@@ -2772,7 +2916,7 @@ public final class StreamingRenderer implements GTRenderer {
                     if (symbolizer.hasOption("labelObstacle")) {
                         paintShapeRequest.setLabelObstacle(true);
                     }
-                    requests.put(paintShapeRequest);
+                    getLayerRequests().put(paintShapeRequest);
                 }
 
             }
@@ -2942,6 +3086,47 @@ public final class StreamingRenderer implements GTRenderer {
         return result;
     }
 
+    /**
+     * Applies the {@link #LABEL_LAYOUT_CACHE_SIZE_KEY} hint, if set, to the label cache for the
+     * duration of the paint, see {@link #restoreLayoutCache()}. The shared cache is never
+     * resized, a different size makes the renderer use its own cache
+     */
+    private void configureLayoutCache(LabelCacheImpl labelCache) {
+        if (rendererHints == null)
+            return;
+        Object size = rendererHints.get(LABEL_LAYOUT_CACHE_SIZE_KEY);
+        if (size == null)
+            return;
+        int maxSize = size instanceof Number ? ((Number) size).intValue() : Integer
+                .parseInt(String.valueOf(size));
+        LabelLayoutCache cache;
+        if (maxSize <= 0) {
+            cache = null;
+        } else if (maxSize == LabelLayoutCache.getDefaultCache().getMaxSize()) {
+            cache = LabelLayoutCache.getDefaultCache();
+        } else {
+            if (layoutCache == null || layoutCache.getMaxSize() != maxSize) {
+                layoutCache = new LabelLayoutCache(maxSize);
+            }
+            cache = layoutCache;
+        }
+        previousLayoutCache = labelCache.getLayoutCache();
+        layoutCacheReplaced = true;
+        labelCache.setLayoutCache(cache);
+    }
+    
+    /**
+     * Gives the label cache back the layout cache it had before the paint, so that the
+     * {@link #LABEL_LAYOUT_CACHE_SIZE_KEY} hint does not stick on a reused label cache
+     */
+    private void restoreLayoutCache() {
+        if (layoutCacheReplaced && labelCache instanceof LabelCacheImpl) {
+            ((LabelCacheImpl) labelCache).setLayoutCache(previousLayoutCache);
+        }
+        layoutCacheReplaced = false;
+        previousLayoutCache = null;
+    }
+
     /**
      * Returns the generalization distance in the screen space.
      * 
@@ -3135,11 +3320,13 @@ public final class StreamingRenderer implements GTRenderer {
         private boolean clone;
         private IdentityHashMap decimators = new IdentityHashMap();
         private ScreenMap screenMap;
+        private ProjectionHandler projectionHandler;
 
 
         public RenderableFeature(MapLayer layer, boolean clone) {
             this.layer = layer;
             this.clone = clone;
+            this.projectionHandler = getLayerProjectionHandler();
         }
 
         public void setScreenMap(ScreenMap screenMap) {
@@ -3304,7 +3491,7 @@ public final class StreamingRenderer implements GTRenderer {
             // returns a decimator that does nothing if the currently set generalization
             // distance is zero (no generalization desired) or if the datastore has
             // already done full generalization at the desired level
-            if (generalizationDistance == 0 || !inMemoryGeneralization)
+            if (generalizationDistance == 0 || !inMemoryGeneralization.get())
                 return NULL_DECIMATOR;
 
             Decimator decimator = (Decimator) decimators.get(mathTransform);
@@ -3515,6 +3702,69 @@ public final class StreamingRenderer implements GTRenderer {
         
     }
     
+    /**
+     * A request to add a label to the label cache
+     */
+    class PutLabelRequest extends RenderingRequest {
+        String layerId;
+        TextSymbolizer symbolizer;
+        Feature feature;
+        LiteShape2 shape;
+        NumberRange scaleRange;
+
+        public PutLabelRequest(String layerId, TextSymbolizer symbolizer, Feature feature,
+                LiteShape2 shape, NumberRange scaleRange) {
+            this.layerId = layerId;
+            this.symbolizer = symbolizer;
+            this.feature = feature;
+            this.shape = shape;
+            this.scaleRange = scaleRange;
+        }
+
+        @Override
+        void execute() {
+            try {
+                labelCache.put(layerId, symbolizer, feature, shape, scaleRange);
+            } catch(Throwable t) {
+                fireErrorEvent(t);
+            }
+        }
+    }
+    
+    /**
+     * A request to start a layer in the label cache
+     */
+    class StartLayerRequest extends RenderingRequest {
+        String layerId;
+
+        public StartLayerRequest(String layerId) {
+            this.layerId = layerId;
+        }
+
+        @Override
+        void execute() {
+            labelCache.startLayer(layerId);
+        }
+    }
+    
+    /**
+     * A request to end a layer in the label cache
+     */
+    class EndLayerRequest extends RenderingRequest {
+        String layerId;
+        Graphics2D graphics;
+
+        public EndLayerRequest(String layerId, Graphics2D graphics) {
+            this.layerId = layerId;
+            this.graphics = graphics;
+        }
+
+        @Override
+        void execute() {
+            labelCache.endLayer(layerId, graphics, screenSize);
+        }
+    }
+    
     /**
      * Marks the end of the request flow, instructs the painting thread to exit
      * @author Andrea Aime - OpenGeo
@@ -3528,6 +3778,124 @@ public final class StreamingRenderer implements GTRenderer {
         
     }
     
+    /**
+     * A bounded queue of rendering requests that stops accepting (and silently drops) new
+     * requests once abandoned, so that its producer can never stay blocked forever
+     */
+    class LayerRequestQueue extends ArrayBlockingQueue<RenderingRequest> {
+        private static final long serialVersionUID = -7012938012307284377L;
+        
+        volatile boolean abandoned = false;
+
+        public LayerRequestQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public void put(RenderingRequest request) throws InterruptedException {
+            while (!abandoned) {
+                if (offer(request, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+        
+        void abandon() {
+            abandoned = true;
+            clear();
+        }
+    }
+    
+    /**
+     * Reads, filters, transforms and styles a layer, collecting the resulting rendering
+     * requests. The preparation runs either on the thread pool, filling its own queue, or
+     * on the thread forwarding the requests to the painter, if the pool did not get to it yet 
+     */
+    class LayerPreparation implements Runnable {
+        Graphics2D graphics;
+        
+        Layer layer;
+        
+        String layerId;
+        
+        /** The queue filled when preparing on the thread pool, null if preparing sequentially */
+        LayerRequestQueue queue;
+        
+        AtomicBoolean started = new AtomicBoolean(false);
+        
+        /** Where the rendering requests are sent, set when the preparation starts */
+        BlockingQueue<RenderingRequest> target;
+        
+        /** The layer rendering envelope, the map extent grown by the layer rendering buffer */
+        ReferencedEnvelope envelope;
+        
+        /** The layer projection handler, null if advanced projection handling is disabled */
+        ProjectionHandler projectionHandler;
+
+        public LayerPreparation(Graphics2D graphics, Layer layer, String layerId,
+                LayerRequestQueue queue) {
+            this.graphics = graphics;
+            this.layer = layer;
+            this.layerId = layerId;
+            this.queue = queue;
+        }
+
+        public void run() {
+            if (started.compareAndSet(false, true)) {
+                try {
+                    prepare(queue);
+                } finally {
+                    try {
+                        queue.put(new EndRequest());
+                    } catch (InterruptedException e) {
+                        fireErrorEvent(e);
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Sends the layer requests to the specified queue, in order
+         */
+        void forward(BlockingQueue<RenderingRequest> target) throws InterruptedException {
+            if (started.compareAndSet(false, true)) {
+                prepare(target);
+            } else {
+                while (!queue.abandoned) {
+                    RenderingRequest request = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (request instanceof EndRequest) {
+                        return;
+                    } else if (request != null) {
+                        target.put(request);
+                    }
+                }
+            }
+        }
+        
+        void abandon() {
+            queue.abandon();
+        }
+
+        void prepare(BlockingQueue<RenderingRequest> target) {
+            this.target = target;
+            currentLayer.set(this);
+            try {
+                if (layer instanceof DirectLayer) {
+                    target.put(new RenderDirectLayerRequest(graphics, (DirectLayer) layer));
+                } else {
+                    // extract the feature type stylers from the style object
+                    // and process them
+                    processStylers(graphics, new MapLayer(layer), worldToScreenTransform,
+                            destinationCrs, mapExtent, screenSize, layerId);
+                }
+            } catch (Throwable t) {
+                fireErrorEvent(t);
+            } finally {
+                currentLayer.remove();
+            }
+        }
+    }
+    
     /**
      * The secondary thread that actually issues the paint requests against the graphic object
      * @author aaime
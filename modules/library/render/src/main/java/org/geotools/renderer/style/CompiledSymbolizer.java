@@ -0,0 +1,164 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.style;
+
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.filter.function.EnvFunction;
+import org.geotools.styling.Graphic;
+import org.geotools.styling.StyleAttributeExtractorTruncated;
+import org.geotools.styling.Symbolizer;
+import org.geotools.styling.visitor.DuplicatingStyleVisitor;
+import org.geotools.util.logging.Logging;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * A symbolizer pre-processed by {@link SLDStyleFactory}: static symbolizers are turned into
+ * their {@link Style2D} once, dynamic ones have their constant expressions folded into
+ * literals, so that only the feature dependent parts are evaluated for each feature.
+ * <p>
+ * Instances are immutable, and can be shared among the threads rendering with the same factory.
+ * </p>
+ *
+ * @source $URL$
+ */
+final class CompiledSymbolizer {
+
+    static final Logger LOGGER = Logging.getLogger(CompiledSymbolizer.class);
+
+    /**
+     * The symbolizer to be used when building the styles of dynamic symbolizers
+     */
+    final Symbolizer symbolizer;
+
+    /**
+     * The style of a static symbolizer, or null if the symbolizer is dynamic
+     */
+    final Style2D style;
+
+    private CompiledSymbolizer(Symbolizer symbolizer, Style2D style) {
+        this.symbolizer = symbolizer;
+        this.style = style;
+    }
+
+    static CompiledSymbolizer staticSymbolizer(Symbolizer symbolizer, Style2D style) {
+        return new CompiledSymbolizer(symbolizer, style);
+    }
+
+    static CompiledSymbolizer dynamicSymbolizer(Symbolizer symbolizer) {
+        return new CompiledSymbolizer(fold(symbolizer), null);
+    }
+
+    boolean isDynamic() {
+        return style == null;
+    }
+
+    /**
+     * Returns true if the symbolizer depends on the feature being rendered, or uses volatile
+     * functions
+     */
+    static boolean isDynamic(Symbolizer symbolizer) {
+        StyleAttributeExtractorTruncated sae = new StyleAttributeExtractorTruncated();
+        sae.visit(symbolizer);
+        Set nameSet = sae.getAttributeNameSet();
+        boolean noAttributes = (nameSet == null) || (nameSet.size() == 0);
+        return !noAttributes || sae.isUsingVolatileFunctions();
+    }
+
+    /**
+     * Returns true if the graphic is going to be painted the same way regardless of the
+     * feature and of the rendering request, that is, it does not use attributes, volatile
+     * functions, or environment variables
+     */
+    static boolean isConstant(Graphic graphic) {
+        ConstantExtractor extractor = new ConstantExtractor();
+        extractor.visit(graphic);
+        return extractor.isConstant();
+    }
+
+    /**
+     * Returns a copy of the symbolizer with the constant expressions replaced by literals
+     */
+    static Symbolizer fold(Symbolizer symbolizer) {
+        try {
+            ConstantFoldingVisitor visitor = new ConstantFoldingVisitor();
+            symbolizer.accept(visitor);
+            return (Symbolizer) visitor.getCopy();
+        } catch (RuntimeException e) {
+            // the symbolizer is still usable as is, just slower to evaluate
+            LOGGER.log(Level.FINE, "Could not fold the constant expressions of " + symbolizer,
+                    e);
+            return symbolizer;
+        }
+    }
+
+    /**
+     * Tracks the attributes, volatile functions and environment variables used by an
+     * expression or graphic. The environment variables are set for each request, so they
+     * cannot be folded once for all
+     */
+    static class ConstantExtractor extends StyleAttributeExtractorTruncated {
+        boolean usingEnvironment;
+
+        @Override
+        public void clear() {
+            super.clear();
+            usingEnvironment = false;
+        }
+
+        @Override
+        public Object visit(Function expression, Object data) {
+            usingEnvironment |= (expression instanceof EnvFunction);
+            return super.visit(expression, data);
+        }
+
+        boolean isConstant() {
+            return !usingEnvironment && !isUsingVolatileFunctions() && isConstantExpression();
+        }
+    }
+
+    /**
+     * Duplicates the symbolizer replacing the constant expressions with literals
+     */
+    static class ConstantFoldingVisitor extends DuplicatingStyleVisitor {
+        ConstantExtractor extractor = new ConstantExtractor();
+
+        @Override
+        protected Expression copy(Expression expression) {
+            if (expression == null || expression instanceof Literal
+                    || expression instanceof PropertyName) {
+                return super.copy(expression);
+            }
+            extractor.clear();
+            expression.accept(extractor, null);
+            if (extractor.isConstant()) {
+                try {
+                    return ff.literal(expression.evaluate(null));
+                } catch (RuntimeException e) {
+                    // not all functions can be evaluated without a feature, leave it be
+                    LOGGER.log(Level.FINEST, "Could not fold " + expression, e);
+                }
+            }
+            return super.copy(expression);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.style;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * A cache of the rasters used during rendering (icons loaded from external graphics, rescaled
+ * icons, marks painted into graphic fill tiles), bounded by the memory used by the images
+ * rather than by their number.
+ * <p>
+ * The least recently used images are evicted once the total size goes past the limit. Images
+ * bigger than the whole cache are not cached at all. The cached images are shared among the
+ * renders, and must not be modified.
+ * </p>
+ * <p>
+ * The size of the {@linkplain #getDefaultCache() default cache} is controlled by the
+ * {@value #SIZE_PROPERTY} system property, in bytes.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public final class GraphicCache {
+
+    static final Logger LOGGER = Logging.getLogger(GraphicCache.class);
+
+    /**
+     * The system property controlling the size of the default cache, in bytes
+     */
+    public static final String SIZE_PROPERTY = "org.geotools.renderer.style.graphicCacheSize";
+
+    /**
+     * The default size of the default cache, 32MB
+     */
+    public static final long DEFAULT_SIZE = 32 * 1024 * 1024;
+
+    static final GraphicCache DEFAULT = new GraphicCache(getConfiguredSize());
+
+    private final LinkedHashMap<Object, BufferedImage> images;
+
+    private long maxBytes;
+
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the cache shared by the style factories and the image graphic factory
+     */
+    public static GraphicCache getDefaultCache() {
+        return DEFAULT;
+    }
+
+    static long getConfiguredSize() {
+        String size = System.getProperty(SIZE_PROPERTY);
+        if (size != null) {
+            try {
+                return Long.parseLong(size.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Invalid value for " + SIZE_PROPERTY + ": " + size
+                        + ", using the default cache size");
+            }
+        }
+        return DEFAULT_SIZE;
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxBytes The maximum amount of memory used by the cached images, zero to disable
+     *        caching
+     */
+    public GraphicCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("The cache size cannot be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        // access ordered, the eldest entry is the least recently used one
+        this.images = new LinkedHashMap<Object, BufferedImage>(64, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached image, or null if not found
+     */
+    public BufferedImage get(Object key) {
+        BufferedImage image;
+        synchronized (images) {
+            image = images.get(key);
+        }
+        if (image != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return image;
+    }
+
+    /**
+     * Caches the image, evicting the least recently used ones if needed to respect the maximum
+     * size
+     */
+    public void put(Object key, BufferedImage image) {
+        if (key == null || image == null) {
+            return;
+        }
+        final long size = sizeOf(image);
+        synchronized (images) {
+            if (size > maxBytes) {
+                return;
+            }
+            BufferedImage previous = images.put(key, image);
+            if (previous != null) {
+                bytes -= sizeOf(previous);
+            }
+            bytes += size;
+            evict(maxBytes);
+        }
+    }
+
+    /**
+     * Removes the least recently used images until the total size is within the limit. Must be
+     * called while holding the lock.
+     */
+    private void evict(long limit) {
+        Iterator<Map.Entry<Object, BufferedImage>> it = images.entrySet().iterator();
+        while (bytes > limit && it.hasNext()) {
+            bytes -= sizeOf(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * The memory used by the image data, in bytes. Sub-images are accounted for the whole data
+     * buffer they share with the parent image, as that's what the cache keeps in memory
+     */
+    static long sizeOf(BufferedImage image) {
+        final DataBuffer buffer = image.getRaster().getDataBuffer();
+        final int bits = DataBuffer.getDataTypeSize(buffer.getDataType());
+        return ((long) buffer.getSize()) * buffer.getNumBanks() * Math.max(1, bits / 8);
+    }
+
+    /**
+     * The maximum amount of memory used by the cached images, in bytes
+     */
+    public long getMaxBytes() {
+        synchronized (images) {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * Sets the maximum amount of memory used by the cached images, evicting the least recently
+     * used ones if needed. Zero disables caching.
+     */
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("The cache size cannot be negative: " + maxBytes);
+        }
+        synchronized (images) {
+            this.maxBytes = maxBytes;
+            evict(maxBytes);
+        }
+    }
+
+    /**
+     * The amount of memory currently used by the cached images, in bytes
+     */
+    public long getBytes() {
+        synchronized (images) {
+            return bytes;
+        }
+    }
+
+    /**
+     * The number of cached images
+     */
+    public int size() {
+        synchronized (images) {
+            return images.size();
+        }
+    }
+
+    /**
+     * Removes all the cached images
+     */
+    public void clear() {
+        synchronized (images) {
+            images.clear();
+            bytes = 0;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The ratio between the hits and the total lookups, or zero if no lookup has been made
+     */
+    public double getHitRate() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total == 0 ? 0 : ((double) h) / total;
+    }
+
+    @Override
+    public String toString() {
+        return "GraphicCache[images=" + size() + ", bytes=" + getBytes() + ", maxBytes="
+                + getMaxBytes() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
@@ -23,7 +23,7 @@ import java.net.URL;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -31,7 +31,6 @@ import javax.imageio.ImageIO;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.Feature;
 import org.opengis.filter.expression.Expression;
@@ -53,8 +52,8 @@ public class ImageGraphicFactory implements ExternalGraphicFactory {
     /** The logger for the rendering module. */
     private static final Logger LOGGER = Logging.getLogger(ImageGraphicFactory.class);
 
-    /** Current way to load images */
-    static Map<URL, BufferedImage> imageCache = Collections.synchronizedMap(new SoftValueHashMap<URL, BufferedImage>());
+    /** Caches the loaded images, and their rescaled versions */
+    static GraphicCache imageCache = GraphicCache.getDefaultCache();
 
     /** Holds the of graphic formats supported by the current jdk */
     static Set<String> supportedGraphicFormats = new HashSet<String>(Arrays.asList(ImageIO
@@ -78,8 +77,14 @@ public class ImageGraphicFactory implements ExternalGraphicFactory {
             imageCache.put(location, image);
         }
         
-        // if scaling is needed, perform it
+        // if scaling is needed, perform it, unless we already did
         if(size > 0 && image.getHeight() != size) {
+            List<Object> scaledKey = Arrays.<Object> asList(location, size);
+            BufferedImage scaled = imageCache.get(scaledKey);
+            if(scaled != null) {
+                return new ImageIcon(scaled);
+            }
+
             double dsize = (double) size;
 
             double scaleY = dsize / image.getHeight(); // >1 if you're magnifying
@@ -88,6 +93,7 @@ public class ImageGraphicFactory implements ExternalGraphicFactory {
             AffineTransform scaleTx = AffineTransform.getScaleInstance(scaleX,scaleY);  
             AffineTransformOp ato = new AffineTransformOp(scaleTx, AffineTransformOp.TYPE_BILINEAR);
             image = ato.filter(image, null);
+            imageCache.put(scaledKey, image);
         }
         
         return new ImageIcon(image);
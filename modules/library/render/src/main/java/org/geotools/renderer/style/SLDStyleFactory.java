@@ -33,10 +33,12 @@ import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,13 +58,11 @@ import org.geotools.styling.Mark;
 import org.geotools.styling.PointPlacement;
 import org.geotools.styling.PointSymbolizer;
 import org.geotools.styling.PolygonSymbolizer;
-import org.geotools.styling.StyleAttributeExtractorTruncated;
 import org.geotools.styling.StyleFactoryFinder;
 import org.geotools.styling.Symbolizer;
 import org.geotools.styling.TextSymbolizer;
 import org.geotools.styling.TextSymbolizer2;
 import org.geotools.util.Range;
-import org.geotools.util.SoftValueHashMap;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.filter.FilterFactory;
@@ -160,11 +160,22 @@ public class SLDStyleFactory {
 		fontStyleLookup.put("bold", new Integer(java.awt.Font.BOLD));
 	}
 
-	/** Symbolizers that depend on attributes */
-	Map dynamicSymbolizers = new SoftValueHashMap();
+	/**
+	 * The maximum number of compiled symbolizers kept by the factory, the
+	 * renderers create new symbolizers for each request, so the older ones
+	 * are eventually going to be dropped
+	 */
+	static final int MAX_COMPILED_SYMBOLIZERS = 1000;
 
-	/** Symbolizers that do not depend on attributes */
-	Map staticSymbolizers = new SoftValueHashMap();
+	/**
+	 * The compiled symbolizers, holding the style of the static ones, and the
+	 * pre-processed version of the dynamic ones. Read without locking by all
+	 * the threads using the factory
+	 */
+	final Map<SymbolizerKey, CompiledSymbolizer> compiledSymbolizers = new ConcurrentHashMap<SymbolizerKey, CompiledSymbolizer>();
+
+	/** Caches the marks painted into graphic fills */
+	GraphicCache graphicCache = GraphicCache.getDefaultCache();
 
 	/**
 	 * Build a default rendering hint to avoid NPE
@@ -186,9 +197,9 @@ public class SLDStyleFactory {
 	 */
 	private boolean vectorRenderingEnabled = false;
 
-	private long hits;
+	private final AtomicLong hits = new AtomicLong();
 
-	private long requests;
+	private final AtomicLong requests = new AtomicLong();
 
 	/**
 	 * Holds value of property mapScaleDenominator.
@@ -254,15 +265,15 @@ public class SLDStyleFactory {
 	}
 
 	public double getHitRatio() {
-		return (double) hits / (double) requests;
+		return (double) hits.get() / (double) requests.get();
 	}
 
 	public long getHits() {
-		return hits;
+		return hits.get();
 	}
 
 	public long getRequests() {
-		return requests;
+		return requests.get();
 	}
 
 	/**
@@ -274,7 +285,13 @@ public class SLDStyleFactory {
 	 * Makes use of a symbolizer cache based on identity to avoid recomputing
 	 * over and over the same style object and to reduce memory usage. The same
 	 * Style2D object will be returned by subsequent calls using the same
-	 * feature independent symbolizer with the same scaleRange.
+	 * feature independent symbolizer with the same scaleRange. Feature dependent
+	 * symbolizers are compiled once, folding their constant expressions, so
+	 * that only the feature dependent parts are evaluated for each feature.
+	 * </p>
+	 * 
+	 * <p>
+	 * The method can be called concurrently by multiple threads.
 	 * </p>
 	 * 
 	 * @param drawMe
@@ -289,44 +306,48 @@ public class SLDStyleFactory {
 	 */
 	public Style2D createStyle(Object drawMe, Symbolizer symbolizer,
 			Range scaleRange) {
-		Style2D style = null;
-
 		SymbolizerKey key = new SymbolizerKey(symbolizer, scaleRange);
-		style = (Style2D) staticSymbolizers.get(key);
+		CompiledSymbolizer compiled = compiledSymbolizers.get(key);
+
+		requests.incrementAndGet();
 
-		requests++;
+		if (compiled != null) {
+			if (compiled.isDynamic()) {
+				return createStyleInternal(drawMe, compiled.symbolizer, scaleRange);
+			} else {
+				hits.incrementAndGet();
+				return compiled.style;
+			}
+		}
 
-		if (style != null) {
-			hits++;
+		// lets see if it's static or dynamic
+		if (CompiledSymbolizer.isDynamic(symbolizer)) {
+			compiled = CompiledSymbolizer.dynamicSymbolizer(symbolizer);
+			cacheCompiled(key, compiled);
+			return createStyleInternal(drawMe, compiled.symbolizer, scaleRange);
 		} else {
-			style = createStyleInternal(drawMe, symbolizer, scaleRange);
+			Style2D style = createStyleInternal(drawMe, symbolizer, scaleRange);
 
 			// for some legitimate cases some styles cannot be turned into a
 			// valid Style2D
 			// e.g., point symbolizer that contains no graphic that can be used
 			// due to network issues
-			if (style == null) {
-				return null;
+			if (style != null) {
+				cacheCompiled(key, CompiledSymbolizer.staticSymbolizer(symbolizer, style));
 			}
+			return style;
+		}
+	}
 
-			// if known dynamic symbolizer return the style
-			if (dynamicSymbolizers.containsKey(key)) {
-				return style;
-			} else {
-				// lets see if it's static or dynamic
-				StyleAttributeExtractorTruncated sae = new StyleAttributeExtractorTruncated();
-				sae.visit(symbolizer);
-
-				Set nameSet = sae.getAttributeNameSet();
-				boolean noAttributes = (nameSet == null) || (nameSet.size() == 0);
-				if (noAttributes && !sae.isUsingVolatileFunctions()) {
-					staticSymbolizers.put(key, style);
-				} else {
-					dynamicSymbolizers.put(key, Boolean.TRUE);
-				}
-			}
+	/**
+	 * Caches the compiled symbolizer. Concurrent compilations of the same
+	 * symbolizer produce equivalent results, so we don't care which one wins
+	 */
+	private void cacheCompiled(SymbolizerKey key, CompiledSymbolizer compiled) {
+		if (compiledSymbolizers.size() >= MAX_COMPILED_SYMBOLIZERS) {
+			compiledSymbolizers.clear();
 		}
-		return style;
+		compiledSymbolizers.put(key, compiled);
 	}
 
 	/**
@@ -1065,6 +1086,24 @@ public class SLDStyleFactory {
 				LOGGER.finer("going for the mark from graphic fill");
 			}
 
+			// constant marks are painted once, and shared among the renders
+			List<Object> cacheKey = null;
+			if (CompiledSymbolizer.isConstant(gr)) {
+				cacheKey = Arrays.<Object> asList(gr,
+						renderingHints.get(RenderingHints.KEY_ANTIALIASING),
+						renderingHints.get(RenderingHints.KEY_RENDERING),
+						renderingHints.get(RenderingHints.KEY_STROKE_CONTROL));
+				image = graphicCache.get(cacheKey);
+			}
+			if (image != null) {
+				// the cached tile is one pixel wider than the mark
+				iSizeX = image.getWidth() - 1;
+				iSizeY = image.getHeight() - 1;
+				Rectangle2D.Double rect = new Rectangle2D.Double(0.0, 0.0, iSizeX,
+						iSizeY);
+				return new TexturePaint(image, rect);
+			}
+
 			org.geotools.styling.Mark mark = getMark(gr, feature);
 
 			if (mark == null) {
@@ -1118,6 +1157,9 @@ public class SLDStyleFactory {
 																				// the
 																				// new
 																				// sizes
+			if (cacheKey != null) {
+				graphicCache.put(cacheKey, image);
+			}
 		}
 
 		Rectangle2D.Double rect = new Rectangle2D.Double(0.0, 0.0, iSizeX,
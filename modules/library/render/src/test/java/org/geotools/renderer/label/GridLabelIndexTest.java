@@ -0,0 +1,58 @@
+package org.geotools.renderer.label;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class GridLabelIndexTest {
+
+    @Test
+    public void testSameAnswersAsQuadtree() {
+        final Random random = new Random(0);
+        final Rectangle area = new Rectangle(0, 0, 512, 512);
+        final LabelIndex quadtree = new LabelIndex();
+        final GridLabelIndex grid = new GridLabelIndex(area, 32);
+
+        // a reserved area partially out of the display
+        List<Rectangle2D> reserved = new ArrayList<Rectangle2D>();
+        reserved.add(new Rectangle2D.Double(-50, 400, 100, 200));
+        quadtree.reserveArea(reserved);
+        grid.reserveArea(reserved);
+
+        for (int i = 0; i < 2000; i++) {
+            // some of the candidates fall outside of the grid
+            Rectangle2D bounds = new Rectangle2D.Double(random.nextDouble() * 600 - 40,
+                    random.nextDouble() * 600 - 40, random.nextDouble() * 60,
+                    random.nextDouble() * 15);
+            double distance = random.nextInt(5) - 1;
+            boolean expected = quadtree.labelsWithinDistance(bounds, distance);
+            assertEquals(expected, grid.labelsWithinDistance(bounds, distance));
+            if (!expected) {
+                quadtree.addLabel(null, bounds);
+                grid.addLabel(null, bounds);
+            }
+        }
+    }
+
+    @Test
+    public void testTouching() {
+        final GridLabelIndex grid = new GridLabelIndex(new Rectangle(0, 0, 256, 256));
+        grid.addLabel(null, new Rectangle2D.Double(10, 10, 10, 10));
+        // touching envelopes do intersect, as in the quadtree based index
+        assertTrue(grid.labelsWithinDistance(new Rectangle2D.Double(20, 20, 5, 5), 0));
+        assertFalse(grid.labelsWithinDistance(new Rectangle2D.Double(22, 22, 5, 5), 1));
+        assertTrue(grid.labelsWithinDistance(new Rectangle2D.Double(22, 22, 5, 5), 2));
+        assertFalse(grid.labelsWithinDistance(new Rectangle2D.Double(10, 10, 5, 5), -1));
+    }
+}
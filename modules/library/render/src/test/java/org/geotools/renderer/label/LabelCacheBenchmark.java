@@ -0,0 +1,136 @@
+package org.geotools.renderer.label;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.memory.MemoryFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.MapContent;
+import org.geotools.renderer.label.LabelCacheImpl.LabelEngineMode;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.geotools.styling.TextSymbolizer;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Renders a label dense map with the serial and the parallel labelling engines, reporting the
+ * rendering times and whether the two outputs are identical.
+ * <p>
+ * Usage: <code>LabelCacheBenchmark [points] [lines] [size]</code>
+ * </p>
+ *
+ * @source $URL$
+ */
+public class LabelCacheBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int points = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int lines = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        final int size = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+
+        final MapContent map = buildMap(points, lines);
+        final ReferencedEnvelope bounds = new ReferencedEnvelope(0, 1000, 0, 1000, null);
+
+        // warm up, then measure
+        for (int i = 0; i < 2; i++) {
+            render(map, bounds, size, LabelEngineMode.SERIAL);
+            render(map, bounds, size, LabelEngineMode.PARALLEL);
+        }
+        long start = System.nanoTime();
+        BufferedImage serial = render(map, bounds, size, LabelEngineMode.SERIAL);
+        System.out.println("Serial engine: " + (System.nanoTime() - start) / 1000000 + " ms");
+        start = System.nanoTime();
+        BufferedImage parallel = render(map, bounds, size, LabelEngineMode.PARALLEL);
+        System.out.println("Parallel engine: " + (System.nanoTime() - start) / 1000000 + " ms");
+        System.out.println("Same output: " + sameImage(serial, parallel));
+        map.dispose();
+    }
+
+    static MapContent buildMap(int points, int lines) throws Exception {
+        final Random random = new Random(0);
+        final GeometryFactory gf = new GeometryFactory();
+        final StyleBuilder sb = new StyleBuilder();
+        final MapContent map = new MapContent();
+
+        SimpleFeatureType pointType = DataUtilities.createType("points",
+                "geom:Point,name:String,priority:int");
+        MemoryFeatureCollection pointFeatures = new MemoryFeatureCollection(pointType);
+        for (int i = 0; i < points; i++) {
+            pointFeatures.add(SimpleFeatureBuilder.build(pointType, new Object[] {
+                    gf.createPoint(new Coordinate(random.nextDouble() * 1000,
+                            random.nextDouble() * 1000)), "Point " + i, random.nextInt(100) },
+                    "points." + i));
+        }
+        TextSymbolizer pointText = sb.createTextSymbolizer(Color.BLACK,
+                sb.createFont("Serif", 10), "name");
+        pointText.setPriority(sb.attributeExpression("priority"));
+        pointText.getOptions().put(TextSymbolizer.MAX_DISPLACEMENT_KEY, "10");
+        Style pointStyle = sb.createStyle(pointText);
+        map.addLayer(new FeatureLayer(pointFeatures, pointStyle));
+
+        SimpleFeatureType lineType = DataUtilities.createType("lines", "geom:LineString,name:String");
+        MemoryFeatureCollection lineFeatures = new MemoryFeatureCollection(lineType);
+        for (int i = 0; i < lines; i++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            Coordinate[] coords = new Coordinate[5];
+            for (int j = 0; j < coords.length; j++) {
+                coords[j] = new Coordinate(x + j * 10, y + random.nextDouble() * 10);
+            }
+            lineFeatures.add(SimpleFeatureBuilder.build(lineType, new Object[] {
+                    gf.createLineString(coords), "Line " + i }, "lines." + i));
+        }
+        TextSymbolizer lineText = sb.createTextSymbolizer(Color.BLUE, sb.createFont("Serif", 9),
+                "name");
+        lineText.setLabelPlacement(sb.createLinePlacement(0));
+        lineText.getOptions().put(TextSymbolizer.FOLLOW_LINE_KEY, "true");
+        Style lineStyle = sb.createStyle(lineText);
+        map.addLayer(new FeatureLayer(lineFeatures, lineStyle));
+
+        return map;
+    }
+
+    static BufferedImage render(MapContent map, ReferencedEnvelope bounds, int size,
+            LabelEngineMode mode) {
+        LabelCacheImpl labelCache = new LabelCacheImpl();
+        labelCache.setLabelEngineMode(mode);
+        Map<Object, Object> hints = new HashMap<Object, Object>();
+        hints.put(StreamingRenderer.LABEL_CACHE_KEY, labelCache);
+
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(map);
+        renderer.setRendererHints(hints);
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            renderer.paint(graphics, new Rectangle(size, size), bounds);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    static boolean sameImage(BufferedImage image1, BufferedImage image2) {
+        for (int y = 0; y < image1.getHeight(); y++) {
+            for (int x = 0; x < image1.getWidth(); x++) {
+                if (image1.getRGB(x, y) != image2.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
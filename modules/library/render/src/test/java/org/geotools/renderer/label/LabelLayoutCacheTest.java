@@ -0,0 +1,147 @@
+package org.geotools.renderer.label;
+
+import static org.junit.Assert.*;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.renderer.label.LabelCacheImpl.LabelRenderingMode;
+import org.geotools.renderer.label.LabelPainter.LabelLayout;
+import org.geotools.renderer.style.TextStyle2D;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class LabelLayoutCacheTest {
+
+    FontRenderContext frc;
+
+    Font font;
+
+    @Before
+    public void setUp() {
+        frc = new FontRenderContext(new AffineTransform(), true, true);
+        font = new Font("Serif", Font.PLAIN, 12);
+    }
+
+    LabelCacheItem item(String label, Font font, int autoWrap) throws Exception {
+        TextStyle2D style = new TextStyle2D();
+        style.setFont(font);
+        LiteShape2 shape = new LiteShape2(new GeometryFactory().createPoint(new Coordinate(0, 0)),
+                null, null, false);
+        LabelCacheItem item = new LabelCacheItem("layer", style, shape, label);
+        item.setAutoWrap(autoWrap);
+        return item;
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        LabelLayoutCache cache = new LabelLayoutCache(10);
+        LabelLayout layout = cache.getLayout(item("Main Street", font, 0), frc);
+        assertSame(layout, cache.getLayout(item("Main Street", font, 0), frc));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0d);
+
+        // a different font, wrapping or text is a different layout
+        assertNotSame(layout, cache.getLayout(item("Main Street", font.deriveFont(14f), 0), frc));
+        assertNotSame(layout, cache.getLayout(item("Main Street", font, 50), frc));
+        assertNotSame(layout, cache.getLayout(item("Main Road", font, 0), frc));
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testSameLayout() throws Exception {
+        LabelLayoutCache cache = new LabelLayoutCache(10);
+        LabelCacheItem item = item("A rather long street name", font, 60);
+        LabelLayout cached = cache.getLayout(item, frc);
+        LabelLayout computed = LabelPainter.computeLayout(item, frc);
+        assertEquals(computed.labelBounds, cached.labelBounds);
+        assertEquals(computed.lines.size(), cached.lines.size());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        LabelLayoutCache cache = new LabelLayoutCache(2);
+        LabelLayout first = cache.getLayout(item("first", font, 0), frc);
+        cache.getLayout(item("second", font, 0), frc);
+        // touch the first, the second becomes the least recently used
+        cache.getLayout(item("first", font, 0), frc);
+        cache.getLayout(item("third", font, 0), frc);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(first, cache.getLayout(item("first", font, 0), frc));
+
+        cache.setMaxSize(1);
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    public void testConcurrentPainting() throws Exception {
+        final LabelLayoutCache cache = new LabelLayoutCache(10);
+        BufferedImage expected = paint(cache);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<BufferedImage>> images = new ArrayList<Future<BufferedImage>>();
+            for (int i = 0; i < 32; i++) {
+                images.add(pool.submit(new Callable<BufferedImage>() {
+                    public BufferedImage call() throws Exception {
+                        return paint(cache);
+                    }
+                }));
+            }
+            for (Future<BufferedImage> future : images) {
+                BufferedImage image = future.get();
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    for (int y = 0; y < expected.getHeight(); y++) {
+                        assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, cache.size());
+    }
+
+    BufferedImage paint(LabelLayoutCache cache) throws Exception {
+        BufferedImage image = new BufferedImage(150, 40, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            LabelPainter painter = new LabelPainter(graphics, LabelRenderingMode.STRING);
+            painter.setLayoutCache(cache);
+            painter.setLabel(item("Main Street", font, 0));
+            painter.paintStraightLabel(AffineTransform.getTranslateInstance(10, 25));
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        LabelLayoutCache cache = new LabelLayoutCache(0);
+        LabelLayout layout = cache.getLayout(item("Main Street", font, 0), frc);
+        assertNotSame(layout, cache.getLayout(item("Main Street", font, 0), frc));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitRate(), 0d);
+    }
+}
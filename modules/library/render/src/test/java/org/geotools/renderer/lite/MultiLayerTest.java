@@ -6,6 +6,10 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
@@ -18,6 +22,7 @@ import org.geotools.map.MapContent;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.styling.Style;
 import org.geotools.styling.StyleBuilder;
+import org.geotools.styling.TextSymbolizer;
 import org.geotools.test.TestData;
 import org.junit.Test;
 
@@ -65,4 +70,55 @@ public class MultiLayerTest {
 		assertEquals(0, pixel[2]);
 		assertEquals(255, pixel[3]);
 	}
+
+	@Test
+	public void testParallelLayerPreparation() throws Exception {
+		File property = new File(TestData.getResource(this, "buildings.properties").toURI());
+		PropertyDataStore ds = new PropertyDataStore(property.getParentFile());
+		ReferencedEnvelope bounds = new ReferencedEnvelope(0, 10, 0, 10, DefaultGeographicCRS.WGS84);
+		
+		StyleBuilder sb = new StyleBuilder();
+		Style pst = sb.createStyle(sb.createPolygonSymbolizer(Color.GRAY, Color.BLACK, 2));
+		Style lst = sb.createStyle(sb.createLineSymbolizer(Color.BLUE, 4));
+		TextSymbolizer ts = sb.createTextSymbolizer(Color.BLACK, sb.createFont("Serif", 12), "code");
+		Style tst = sb.createStyle(sb.createPointSymbolizer(sb.createGraphic(null, 
+				sb.createMark(StyleBuilder.MARK_CIRCLE, Color.RED), null)));
+		tst.featureTypeStyles().get(0).rules().get(0).symbolizers().add(ts);
+		
+		MapContent mc = new MapContent();
+		mc.addLayer(new FeatureLayer(ds.getFeatureSource("buildings"), pst));
+		mc.addLayer(new FeatureLayer(ds.getFeatureSource("line"), lst));
+		mc.addLayer(new FeatureLayer(ds.getFeatureSource("point"), tst));
+		mc.addLayer(new FeatureLayer(ds.getFeatureSource("buildings"), lst));
+		
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			StreamingRenderer renderer = new StreamingRenderer();
+			renderer.setMapContent(mc);
+			renderer.setThreadPool(pool);
+			BufferedImage sequential = RendererBaseTest.renderImage(renderer, bounds, null);
+		
+			renderer = new StreamingRenderer();
+			renderer.setMapContent(mc);
+			renderer.setThreadPool(pool);
+			Map hints = new HashMap();
+			hints.put(StreamingRenderer.PARALLEL_LAYER_PREPARATION_KEY, true);
+			renderer.setRendererHints(hints);
+			BufferedImage parallel = RendererBaseTest.renderImage(renderer, bounds, null);
+		
+			// layer order and labels must be the same as the sequential rendering
+			int[] expected = new int[4];
+			int[] actual = new int[4];
+			for (int x = 0; x < sequential.getWidth(); x++) {
+				for (int y = 0; y < sequential.getHeight(); y++) {
+					sequential.getRaster().getPixel(x, y, expected);
+					parallel.getRaster().getPixel(x, y, actual);
+					assertArrayEquals("Pixel " + x + "," + y, expected, actual);
+				}
+			}
+		} finally {
+			pool.shutdown();
+			mc.dispose();
+		}
+	}
 }
@@ -0,0 +1,68 @@
+package org.geotools.renderer.style;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class GraphicCacheTest {
+
+    BufferedImage image(int size) {
+        return new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Test
+    public void testByteAccounting() {
+        GraphicCache cache = new GraphicCache(10 * 10 * 4 * 2);
+        cache.put("a", image(10));
+        cache.put("b", image(10));
+        assertEquals(800, cache.getBytes());
+        assertEquals(2, cache.size());
+
+        // touch a, so that b gets evicted
+        assertNotNull(cache.get("a"));
+        cache.put("c", image(10));
+        assertEquals(800, cache.getBytes());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+
+        // replacing an entry does not leak bytes
+        cache.put("c", image(5));
+        assertEquals(400 + 100, cache.getBytes());
+    }
+
+    @Test
+    public void testTooBig() {
+        GraphicCache cache = new GraphicCache(1000);
+        cache.put("big", image(100));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testSubImageAccounting() {
+        GraphicCache cache = new GraphicCache(1024 * 1024);
+        // the sub image keeps the whole parent raster in memory
+        cache.put("sub", image(30).getSubimage(10, 10, 11, 11));
+        assertEquals(30 * 30 * 4, cache.getBytes());
+    }
+
+    @Test
+    public void testShrink() {
+        GraphicCache cache = new GraphicCache(10000);
+        cache.put("a", image(10));
+        cache.put("b", image(10));
+        cache.setMaxBytes(500);
+        assertEquals(1, cache.size());
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertEquals(0.5, cache.getHitRate(), 0d);
+    }
+}
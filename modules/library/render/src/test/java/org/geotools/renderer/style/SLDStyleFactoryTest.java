@@ -16,6 +16,7 @@
  */
 package org.geotools.renderer.style;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Shape;
 import java.awt.Stroke;
@@ -50,6 +51,7 @@ import org.geotools.util.NumberRange;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.FilterFactory;
+import org.opengis.filter.expression.Literal;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -159,7 +161,7 @@ public class SLDStyleFactoryTest extends TestCase {
         assertNotNull(ms.getShape());
         // make sure the style has been recognized as dynamic
         SymbolizerKey key = new SymbolizerKey(symb, range);
-        assertTrue(sld.dynamicSymbolizers.containsKey(key));
+        assertTrue(sld.compiledSymbolizers.get(key).isDynamic());
         Shape expected = new TTFMarkFactory().getShape(null, ff.literal("ttf://Serif#0xF054"), feature);
         
         // no general path equality implemented, we have to check manually
@@ -189,7 +191,7 @@ public class SLDStyleFactoryTest extends TestCase {
         GraphicStyle2D gs = (GraphicStyle2D) sld.createStyle(feature, symb, range);
         // make sure the style has been recognized as dynamic
         SymbolizerKey key = new SymbolizerKey(symb, range);
-        assertTrue(sld.dynamicSymbolizers.containsKey(key));
+        assertTrue(sld.compiledSymbolizers.get(key).isDynamic());
 
         BufferedImage img = gs.getImage();
         BufferedImage expected = ImageIO.read(StreamingRenderer.class.getResource("test-data/draw.png"));
@@ -209,7 +211,7 @@ public class SLDStyleFactoryTest extends TestCase {
         GraphicStyle2D gs = (GraphicStyle2D) sld.createStyle(feature, symb, range);
         // make sure the style has been recognized as dynamic
         SymbolizerKey key = new SymbolizerKey(symb, range);
-        assertTrue(sld.dynamicSymbolizers.containsKey(key));
+        assertTrue(sld.compiledSymbolizers.get(key).isDynamic());
 
         BufferedImage expected = ImageIO.read(StreamingRenderer.class.getResource("test-data/draw.png"));
         assertEquals(expected.getHeight(), gs.getImage().getHeight());
@@ -238,7 +240,7 @@ public class SLDStyleFactoryTest extends TestCase {
         GraphicStyle2D gs = (GraphicStyle2D) sld.createStyle(feature, symb, range);
         // make sure the style has been recognized as dynamic
         SymbolizerKey key = new SymbolizerKey(symb, range);
-        assertTrue(sld.dynamicSymbolizers.containsKey(key));
+        assertTrue(sld.compiledSymbolizers.get(key).isDynamic());
 
         BufferedImage img = gs.getImage();
         BufferedImage expected = ImageIO.read(StreamingRenderer.class.getResource("test-data/draw.png"));
@@ -368,4 +370,54 @@ public class SLDStyleFactoryTest extends TestCase {
          IconStyle2D icon = (IconStyle2D) sld.createPointStyle(feature, symb, range);
          assertNull(icon);
      }
+
+     public void testStaticSymbolizerCached() throws Exception {
+         LineSymbolizer symb = sf.createLineSymbolizer(sf.createStroke(ff.literal("#FF0000"),
+                 ff.literal(3)), null);
+         Style2D style = sld.createStyle(feature, symb, range);
+         assertSame(style, sld.createStyle(feature, symb, range));
+         assertFalse(sld.compiledSymbolizers.get(new SymbolizerKey(symb, range)).isDynamic());
+         assertEquals(1, sld.getHits());
+     }
+
+     public void testFoldConstantExpressions() throws Exception {
+         LineSymbolizer symb = sf.createLineSymbolizer(sf.createStroke(ff.function("strConcat",
+                 ff.literal("#FF"), ff.literal("0000")), ff.function("strLength",
+                 ff.property("icon"))), null);
+         LineStyle2D style = (LineStyle2D) sld.createStyle(feature, symb, range);
+         assertEquals(Color.RED, style.getContour());
+         assertEquals(8f, ((BasicStroke) style.getStroke()).getLineWidth());
+
+         // the constant color has been folded, the width depends on the feature
+         CompiledSymbolizer compiled = sld.compiledSymbolizers.get(new SymbolizerKey(symb, range));
+         assertTrue(compiled.isDynamic());
+         LineSymbolizer folded = (LineSymbolizer) compiled.symbolizer;
+         assertTrue(folded.getStroke().getColor() instanceof Literal);
+         assertFalse(folded.getStroke().getWidth() instanceof Literal);
+     }
+
+     public void testEnvironmentNotFolded() throws Exception {
+         LineSymbolizer symb = sf.createLineSymbolizer(sf.createStroke(ff.function("env",
+                 ff.literal("color"), ff.literal("#FF0000")), ff.property("symb")), null);
+         CompiledSymbolizer compiled = CompiledSymbolizer.dynamicSymbolizer(symb);
+         LineSymbolizer folded = (LineSymbolizer) compiled.symbolizer;
+         assertFalse(folded.getStroke().getColor() instanceof Literal);
+     }
+
+     public void testConstantMarkFillCached() throws Exception {
+         Mark mark = sf.createMark();
+         mark.setWellKnownName(ff.literal("circle"));
+         mark.setFill(sf.createFill(ff.literal("#0000FF")));
+         Graphic graphic = sf.createDefaultGraphic();
+         graphic.graphicalSymbols().clear();
+         graphic.graphicalSymbols().add(mark);
+         graphic.setSize(ff.literal(8));
+
+         sld.graphicCache = new GraphicCache(1024 * 1024);
+         TexturePaint paint = sld.getTexturePaint(graphic, feature);
+         assertEquals(1, sld.graphicCache.size());
+         TexturePaint cached = sld.getTexturePaint(graphic, feature);
+         assertSame(paint.getImage(), cached.getImage());
+         assertEquals(paint.getAnchorRect(), cached.getAnchorRect());
+     }
 }
@@ -0,0 +1,332 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.Utilities;
+
+/**
+ * Schedules the granule loads of a mosaic on the {@link ExecutorService} provided to the
+ * {@link ImageMosaicReader}, bounding the number of granules of the mosaic being read at the
+ * same time.
+ * <p>
+ * The loads that cannot be started right away are queued and started as the running ones
+ * complete, the ones with the highest priority first. The {@link RasterLayerResponse} uses
+ * as priority the share of the output covered by the granule, so that the granules
+ * contributing the most to the response are read first.
+ * <p>
+ * The loads are submitted in {@link Batch}es, one per request, which can be cancelled as a
+ * whole when the request is abandoned: the queued loads of the batch are then dropped
+ * without ever being read.
+ * <p>
+ * The scheduler keeps some statistics about the time spent by the loads waiting in the queue
+ * and reading the granules, which can be used to tune the concurrency limit.
+ *
+ * @source $URL$
+ * @since 9.0
+ */
+public class GranuleLoadingScheduler {
+
+    /** Logger. */
+    private final static Logger LOGGER = org.geotools.util.logging.Logging.getLogger(GranuleLoadingScheduler.class);
+
+    /**
+     * A load waiting in the queue or running, ordered by decreasing priority and then by
+     * submission order.
+     */
+    final class ScheduledLoad<T> extends FutureTask<T> implements Comparable<ScheduledLoad<?>> {
+
+        final double priority;
+
+        final long sequence;
+
+        final long queuedAt;
+
+        ScheduledLoad(final Callable<T> callable, final double priority, final long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+            this.queuedAt = System.nanoTime();
+        }
+
+        public int compareTo(ScheduledLoad<?> other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (isDone()) {
+                    // cancelled while waiting in the queue
+                    return;
+                }
+                final long start = System.nanoTime();
+                record(start - queuedAt, totalQueueTime, maxQueueTime);
+                super.run();
+                record(System.nanoTime() - start, totalReadTime, maxReadTime);
+                if (!isCancelled()) {
+                    completed.incrementAndGet();
+                }
+            } finally {
+                loadFinished();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                cancelled.incrementAndGet();
+            }
+        }
+
+        void fail(final Throwable t) {
+            setException(t);
+        }
+    }
+
+    /**
+     * The loads submitted for a single request.
+     */
+    public final class Batch {
+
+        private final List<ScheduledLoad<?>> loads = new ArrayList<ScheduledLoad<?>>();
+
+        private Batch() {
+        }
+
+        /**
+         * Schedules a load.
+         *
+         * @param load the load to perform
+         * @param priority the load priority, higher values are loaded first
+         * @return a {@link Future} for the load result
+         */
+        public <T> Future<T> submit(final Callable<T> load, final double priority) {
+            Utilities.ensureNonNull("load", load);
+            final ScheduledLoad<T> scheduled = new ScheduledLoad<T>(load, priority,
+                    sequence.incrementAndGet());
+            loads.add(scheduled);
+            schedule(scheduled);
+            return scheduled;
+        }
+
+        /**
+         * Cancels the loads of this batch which did not complete yet. The queued ones are
+         * dropped, the running ones are left to complete but their results are discarded.
+         */
+        public void cancel() {
+            for (ScheduledLoad<?> load : loads) {
+                load.cancel(false);
+            }
+        }
+    }
+
+    private final ExecutorService executor;
+
+    private final int maxConcurrentLoads;
+
+    private final PriorityBlockingQueue<ScheduledLoad<?>> queue = new PriorityBlockingQueue<ScheduledLoad<?>>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** The number of loads handed to the executor, guarded by the queue lock */
+    private int running;
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong cancelled = new AtomicLong();
+
+    private final AtomicLong totalQueueTime = new AtomicLong();
+
+    private final AtomicLong maxQueueTime = new AtomicLong();
+
+    private final AtomicLong totalReadTime = new AtomicLong();
+
+    private final AtomicLong maxReadTime = new AtomicLong();
+
+    /**
+     * Builds a new scheduler.
+     *
+     * @param executor the executor running the loads
+     * @param maxConcurrentLoads the maximum number of loads running at the same time. When not
+     *        positive the core pool size is used for {@link ThreadPoolExecutor}s, and no limit
+     *        is imposed for the other executors.
+     */
+    public GranuleLoadingScheduler(final ExecutorService executor, final int maxConcurrentLoads) {
+        Utilities.ensureNonNull("executor", executor);
+        this.executor = executor;
+        if (maxConcurrentLoads > 0) {
+            this.maxConcurrentLoads = maxConcurrentLoads;
+        } else if (executor instanceof ThreadPoolExecutor
+                && ((ThreadPoolExecutor) executor).getCorePoolSize() > 0) {
+            this.maxConcurrentLoads = ((ThreadPoolExecutor) executor).getCorePoolSize();
+        } else {
+            this.maxConcurrentLoads = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Starts a new batch of loads.
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    private void schedule(final ScheduledLoad<?> load) {
+        queue.add(load);
+        dispatch();
+    }
+
+    private void loadFinished() {
+        synchronized (queue) {
+            running--;
+        }
+        dispatch();
+    }
+
+    /**
+     * Hands the queued loads to the executor until the concurrency limit is reached
+     */
+    private void dispatch() {
+        while (true) {
+            final ScheduledLoad<?> load;
+            synchronized (queue) {
+                if (running >= maxConcurrentLoads) {
+                    return;
+                }
+                load = queue.poll();
+                if (load == null) {
+                    return;
+                }
+                if (load.isDone()) {
+                    // cancelled while waiting
+                    continue;
+                }
+                running++;
+            }
+            try {
+                executor.execute(load);
+            } catch (RejectedExecutionException e) {
+                if (LOGGER.isLoggable(Level.FINE))
+                    LOGGER.log(Level.FINE, "Unable to schedule the granule load", e);
+                synchronized (queue) {
+                    running--;
+                }
+                load.fail(e);
+            }
+        }
+    }
+
+    private static void record(final long time, final AtomicLong total, final AtomicLong max) {
+        total.addAndGet(time);
+        long current = max.get();
+        while (time > current && !max.compareAndSet(current, time)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Cancels all the queued loads, usually called when the reader is disposed.
+     */
+    public void dispose() {
+        ScheduledLoad<?> load;
+        while ((load = queue.poll()) != null) {
+            load.cancel(false);
+        }
+    }
+
+    /**
+     * The maximum number of loads running at the same time
+     */
+    public int getMaxConcurrentLoads() {
+        return maxConcurrentLoads;
+    }
+
+    /**
+     * The number of loads waiting to be started
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * The number of loads currently running
+     */
+    public int getRunningCount() {
+        synchronized (queue) {
+            return running;
+        }
+    }
+
+    /**
+     * The number of loads run to completion, successfully or not
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * The number of loads cancelled before completing
+     */
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    /**
+     * The total time, in nanoseconds, spent by the loads waiting in the queue
+     */
+    public long getTotalQueueTime() {
+        return totalQueueTime.get();
+    }
+
+    /**
+     * The longest time, in nanoseconds, a load has been waiting in the queue
+     */
+    public long getMaxQueueTime() {
+        return maxQueueTime.get();
+    }
+
+    /**
+     * The total time, in nanoseconds, spent reading the granules
+     */
+    public long getTotalReadTime() {
+        return totalReadTime.get();
+    }
+
+    /**
+     * The longest time, in nanoseconds, spent reading a granule
+     */
+    public long getMaxReadTime() {
+        return maxReadTime.get();
+    }
+
+}
@@ -115,6 +115,9 @@ public final class ImageMosaicReader extends AbstractGridCoverage2DReader implem
 	
 	ExecutorService multiThreadedLoader = null;
 
+	/** Bounds and prioritizes the granule loads on the {@link #multiThreadedLoader}, if any */
+	GranuleLoadingScheduler loadingScheduler = null;
+
 	String locationAttributeName="location";
 
 	RasterManager rasterManager;
@@ -470,6 +473,10 @@ public final class ImageMosaicReader extends AbstractGridCoverage2DReader implem
 
 		// caching for the index
 		cachingIndex = configuration.isCaching();
+
+		// scheduler for the parallel granule loads
+		if (multiThreadedLoader != null)
+			loadingScheduler = new GranuleLoadingScheduler(multiThreadedLoader, configuration.getMaxConcurrentLoads());
 		
 		// imposed BBOX
         if(configuration.getEnvelope()!=null){
@@ -635,6 +642,15 @@ public final class ImageMosaicReader extends AbstractGridCoverage2DReader implem
 		return 1;
 	}
 
+	/**
+	 * The scheduler of the parallel granule loads, which can be used to monitor them.
+	 *
+	 * @return the scheduler, or <code>null</code> if no {@link Hints#EXECUTOR_SERVICE} was provided
+	 */
+	public GranuleLoadingScheduler getLoadingScheduler() {
+		return loadingScheduler;
+	}
+
 	/**
 	 * Releases resources held by this reader.
 	 * 
@@ -642,6 +658,8 @@ public final class ImageMosaicReader extends AbstractGridCoverage2DReader implem
 	@Override
 	public synchronized void dispose() {
 		super.dispose();
+		if (loadingScheduler != null)
+			loadingScheduler.dispose();
 		try{
 		    if(rasterManager!=null)
 		        rasterManager.dispose();
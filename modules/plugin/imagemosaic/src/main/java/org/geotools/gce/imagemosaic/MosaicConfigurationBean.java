@@ -108,6 +108,9 @@ public class MosaicConfigurationBean {
 	
 	private boolean heterogeneous;
 
+	/** Maximum number of granules loaded at the same time, when not positive it is derived from the executor.*/
+	private int maxConcurrentLoads;
+
 	public ReferencedEnvelope getEnvelope() {
 		return envelope;
 	}
@@ -215,6 +218,14 @@ public class MosaicConfigurationBean {
         this.heterogeneous = heterogeneous;
     }
 
+    public int getMaxConcurrentLoads() {
+        return maxConcurrentLoads;
+    }
+
+    public void setMaxConcurrentLoads(int maxConcurrentLoads) {
+        this.maxConcurrentLoads = maxConcurrentLoads;
+    }
+
 	@Override
 	public String toString() {
 		return "MosaicConfigurationBean [absolutePath=" + absolutePath
@@ -227,6 +238,7 @@ public class MosaicConfigurationBean {
 				+ ", typeName=" + typeName + ", sampleModel=" + sampleModel
 				+ ", envelope=" + envelope + ", heterogeneous="
 				+ heterogeneous + ", caching=" + caching
-				+ ", footprintManagement=" + footprintManagement + "]";
+				+ ", footprintManagement=" + footprintManagement
+				+ ", maxConcurrentLoads=" + maxConcurrentLoads + "]";
 		}
 }
@@ -29,6 +29,7 @@ import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Constructor;
 import java.net.URL;
 import java.util.ArrayList;
@@ -328,6 +329,10 @@ class RasterLayerResponse{
                 private final int maxNumberOfGranules;
 		private final List<Future<GranuleLoadingResult>> tasks= new ArrayList<Future<GranuleLoadingResult>>();
 		private int   granulesNumber;
+		/** The loads of this request on the reader scheduler, if loading in parallel */
+		private GranuleLoadingScheduler.Batch batch;
+		/** Whether the loading has been interrupted, i.e. the request has been abandoned */
+		private boolean interrupted;
 		private List<ROI> rois = new ArrayList<ROI>();
 		private Color inputTransparentColor;
 		private PlanarImage[] alphaChannels;
@@ -375,17 +380,47 @@ class RasterLayerResponse{
                     && inclusionGeometry.intersects(bb)) {
                 final GranuleLoader loader = new GranuleLoader(baseReadParameters, imageChoice,
                         mosaicBBox, finalWorldToGridCorner, granuleDescriptor, request, hints);
-                if (multithreadingAllowed && rasterManager.parent.multiThreadedLoader != null)
-                    tasks.add(rasterManager.parent.multiThreadedLoader.submit(loader));
-                else
+                if (multithreadingAllowed && rasterManager.parent.loadingScheduler != null) {
+                    if (batch == null)
+                        batch = rasterManager.parent.loadingScheduler.newBatch();
+                    // load first the granules covering the largest share of the output
+                    tasks.add(batch.submit(loader, computeCoverage(granuleDescriptor)));
+                } else
                     tasks.add(new FutureTask<GranuleLoadingResult>(loader));
 
                 granulesNumber++;
             }
         }
 		
+
+        /**
+         * Returns the share of the requested area covered by the granule
+         */
+        private double computeCoverage(final GranuleDescriptor granuleDescriptor) {
+            final BoundingBox granuleBBox = granuleDescriptor.getGranuleBBOX();
+            final double area = mosaicBBox.getWidth() * mosaicBBox.getHeight();
+            if (granuleBBox == null || !(area > 0))
+                return 0;
+            final double width = Math.min(granuleBBox.getMaxX(), mosaicBBox.getMaxX())
+                    - Math.max(granuleBBox.getMinX(), mosaicBBox.getMinX());
+            final double height = Math.min(granuleBBox.getMaxY(), mosaicBBox.getMaxY())
+                    - Math.max(granuleBBox.getMinY(), mosaicBBox.getMinY());
+            if (width <= 0 || height <= 0)
+                return 0;
+            return width * height / area;
+        }
 		
 		public void produce(){
+            try {
+                produceMosaicSources();
+            } finally {
+                // do not leave behind loads nobody is going to wait for
+                if (batch != null)
+                    batch.cancel();
+            }
+        }
+
+		private void produceMosaicSources(){
 			
 			// reusable parameters
 			alphaChannels = new PlanarImage[granulesNumber];
@@ -403,7 +438,7 @@ class RasterLayerResponse{
 				final GranuleLoadingResult result;
 				boolean doFiltering;
 				try {
-					if(!multithreadingAllowed || rasterManager.parent.multiThreadedLoader == null)
+					if(!multithreadingAllowed || rasterManager.parent.loadingScheduler == null)
 					{
 						//run the loading in this thread
 					    final FutureTask<GranuleLoadingResult> task=(FutureTask<GranuleLoadingResult>) future;
@@ -454,9 +489,14 @@ class RasterLayerResponse{
 					}					
 					
 				} catch (InterruptedException e) {
-					if(LOGGER.isLoggable(Level.SEVERE))
-						LOGGER.log(Level.SEVERE,"Unable to load the raster for granuleDescriptor " +granuleIndex,e);
-					continue;
+					// the request has been abandoned, stop loading the other granules
+					if(LOGGER.isLoggable(Level.FINE))
+						LOGGER.log(Level.FINE,"Interrupted while loading the raster for granuleDescriptor " +granuleIndex,e);
+					if (batch != null)
+						batch.cancel();
+					interrupted = true;
+					Thread.currentThread().interrupt();
+					break;
 				} catch (ExecutionException e) {
 					if(LOGGER.isLoggable(Level.SEVERE))
 						LOGGER.log(Level.SEVERE,"Unable to load the raster for granuleDescriptor " +granuleIndex,e);
@@ -981,6 +1021,8 @@ class RasterLayerResponse{
                         }
 			// get those granules
 			visitor.produce();
+			if (visitor.interrupted)
+				throw new InterruptedIOException("Interrupted while loading the granules for request " + request);
 			
 			//
 			// Did we actually load anything?? Notice that it might happen that
@@ -135,6 +135,7 @@ public class Utils {
         public final static String NAME = "Name";
         public final static String FOOTPRINT_MANAGEMENT = "FootprintManagement";
         public final static String HETEROGENEOUS = "Heterogeneous";
+        public final static String MAX_CONCURRENT_LOADS = "MaxConcurrentLoads";
         public static final String TIME_ATTRIBUTE = "TimeAttribute";
         public static final String ELEVATION_ATTRIBUTE = "ElevationAttribute";
         public final static String TYPENAME= "TypeName";
@@ -424,6 +425,21 @@ public class Utils {
                     retValue.setHeterogeneous(heterogeneous);
                 }
 
+		//
+		// Maximum number of granules loaded at the same time
+		//
+		if (!ignoreSome || !ignorePropertiesSet.contains(Prop.MAX_CONCURRENT_LOADS)) {
+			final String maxConcurrentLoads = properties.getProperty(Prop.MAX_CONCURRENT_LOADS);
+			if (maxConcurrentLoads != null) {
+				try {
+					retValue.setMaxConcurrentLoads(Integer.parseInt(maxConcurrentLoads.trim()));
+				} catch (NumberFormatException e) {
+					if (LOGGER.isLoggable(Level.WARNING))
+						LOGGER.log(Level.WARNING, "Invalid " + Prop.MAX_CONCURRENT_LOADS + " value: " + maxConcurrentLoads, e);
+				}
+			}
+		}
+
 		//
 		// Absolute or relative path
 		//
@@ -0,0 +1,155 @@
+package org.geotools.gce.imagemosaic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class GranuleLoadingSchedulerTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A load that waits for the gate to open, recording its execution order
+     */
+    static class Load implements Callable<Integer> {
+        final int id;
+
+        final CountDownLatch gate;
+
+        final List<Integer> order;
+
+        final AtomicInteger concurrent;
+
+        final AtomicInteger maxConcurrent;
+
+        Load(int id, CountDownLatch gate, List<Integer> order, AtomicInteger concurrent,
+                AtomicInteger maxConcurrent) {
+            this.id = id;
+            this.gate = gate;
+            this.order = order;
+            this.concurrent = concurrent;
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public Integer call() throws Exception {
+            final int current = concurrent.incrementAndGet();
+            synchronized (maxConcurrent) {
+                maxConcurrent.set(Math.max(current, maxConcurrent.get()));
+            }
+            try {
+                order.add(id);
+                gate.await();
+                return id;
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimitAndPriority() throws Exception {
+        final GranuleLoadingScheduler scheduler = new GranuleLoadingScheduler(executor, 1);
+        assertEquals(1, scheduler.getMaxConcurrentLoads());
+
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final GranuleLoadingScheduler.Batch batch = scheduler.newBatch();
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        // the first one starts right away, the others are queued and sorted by priority
+        final double[] priorities = new double[] { 0.1, 0.2, 0.9, 0.5, 0.5 };
+        for (int i = 0; i < priorities.length; i++) {
+            futures.add(batch.submit(new Load(i, gate, order, concurrent, maxConcurrent),
+                    priorities[i]));
+        }
+        gate.countDown();
+
+        // the futures are in submission order
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(Integer.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, maxConcurrent.get());
+        assertEquals(5, order.size());
+        assertEquals(Integer.valueOf(0), order.get(0));
+        assertEquals(Integer.valueOf(2), order.get(1));
+        assertEquals(Integer.valueOf(3), order.get(2));
+        assertEquals(Integer.valueOf(4), order.get(3));
+        assertEquals(Integer.valueOf(1), order.get(4));
+
+        assertEquals(5, scheduler.getCompletedCount());
+        assertEquals(0, scheduler.getCancelledCount());
+        assertEquals(0, scheduler.getQueuedCount());
+        assertTrue(scheduler.getTotalReadTime() > 0);
+        assertTrue(scheduler.getMaxQueueTime() <= scheduler.getTotalQueueTime());
+        assertTrue(scheduler.getMaxReadTime() <= scheduler.getTotalReadTime());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final GranuleLoadingScheduler scheduler = new GranuleLoadingScheduler(executor, 1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final GranuleLoadingScheduler.Batch batch = scheduler.newBatch();
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(batch.submit(new Load(i, gate, order, concurrent, maxConcurrent), 1));
+        }
+        batch.cancel();
+        gate.countDown();
+
+        for (Future<Integer> future : futures) {
+            assertTrue(future.isCancelled());
+        }
+        // wait for the running load to complete, the queued ones are never started
+        final Future<Integer> marker = scheduler.newBatch().submit(
+                new Load(3, gate, order, concurrent, maxConcurrent), 1);
+        assertEquals(Integer.valueOf(3), marker.get(5, TimeUnit.SECONDS));
+        assertTrue(order.size() <= 2);
+        assertFalse(order.contains(1));
+        assertFalse(order.contains(2));
+        assertEquals(3, scheduler.getCancelledCount());
+    }
+
+    @Test
+    public void testDefaultLimit() throws Exception {
+        assertEquals(4, new GranuleLoadingScheduler(executor, 0).getMaxConcurrentLoads());
+        final ExecutorService cached = Executors.newCachedThreadPool();
+        try {
+            assertEquals(Integer.MAX_VALUE,
+                    new GranuleLoadingScheduler(cached, -1).getMaxConcurrentLoads());
+        } finally {
+            cached.shutdown();
+        }
+    }
+}
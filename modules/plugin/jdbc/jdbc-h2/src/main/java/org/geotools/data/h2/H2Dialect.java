@@ -347,6 +347,18 @@ public class H2Dialect extends SQLDialect {
         return (Envelope) rs.getObject(column);
     }
 
+    @Override
+    public boolean isRowEnvelopeSupported() {
+        return true;
+    }
+
+    @Override
+    public void encodeGeometryRowEnvelope(String tableName, String geometryColumn,
+            StringBuffer sql) {
+        // ST_Envelope is not an aggregate in h2, it works row by row
+        encodeGeometryEnvelope(tableName, geometryColumn, sql);
+    }
+
     public void encodeGeometryValue(Geometry value, int srid, StringBuffer sql)
         throws IOException {
         if(value == null || value.isEmpty()) {
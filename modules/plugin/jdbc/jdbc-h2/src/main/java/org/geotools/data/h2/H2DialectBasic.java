@@ -165,6 +165,17 @@ public class H2DialectBasic extends BasicSQLDialect {
         return delegate.decodeGeometryEnvelope(rs, column, cx);
     }
 
+    @Override
+    public boolean isRowEnvelopeSupported() {
+        return delegate.isRowEnvelopeSupported();
+    }
+
+    @Override
+    public void encodeGeometryRowEnvelope(String tableName, String geometryColumn,
+            StringBuffer sql) {
+        delegate.encodeGeometryRowEnvelope(tableName, geometryColumn, sql);
+    }
+
     //
     // non-prepared statement api
     //
@@ -220,6 +231,11 @@ public class H2DialectBasic extends BasicSQLDialect {
 
     }
     
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return true;
+    }
+    
     @Override
     public boolean isLimitOffsetSupported() {
         return delegate.isLimitOffsetSupported();
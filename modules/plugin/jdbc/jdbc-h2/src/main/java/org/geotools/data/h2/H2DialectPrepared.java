@@ -167,6 +167,17 @@ public class H2DialectPrepared extends PreparedStatementSQLDialect {
             Connection cx) throws SQLException, IOException {
         return delegate.decodeGeometryEnvelope(rs, column, cx);
     }
+
+    @Override
+    public boolean isRowEnvelopeSupported() {
+        return delegate.isRowEnvelopeSupported();
+    }
+
+    @Override
+    public void encodeGeometryRowEnvelope(String tableName, String geometryColumn,
+            StringBuffer sql) {
+        delegate.encodeGeometryRowEnvelope(tableName, geometryColumn, sql);
+    }
     
     //
     //prepared statement api
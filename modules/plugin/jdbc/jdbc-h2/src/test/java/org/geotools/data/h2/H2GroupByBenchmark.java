@@ -0,0 +1,135 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.h2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.visitor.GroupByVisitor;
+import org.geotools.feature.visitor.SumVisitor;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.JDBCDataStoreFactory;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.expression.Expression;
+
+/**
+ * Compares a {@link GroupByVisitor} computed with a <code>GROUP BY</code> query against the same
+ * visitor computed in memory over the features, on a local H2 table. Not a test, run it with the
+ * number of rows as the first argument (defaults to one million).
+ *
+ * @source $URL$
+ */
+public class H2GroupByBenchmark {
+
+    static final int CLASSES = 100;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(JDBCDataStoreFactory.DBTYPE.key, "h2");
+        params.put(JDBCDataStoreFactory.DATABASE.key, "target/groupby");
+        JDBCDataStore store = new H2DataStoreFactory().createDataStore(params);
+        try {
+            createTable(store, rows);
+
+            FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+            List<Expression> groupBy = Collections.singletonList((Expression) ff.property("cls"));
+            SimpleFeatureSource source = store.getFeatureSource("bench");
+            System.out.println("Grouping " + rows + " rows in " + CLASSES + " classes");
+
+            // warm up
+            for (int i = 0; i < 3; i++) {
+                source.getFeatures().accepts(
+                        new GroupByVisitor(groupBy, new SumVisitor(ff.property("val"))), null);
+                inMemory(source, new GroupByVisitor(groupBy, new SumVisitor(ff.property("val"))));
+            }
+
+            long start = System.currentTimeMillis();
+            GroupByVisitor visitor = new GroupByVisitor(groupBy,
+                    new SumVisitor(ff.property("val")));
+            source.getFeatures().accepts(visitor, null);
+            System.out.println("GROUP BY query: " + visitor.getGroupCount() + " groups in "
+                    + (System.currentTimeMillis() - start) + "ms");
+
+            start = System.currentTimeMillis();
+            visitor = new GroupByVisitor(groupBy, new SumVisitor(ff.property("val")));
+            inMemory(source, visitor);
+            System.out.println("In memory: " + visitor.getGroupCount() + " groups in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        } finally {
+            store.dispose();
+        }
+    }
+
+    static void createTable(JDBCDataStore store, int rows) throws Exception {
+        Connection cx = store.getDataSource().getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                st.execute("DROP TABLE IF EXISTS \"bench\"");
+                st.execute("CREATE TABLE \"bench\" (\"id\" int PRIMARY KEY, "
+                        + "\"cls\" varchar, \"val\" double)");
+            } finally {
+                st.close();
+            }
+
+            cx.setAutoCommit(false);
+            PreparedStatement ps = cx.prepareStatement("INSERT INTO \"bench\" VALUES (?, ?, ?)");
+            try {
+                for (int i = 0; i < rows; i++) {
+                    ps.setInt(1, i);
+                    ps.setString(2, "c" + (i % CLASSES));
+                    ps.setDouble(3, i * 0.5);
+                    ps.addBatch();
+                    if (i % 1000 == 999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+                cx.commit();
+            } finally {
+                ps.close();
+                cx.setAutoCommit(true);
+            }
+        } finally {
+            cx.close();
+        }
+    }
+
+    static void inMemory(SimpleFeatureSource source, GroupByVisitor visitor) throws Exception {
+        Query query = new Query("bench");
+        query.setPropertyNames(new String[] { "cls", "val" });
+        SimpleFeatureIterator it = source.getFeatures(query).features();
+        try {
+            while (it.hasNext()) {
+                visitor.visit(it.next());
+            }
+        } finally {
+            it.close();
+        }
+    }
+}
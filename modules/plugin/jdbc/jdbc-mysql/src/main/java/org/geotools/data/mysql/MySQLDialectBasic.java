@@ -220,6 +220,11 @@ public class MySQLDialectBasic extends BasicSQLDialect {
         }
     }
     
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return true;
+    }
+    
     @Override
     public boolean isLimitOffsetSupported() {
         return delegate.isLimitOffsetSupported();
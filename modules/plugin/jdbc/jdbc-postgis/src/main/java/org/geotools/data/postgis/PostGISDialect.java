@@ -116,6 +116,8 @@ public class PostGISDialect extends BasicSQLDialect {
     
     boolean functionEncodingEnabled = false;
     
+    boolean binaryWKBEnabled = false;
+    
     Version version;
 
     public boolean isLooseBBOXEnabled() {
@@ -144,6 +146,17 @@ public class PostGISDialect extends BasicSQLDialect {
     public void setFunctionEncodingEnabled(boolean functionEncodingEnabled) {
         this.functionEncodingEnabled = functionEncodingEnabled;
     }
+    
+    public boolean isBinaryWKBEnabled() {
+        return binaryWKBEnabled;
+    }
+
+    /**
+     * @see PostgisNGDataStoreFactory#BINARY_WKB
+     */
+    public void setBinaryWKBEnabled(boolean binaryWKBEnabled) {
+        this.binaryWKBEnabled = binaryWKBEnabled;
+    }
 
 
     @Override
@@ -195,6 +208,7 @@ public class PostGISDialect extends BasicSQLDialect {
         }  else {
             reader.setGeometryFactory(factory);
         }
+        reader.setBase64EncodingEnabled(!binaryWKBEnabled);
         return reader;
     }
 
@@ -211,23 +225,28 @@ public class PostGISDialect extends BasicSQLDialect {
         boolean geography = "geography".equals(gatt.getUserData().get(
                 JDBCDataStore.JDBC_NATIVE_TYPENAME));
     
+        // the raw bytea is either returned as is or base64 encoded, the latter was the only
+        // way to get good performance out of old drivers decoding the escaped bytea format
+        String encodeStart = binaryWKBEnabled ? "" : "encode(";
+        String encodeEnd = binaryWKBEnabled ? "" : ",'base64')";
+        
         if (geography) {
-            sql.append("encode(ST_AsBinary(");
+            sql.append(encodeStart).append("ST_AsBinary(");
             encodeColumnName(prefix, gatt.getLocalName(), sql);
-            sql.append("),'base64')");
+            sql.append(")").append(encodeEnd);
         }
         else {
             boolean force2D = hints != null && hints.containsKey(Hints.FEATURE_2D) && 
                 Boolean.TRUE.equals(hints.get(Hints.FEATURE_2D));
 
             if (force2D) {
-                sql.append("encode(ST_AsBinary(ST_Force_2D(");
+                sql.append(encodeStart).append("ST_AsBinary(ST_Force_2D(");
                 encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append(")),'base64')");
+                sql.append("))").append(encodeEnd);
             } else {
-                sql.append("encode(ST_AsEWKB(");
+                sql.append(encodeStart).append("ST_AsEWKB(");
                 encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append("),'base64')");
+                sql.append(")").append(encodeEnd);
             }
         }
     }
@@ -238,6 +257,18 @@ public class PostGISDialect extends BasicSQLDialect {
         sql.append("ST_AsText(ST_Force_2D(ST_Envelope(");
         sql.append("ST_Extent(\"" + geometryColumn + "\"::geometry))))");
     }
+
+    @Override
+    public boolean isRowEnvelopeSupported() {
+        return true;
+    }
+
+    @Override
+    public void encodeGeometryRowEnvelope(String tableName, String geometryColumn,
+            StringBuffer sql) {
+        sql.append("ST_AsText(ST_Force_2D(ST_Envelope(");
+        sql.append("\"" + geometryColumn + "\"::geometry)))");
+    }
     
     @Override
     public List<ReferencedEnvelope> getOptimizedBounds(String schema, SimpleFeatureType featureType,
@@ -802,6 +833,11 @@ public class PostGISDialect extends BasicSQLDialect {
         return sql;
     }
     
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return true;
+    }
+    
     @Override
     public boolean isLimitOffsetSupported() {
         return true;
@@ -96,6 +96,17 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
         delegate.encodeGeometryEnvelope(tableName, geometryColumn, sql);
     }
 
+    @Override
+    public boolean isRowEnvelopeSupported() {
+        return delegate.isRowEnvelopeSupported();
+    }
+
+    @Override
+    public void encodeGeometryRowEnvelope(String tableName, String geometryColumn,
+            StringBuffer sql) {
+        delegate.encodeGeometryRowEnvelope(tableName, geometryColumn, sql);
+    }
+
 
     public void encodePrimaryKey(String column, StringBuffer sql) {
         delegate.encodePrimaryKey(column, sql);
@@ -63,6 +63,14 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
             "the postgis table.", false, new Boolean(false),
             new KVP( Param.LEVEL, "advanced"));
     
+    /**
+     * Enables reading geometries as raw WKB bytes instead of base64 encoded text
+     */
+    public static final Param BINARY_WKB = new Param( "Binary WKB transfer", Boolean.class,
+            "set to true to have geometries transferred as raw WKB bytes instead of base64 " +
+            "encoded text. This avoids encoding on the server and decoding on the client, but " +
+            "it's efficient only with drivers handling the hex bytea format (PostgreSQL 9.0+)", 
+            false, new Boolean(false), new KVP( Param.LEVEL, "advanced"));
     
     @Override
     protected SQLDialect createSQLDialect(JDBCDataStore dataStore) {
@@ -125,6 +133,10 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
         Boolean encodeFunctions = (Boolean) ENCODE_FUNCTIONS.lookUp(params);
         dialect.setFunctionEncodingEnabled(encodeFunctions != null && encodeFunctions);
         
+        // check if geometries should be transferred as raw wkb
+        Boolean binaryWKB = (Boolean) BINARY_WKB.lookUp(params);
+        dialect.setBinaryWKBEnabled(binaryWKB != null && binaryWKB);
+        
         // setup the ps dialect if need be
         Boolean usePs = (Boolean) PREPARED_STATEMENTS.lookUp(params);
         if(Boolean.TRUE.equals(usePs)) {
@@ -147,6 +159,7 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
         parameters.put(PREPARED_STATEMENTS.key, PREPARED_STATEMENTS);
         parameters.put(MAX_OPEN_PREPARED_STATEMENTS.key, MAX_OPEN_PREPARED_STATEMENTS);
         parameters.put(ENCODE_FUNCTIONS.key, ENCODE_FUNCTIONS);
+        parameters.put(BINARY_WKB.key, BINARY_WKB);
     }
     
     @Override
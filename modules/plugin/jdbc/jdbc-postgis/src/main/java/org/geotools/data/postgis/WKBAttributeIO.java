@@ -47,6 +47,7 @@ public class WKBAttributeIO {
     WKBReader wkbr;
     ByteArrayInStream inStream = new ByteArrayInStream(new byte[0]);
     GeometryFactory gf;
+    boolean base64EncodingEnabled = true;
 
     public WKBAttributeIO() {
         this(new GeometryFactory());
@@ -59,6 +60,23 @@ public class WKBAttributeIO {
     public void setGeometryFactory(GeometryFactory gf) {
         wkbr = new WKBReader(gf);
     }
+    
+    /**
+     * Returns true if the column values are expected to be base64 encoded WKB, false if they
+     * are expected to be raw WKB bytes
+     */
+    public boolean isBase64EncodingEnabled() {
+        return base64EncodingEnabled;
+    }
+
+    /**
+     * Sets whether the column values are base64 encoded WKB (the default) or raw WKB bytes, 
+     * in the latter case the bytes returned by the driver are parsed directly, without any 
+     * intermediate decoding buffer
+     */
+    public void setBase64EncodingEnabled(boolean base64EncodingEnabled) {
+        this.base64EncodingEnabled = base64EncodingEnabled;
+    }
 
     /**
      * This method will convert a Well Known Binary representation to a
@@ -94,7 +112,7 @@ public class WKBAttributeIO {
             byte bytes[] = rs.getBytes(columnName);
             if (bytes == null) // ie. its a null column -> return a null geometry!
                 return null;
-            return wkb2Geometry(Base64.decode(bytes));
+            return wkb2Geometry(base64EncodingEnabled ? Base64.decode(bytes) : bytes);
         } catch (SQLException e) {
             throw new DataSourceException("SQL exception occurred while reading the geometry.", e);
         }
@@ -109,7 +127,7 @@ public class WKBAttributeIO {
             byte bytes[] = rs.getBytes(columnIndex);
             if (bytes == null) // ie. its a null column -> return a null geometry!
                 return null;
-            return wkb2Geometry(Base64.decode(bytes));
+            return wkb2Geometry(base64EncodingEnabled ? Base64.decode(bytes) : bytes);
         } catch (SQLException e) {
             throw new DataSourceException("SQL exception occurred while reading the geometry.", e);
         }
@@ -0,0 +1,81 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import java.sql.ResultSet;
+
+import org.geotools.data.Base64;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Compares the rows/second decoded by {@link WKBAttributeIO} when the geometries are transferred
+ * base64 encoded (the default) and as raw WKB bytes. The result set is a local stand-in returning
+ * the same bytes the driver would hand out, so only the client side decoding is measured.
+ * <p>
+ * Usage: <code>WKBAttributeIOBenchmark [vertices per polygon] [rows]</code>
+ * </p>
+ *
+ * @source $URL$
+ */
+public class WKBAttributeIOBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        byte[] wkb = new WKBWriter().write(buildPolygon(vertices));
+        byte[] base64 = Base64.encodeBytes(wkb).getBytes("ASCII");
+        System.out.println("Polygon with " + vertices + " vertices, wkb size " + wkb.length
+                + ", base64 size " + base64.length);
+
+        // warm up, then measure
+        for (int i = 0; i < 3; i++) {
+            benchmark("base64", base64, true, rows / 10);
+            benchmark("binary", wkb, false, rows / 10);
+        }
+        benchmark("base64", base64, true, rows);
+        benchmark("binary", wkb, false, rows);
+    }
+
+    static void benchmark(String name, byte[] bytes, boolean base64, int rows) throws Exception {
+        WKBAttributeIO io = new WKBAttributeIO(new GeometryFactory());
+        io.setBase64EncodingEnabled(base64);
+        ResultSet rs = WKBAttributeIOTest.resultSet(bytes);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            io.read(rs, 1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(name + ": " + Math.round(rows / seconds) + " rows/s");
+    }
+
+    static Polygon buildPolygon(int vertices) {
+        Coordinate[] coords = new Coordinate[vertices + 1];
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            coords[i] = new Coordinate(Math.cos(angle) * 100, Math.sin(angle) * 100);
+        }
+        coords[vertices] = coords[0];
+        GeometryFactory gf = new GeometryFactory();
+        return gf.createPolygon(gf.createLinearRing(coords), null);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.Base64;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.WKBWriter;
+import com.vividsolutions.jts.io.WKTReader;
+
+/**
+ * 
+ *
+ * @source $URL$
+ */
+public class WKBAttributeIOTest extends TestCase {
+
+    Geometry geometry;
+
+    byte[] wkb;
+
+    @Override
+    protected void setUp() throws Exception {
+        geometry = new WKTReader().read("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), "
+                + "(2 2, 2 4, 4 4, 4 2, 2 2))");
+        wkb = new WKBWriter().write(geometry);
+    }
+
+    public void testReadBase64() throws Exception {
+        WKBAttributeIO io = new WKBAttributeIO(new GeometryFactory());
+        assertTrue(io.isBase64EncodingEnabled());
+
+        ResultSet rs = resultSet(Base64.encodeBytes(wkb).getBytes("ASCII"));
+        assertTrue(geometry.equalsExact((Geometry) io.read(rs, 1)));
+        assertTrue(geometry.equalsExact((Geometry) io.read(rs, "the_geom")));
+    }
+
+    public void testReadBinary() throws Exception {
+        WKBAttributeIO io = new WKBAttributeIO(new GeometryFactory());
+        io.setBase64EncodingEnabled(false);
+
+        ResultSet rs = resultSet(wkb);
+        assertTrue(geometry.equalsExact((Geometry) io.read(rs, 1)));
+        assertTrue(geometry.equalsExact((Geometry) io.read(rs, "the_geom")));
+    }
+
+    public void testReadNull() throws Exception {
+        WKBAttributeIO io = new WKBAttributeIO(new GeometryFactory());
+        io.setBase64EncodingEnabled(false);
+
+        assertNull(io.read(resultSet(null), 1));
+    }
+
+    /**
+     * Builds a result set stub returning the specified bytes for any column
+     */
+    static ResultSet resultSet(final byte[] bytes) {
+        return (ResultSet) Proxy.newProxyInstance(WKBAttributeIOTest.class.getClassLoader(),
+                new Class[] { ResultSet.class }, new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        if ("getBytes".equals(method.getName())) {
+                            return bytes;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
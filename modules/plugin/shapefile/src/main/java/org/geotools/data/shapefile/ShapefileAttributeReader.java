@@ -17,6 +17,7 @@
 package org.geotools.data.shapefile;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -115,6 +116,18 @@ public class ShapefileAttributeReader extends AbstractAttributeIO implements
                 }
                 dbfindexes[i] = -1; // geometry
             }
+            
+            // decode only the columns we are going to read, unless we read them all
+            int[] columns = new int[atts.length];
+            int count = 0;
+            for (int i = 0; i < dbfindexes.length; i++) {
+                if (dbfindexes[i] >= 0) {
+                    columns[count++] = dbfindexes[i];
+                }
+            }
+            if (count < head.getNumFields()) {
+                dbf.setColumnProjection(Arrays.copyOf(columns, count));
+            }
         }
     }
 
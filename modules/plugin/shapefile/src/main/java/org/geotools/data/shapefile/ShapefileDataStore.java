@@ -45,6 +45,7 @@ import java.util.TimeZone;
 import java.util.logging.Level;
 
 import org.geotools.data.AbstractFileDataStore;
+import org.geotools.data.CompactFeatureReader;
 import org.geotools.data.DataSourceException;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.EmptyFeatureReader;
@@ -98,6 +99,7 @@ import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 /**
  * A DataStore implementation which allows reading and writing from Shapefiles.
@@ -140,6 +142,7 @@ public class ShapefileDataStore extends AbstractFileDataStore {
     protected boolean useMemoryMappedBuffer = false; // windows is not up to use memory mapping in anger
     protected Charset dbfCharset;
     protected TimeZone dbfTimeZone = TimeZone.getDefault();
+    protected boolean packedCoordinates = false;
     
     private ServiceInfo info;
 
@@ -325,6 +328,43 @@ public class ShapefileDataStore extends AbstractFileDataStore {
 		this.dbfTimeZone = dbftimeZone;
 	}
 
+    /**
+     * Returns true if the geometries are built on packed coordinate sequences
+     * @return
+     */
+    public boolean isPackedCoordinates() {
+        return packedCoordinates;
+    }
+
+    /**
+     * When true the geometries are built on packed coordinate sequences of doubles, whose
+     * ordinates are copied in bulk from the shp file and take less memory than coordinate
+     * arrays. Query hints asking for a specific geometry or coordinate sequence factory still
+     * take precedence.
+     * @param packedCoordinates
+     */
+    public void setPackedCoordinates(boolean packedCoordinates) {
+        this.packedCoordinates = packedCoordinates;
+    }
+
+    /**
+     * Returns true if the shapefile files are immutable, see {@link ShpFiles#setImmutable(boolean)}
+     * @return
+     */
+    public boolean isImmutable() {
+        return shpFiles.isImmutable();
+    }
+
+    /**
+     * When true the shapefile files are assumed to never change, and are read without any
+     * locking, see {@link ShpFiles#setImmutable(boolean)}. Writing to an immutable store fails,
+     * and missing or out of date indexes are not rebuilt.
+     * @param immutable
+     */
+    public void setImmutable(boolean immutable) {
+        shpFiles.setImmutable(immutable);
+    }
+
     /**
      * Latch onto xmlURL if it is there, we may be able to get out of
      * calculating the bounding box!
@@ -431,7 +471,7 @@ public class ShapefileDataStore extends AbstractFileDataStore {
                         schema, propertyNames);
 
                 return createFeatureReader(typeName,
-                        getAttributesReader(false, query), newSchema);
+                        getAttributesReader(false, query), newSchema, query.getHints());
             } catch (SchemaException se) {
                 throw new DataSourceException("Error creating schema", se);
             }
@@ -439,7 +479,7 @@ public class ShapefileDataStore extends AbstractFileDataStore {
 
         try {
             return createFeatureReader(getSchema().getTypeName(),
-                    getAttributesReader(true, query), schema);
+                    getAttributesReader(true, query), schema, query.getHints());
         } catch (SchemaException se) {
             throw new DataSourceException("Error creating schema", se);
         }
@@ -453,7 +493,7 @@ public class ShapefileDataStore extends AbstractFileDataStore {
     protected GeometryFactory getGeometryFactory(Hints hints) {
         // if no hints, use the default geometry factory
         if(hints == null)
-            return new GeometryFactory();
+            return getDefaultGeometryFactory();
         
         // grab a geometry factory... check for a special hint
         GeometryFactory geometryFactory = (GeometryFactory) hints.get(Hints.JTS_GEOMETRY_FACTORY);
@@ -469,11 +509,21 @@ public class ShapefileDataStore extends AbstractFileDataStore {
 
         if (geometryFactory == null) {
             // fall back on the default one
-            geometryFactory = new GeometryFactory();
+            geometryFactory = getDefaultGeometryFactory();
         }
         return geometryFactory;
     }
 
+    /**
+     * Returns the geometry factory used when the query hints do not ask for a specific one
+     */
+    GeometryFactory getDefaultGeometryFactory() {
+        if (packedCoordinates) {
+            return new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+        }
+        return new GeometryFactory();
+    }
+
     protected org.geotools.data.FIDFeatureReader createFeatureReader(String typeName,
             ShapefileAttributeReader reader, SimpleFeatureType readerSchema)
             throws SchemaException {
@@ -482,6 +532,21 @@ public class ShapefileDataStore extends AbstractFileDataStore {
                 new ShapeFIDReader(readerSchema, reader), readerSchema);
     }
 
+    /**
+     * Builds a compact feature reader if the {@link Hints#FEATURE_COMPACT} or
+     * {@link Hints#FEATURE_REUSE} hints are set, a normal one otherwise
+     */
+    protected FeatureReader<SimpleFeatureType, SimpleFeature> createFeatureReader(
+            String typeName, ShapefileAttributeReader reader, SimpleFeatureType readerSchema,
+            Hints hints) throws SchemaException {
+        boolean reuse = hints != null && Boolean.TRUE.equals(hints.get(Hints.FEATURE_REUSE));
+        if (reuse || (hints != null && Boolean.TRUE.equals(hints.get(Hints.FEATURE_COMPACT)))) {
+            return new CompactFeatureReader(reader, new ShapeFIDReader(readerSchema, reader),
+                    readerSchema, reuse);
+        }
+        return createFeatureReader(typeName, reader, readerSchema);
+    }
+
     /**
      * Returns the attribute reader, allowing for a pure shapefile reader, or a
      * combined dbf/shp reader.
@@ -502,7 +567,7 @@ public class ShapefileDataStore extends AbstractFileDataStore {
         if(q != null) {
             geometryFactory = getGeometryFactory(q.getHints());
         } else {
-            geometryFactory = new GeometryFactory();
+            geometryFactory = getDefaultGeometryFactory();
         }
 
         ShapefileAttributeReader result;
@@ -1210,6 +1275,8 @@ public class ShapefileDataStore extends AbstractFileDataStore {
         hints.add( Hints.JTS_COORDINATE_SEQUENCE_FACTORY );
         hints.add( Hints.GEOMETRY_DISTANCE);
         hints.add( Hints.SCREENMAP);
+        hints.add( Hints.FEATURE_COMPACT);
+        hints.add( Hints.FEATURE_REUSE);
         return hints;
     }
     
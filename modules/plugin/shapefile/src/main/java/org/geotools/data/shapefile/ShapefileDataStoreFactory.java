@@ -54,8 +54,11 @@ import com.vividsolutions.jts.geom.Geometry;
  * <li>{@link URLP}
  * <li>{@link NAMESPACEP}
  * <li>{@link CREATE_SPATIAL_INDEX}
+ * <li>{@link SPATIAL_INDEX_TYPE}
  * <li>{@link MEMORY_MAPPED}
  * <li>{@link DBFCHARSET}
+ * <li>{@link PACKED_COORDINATES}
+ * <li>{@link IMMUTABLE}
  * </ul>
  * 
  * @author Chris Holmes, TOPP
@@ -96,6 +99,37 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
             Boolean.class, "only memory map a file one, then cache and reuse the map", false, true,
             new KVP(Param.LEVEL,"advanced") );
     
+    /**
+     * Optional - build the geometries on packed coordinate sequences, copying the ordinates
+     * in bulk from the shp file
+     */
+    public static final Param PACKED_COORDINATES = new Param("packed coordinates",
+            Boolean.class, "build geometries on packed coordinate sequences, using less memory",
+            false, false, new KVP(Param.LEVEL,"advanced") );
+    
+    /**
+     * Optional - the files are never modified, enabling lock free reads over shared channels
+     */
+    public static final Param IMMUTABLE = new Param("immutable files",
+            Boolean.class, "the files are never modified, enabling lock free concurrent reads",
+            false, false, new KVP(Param.LEVEL,"advanced") );
+    
+    /**
+     * Optional - the maximum number of shapefile stores a directory store keeps open, the least
+     * recently used ones being disposed. When missing the stores are kept behind soft references
+     */
+    public static final Param MAX_OPEN_STORES = new Param("max open stores",
+            Integer.class, "the maximum number of shapefiles kept open by a directory store", false,
+            null, new KVP(Param.LEVEL,"advanced") );
+
+    /**
+     * Optional - the path of the file a directory store persists the type names into, so that
+     * startup does not need to open all the shapefiles
+     */
+    public static final Param TYPE_NAME_CATALOG = new Param("type name catalog",
+            String.class, "the file where a directory store persists its type names", false,
+            null, new KVP(Param.LEVEL,"advanced") );
+    
     /**
      * Optional - discriminator for directory stores
      */
@@ -111,6 +145,16 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
             "enable/disable the automatic creation of spatial index", false, true,
             new KVP(Param.LEVEL,"advanced") );
 
+    /**
+     * Optional - the type of spatial index, "qix" for the quadtree or "prx" for the
+     * packed rtree. When missing the packed rtree is used only if a .prx file is found
+     * along with the shapefile, and no .qix is
+     */
+    public static final Param SPATIAL_INDEX_TYPE = new Param(
+            "spatial index type", String.class,
+            "the type of spatial index, qix (quadtree) or prx (packed rtree)", false, null,
+            new KVP(Param.LEVEL, "advanced", Param.OPTIONS, Arrays.asList(new String[]{"qix","prx"})));
+
     /**
      * Optional - character used to decode strings from the DBF file
      */
@@ -243,6 +287,8 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
         URI namespace = (URI) NAMESPACEP.lookUp(params);
         Charset dbfCharset = (Charset) DBFCHARSET.lookUp(params);
         TimeZone dbfTimeZone = (TimeZone) DBFTIMEZONE.lookUp(params);
+        Boolean packedCoordinates = (Boolean) PACKED_COORDINATES.lookUp(params);
+        Boolean immutable = (Boolean) IMMUTABLE.lookUp(params);
         Boolean isCreateSpatialIndex = (Boolean) CREATE_SPATIAL_INDEX
                 .lookUp(params);
         if (isCreateSpatialIndex == null) {
@@ -267,11 +313,27 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
         if (cacheMemoryMaps == null) {
         	cacheMemoryMaps = Boolean.FALSE;
         }
+        if (packedCoordinates == null) {
+            packedCoordinates = Boolean.FALSE;
+        }
+        if (immutable == null) {
+            immutable = Boolean.FALSE;
+        }
         
         // are we creating a directory of shapefiles store, or a single one?
         File dir = DataUtilities.urlToFile(url);
         if(dir != null && dir.isDirectory()) {
-            return new DirectoryDataStore(DataUtilities.urlToFile(url), new ShpFileStoreFactory(this, params));
+            DirectoryDataStore store = new DirectoryDataStore(DataUtilities.urlToFile(url),
+                    new ShpFileStoreFactory(this, params));
+            Integer maxOpenStores = (Integer) MAX_OPEN_STORES.lookUp(params);
+            if (maxOpenStores != null) {
+                store.setMaxOpenStores(maxOpenStores.intValue());
+            }
+            String catalog = (String) TYPE_NAME_CATALOG.lookUp(params);
+            if (catalog != null) {
+                store.setTypeNameCatalog(new File(catalog));
+            }
+            return store;
         } else {
             ShpFiles shpFiles = new ShpFiles(url);
     
@@ -283,13 +345,16 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
             try {
             	ShapefileDataStore store;
                 if (createIndex) {
+                    IndexType indexType = lookUpIndexType(params, shpFiles);
                     store = new IndexedShapefileDataStore(url, namespace,
-                            useMemoryMappedBuffer, cacheMemoryMaps, true, IndexType.QIX, dbfCharset);
+                            useMemoryMappedBuffer, cacheMemoryMaps, true, indexType, dbfCharset);
                 } else {
                     store = new ShapefileDataStore(url, namespace,
                             useMemoryMappedBuffer, cacheMemoryMaps, dbfCharset);
                 }
                 store.setDbftimeZone(dbfTimeZone);
+                store.setPackedCoordinates(packedCoordinates.booleanValue());
+                store.setImmutable(immutable.booleanValue());
                 return store;
             } catch (MalformedURLException mue) {
                 throw new DataSourceException(
@@ -354,6 +419,28 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
         return true;
     }
 
+    /**
+     * Returns the spatial index type to be used, either the one specified in the
+     * parameters, or the one found along with the shapefile
+     */
+    IndexType lookUpIndexType(Map params, ShpFiles shpFiles) throws IOException {
+        String type = (String) SPATIAL_INDEX_TYPE.lookUp(params);
+        if (type != null) {
+            try {
+                return IndexType.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new DataSourceException("Unknown spatial index type " + type, e);
+            }
+        }
+
+        // a packed index has been built on purpose, e.g. by converting the quadtree one
+        if (shpFiles.isLocal() && shpFiles.exists(ShpFileType.PRX)
+                && !shpFiles.exists(ShpFileType.QIX)) {
+            return IndexType.PRX;
+        }
+        return IndexType.QIX;
+    }
+
     /**
      * Describe parameters.
      * 
@@ -361,8 +448,9 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
      * @see org.geotools.data.DataStoreFactorySpi#getParametersInfo()
      */
     public Param[] getParametersInfo() {
-        return new Param[] { URLP, NAMESPACEP, CREATE_SPATIAL_INDEX,
-                DBFCHARSET, DBFTIMEZONE, MEMORY_MAPPED, CACHE_MEMORY_MAPS, FILE_TYPE, FSTYPE };
+        return new Param[] { URLP, NAMESPACEP, CREATE_SPATIAL_INDEX, SPATIAL_INDEX_TYPE,
+                DBFCHARSET, DBFTIMEZONE, MEMORY_MAPPED, CACHE_MEMORY_MAPS, PACKED_COORDINATES,
+                IMMUTABLE, MAX_OPEN_STORES, TYPE_NAME_CATALOG, FILE_TYPE, FSTYPE };
     }
 
     /**
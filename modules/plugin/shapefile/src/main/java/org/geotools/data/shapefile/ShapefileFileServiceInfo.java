@@ -93,6 +93,9 @@ public class ShapefileFileServiceInfo implements ServiceInfo {
             if( indexed.indexUseable( ShpFileType.QIX ) ){
                 words.add( "qix" );        
             }            
+            if( indexed.indexUseable( ShpFileType.PRX ) ){
+                words.add( "prx" );
+            }
         }
         words.add( "shapefile" );
         
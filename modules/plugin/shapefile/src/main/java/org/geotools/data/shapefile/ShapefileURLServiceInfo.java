@@ -86,6 +86,9 @@ public class ShapefileURLServiceInfo implements ServiceInfo {
             if( indexed.indexUseable( ShpFileType.QIX ) ){
                 words.add( "qix" );        
             }            
+            if( indexed.indexUseable( ShpFileType.PRX ) ){
+                words.add( "prx" );
+            }
         }
         words.add( "shapefile" );
         
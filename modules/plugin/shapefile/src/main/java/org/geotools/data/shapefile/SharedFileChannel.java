@@ -0,0 +1,207 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A read only view over a {@link FileChannel} shared by all the readers of an immutable
+ * {@link ShpFiles}. Each view keeps its own position and reads the shared channel only with
+ * positional reads, which can run concurrently, so the shared channel position is never
+ * touched. Closing the view releases the read reference on the {@link ShpFiles}, the shared
+ * channel stays open until the files are disposed.
+ * <p>
+ * Interrupting a thread blocked on a {@link FileChannel} closes the channel, so a reader being
+ * interrupted closes the shared channel for all the others. When an access fails because the
+ * shared channel got closed and the current thread has not been interrupted, the shared channel
+ * is reopened and the access retried. Once the view is closed, or the files disposed, all
+ * accesses fail with a {@link ClosedChannelException}.
+ * </p>
+ *
+ * @source $URL$
+ */
+class SharedFileChannel extends FileChannel implements ReadableByteChannel {
+
+    private final ShpFiles shpFiles;
+
+    private final ShpFileType type;
+
+    private final URL url;
+
+    private final FileReader reader;
+
+    private long position;
+
+    private boolean closed;
+
+    public SharedFileChannel(ShpFiles shpFiles, ShpFileType type, URL url, FileReader requestor) {
+        this.shpFiles = shpFiles;
+        this.type = type;
+        this.url = url;
+        this.reader = requestor;
+    }
+
+    private FileChannel channel() throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        return shpFiles.getSharedChannel(type, url);
+    }
+
+    /**
+     * Called when an access to the shared channel failed because the channel got closed:
+     * rethrows the exception if the current thread was the one interrupted, otherwise returns
+     * the reopened shared channel
+     */
+    private FileChannel reopen(ClosedChannelException e) throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw e;
+        }
+        return channel();
+    }
+
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+        if (mode != MapMode.READ_ONLY) {
+            throw new NonWritableChannelException();
+        }
+        FileChannel channel = channel();
+        while (true) {
+            try {
+                return shpFiles.map(channel, url, mode, position, size);
+            } catch (ClosedChannelException e) {
+                channel = reopen(e);
+            }
+        }
+    }
+
+    public long position() throws IOException {
+        return position;
+    }
+
+    public FileChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("The position cannot be negative");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    public int read(ByteBuffer dst, long position) throws IOException {
+        FileChannel channel = channel();
+        while (true) {
+            try {
+                return channel.read(dst, position);
+            } catch (ClosedChannelException e) {
+                channel = reopen(e);
+            }
+        }
+    }
+
+    public int read(ByteBuffer dst) throws IOException {
+        int read = read(dst, position);
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (!dsts[i].hasRemaining()) {
+                continue;
+            }
+            int read = read(dsts[i]);
+            if (read < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += read;
+            if (dsts[i].hasRemaining()) {
+                // short read, let the caller ask again
+                break;
+            }
+        }
+        return total;
+    }
+
+    public long size() throws IOException {
+        FileChannel channel = channel();
+        while (true) {
+            try {
+                return channel.size();
+            } catch (ClosedChannelException e) {
+                channel = reopen(e);
+            }
+        }
+    }
+
+    public long transferTo(long position, long count, WritableByteChannel target)
+            throws IOException {
+        // not retried, part of the data might have been written to the target already
+        return channel().transferTo(position, count, target);
+    }
+
+    public long transferFrom(ReadableByteChannel src, long position, long count)
+            throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    public FileChannel truncate(long size) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    public void force(boolean metaData) throws IOException {
+        // nothing to force, the channel is read only
+    }
+
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    public int write(ByteBuffer src, long position) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    public int write(ByteBuffer src) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        if (!closed) {
+            closed = true;
+            shpFiles.unlockRead(url, reader);
+        }
+    }
+}
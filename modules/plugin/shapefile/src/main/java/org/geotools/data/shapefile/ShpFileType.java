@@ -50,6 +50,11 @@ public enum ShpFileType {
      * format the mapservers shptree tool generates
      */
     QIX("qix"),
+    /**
+     * the .prx file, a packed R-tree spatial index of the shapefile. It is
+     * bulk loaded and meant to be memory mapped
+     */
+    PRX("prx"),
     /**
      * the .fix file, it contains all the Feature IDs for constant time lookup
      * by fid also so that the fids stay consistent across deletes and adds
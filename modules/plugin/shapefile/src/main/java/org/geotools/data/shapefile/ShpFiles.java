@@ -33,6 +33,7 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ReadableByteChannel;
@@ -44,6 +45,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 
@@ -66,6 +68,13 @@ import org.geotools.data.DataUtilities;
  * and {@link #acquireWrite(ShpFileType, FileWriter)}svn
  * </p>
  * 
+ * <p>
+ * Deployments whose files never change can switch to the immutable mode with
+ * {@link #setImmutable(boolean)}: reads are then tracked by a simple reference count instead
+ * of the read/write lock and the per thread lockers, local read channels share a single open
+ * file channel per file, and any attempt to write fails.
+ * </p>
+ * 
  * @author jesse
  *
  *
@@ -97,6 +106,26 @@ public class ShpFiles {
     private final MemoryMapCache mapCache = new MemoryMapCache();
     
     private boolean memoryMapCacheEnabled;
+
+    /**
+     * When true the files are never written, and reads are only reference counted
+     */
+    private volatile boolean immutable;
+
+    /**
+     * The number of reads currently held in immutable mode
+     */
+    private final AtomicInteger immutableReaders = new AtomicInteger();
+
+    /**
+     * The file channels shared by the readers in immutable mode
+     */
+    private final Map<ShpFileType, FileChannel> sharedChannels = new ConcurrentHashMap<ShpFileType, FileChannel>();
+
+    /**
+     * Set once the files are disposed, the shared channels cannot be reopened afterwards
+     */
+    private boolean sharedChannelsDisposed;
     
 	/**
      * Searches for all the files and adds then to the map of files.
@@ -232,6 +261,11 @@ public class ShpFiles {
         if (numberOfLocks() != 0) {
             logCurrentLockers(Level.SEVERE);
             lockers.clear(); // so as not to get this log again.
+            immutableReaders.set(0);
+        }
+        synchronized (sharedChannels) {
+            sharedChannelsDisposed = true;
+            closeSharedChannels();
         }
         mapCache.clean();
     }
@@ -243,6 +277,13 @@ public class ShpFiles {
      *                the level at which to log.
      */
     public void logCurrentLockers(Level logLevel) {
+        int readers = immutableReaders.get();
+        if (readers > 0) {
+            // lockers are not tracked in immutable mode
+            ShapefileDataStoreFactory.LOGGER.log(logLevel, readers
+                    + " readers still hold a read reference on the immutable files of "
+                    + getTypeName());
+        }
         for (Collection<ShpFilesLocker> lockerList : lockers.values()) {
             for (ShpFilesLocker locker : lockerList) {
                 StringBuilder sb = new StringBuilder("The following locker still has a lock: ");
@@ -319,7 +360,7 @@ public class ShpFiles {
      * @return the number of locks on the current set of shapefile files.
      */
     public int numberOfLocks() {
-        int count = 0;
+        int count = immutableReaders.get();
         for (Collection<ShpFilesLocker> lockerList : lockers.values()) {
             count += lockerList.size();
         }
@@ -373,6 +414,10 @@ public class ShpFiles {
         if (url == null)
             return null;
         
+        if (immutable) {
+            immutableReaders.incrementAndGet();
+            return url;
+        }
         readWriteLock.readLock().lock();
         Collection<ShpFilesLocker> threadLockers = getCurrentThreadLockers();
         threadLockers.add(new ShpFilesLocker(url, requestor));
@@ -405,6 +450,10 @@ public class ShpFiles {
             return new Result<URL, State>(null, State.NOT_EXIST);
         }
         
+        if (immutable) {
+            immutableReaders.incrementAndGet();
+            return new Result<URL, State>(url, State.GOOD);
+        }
         boolean locked = readWriteLock.readLock().tryLock();
         if (!locked) {
             return new Result<URL, State>(null, State.LOCKED);
@@ -450,6 +499,14 @@ public class ShpFiles {
             throw new NullPointerException("requestor cannot be null");
         }
 
+        if (immutable) {
+            if (immutableReaders.decrementAndGet() < 0) {
+                immutableReaders.incrementAndGet();
+                throw new IllegalArgumentException("Expected requestor " + requestor
+                        + " to have locked the url but no read is currently held");
+            }
+            return;
+        }
         Collection threadLockers = getCurrentThreadLockers();
         boolean removed = threadLockers.remove(new ShpFilesLocker(url, requestor));
         if (!removed) {
@@ -514,6 +571,7 @@ public class ShpFiles {
         if (url == null) {
             return null;
         }
+        checkWritable();
 
         // we need to give up all read locks before getting the write one
         Collection<ShpFilesLocker> threadLockers = getCurrentThreadLockers();
@@ -551,6 +609,7 @@ public class ShpFiles {
         if (url == null) {
             return new Result<URL, State>(null, State.NOT_EXIST);
         }
+        checkWritable();
 
         Collection<ShpFilesLocker> threadLockers = getCurrentThreadLockers();
         boolean locked = readWriteLock.writeLock().tryLock();
@@ -621,6 +680,16 @@ public class ShpFiles {
         readWriteLock.writeLock().unlock();
     }
    
+    /**
+     * Throws an {@link IllegalStateException} if the files are immutable
+     */
+    private void checkWritable() {
+        if (immutable) {
+            throw new IllegalStateException("The files of " + getTypeName()
+                    + " are immutable, they cannot be written");
+        }
+    }
+
     /**
      * Returns the list of lockers attached to a given thread, or creates it if missing
      * @return
@@ -829,11 +898,17 @@ public class ShpFiles {
         try {
             if (isLocal()) {
 
-                File file = DataUtilities.urlToFile(url);
-                
-                RandomAccessFile raf = new RandomAccessFile(file, "r");
-                channel = new FileChannelDecorator(raf.getChannel(), this, url,
-                        requestor);
+                if (immutable) {
+                    // open the shared channel now, so that missing files are reported here
+                    getSharedChannel(type, url);
+                    channel = new SharedFileChannel(this, type, url, requestor);
+                } else {
+                    File file = DataUtilities.urlToFile(url);
+
+                    RandomAccessFile raf = new RandomAccessFile(file, "r");
+                    channel = new FileChannelDecorator(raf.getChannel(), this, url,
+                            requestor);
+                }
 
             } else {
                 InputStream in = url.openConnection().getInputStream();
@@ -1001,6 +1076,80 @@ public class ShpFiles {
 		}
 	}
 
+    /**
+     * Returns true if the files are in immutable mode
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    /**
+     * Enables the immutable mode, for deployments whose files never change. In this mode the
+     * reads are tracked by a reference count instead of the read/write lock and the per thread
+     * lockers (so {@link #logCurrentLockers(Level)} can only report how many reads are still
+     * open), the local read channels are views over a single file channel per file, shared by
+     * all readers and kept open until {@link #dispose()}, and any attempt to acquire a write
+     * lock fails with an {@link IllegalStateException}.
+     * <p>
+     * The mode can only be changed while no read or write lock is held.
+     * </p>
+     * 
+     * @param immutable
+     */
+    public void setImmutable(boolean immutable) {
+        if (this.immutable == immutable) {
+            return;
+        }
+        if (numberOfLocks() != 0) {
+            throw new IllegalStateException(
+                    "The immutable mode cannot be changed while the files are being accessed");
+        }
+        this.immutable = immutable;
+        if (!immutable) {
+            closeSharedChannels();
+        }
+    }
+
+    /**
+     * Returns the channel shared by the readers of the given file in immutable mode, opening
+     * it if missing or closed (e.g., by an interrupted reader). Once the files are disposed the
+     * channels are not reopened anymore, and a {@link ClosedChannelException} is thrown instead
+     */
+    FileChannel getSharedChannel(ShpFileType type, URL url) throws IOException {
+        FileChannel channel = sharedChannels.get(type);
+        if (channel == null || !channel.isOpen()) {
+            synchronized (sharedChannels) {
+                if (sharedChannelsDisposed) {
+                    throw new ClosedChannelException();
+                }
+                channel = sharedChannels.get(type);
+                if (channel == null || !channel.isOpen()) {
+                    File file = DataUtilities.urlToFile(url);
+                    channel = new RandomAccessFile(file, "r").getChannel();
+                    sharedChannels.put(type, channel);
+                }
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Closes the channels shared in immutable mode
+     */
+    private void closeSharedChannels() {
+        synchronized (sharedChannels) {
+            for (FileChannel channel : sharedChannels.values()) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    ShapefileDataStoreFactory.LOGGER.log(Level.FINE,
+                            "Failed to close a shared channel", e);
+                }
+            }
+            sharedChannels.clear();
+        }
+    }
+
     /**
      * Returns true if the file exists. Throws an exception if the file is not
      * local.
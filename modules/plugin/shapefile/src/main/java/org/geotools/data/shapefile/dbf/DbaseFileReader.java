@@ -29,6 +29,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -125,6 +126,39 @@ public class DbaseFileReader implements FileReader {
 
     private final long MILLISECS_PER_DAY = 24*60*60*1000;
 
+    /**
+     * The columns decoded in projection mode, sorted by offset, or null to decode them all
+     */
+    int[] projection;
+
+    /**
+     * Flags the columns decoded in projection mode
+     */
+    boolean[] projected;
+
+    /**
+     * The per column caches of the decoded strings, used in projection mode
+     */
+    StringCache[] stringCaches;
+
+    /**
+     * The last value parsed by {@link #parseLong(byte[], int, int)}
+     */
+    private long parsedLong;
+
+    /**
+     * The last value parsed by {@link #parseDouble(byte[], int, int)}
+     */
+    private double parsedDouble;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
     
     /**
      * Creates a new instance of DBaseFileReader
@@ -239,7 +273,7 @@ public class DbaseFileReader implements FileReader {
             if(buffer.remaining() < header.getRecordLength()) {
                 // ops, we're dealing with a DBF whose size is > 2GB (and < 4 normally?)
                 FileChannel fc = (FileChannel) channel;
-                int position = buffer.position();
+                long position = currentOffset + buffer.position();
                 if(fc.size() > position + Integer.MAX_VALUE) {
                     currentOffset = position;
                 } else {
@@ -247,8 +281,8 @@ public class DbaseFileReader implements FileReader {
                 }
                 NIOUtilities.clean(buffer);
                 buffer = fc.map(MapMode.READ_ONLY, currentOffset, Integer.MAX_VALUE);
-                
-                buffer = ((FileChannel) channel).map(MapMode.READ_ONLY, buffer.position(), Integer.MAX_VALUE);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.position((int) (position - currentOffset));
             }
         } else if (buffer.remaining() < header.getRecordLength()) {
             this.currentOffset += buffer.position();
@@ -258,6 +292,56 @@ public class DbaseFileReader implements FileReader {
         }
     }
 
+    /**
+     * Enables the projection mode, in which only the given columns are copied out of the file
+     * and decoded: their numbers are parsed directly from the record bytes, and their strings
+     * are cached per column, so that the values repeated across records are decoded once. 
+     * The other columns are skipped and read as null. This pays off on wide files when only a
+     * few columns are needed.
+     * 
+     * @param columns The zero based indexes of the columns to be read, or null to read all of
+     *        them again
+     */
+    public void setColumnProjection(final int[] columns) {
+        if (columns == null) {
+            projection = null;
+            projected = null;
+            stringCaches = null;
+            return;
+        }
+        
+        final int numFields = header.getNumFields();
+        projected = new boolean[numFields];
+        stringCaches = new StringCache[numFields];
+        for (int i = 0; i < columns.length; i++) {
+            final int column = columns[i];
+            if (column < 0 || column >= numFields) {
+                throw new IllegalArgumentException("Invalid column " + column + ", the file has "
+                        + numFields + " columns");
+            }
+            projected[column] = true;
+            if (fieldTypes[column] == 'C' || fieldTypes[column] == 'c') {
+                stringCaches[column] = new StringCache();
+            }
+        }
+        // collect them in file order, so that the record is scanned sequentially
+        int count = 0;
+        projection = new int[numFields];
+        for (int i = 0; i < numFields; i++) {
+            if (projected[i]) {
+                projection[count++] = i;
+            }
+        }
+        projection = Arrays.copyOf(projection, count);
+    }
+
+    /**
+     * Returns the columns read in projection mode, or null if all the columns are read
+     */
+    public int[] getColumnProjection() {
+        return projection == null ? null : (int[]) projection.clone();
+    }
+
     /**
      * Get the header from this file. The header is read upon instantiation.
      * 
@@ -419,9 +503,20 @@ public class DbaseFileReader implements FileReader {
                 continue;
             }
 
-            buffer.limit(buffer.position() + header.getRecordLength() - 1);
-            buffer.get(bytes); // SK: There is a side-effect here!!!
-            buffer.limit(buffer.capacity());
+            if (projection != null) {
+                // copy out only the projected fields
+                final int start = buffer.position();
+                for (int i = 0; i < projection.length; i++) {
+                    final int field = projection[i];
+                    buffer.position(start + fieldOffsets[field]);
+                    buffer.get(bytes, fieldOffsets[field], fieldLengths[field]);
+                }
+                buffer.position(start + header.getRecordLength() - 1);
+            } else {
+                buffer.limit(buffer.position() + header.getRecordLength() - 1);
+                buffer.get(bytes); // SK: There is a side-effect here!!!
+                buffer.limit(buffer.capacity());
+            }
 
             foundRecord = true;
         }
@@ -446,6 +541,10 @@ public class DbaseFileReader implements FileReader {
         final char type = fieldTypes[fieldNum];
         final int fieldLen = fieldLengths[fieldNum];
         Object object = null;
+        if (projected != null && !projected[fieldNum]) {
+            // not read in projection mode
+            return null;
+        }
         if (fieldLen > 0) {
             switch (type) {
             // (L)logical (T,t,F,f,Y,y,N,n)
@@ -475,12 +574,20 @@ public class DbaseFileReader implements FileReader {
             case 'C':
                 // if the string begins with a null terminator, the value is null
                 if (bytes[fieldOffset] != '\0') {
-                    // remember we need to skip trailing and leading spaces
-                    if(oneBytePerChar) {
-                        object = fastParse(bytes, fieldOffset, fieldLen).trim();
-                    } else {
-                        object = new String(bytes, fieldOffset, fieldLen, stringCharset.name()).trim();
+                    final StringCache cache = stringCaches != null ? stringCaches[fieldNum] : null;
+                    String value = cache != null ? cache.get(bytes, fieldOffset, fieldLen) : null;
+                    if (value == null) {
+                        // remember we need to skip trailing and leading spaces
+                        if(oneBytePerChar) {
+                            value = fastParse(bytes, fieldOffset, fieldLen).trim();
+                        } else {
+                            value = new String(bytes, fieldOffset, fieldLen, stringCharset.name()).trim();
+                        }
+                        if (cache != null) {
+                            cache.put(bytes, fieldOffset, fieldLen, value);
+                        }
                     }
+                    object = value;
                 }
                 break;
             // (D)date (Date)
@@ -541,8 +648,19 @@ public class DbaseFileReader implements FileReader {
                 if (bytes[fieldOffset] == '*') {
                     break;
                 } else {
-                    final String string = fastParse(bytes,fieldOffset,fieldLen).trim();
                     Class clazz = header.getFieldClass(fieldNum);
+                    if ((clazz == Integer.class || clazz == Long.class)
+                            && parseLong(bytes, fieldOffset, fieldLen)) {
+                        if (clazz == Integer.class && parsedLong >= Integer.MIN_VALUE
+                                && parsedLong <= Integer.MAX_VALUE) {
+                            object = Integer.valueOf((int) parsedLong);
+                        } else {
+                            object = Long.valueOf(parsedLong);
+                        }
+                        break;
+                    }
+                    // not a plain integral number, use the slower parsers
+                    final String string = fastParse(bytes,fieldOffset,fieldLen).trim();
                     if (clazz == Integer.class) {
                         try {
                             object = Integer.parseInt(string);
@@ -567,6 +685,10 @@ public class DbaseFileReader implements FileReader {
             case 'f':
             case 'F': 
                 if (bytes[fieldOffset] != '*') {
+                    if (parseDouble(bytes, fieldOffset, fieldLen)) {
+                        object = Double.valueOf(parsedDouble);
+                        break;
+                    }
                     try {
                         object = Double.parseDouble(fastParse(bytes,fieldOffset,fieldLen));
                     } catch (final NumberFormatException e) {
@@ -602,6 +724,173 @@ public class DbaseFileReader implements FileReader {
         return new String(chars);
     }
 
+    /**
+     * Parses an integral number made of an optional sign and decimal digits, surrounded by
+     * blanks, straight from the record bytes into {@link #parsedLong}
+     * 
+     * @return false if the field is not in that form, or overflows a long
+     */
+    boolean parseLong(final byte[] bytes, final int fieldOffset, final int fieldLen) {
+        int i = fieldOffset;
+        int end = fieldOffset + fieldLen;
+        while (i < end && (bytes[i] & 0xFF) <= ' ') {
+            i++;
+        }
+        while (end > i && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return false;
+            }
+            value = value * 10 + digit;
+        }
+        parsedLong = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * Parses a number made of an optional sign, decimal digits and an optional decimal point,
+     * surrounded by blanks, straight from the record bytes into {@link #parsedDouble}. Only
+     * numbers with up to 15 significant digits are handled, as their mantissa and scale are
+     * both exact doubles and a single division yields the correctly rounded value.
+     * 
+     * @return false if the field is not in that form, the caller should then fall back on
+     *         {@link Double#parseDouble(String)}
+     */
+    boolean parseDouble(final byte[] bytes, final int fieldOffset, final int fieldLen) {
+        int i = fieldOffset;
+        int end = fieldOffset + fieldLen;
+        while (i < end && (bytes[i] & 0xFF) <= ' ') {
+            i++;
+        }
+        while (end > i && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            final byte b = bytes[i];
+            if (b == '.') {
+                if (scale >= 0) {
+                    return false;
+                }
+                scale = 0;
+                continue;
+            }
+            final int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            digits++;
+            if (mantissa > 0 || digit > 0) {
+                if (++significant > 15) {
+                    return false;
+                }
+            }
+            mantissa = mantissa * 10 + digit;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return false;
+        }
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        parsedDouble = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * A small direct mapped cache of the strings decoded from a column, keyed by the raw field
+     * bytes. It turns itself off when the column values are mostly unique, in which case
+     * caching would only add overhead.
+     */
+    static final class StringCache {
+        static final int SIZE = 256;
+
+        static final int PROBATION = 1024;
+
+        final byte[][] keys = new byte[SIZE][];
+
+        final String[] values = new String[SIZE];
+
+        int lookups;
+
+        int hits;
+
+        boolean disabled;
+
+        int slot;
+
+        /**
+         * Returns the cached string for the field bytes, or null if missing
+         */
+        String get(final byte[] bytes, final int offset, final int length) {
+            if (disabled) {
+                return null;
+            }
+            int hash = 0;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+
+            lookups++;
+            final byte[] key = keys[slot];
+            if (key != null) {
+                boolean equal = true;
+                for (int i = 0; i < length; i++) {
+                    if (key[i] != bytes[offset + i]) {
+                        equal = false;
+                        break;
+                    }
+                }
+                if (equal) {
+                    hits++;
+                    return values[slot];
+                }
+            }
+            if (lookups == PROBATION && hits < PROBATION / 8) {
+                disabled = true;
+            }
+            return null;
+        }
+
+        /**
+         * Caches the string decoded from the field bytes of the last {@link #get} miss
+         */
+        void put(final byte[] bytes, final int offset, final int length, final String value) {
+            if (disabled) {
+                return;
+            }
+            byte[] key = keys[slot];
+            if (key == null) {
+                key = new byte[length];
+                keys[slot] = key;
+            }
+            System.arraycopy(bytes, offset, key, 0, length);
+            values[slot] = value;
+        }
+    }
+
     public static void main(final String[] args) throws Exception {
         final DbaseFileReader reader = new DbaseFileReader(new ShpFiles(args[0]),
                 false, Charset.forName("ISO-8859-1"), null);
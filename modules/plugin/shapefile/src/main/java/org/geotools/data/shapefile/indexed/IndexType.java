@@ -34,7 +34,12 @@ public enum IndexType {
     /**
      * The same index as mapserver. Its the most reliable and is the default
      */
-    QIX(ShpFileType.QIX);
+    QIX(ShpFileType.QIX),
+    /**
+     * A packed R-tree, bulk loaded and searched directly on its memory mapped
+     * file, it does not need to be loaded in memory
+     */
+    PRX(ShpFileType.PRX);
 
     public final ShpFileType shpFileType;
 
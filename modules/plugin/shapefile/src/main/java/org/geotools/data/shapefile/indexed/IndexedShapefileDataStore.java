@@ -23,6 +23,9 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -36,6 +39,7 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.logging.Level;
 
+import org.geotools.data.CompactFeatureReader;
 import org.geotools.data.DataSourceException;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.EmptyFeatureReader;
@@ -70,10 +74,12 @@ import org.geotools.index.Data;
 import org.geotools.index.DataDefinition;
 import org.geotools.index.LockTimeoutException;
 import org.geotools.index.TreeException;
+import org.geotools.index.packed.PackedRTree;
 import org.geotools.index.quadtree.QuadTree;
 import org.geotools.index.quadtree.StoreException;
 import org.geotools.index.quadtree.fs.FileSystemIndexStore;
 import org.geotools.renderer.ScreenMap;
+import org.geotools.resources.NIOUtilities;
 import org.geotools.util.NullProgressListener;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -115,6 +121,14 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
     
     CachedQuadTree cachedTree;
 
+    /**
+     * The packed R-tree mapping shared by the queries when the memory map cache is disabled,
+     * guarded by {@link #packedRTreeLock}
+     */
+    PackedRTreeMapping packedRTreeMapping;
+
+    final Object packedRTreeLock = new Object();
+
 	int maxQixCacheSize = DEFAULT_MAX_QIX_CACHE_SIZE;
 	
 	static final int DEFAULT_MAX_QIX_CACHE_SIZE;
@@ -245,6 +259,13 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
         try {
             if (shpFiles.isLocal() && createIndex
                     && (needsGeneration(treeType.shpFileType) || force)) {
+                if (shpFiles.isImmutable()) {
+                    ShapefileDataStoreFactory.LOGGER.log(Level.WARNING, "The spatial index of "
+                            + shpFiles.getTypeName()
+                            + " is missing or out of date, and cannot be built as the files are immutable");
+                    this.treeType = IndexType.NONE;
+                    return false;
+                }
                 createSpatialIndex();
                 return true;
             }
@@ -260,7 +281,11 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
      * Forces the spatial index to be created
      */
     public void createSpatialIndex() throws IOException {
-        buildQuadTree();
+        if (treeType == IndexType.PRX) {
+            buildPackedRTree();
+        } else {
+            buildQuadTree();
+        }
     }
 
     protected Filter getUnsupportedFilter(String typeName, Filter filter) {
@@ -391,7 +416,7 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
             }
 
             return createFeatureReader(typeName, getAttributesReader(readDbf,
-                    readGeometry, query, newSchema), newSchema);
+                    readGeometry, query, newSchema), newSchema, query.getHints());
         } catch (SchemaException se) {
             throw new DataSourceException("Error creating schema", se);
         }
@@ -434,6 +459,17 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
             IndexedShapefileAttributeReader r, SimpleFeatureType readerSchema)
             throws SchemaException, IOException {
         
+        return createFeatureReader(typeName, r, readerSchema, null);
+    }
+
+    /**
+     * Builds a compact feature reader if the {@link Hints#FEATURE_COMPACT} or
+     * {@link Hints#FEATURE_REUSE} hints are set, a normal one otherwise
+     */
+    protected FeatureReader<SimpleFeatureType, SimpleFeature> createFeatureReader(
+            String typeName, IndexedShapefileAttributeReader r, SimpleFeatureType readerSchema,
+            Hints hints) throws SchemaException, IOException {
+
         if(r == null) {
             return new EmptyFeatureReader<SimpleFeatureType, SimpleFeature>(readerSchema);
         }
@@ -444,6 +480,11 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
         } else {
             fidReader = new IndexedFidReader(shpFiles, r);
         }
+
+        boolean reuse = hints != null && Boolean.TRUE.equals(hints.get(Hints.FEATURE_REUSE));
+        if (reuse || (hints != null && Boolean.TRUE.equals(hints.get(Hints.FEATURE_COMPACT)))) {
+            return new CompactFeatureReader(r, fidReader, readerSchema, reuse);
+        }
         return new org.geotools.data.FIDFeatureReader(r, fidReader,
                 readerSchema);
     }
@@ -465,7 +506,7 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
         if(indexUseable(ShpFileType.FIX)) {
             return true;
         } else {
-            if(isLocal()) {
+            if(isLocal() && !shpFiles.isImmutable()) {
                 try {
                     FidIndexer.generate(shpFiles);
                     return true;
@@ -529,7 +570,11 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
 
             if (!bbox.isNull() && this.useIndex) {
                 try {
-                    goodRecs = this.queryQuadTree(bbox);
+                    if (treeType == IndexType.PRX) {
+                        goodRecs = this.queryPackedRTree(bbox);
+                    } else {
+                        goodRecs = this.queryQuadTree(bbox);
+                    }
                 } catch (TreeException e) {
                     throw new IOException("Error querying index: "
                             + e.getMessage());
@@ -791,6 +836,10 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
         
         // check if the spatial index needs recreating
         createSpatialIndex(false);
+        if (treeType == IndexType.NONE) {
+            // the index could not be built, scan the whole file
+            return null;
+        }
         
         if(cachedTree == null) {
             boolean canCache = false;
@@ -838,6 +887,149 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
         return tmp;
     }
 
+    /**
+     * Packed R-tree query. The index file is memory mapped, and the mapping
+     * is shared among queries: thru the memory map cache if enabled, otherwise
+     * the store keeps it until it's disposed or the index file changes
+     * 
+     * @param bbox
+     * @return the matching records, or null if the index is missing or the
+     *         bbox contains the whole index
+     * @throws IOException
+     */
+    protected CloseableIterator<Data> queryPackedRTree(Envelope bbox)
+            throws IOException {
+        // check if the spatial index needs recreating
+        createSpatialIndex(false);
+        if (treeType == IndexType.NONE) {
+            // the index could not be built, scan the whole file
+            return null;
+        }
+
+        MappedByteBuffer buffer;
+        PackedRTreeMapping mapping = null;
+        if (shpFiles.isMemoryMapCacheEnabled()) {
+            buffer = mapPackedRTree();
+        } else {
+            mapping = acquirePackedRTreeMapping();
+            buffer = mapping != null ? mapping.buffer : null;
+        }
+        if (buffer == null) {
+            return null;
+        }
+        try {
+            PackedRTree tree = new PackedRTree(buffer);
+            try {
+                if (bbox.contains(tree.getBounds())) {
+                    return null;
+                }
+                // the search collects all the results, the buffer is not needed anymore after it
+                return tree.search(bbox);
+            } finally {
+                tree.close();
+            }
+        } finally {
+            // cached mappings are shared, only the cache can clean them up
+            if (mapping != null) {
+                releasePackedRTreeMapping(mapping);
+            }
+        }
+    }
+
+    /**
+     * Returns the mapping of the packed R-tree held by the store, mapping the
+     * index file again if it changed since the last mapping. The mapping must
+     * be given back with {@link #releasePackedRTreeMapping(PackedRTreeMapping)}
+     * 
+     * @return the mapping, or null if the index file is not available
+     * @throws IOException
+     */
+    PackedRTreeMapping acquirePackedRTreeMapping() throws IOException {
+        synchronized (packedRTreeLock) {
+            PackedRTreeMapping mapping = packedRTreeMapping;
+            if (mapping != null && !mapping.isCurrent()) {
+                retirePackedRTreeMapping();
+                mapping = null;
+            }
+            if (mapping == null) {
+                // look at the file before mapping it, a change in between is caught next time
+                File treeFile = isLocal() ? DataUtilities.urlToFile(new URL(shpFiles.get(PRX)))
+                        : null;
+                long lastModified = treeFile != null ? treeFile.lastModified() : 0;
+                long length = treeFile != null ? treeFile.length() : 0;
+                MappedByteBuffer buffer = mapPackedRTree();
+                if (buffer == null) {
+                    return null;
+                }
+                mapping = new PackedRTreeMapping(buffer, treeFile, lastModified, length);
+                packedRTreeMapping = mapping;
+            }
+            mapping.users++;
+            return mapping;
+        }
+    }
+
+    /**
+     * Gives back a mapping obtained from {@link #acquirePackedRTreeMapping()},
+     * unmapping it if it has been retired and nobody else is using it
+     */
+    void releasePackedRTreeMapping(PackedRTreeMapping mapping) {
+        synchronized (packedRTreeLock) {
+            mapping.users--;
+            if (mapping.retired && mapping.users == 0) {
+                NIOUtilities.clean(mapping.buffer, true);
+            }
+        }
+    }
+
+    /**
+     * Drops the packed R-tree mapping held by the store. It is unmapped right
+     * away if no query is using it, otherwise once the last query is done
+     */
+    void retirePackedRTreeMapping() {
+        synchronized (packedRTreeLock) {
+            PackedRTreeMapping mapping = packedRTreeMapping;
+            if (mapping != null) {
+                packedRTreeMapping = null;
+                mapping.retired = true;
+                if (mapping.users == 0) {
+                    NIOUtilities.clean(mapping.buffer, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Memory maps the packed R-tree index file, going thru the memory map
+     * cache if enabled
+     * 
+     * @return the mapped index, or null if the index file is not available
+     * @throws IOException
+     */
+    MappedByteBuffer mapPackedRTree() throws IOException {
+        if (!isLocal()) {
+            return null;
+        }
+        URL treeURL = shpFiles.acquireRead(PRX, this);
+        try {
+            File treeFile = DataUtilities.urlToFile(treeURL);
+
+            if (!treeFile.exists() || (treeFile.length() == 0)) {
+                treeType = IndexType.NONE;
+                return null;
+            }
+
+            FileChannel channel = (FileChannel) shpFiles.getReadChannel(PRX, this);
+            try {
+                return channel.map(MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                channel.close();
+            }
+        } finally {
+            shpFiles.unlockRead(treeURL, this);
+        }
+    }
+
     /**
      * Convenience method for opening a DbaseFileReader.
      * 
@@ -1189,11 +1381,27 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
      * @throws TreeException
      */
     public void buildQuadTree() throws TreeException {
+        buildSpatialIndex(IndexType.QIX);
+    }
+
+    /**
+     * Builds the packed R-tree index. Usually not necessary since reading
+     * features will index when required
+     * @throws TreeException
+     */
+    public void buildPackedRTree() throws TreeException {
+        buildSpatialIndex(IndexType.PRX);
+    }
+
+    void buildSpatialIndex(IndexType indexType) throws TreeException {
         if (isLocal()) {
             LOGGER.fine("Creating spatial index for " + shpFiles.get(SHP));
+            // let go of the old index file before it gets replaced
+            retirePackedRTreeMapping();
 
             ShapeFileIndexer indexer = new ShapeFileIndexer();
             indexer.setShapeFileName(shpFiles);
+            indexer.setIndexType(indexType);
             
             try {
                 indexer.index(false, new NullProgressListener());
@@ -1215,9 +1423,48 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
         return useMemoryMappedBuffer;
     }
 
+    @Override
+    public void dispose() {
+        retirePackedRTreeMapping();
+        super.dispose();
+    }
+
     public String id() {
         return getClass().getName() + ": " + getCurrentTypeName();
     }
+
+    /**
+     * A mapping of the packed R-tree index file, along with the state of the
+     * file when it was mapped and the number of queries using it
+     */
+    static class PackedRTreeMapping {
+        final MappedByteBuffer buffer;
+
+        final File file;
+
+        final long lastModified;
+
+        final long length;
+
+        int users;
+
+        boolean retired;
+
+        PackedRTreeMapping(MappedByteBuffer buffer, File file, long lastModified, long length) {
+            this.buffer = buffer;
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * Returns true if the index file did not change since it was mapped
+         */
+        boolean isCurrent() {
+            return file == null
+                    || (file.lastModified() == lastModified && file.length() == length);
+        }
+    }
  
     @Override
     protected Set getSupportedHints() {
@@ -1227,6 +1474,8 @@ public class IndexedShapefileDataStore extends ShapefileDataStore implements
         hints.add( Hints.JTS_COORDINATE_SEQUENCE_FACTORY );
         hints.add( Hints.GEOMETRY_DISTANCE);
         hints.add( Hints.SCREENMAP);
+        hints.add( Hints.FEATURE_COMPACT);
+        hints.add( Hints.FEATURE_REUSE);
         return hints;
     }
 }
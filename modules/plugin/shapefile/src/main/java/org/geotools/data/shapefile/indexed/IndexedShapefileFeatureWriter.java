@@ -116,9 +116,12 @@ class IndexedShapefileFeatureWriter extends ShapefileFeatureWriter implements
                 }
 
                 deleteFile(ShpFileType.QIX);
+                deleteFile(ShpFileType.PRX);
 
                 if (indexedShapefileDataStore.treeType == IndexType.QIX) {
                     indexedShapefileDataStore.buildQuadTree();
+                } else if (indexedShapefileDataStore.treeType == IndexType.PRX) {
+                    indexedShapefileDataStore.buildPackedRTree();
                 }
             }
         } catch (Throwable e) {
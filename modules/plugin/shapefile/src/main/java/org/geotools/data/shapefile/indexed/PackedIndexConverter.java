@@ -0,0 +1,162 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.indexed;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.ShpFileType;
+import org.geotools.data.shapefile.ShpFiles;
+import org.geotools.util.NullProgressListener;
+
+/**
+ * Command line tool converting the .qix quadtree indexes into .prx packed
+ * R-tree ones. It accepts shapefiles and directories, the latter are scanned
+ * recursively looking for shapefiles having a .qix index.
+ * <p>
+ * The quadtree does not store the bounds of each shape, so the packed index
+ * is built by scanning the shp record headers, which is a single sequential
+ * read of the file.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class PackedIndexConverter {
+
+    int nodeSize = -1;
+
+    boolean removeQuadTree = false;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            usage();
+        }
+
+        PackedIndexConverter converter = new PackedIndexConverter();
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-s")) {
+                converter.setNodeSize(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-d")) {
+                converter.setRemoveQuadTree(true);
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (File file : files) {
+            count += converter.convert(file);
+        }
+        System.out.println(count + " indexes converted in "
+                + (System.currentTimeMillis() - start) + "ms.");
+    }
+
+    private static void usage() {
+        System.out.println("Usage: PackedIndexConverter [-s <node size>] [-d] "
+                + "<shape file or directory> ...");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println("\t-s Max number of entries in each node, default is 16");
+        System.out.println("\t-d Deletes the .qix file once converted");
+
+        System.exit(1);
+    }
+
+    /**
+     * Converts the quadtree index of the specified shapefile, or of all the
+     * shapefiles in the specified directory and its subdirectories
+     *
+     * @param file a shapefile or a directory
+     * @return the number of converted indexes
+     * @throws IOException
+     */
+    public int convert(File file) throws IOException {
+        if (file.isDirectory()) {
+            int count = 0;
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory()
+                            || child.getName().toLowerCase().endsWith(".shp")) {
+                        count += convert(child);
+                    }
+                }
+            }
+            return count;
+        }
+
+        ShpFiles shpFiles = new ShpFiles(file);
+        try {
+            if (!shpFiles.exists(ShpFileType.QIX) || !shpFiles.exists(ShpFileType.SHX)) {
+                return 0;
+            }
+
+            ShapeFileIndexer indexer = new ShapeFileIndexer();
+            indexer.setShapeFileName(shpFiles);
+            indexer.setIndexType(IndexType.PRX);
+            if (nodeSize > 0) {
+                indexer.setLeafSize(nodeSize);
+            }
+            indexer.index(false, new NullProgressListener());
+
+            if (removeQuadTree) {
+                File qix = DataUtilities.urlToFile(new URL(shpFiles.get(ShpFileType.QIX)));
+                if (qix.exists() && !qix.delete()) {
+                    System.out.println("Could not remove " + qix.getAbsolutePath());
+                }
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw (IOException) new IOException("Failed to convert the index of " + file)
+                    .initCause(e);
+        } finally {
+            shpFiles.dispose();
+        }
+
+        return 1;
+    }
+
+    /**
+     * The max number of entries in each node of the packed R-tree
+     */
+    public int getNodeSize() {
+        return nodeSize;
+    }
+
+    public void setNodeSize(int nodeSize) {
+        this.nodeSize = nodeSize;
+    }
+
+    /**
+     * When true the .qix file is removed after the conversion, so that the
+     * shapefile datastore will pick the packed index by default
+     */
+    public boolean isRemoveQuadTree() {
+        return removeQuadTree;
+    }
+
+    public void setRemoveQuadTree(boolean removeQuadTree) {
+        this.removeQuadTree = removeQuadTree;
+    }
+}
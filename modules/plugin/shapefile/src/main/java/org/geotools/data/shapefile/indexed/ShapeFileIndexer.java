@@ -28,7 +28,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.data.shapefile.FileWriter;
-import org.geotools.data.shapefile.ShpFileType;
 import org.geotools.data.shapefile.ShpFiles;
 import org.geotools.data.shapefile.StorageFile;
 import org.geotools.data.shapefile.shp.IndexFile;
@@ -37,6 +36,7 @@ import org.geotools.data.shapefile.shp.ShapefileReader;
 import org.geotools.data.shapefile.shp.ShapefileReader.Record;
 import org.geotools.index.LockTimeoutException;
 import org.geotools.index.TreeException;
+import org.geotools.index.packed.PackedRTreeBuilder;
 import org.geotools.index.quadtree.Node;
 import org.geotools.index.quadtree.QuadTree;
 import org.geotools.index.quadtree.StoreException;
@@ -66,6 +66,7 @@ public class ShapeFileIndexer implements FileWriter {
 	private String byteOrder;
     private boolean interactive = false;
     private ShpFiles shpFiles;
+    private IndexType indexType = IndexType.QIX;
 
     public static void main(String[] args) throws IOException {
         if ((args.length < 1) || (((args.length - 1) % 2) != 0)) {
@@ -79,9 +80,12 @@ public class ShapeFileIndexer implements FileWriter {
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-t")) {
-                // idx.setIdxType(IndexType.valueOf(args[++i]));
-                // just skip it for backwards compatibility
-                i++;
+                // QIX and PRX are supported, the other old values are just
+                // skipped for backwards compatibility
+                String type = args[++i].toUpperCase();
+                if (type.equals(IndexType.PRX.name())) {
+                    idx.setIndexType(IndexType.PRX);
+                }
             } else if (args[i].equals("-M")) {
                 idx.setMax(Integer.parseInt(args[++i]));
             } else if (args[i].equals("-s")) {
@@ -115,7 +119,7 @@ public class ShapeFileIndexer implements FileWriter {
     }
 
     private static void usage() {
-        System.out.println("Usage: ShapeFileIndexer " + "-t <QIX> "
+        System.out.println("Usage: ShapeFileIndexer " + "-t <QIX | PRX> "
                 + "[-M <max tree depth>] "
                 + "[-b <byte order NL | NM>] " + "<shape file>"
                 + "[-s <max number of items in a leaf>]");
@@ -123,9 +127,10 @@ public class ShapeFileIndexer implements FileWriter {
         System.out.println();
 
         System.out.println("Options:");
-        System.out.println("\t-t Index type: RTREE or QUADTREE");
+        System.out.println("\t-t Index type: QIX (quadtree, default) or PRX (packed rtree)");
+        System.out.println("\t-s Max number of items in a leaf (node size for PRX)");
         System.out.println();
-        System.out.println("Following options apllies only to QUADTREE:");
+        System.out.println("Following options apllies only to QIX:");
         System.out.println("\t-b byte order to use: NL = LSB; "
                 + "NM = MSB (default)");
 
@@ -165,32 +170,36 @@ public class ShapeFileIndexer implements FileWriter {
         ShapefileReader reader = null;
 
         // Temporary file for building...
-        StorageFile storage = shpFiles.getStorageFile(ShpFileType.QIX);
+        StorageFile storage = shpFiles.getStorageFile(indexType.shpFileType);
         File treeFile = storage.getFile();
 
         try {
             reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
             
-            if(max == -1) {
-                // compute a reasonable index max depth, considering a fully developed
-                // 10 levels one already contains 200k index nodes, good for indexing up
-                // to 3M features without consuming too much memory
-                int features = reader.getCount(0);
-                max = 1;
-                int nodes = 1;
-                while(nodes * leafSize < features) {
-                    max++;
-                    nodes *= 4;
-                }
-                if(max < 10) {
-                    max = 10;
-                }
+            if(indexType == IndexType.PRX) {
+                cnt = this.buildPackedRTree(reader, treeFile, verbose);
+            } else {
+                if(max == -1) {
+                    // compute a reasonable index max depth, considering a fully developed
+                    // 10 levels one already contains 200k index nodes, good for indexing up
+                    // to 3M features without consuming too much memory
+                    int features = reader.getCount(0);
+                    max = 1;
+                    int nodes = 1;
+                    while(nodes * leafSize < features) {
+                        max++;
+                        nodes *= 4;
+                    }
+                    if(max < 10) {
+                        max = 10;
+                    }
                 
-                reader.close();
-                reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
-            }
+                    reader.close();
+                    reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
+                }
             
-            cnt = this.buildQuadTree(reader, treeFile, verbose);
+                cnt = this.buildQuadTree(reader, treeFile, verbose);
+            }
         } finally {
             if (reader != null)
                 reader.close();
@@ -264,6 +273,40 @@ public class ShapeFileIndexer implements FileWriter {
         return cnt;
     }
     
+    private int buildPackedRTree(ShapefileReader reader, File file, boolean verbose)
+            throws IOException {
+        LOGGER.fine("Building packed rtree spatial index for file " + file.getAbsolutePath());
+
+        // the shx gives us the record count for free, use it to size the builder arrays
+        IndexFile shpIndex = new IndexFile(shpFiles, false);
+        int cnt = 0;
+        PackedRTreeBuilder builder;
+        try {
+            // a single pass over the shp headers, the builder keeps everything in primitive arrays
+            int nodeSize = leafSize > 1 ? leafSize : PackedRTreeBuilder.DEFAULT_NODE_SIZE;
+            builder = new PackedRTreeBuilder(nodeSize, shpIndex.getRecordCount());
+            while (reader.hasNext()) {
+                Record rec = reader.nextRecord();
+                builder.add(cnt, shpIndex.getOffsetInBytes(cnt), rec.minX, rec.minY, rec.maxX,
+                        rec.maxY);
+                cnt++;
+
+                if (verbose && ((cnt % 1000) == 0)) {
+                    System.out.print('.');
+                }
+                if (verbose && cnt % 100000 == 0)
+                    System.out.print('\n');
+            }
+        } finally {
+            shpIndex.close();
+        }
+        if (verbose)
+            System.out.println("done");
+        builder.write(file);
+
+        return cnt;
+    }
+
     private Node optimizeTree(QuadTree tree, Node node, int level, ShapefileReader reader, IndexFile index) throws StoreException, IOException {
         // recurse, with a check to avoid too deep recursion due to odd data that has a
         if(node.getNumShapeIds() > leafSize && node.getNumSubNodes() == 0 && level < max * 2) {
@@ -411,6 +454,22 @@ public class ShapeFileIndexer implements FileWriter {
     }
 
 
+    /**
+     * Sets the type of index to be built, {@link IndexType#QIX} by default
+     * 
+     * @param indexType
+     */
+    public void setIndexType(IndexType indexType) {
+        if (indexType == null || indexType.shpFileType == null) {
+            throw new IllegalArgumentException("Cannot build an index of type " + indexType);
+        }
+        this.indexType = indexType;
+    }
+
+    public IndexType getIndexType() {
+        return indexType;
+    }
+
     /**
      * DOCUMENT ME!
      * 
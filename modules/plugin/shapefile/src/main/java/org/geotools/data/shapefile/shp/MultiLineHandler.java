@@ -25,6 +25,7 @@ import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
 
 /*
  * $Id$ @author
@@ -129,6 +130,9 @@ public class MultiLineHandler implements ShapeHandler {
         for (int i = 0; i < numParts; i++) {
             partOffsets[i] = buffer.getInt();
         }
+        if (PackedCoordinates.isPackedDouble(geometryFactory)) {
+            return readPacked(buffer, partOffsets, numPoints, dimensions);
+        }
         // read the first two coordinates and start building the coordinate
         // sequences
         CoordinateSequence[] lines = new CoordinateSequence[numParts];
@@ -211,6 +215,39 @@ public class MultiLineHandler implements ShapeHandler {
         return geometryFactory.createMultiLineString(lineStrings);
     }
 
+    /**
+     * Reads the lines on {@link PackedCoordinateSequence.Double}, copying the ordinates in bulk
+     */
+    private Object readPacked(ByteBuffer buffer, int[] partOffsets, int numPoints,
+            int dimensions) {
+        double[] ordinates = PackedCoordinates.read(buffer.asDoubleBuffer(), numPoints,
+                dimensions);
+
+        int numParts = partOffsets.length;
+        LineString[] lineStrings = new LineString[numParts];
+        for (int part = 0; part < numParts; part++) {
+            int start = partOffsets[part];
+            int finish = part == (numParts - 1) ? numPoints : partOffsets[part + 1];
+            int length = finish - start;
+
+            double[] lineOrdinates;
+            if (numParts == 1 && length > 1) {
+                lineOrdinates = ordinates;
+            } else if (length == 1) {
+                // a line needs two points, clone the only one
+                lineOrdinates = PackedCoordinates.copy(ordinates, start, length, true,
+                        dimensions);
+            } else {
+                lineOrdinates = PackedCoordinates.copy(ordinates, start, length, false,
+                        dimensions);
+            }
+            lineStrings[part] = geometryFactory.createLineString(new PackedCoordinateSequence.Double(
+                    lineOrdinates, dimensions));
+        }
+
+        return geometryFactory.createMultiLineString(lineStrings);
+    }
+
     public void write(ByteBuffer buffer, Object geometry) {
         MultiLineString multi = (MultiLineString) geometry;
 
@@ -24,6 +24,7 @@ import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
 
 /**
  * 
@@ -110,6 +111,12 @@ public class MultiPointHandler implements ShapeHandler {
 
         int numpoints = buffer.getInt();
         int dimensions = shapeType == shapeType.MULTIPOINTZ && !flatGeometry ? 3 : 2;
+        if (PackedCoordinates.isPackedDouble(geometryFactory)) {
+            double[] packed = PackedCoordinates.read(buffer.asDoubleBuffer(), numpoints,
+                    dimensions);
+            return geometryFactory.createMultiPoint(new PackedCoordinateSequence.Double(packed,
+                    dimensions));
+        }
         CoordinateSequence cs = geometryFactory.getCoordinateSequenceFactory().create(numpoints, dimensions);
 
         DoubleBuffer dbuffer = buffer.asDoubleBuffer();
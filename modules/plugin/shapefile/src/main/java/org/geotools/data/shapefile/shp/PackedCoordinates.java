@@ -0,0 +1,146 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.shp;
+
+import java.nio.DoubleBuffer;
+
+import com.vividsolutions.jts.algorithm.RobustDeterminant;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+/**
+ * Helpers for the shape handlers building geometries on
+ * {@link com.vividsolutions.jts.geom.impl.PackedCoordinateSequence.Double}: the ordinates are
+ * read in bulk from the shp buffer into a single interleaved array, from which the sequences
+ * are copied with {@link System#arraycopy(Object, int, Object, int, int)}, with no per ordinate
+ * method call.
+ *
+ * @source $URL$
+ */
+class PackedCoordinates {
+
+    /**
+     * Returns true if the geometry factory builds packed sequences of doubles, the only ones
+     * whose layout matches the shp file one
+     */
+    static boolean isPackedDouble(GeometryFactory gf) {
+        CoordinateSequenceFactory csFactory = gf.getCoordinateSequenceFactory();
+        return csFactory instanceof PackedCoordinateSequenceFactory
+                && ((PackedCoordinateSequenceFactory) csFactory).getType() == PackedCoordinateSequenceFactory.DOUBLE;
+    }
+
+    /**
+     * Reads <code>numPoints</code> points from the buffer, positioned on the first x, into an
+     * array of interleaved ordinates. When <code>dimensions</code> is 3 the z range and the z
+     * values following the xy pairs are read as well.
+     */
+    static double[] read(DoubleBuffer buffer, int numPoints, int dimensions) {
+        double[] ordinates = new double[numPoints * dimensions];
+        // the xy pairs are stored exactly as the packed sequence wants them
+        buffer.get(ordinates, 0, numPoints * 2);
+        if (dimensions == 3) {
+            // spread the pairs, going backwards so that nothing is overwritten before
+            // being moved
+            for (int i = numPoints - 1; i > 0; i--) {
+                ordinates[i * 3 + 1] = ordinates[i * 2 + 1];
+                ordinates[i * 3] = ordinates[i * 2];
+            }
+            // skip the z range
+            buffer.position(buffer.position() + 2);
+            for (int i = 0; i < numPoints; i++) {
+                ordinates[i * 3 + 2] = buffer.get();
+            }
+        }
+        return ordinates;
+    }
+
+    /**
+     * Copies <code>length</code> points starting at <code>start</code> into a new array,
+     * adding the first point at the end if <code>close</code> is true
+     */
+    static double[] copy(double[] ordinates, int start, int length, boolean close,
+            int dimensions) {
+        double[] result = new double[(close ? length + 1 : length) * dimensions];
+        System.arraycopy(ordinates, start * dimensions, result, 0, length * dimensions);
+        if (close) {
+            System.arraycopy(ordinates, start * dimensions, result, length * dimensions,
+                    dimensions);
+        }
+        return result;
+    }
+
+    /**
+     * Same as
+     * {@link org.geotools.geometry.jts.coordinatesequence.CoordinateSequences#isCCW(com.vividsolutions.jts.geom.CoordinateSequence)}
+     * , working directly on a closed ring of interleaved ordinates
+     */
+    static boolean isCCW(double[] ring, int dimensions) {
+        // # of points without closing endpoint
+        int nPts = ring.length / dimensions - 1;
+
+        // find highest point
+        double hiy = ring[1];
+        int hiIndex = 0;
+        for (int i = 1; i <= nPts; i++) {
+            double y = ring[i * dimensions + 1];
+            if (y > hiy) {
+                hiy = y;
+                hiIndex = i;
+            }
+        }
+
+        // find distinct point before highest point
+        int iPrev = hiIndex;
+        do {
+            iPrev = iPrev - 1;
+            if (iPrev < 0)
+                iPrev = nPts;
+        } while (equals2D(ring, iPrev, hiIndex, dimensions) && iPrev != hiIndex);
+
+        // find distinct point after highest point
+        int iNext = hiIndex;
+        do {
+            iNext = (iNext + 1) % nPts;
+        } while (equals2D(ring, iNext, hiIndex, dimensions) && iNext != hiIndex);
+
+        // catches the A-B-A configurations, see CoordinateSequences.isCCW
+        if (equals2D(ring, iPrev, hiIndex, dimensions)
+                || equals2D(ring, iNext, hiIndex, dimensions)
+                || equals2D(ring, iPrev, iNext, dimensions))
+            return false;
+
+        int p = iPrev * dimensions;
+        int h = hiIndex * dimensions;
+        int n = iNext * dimensions;
+        int disc = RobustDeterminant.signOfDet2x2(ring[h] - ring[p], ring[h + 1] - ring[p + 1],
+                ring[n] - ring[h], ring[n + 1] - ring[h + 1]);
+
+        if (disc == 0) {
+            // collinear, the poly is CCW if prev x is right of next x
+            return ring[p] > ring[n];
+        } else {
+            // if area is positive, points are ordered CCW
+            return disc > 0;
+        }
+    }
+
+    private static boolean equals2D(double[] ring, int i, int j, int dimensions) {
+        return ring[i * dimensions] == ring[j * dimensions]
+                && ring[i * dimensions + 1] == ring[j * dimensions + 1];
+    }
+}
@@ -35,6 +35,7 @@ import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
 
 /**
  * Wrapper for a Shapefile polygon.
@@ -148,6 +149,10 @@ public class PolygonHandler implements ShapeHandler {
 
         ArrayList shells = new ArrayList();
         ArrayList holes = new ArrayList();
+        if (PackedCoordinates.isPackedDouble(geometryFactory)) {
+            readPackedRings(buffer, partOffsets, numPoints, dimensions, shells, holes);
+            return buildPolygons(shells, holes);
+        }
         CoordinateSequence coords = readCoordinates(buffer, numPoints, dimensions);
 
         int offset = 0;
@@ -210,6 +215,58 @@ public class PolygonHandler implements ShapeHandler {
             }
         }
 
+        return buildPolygons(shells, holes);
+    }
+
+    /**
+     * Reads the rings on {@link PackedCoordinateSequence.Double}, copying the ordinates in bulk
+     * and computing their orientation directly on the packed arrays
+     */
+    private void readPackedRings(final ByteBuffer buffer, final int[] partOffsets,
+            final int numPoints, final int dimensions, final List shells, final List holes) {
+        double[] ordinates = PackedCoordinates.read(buffer.asDoubleBuffer(), numPoints,
+                dimensions);
+
+        for (int part = 0; part < partOffsets.length; part++) {
+            int start = partOffsets[part];
+            int finish = part == (partOffsets.length - 1) ? numPoints : partOffsets[part + 1];
+            int length = finish - start;
+
+            // the ring must be closed if the first and last points differ
+            boolean close = false;
+            for (int d = 0; d < dimensions; d++) {
+                if (ordinates[start * dimensions + d] != ordinates[(finish - 1) * dimensions + d]) {
+                    close = true;
+                }
+            }
+
+            // REVISIT: polygons with only 1 or 2 points are not polygons -
+            // geometryFactory will bomb so we skip if we find one.
+            int size = close ? length + 1 : length;
+            if (size == 0 || size > 3) {
+                double[] ringOrdinates;
+                if (start == 0 && finish == numPoints && !close) {
+                    // single closed ring, no need to copy
+                    ringOrdinates = ordinates;
+                } else {
+                    ringOrdinates = PackedCoordinates.copy(ordinates, start, length, close,
+                            dimensions);
+                }
+                LinearRing ring = geometryFactory.createLinearRing(new PackedCoordinateSequence.Double(
+                        ringOrdinates, dimensions));
+
+                if (PackedCoordinates.isCCW(ringOrdinates, dimensions)) {
+                    // counter-clockwise
+                    holes.add(ring);
+                } else {
+                    // clockwise
+                    shells.add(ring);
+                }
+            }
+        }
+    }
+
+    private Object buildPolygons(ArrayList shells, ArrayList holes) {
         // quick optimization: if there's only one shell no need to check
         // for holes inclusion
         if (shells.size() == 1) {
@@ -0,0 +1,264 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.index.packed;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.geotools.index.CloseableIterator;
+import org.geotools.index.Data;
+import org.geotools.index.DataDefinition;
+import org.geotools.index.quadtree.StoreException;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * A read only, packed R-tree backed by a (usually memory mapped) {@link ByteBuffer}.
+ * <p>
+ * The tree is stored as a flat array of entries, the leaf level first (one entry per shape),
+ * then each upper level up to the root. Every entry is made of its bounds and of a pointer,
+ * which is the shape record number for the leaves and the position of the first child for the
+ * inner nodes. The layout is described in {@link PackedRTreeBuilder}.
+ * </p>
+ * <p>
+ * Searches read the bounds straight from the buffer using absolute gets, so a single instance
+ * can be shared among threads and no object is allocated while visiting the tree nodes.
+ * </p>
+ *
+ * @source $URL$
+ */
+public class PackedRTree {
+
+    static final DataDefinition DATA_DEFINITION = new DataDefinition("US-ASCII");
+    static {
+        DATA_DEFINITION.addField(Integer.class);
+        DATA_DEFINITION.addField(Long.class);
+    }
+
+    ByteBuffer buffer;
+
+    int nodeSize;
+
+    int numItems;
+
+    int numNodes;
+
+    int[] levelBounds;
+
+    int boxesStart;
+
+    int pointersStart;
+
+    int offsetsStart;
+
+    Envelope bounds;
+
+    /**
+     * Builds a new tree on top of the specified buffer
+     *
+     * @param buffer the buffer containing the index, as written by {@link PackedRTreeBuilder}
+     * @throws StoreException if the buffer does not contain a valid packed index
+     */
+    public PackedRTree(ByteBuffer buffer) throws StoreException {
+        if (buffer.limit() < PackedRTreeBuilder.HEADER_SIZE) {
+            throw new StoreException("Invalid packed index, the file is too short");
+        }
+        for (int i = 0; i < PackedRTreeBuilder.MAGIC.length; i++) {
+            if (buffer.get(i) != PackedRTreeBuilder.MAGIC[i]) {
+                throw new StoreException("Invalid packed index, wrong magic number");
+            }
+        }
+        if (buffer.get(3) != PackedRTreeBuilder.VERSION) {
+            throw new StoreException("Unsupported packed index version " + buffer.get(3));
+        }
+        ByteOrder order = buffer.get(4) == PackedRTreeBuilder.BIG_ENDIAN ? ByteOrder.BIG_ENDIAN
+                : ByteOrder.LITTLE_ENDIAN;
+        this.buffer = buffer.duplicate().order(order);
+
+        this.nodeSize = this.buffer.getInt(8);
+        this.numItems = this.buffer.getInt(12);
+        this.numNodes = this.buffer.getInt(16);
+        int numLevels = this.buffer.getInt(20);
+        if (numItems > 0) {
+            this.bounds = new Envelope(this.buffer.getDouble(24), this.buffer.getDouble(40),
+                    this.buffer.getDouble(32), this.buffer.getDouble(48));
+        } else {
+            this.bounds = new Envelope();
+        }
+
+        levelBounds = new int[numLevels + 1];
+        for (int i = 0; i <= numLevels; i++) {
+            levelBounds[i] = this.buffer.getInt(PackedRTreeBuilder.HEADER_SIZE + i * 4);
+        }
+        boxesStart = PackedRTreeBuilder.getBoxesStart(numLevels);
+        pointersStart = boxesStart + numNodes * 32;
+        offsetsStart = pointersStart + numNodes * 4;
+
+        if (this.buffer.limit() < offsetsStart + numItems * 4) {
+            throw new StoreException("Invalid packed index, the file is truncated");
+        }
+    }
+
+    /**
+     * The bounds of all the shapes in the index
+     */
+    public Envelope getBounds() {
+        return new Envelope(bounds);
+    }
+
+    /**
+     * The number of shapes in the index
+     */
+    public int getNumItems() {
+        return numItems;
+    }
+
+    /**
+     * Returns the shapes whose bounds intersect the specified envelope, sorted by their offset
+     * in the shp file so that the reader can move forward only. The returned {@link Data} contain
+     * the record number (1 based) and the record offset in bytes, as the quadtree ones do.
+     *
+     * @param bbox
+     * @return
+     */
+    public CloseableIterator<Data> search(Envelope bbox) {
+        final long[] hits = collect(bbox);
+        final int size = (int) hits[0];
+        Arrays.sort(hits, 1, size + 1);
+        final Data data = new Data(DATA_DEFINITION);
+        return new CloseableIterator<Data>() {
+            int idx = 1;
+
+            public boolean hasNext() {
+                return idx <= size;
+            }
+
+            public Data next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long hit = hits[idx++];
+                try {
+                    data.clear();
+                    data.addValue(((int) hit) + 1);
+                    data.addValue(Long.valueOf(hit >>> 32));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return data;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            public void close() throws IOException {
+                idx = size + 1;
+            }
+        };
+    }
+
+    /**
+     * Counts the shapes whose bounds intersect the specified envelope, without building the
+     * results
+     *
+     * @param bbox
+     * @return
+     */
+    public int count(Envelope bbox) {
+        return (int) collect(bbox)[0];
+    }
+
+    /**
+     * Visits the tree and collects the hits as <code>offset &lt;&lt; 32 | recno</code>. The
+     * first element of the array holds the number of hits.
+     */
+    long[] collect(Envelope bbox) {
+        if (numItems == 0 || bbox.isNull()) {
+            return new long[1];
+        }
+        final double qminx = bbox.getMinX();
+        final double qminy = bbox.getMinY();
+        final double qmaxx = bbox.getMaxX();
+        final double qmaxy = bbox.getMaxY();
+        final ByteBuffer buffer = this.buffer;
+
+        long[] hits = new long[Math.min(numItems, 64) + 1];
+        int count = 0;
+        int[] stack = new int[(levelBounds.length) * nodeSize + 1];
+        int top = 0;
+
+        // the root is the last entry, start from its children
+        int nodeIndex = buffer.getInt(pointersStart + (numNodes - 1) * 4);
+        while (true) {
+            // the node is made of at most nodeSize entries, but cannot cross its level end
+            int end = Math.min(nodeIndex + nodeSize, levelEnd(nodeIndex));
+            boolean leaf = nodeIndex < numItems;
+            for (int pos = nodeIndex; pos < end; pos++) {
+                int base = boxesStart + pos * 32;
+                if (buffer.getDouble(base) > qmaxx || buffer.getDouble(base + 8) > qmaxy
+                        || buffer.getDouble(base + 16) < qminx
+                        || buffer.getDouble(base + 24) < qminy) {
+                    continue;
+                }
+                int pointer = buffer.getInt(pointersStart + pos * 4);
+                if (leaf) {
+                    long offset = buffer.getInt(offsetsStart + pos * 4) & 0xFFFFFFFFL;
+                    if (++count >= hits.length) {
+                        long[] resized = new long[Math.min(hits.length * 2, numItems + 1)];
+                        System.arraycopy(hits, 0, resized, 0, hits.length);
+                        hits = resized;
+                    }
+                    hits[count] = (offset << 32) | pointer;
+                } else {
+                    stack[top++] = pointer;
+                }
+            }
+
+            if (top == 0) {
+                break;
+            }
+            nodeIndex = stack[--top];
+        }
+        hits[0] = count;
+
+        return hits;
+    }
+
+    /**
+     * Returns the end of the level containing the specified entry
+     */
+    int levelEnd(int entry) {
+        for (int i = 1; i < levelBounds.length; i++) {
+            if (entry < levelBounds[i]) {
+                return levelBounds[i];
+            }
+        }
+        return numNodes;
+    }
+
+    /**
+     * Releases the reference to the backing buffer. Cleaning up the buffer itself is up to the
+     * code that mapped it, as it might be shared by a memory map cache
+     */
+    public void close() {
+        buffer = null;
+    }
+}
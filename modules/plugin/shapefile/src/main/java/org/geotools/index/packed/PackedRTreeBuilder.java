@@ -0,0 +1,373 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.index.packed;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Bulk loads a {@link PackedRTree} using the Sort-Tile-Recursive algorithm and writes it down
+ * to a file.
+ * <p>
+ * The shapes are sorted on the x of their center, split in vertical slices, and each slice is
+ * sorted on the y of the center, and then packed in leaves of <code>nodeSize</code> entries. The
+ * upper levels are built by grouping consecutive nodes, which are already spatially close thanks
+ * to the leaf ordering.
+ * </p>
+ * The file layout is:
+ * <ul>
+ * <li>a 64 bytes header: the "PRX" magic, the version, the byte order, the node size, the number
+ * of shapes, the number of entries, the number of levels and the bounds of the whole index</li>
+ * <li>the start position of each level (an int each, plus the total number of entries)</li>
+ * <li>the bounds of each entry as minx, miny, maxx, maxy doubles</li>
+ * <li>the pointer of each entry, the record number for the leaves, the first child position for
+ * the inner nodes</li>
+ * <li>the shp file offset, in bytes, of each leaf</li>
+ * </ul>
+ * The file is written in the native byte order, so that on the machine building it the reads
+ * don't need any byte swapping.
+ *
+ * @source $URL$
+ */
+public class PackedRTreeBuilder {
+
+    static final byte[] MAGIC = new byte[] { 'P', 'R', 'X' };
+
+    static final byte VERSION = 1;
+
+    static final byte BIG_ENDIAN = 1;
+
+    static final byte LITTLE_ENDIAN = 0;
+
+    static final int HEADER_SIZE = 64;
+
+    /**
+     * The default number of entries in each node
+     */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    int nodeSize;
+
+    int size;
+
+    double[] boxes;
+
+    int[] records;
+
+    int[] offsets;
+
+    public PackedRTreeBuilder() {
+        this(DEFAULT_NODE_SIZE, 1024);
+    }
+
+    /**
+     * Builds a new packed tree builder
+     *
+     * @param nodeSize the max number of entries in each node
+     * @param expectedItems the expected number of shapes, used to size the internal arrays
+     */
+    public PackedRTreeBuilder(int nodeSize, int expectedItems) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("The node size must be at least 2, was "
+                    + nodeSize);
+        }
+        this.nodeSize = nodeSize;
+        int capacity = Math.max(expectedItems, 16);
+        boxes = new double[capacity * 4];
+        records = new int[capacity];
+        offsets = new int[capacity];
+    }
+
+    /**
+     * Adds a shape to the index
+     *
+     * @param recno the record number, 0 based
+     * @param offset the record offset in the shp file, in bytes
+     * @param bounds the shape bounds
+     */
+    public void add(int recno, int offset, Envelope bounds) {
+        add(recno, offset, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(),
+                bounds.getMaxY());
+    }
+
+    /**
+     * Adds a shape to the index
+     *
+     * @param recno the record number, 0 based
+     * @param offset the record offset in the shp file, in bytes
+     */
+    public void add(int recno, int offset, double minx, double miny, double maxx, double maxy) {
+        if (size == records.length) {
+            int newSize = records.length * 3 / 2;
+            records = grow(records, newSize);
+            offsets = grow(offsets, newSize);
+            double[] resized = new double[newSize * 4];
+            System.arraycopy(boxes, 0, resized, 0, boxes.length);
+            boxes = resized;
+        }
+        int base = size * 4;
+        boxes[base] = minx;
+        boxes[base + 1] = miny;
+        boxes[base + 2] = maxx;
+        boxes[base + 3] = maxy;
+        records[size] = recno;
+        offsets[size] = offset;
+        size++;
+    }
+
+    private int[] grow(int[] array, int newSize) {
+        int[] resized = new int[newSize];
+        System.arraycopy(array, 0, resized, 0, array.length);
+        return resized;
+    }
+
+    /**
+     * The number of shapes added so far
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Sorts the shapes, builds the tree and writes it to the specified file
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        // compute the levels, the leaves are level zero, there is always a root above them
+        int numLevels = 1;
+        int numNodes = size;
+        if (size > 0) {
+            int n = size;
+            do {
+                n = (n + nodeSize - 1) / nodeSize;
+                numNodes += n;
+                numLevels++;
+            } while (n > 1);
+        }
+        int[] levelBounds = new int[numLevels + 1];
+        for (int i = 1, n = size; i <= numLevels; i++) {
+            levelBounds[i] = levelBounds[i - 1] + n;
+            n = (n + nodeSize - 1) / nodeSize;
+        }
+
+        // pack the leaves and build the upper levels
+        int[] order = sortTileRecursive();
+        double[] nodeBoxes = new double[numNodes * 4];
+        int[] pointers = new int[numNodes];
+        for (int i = 0; i < size; i++) {
+            int item = order[i];
+            System.arraycopy(boxes, item * 4, nodeBoxes, i * 4, 4);
+            pointers[i] = records[item];
+        }
+        int pos = size;
+        for (int level = 0; level < numLevels - 1; level++) {
+            int end = levelBounds[level + 1];
+            for (int child = levelBounds[level]; child < end; child += nodeSize) {
+                int childEnd = Math.min(child + nodeSize, end);
+                double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY;
+                double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+                for (int c = child; c < childEnd; c++) {
+                    minx = Math.min(minx, nodeBoxes[c * 4]);
+                    miny = Math.min(miny, nodeBoxes[c * 4 + 1]);
+                    maxx = Math.max(maxx, nodeBoxes[c * 4 + 2]);
+                    maxy = Math.max(maxy, nodeBoxes[c * 4 + 3]);
+                }
+                nodeBoxes[pos * 4] = minx;
+                nodeBoxes[pos * 4 + 1] = miny;
+                nodeBoxes[pos * 4 + 2] = maxx;
+                nodeBoxes[pos * 4 + 3] = maxy;
+                pointers[pos] = child;
+                pos++;
+            }
+        }
+
+        // write out
+        ByteOrder byteOrder = ByteOrder.nativeOrder();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(byteOrder);
+            buffer.put(MAGIC);
+            buffer.put(VERSION);
+            buffer.put(byteOrder == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN);
+            buffer.put(new byte[3]);
+            buffer.putInt(nodeSize);
+            buffer.putInt(size);
+            buffer.putInt(numNodes);
+            buffer.putInt(numLevels);
+            if (numNodes > 0) {
+                int root = (numNodes - 1) * 4;
+                buffer.putDouble(nodeBoxes[root]);
+                buffer.putDouble(nodeBoxes[root + 1]);
+                buffer.putDouble(nodeBoxes[root + 2]);
+                buffer.putDouble(nodeBoxes[root + 3]);
+            } else {
+                Envelope empty = new Envelope();
+                buffer.putDouble(empty.getMinX());
+                buffer.putDouble(empty.getMinY());
+                buffer.putDouble(empty.getMaxX());
+                buffer.putDouble(empty.getMaxY());
+            }
+            buffer.putInt(0);
+            buffer.putInt(0);
+            for (int i = 0; i <= numLevels; i++) {
+                buffer = ensureRemaining(channel, buffer, 4);
+                buffer.putInt(levelBounds[i]);
+            }
+            // pad to keep the doubles aligned
+            while (buffer.position() % 8 != 0) {
+                buffer.put((byte) 0);
+            }
+            for (int i = 0; i < nodeBoxes.length; i++) {
+                buffer = ensureRemaining(channel, buffer, 8);
+                buffer.putDouble(nodeBoxes[i]);
+            }
+            for (int i = 0; i < pointers.length; i++) {
+                buffer = ensureRemaining(channel, buffer, 4);
+                buffer.putInt(pointers[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                buffer = ensureRemaining(channel, buffer, 4);
+                buffer.putInt(offsets[order[i]]);
+            }
+            flush(channel, buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the position of the first entry bounds given the number of levels
+     */
+    static int getBoxesStart(int numLevels) {
+        int start = HEADER_SIZE + (numLevels + 1) * 4;
+        return (start + 7) / 8 * 8;
+    }
+
+    private ByteBuffer ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes)
+            throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+        return buffer;
+    }
+
+    private void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the order in which the shapes should be packed in the leaves
+     */
+    int[] sortTileRecursive() {
+        int[] order = new int[size];
+        double[] keys = new double[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            keys[i] = (boxes[i * 4] + boxes[i * 4 + 2]) / 2;
+        }
+        sort(order, keys, 0, size - 1);
+
+        // split in vertical slices, and sort each one on y
+        int leaves = (size + nodeSize - 1) / nodeSize;
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = Math.max(slices, 1) * nodeSize;
+        for (int i = 0; i < size; i++) {
+            keys[i] = (boxes[i * 4 + 1] + boxes[i * 4 + 3]) / 2;
+        }
+        for (int start = 0; start < size; start += sliceSize) {
+            sort(order, keys, start, Math.min(start + sliceSize, size) - 1);
+        }
+
+        return order;
+    }
+
+    /**
+     * Quicksort of the order array, between <code>lo</code> and <code>hi</code> included, using
+     * the keys associated to each item. Works on primitives to avoid allocating a wrapper per
+     * shape
+     */
+    static void sort(int[] order, double[] keys, int lo, int hi) {
+        while (hi - lo > 16) {
+            // median of three pivot
+            int mid = (lo + hi) >>> 1;
+            if (keys[order[mid]] < keys[order[lo]]) {
+                swap(order, lo, mid);
+            }
+            if (keys[order[hi]] < keys[order[lo]]) {
+                swap(order, lo, hi);
+            }
+            if (keys[order[hi]] < keys[order[mid]]) {
+                swap(order, mid, hi);
+            }
+            double pivot = keys[order[mid]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[order[i]] < pivot) {
+                    i++;
+                }
+                while (keys[order[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(order, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // recurse on the smaller partition, loop on the larger one
+            if (j - lo < hi - i) {
+                sort(order, keys, lo, j);
+                lo = i;
+            } else {
+                sort(order, keys, i, hi);
+                hi = j;
+            }
+        }
+        // insertion sort for the small ranges
+        for (int i = lo + 1; i <= hi; i++) {
+            int item = order[i];
+            double key = keys[item];
+            int j = i - 1;
+            while (j >= lo && keys[order[j]] > key) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = item;
+        }
+    }
+
+    private static void swap(int[] order, int i, int j) {
+        int tmp = order[i];
+        order[i] = order[j];
+        order[j] = tmp;
+    }
+}
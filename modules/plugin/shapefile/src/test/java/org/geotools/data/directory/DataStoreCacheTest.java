@@ -1,11 +1,17 @@
 package org.geotools.data.directory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import org.geotools.data.DataStore;
 import org.geotools.data.directory.DirectoryTypeCache;
 import org.junit.Test;
 
@@ -115,5 +121,93 @@ public class DataStoreCacheTest extends DirectoryTestSupport {
         cache.dispose();
     }
 
+    @Test
+    public void testMaxOpenStores() throws Exception {
+        copyShapefiles("shapes/archsites.shp");
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryTypeCache cache = new DirectoryTypeCache(tempDir, getFileStoreFactory());
+        cache.setMaxOpenStores(1);
+        assertEquals(2, cache.getTypeNames().size());
+
+        // only the most recently used store is kept open
+        DataStore archsites = cache.getDataStore("archsites", false);
+        assertEquals(1, cache.getDataStores().size());
+        assertSame(archsites, cache.getDataStores().get(0));
+        DataStore bugsites = cache.getDataStore("bugsites", false);
+        assertEquals(1, cache.getDataStores().size());
+        assertSame(bugsites, cache.getDataStores().get(0));
+
+        // the closed one is re-created on demand
+        DataStore reopened = cache.getDataStore("archsites", false);
+        assertNotSame(archsites, reopened);
+        assertEquals("archsites", reopened.getTypeNames()[0]);
+        cache.dispose();
+    }
+
+    @Test
+    public void testPinnedStoreNotClosed() throws Exception {
+        copyShapefiles("shapes/archsites.shp");
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+        DirectoryTypeCache cache = new DirectoryTypeCache(tempDir, getFileStoreFactory());
+        cache.setMaxOpenStores(1);
+        assertEquals(2, cache.getTypeNames().size());
+
+        // evicted by the pool while pinned, the store must stay open
+        DirectoryTypeCache.FileEntry entry = cache.getEntry("archsites", false);
+        DataStore archsites = entry.pin();
+        DataStore bugsites = cache.getDataStore("bugsites", false);
+        assertEquals(2, cache.getDataStores().size());
+        assertEquals(25, archsites.getFeatureSource("archsites").getFeatures().size());
+
+        // and get closed once released
+        entry.unpin();
+        assertEquals(1, cache.getDataStores().size());
+        assertSame(bugsites, cache.getDataStores().get(0));
+        cache.dispose();
+    }
+
+    @Test
+    public void testTypeNameCatalog() throws Exception {
+        copyShapefiles("shapes/archsites.shp");
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+        File catalog = File.createTempFile("catalog", ".properties");
+        catalog.delete();
+        try {
+            DirectoryTypeCache cache = new DirectoryTypeCache(tempDir, getFileStoreFactory());
+            cache.setCatalog(catalog);
+            assertEquals(2, cache.getTypeNames().size());
+            cache.dispose();
+            assertTrue(catalog.exists());
+
+            // a new cache finds the type names without opening any store
+            final List<File> opened = new ArrayList<File>();
+            final FileStoreFactory factory = getFileStoreFactory();
+            cache = new DirectoryTypeCache(tempDir, new FileStoreFactory() {
+                public DataStore getDataStore(File file) throws IOException {
+                    DataStore store = factory.getDataStore(file);
+                    if (store != null) {
+                        opened.add(file);
+                    }
+                    return store;
+                }
+            });
+            cache.setCatalog(catalog);
+            assertEquals(2, cache.getTypeNames().size());
+            assertTrue(cache.getTypeNames().contains("archsites"));
+            assertTrue(cache.getTypeNames().contains("bugsites"));
+            assertTrue(opened.isEmpty());
+
+            // the stores are still opened on demand
+            assertEquals("bugsites", cache.getDataStore("bugsites", false).getTypeNames()[0]);
+            assertEquals(1, opened.size());
+            cache.dispose();
+        } finally {
+            catalog.delete();
+        }
+    }
+
 }
 
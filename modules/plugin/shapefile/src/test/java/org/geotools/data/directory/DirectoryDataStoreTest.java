@@ -14,9 +14,13 @@ import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.directory.DirectoryDataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.visitor.CountVisitor;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.util.DefaultProgressListener;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 import com.vividsolutions.jts.geom.Polygon;
@@ -77,6 +81,36 @@ public class DirectoryDataStoreTest extends DirectoryTestSupport {
         dds.dispose();
     }
 
+    @Test
+    public void testVisitFeatureCollection() throws Exception {
+        File file = copyShapefiles("shapes/archsites.shp");
+        tempDir = file.getParentFile();
+
+        DataStore dds = new DirectoryDataStore(tempDir, getFileStoreFactory());
+        SimpleFeatureCollection fc = DataUtilities.simple(dds.getFeatureSource("archsites"))
+                .getFeatures();
+
+        // the visit goes thru the wrapped collection, which reports progress
+        DefaultProgressListener progress = new DefaultProgressListener();
+        CountVisitor count = new CountVisitor();
+        fc.accepts(count, progress);
+        assertEquals(fc.size(), count.getCount());
+        assertTrue(progress.isCompleted());
+        assertFalse(progress.hasExceptions());
+
+        // and does not lose the visitor failures
+        progress = new DefaultProgressListener();
+        fc.accepts(new CountVisitor() {
+            @Override
+            public void visit(Feature feature) {
+                throw new IllegalStateException("Failing on purpose");
+            }
+        }, progress);
+        assertTrue(progress.hasExceptions());
+        assertTrue(progress.getExceptions().peek() instanceof IllegalStateException);
+        dds.dispose();
+    }
+
     @Test
     public void testCreateSchema() throws Exception {
         File dir = File.createTempFile("foo", "shp", new File("target"));
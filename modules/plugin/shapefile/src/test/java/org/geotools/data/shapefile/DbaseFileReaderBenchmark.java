@@ -0,0 +1,135 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.dbf.DbaseFileWriter;
+
+/**
+ * Reads a wide DBF file, forty columns, decoding all the columns and then only two of them with
+ * {@link DbaseFileReader#setColumnProjection(int[])}. Not a test, run it with the target file
+ * size in MB as the first argument (defaults to 2GB) and optionally the file to use as the
+ * second one, the file is generated if missing.
+ *
+ * @source $URL$
+ */
+public class DbaseFileReaderBenchmark {
+
+    static final int COLUMNS = 40;
+
+    public static void main(String[] args) throws Exception {
+        long size = (args.length > 0 ? Long.parseLong(args[0]) : 2048) * 1024 * 1024;
+        File file = args.length > 1 ? new File(args[1]) : new File(
+                System.getProperty("java.io.tmpdir"), "benchmark.dbf");
+        Charset charset = Charset.forName("ISO-8859-1");
+        if (!file.exists()) {
+            long start = System.currentTimeMillis();
+            int records = write(file, size, charset);
+            System.out.println("Wrote " + records + " records in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+        System.out.println("Reading " + file + ", " + file.length() / 1024 / 1024 + "MB");
+
+        // a string and a double column
+        int[] projection = new int[] { 4, 6 };
+        for (boolean memoryMapped : new boolean[] { false, true }) {
+            for (int i = 0; i < 2; i++) {
+                long start = System.currentTimeMillis();
+                int count = read(file, charset, memoryMapped, null);
+                System.out.println("All columns" + (memoryMapped ? ", memory mapped: " : ": ")
+                        + count + " records in " + (System.currentTimeMillis() - start) + "ms");
+
+                start = System.currentTimeMillis();
+                count = read(file, charset, memoryMapped, projection);
+                System.out.println("Two columns" + (memoryMapped ? ", memory mapped: " : ": ")
+                        + count + " records in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        }
+    }
+
+    static int write(File file, long size, Charset charset) throws Exception {
+        DbaseFileHeader header = new DbaseFileHeader();
+        for (int i = 0; i < COLUMNS; i++) {
+            switch (i % 4) {
+            case 0:
+                header.addColumn("c" + i, 'C', 20, 0);
+                break;
+            case 1:
+                header.addColumn("c" + i, 'N', 9, 0);
+                break;
+            case 2:
+                header.addColumn("c" + i, 'N', 19, 6);
+                break;
+            default:
+                header.addColumn("c" + i, 'N', 12, 0);
+            }
+        }
+        int records = (int) Math.min(Integer.MAX_VALUE, size / header.getRecordLength());
+        header.setNumRecords(records);
+
+        Random random = new Random(0);
+        FileOutputStream fos = new FileOutputStream(file);
+        DbaseFileWriter writer = new DbaseFileWriter(header, fos.getChannel(), charset);
+        try {
+            Object[] values = new Object[COLUMNS];
+            for (int r = 0; r < records; r++) {
+                for (int i = 0; i < COLUMNS; i++) {
+                    switch (i % 4) {
+                    case 0:
+                        values[i] = "name" + random.nextInt(1000);
+                        break;
+                    case 1:
+                        values[i] = random.nextInt(100000000);
+                        break;
+                    case 2:
+                        values[i] = random.nextDouble() * 1000000;
+                        break;
+                    default:
+                        values[i] = (long) random.nextInt();
+                    }
+                }
+                writer.write(values);
+            }
+        } finally {
+            writer.close();
+        }
+        return records;
+    }
+
+    static int read(File file, Charset charset, boolean memoryMapped, int[] projection)
+            throws Exception {
+        DbaseFileReader reader = new DbaseFileReader(new ShpFiles(file), memoryMapped, charset);
+        try {
+            reader.setColumnProjection(projection);
+            Object[] values = new Object[reader.getHeader().getNumFields()];
+            int count = 0;
+            while (reader.hasNext()) {
+                reader.readEntry(values);
+                count++;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -103,6 +103,84 @@ public class DbaseFileTest extends TestCaseSupport {
         dbf2.close();
     }
 
+    public void testColumnProjection() throws Exception {
+        int[] columns = new int[] { 200, 0, 4, 17 };
+        for (boolean memoryMapped : new boolean[] { false, true }) {
+            DbaseFileReader full = new DbaseFileReader(shpFiles, memoryMapped,
+                    ShapefileDataStore.DEFAULT_STRING_CHARSET);
+            DbaseFileReader projected = new DbaseFileReader(shpFiles, memoryMapped,
+                    ShapefileDataStore.DEFAULT_STRING_CHARSET);
+            try {
+                projected.setColumnProjection(columns);
+                assertEquals(4, projected.getColumnProjection().length);
+                while (full.hasNext()) {
+                    assertTrue(projected.hasNext());
+                    Object[] expected = full.readEntry();
+                    Object[] actual = projected.readEntry();
+                    for (int i = 0; i < expected.length; i++) {
+                        if (i == 0 || i == 4 || i == 17 || i == 200) {
+                            assertEquals(expected[i], actual[i]);
+                        } else {
+                            assertNull(actual[i]);
+                        }
+                    }
+                }
+                assertFalse(projected.hasNext());
+            } finally {
+                full.close();
+                projected.close();
+            }
+        }
+    }
+
+    public void testNumberParsing() throws Exception {
+        DbaseFileHeader header = new DbaseFileHeader();
+        header.addColumn("int", 'N', 9, 0);
+        header.addColumn("long", 'N', 19, 0);
+        header.addColumn("double", 'N', 20, 5);
+        header.addColumn("float", 'F', 20, 5);
+        header.addColumn("name", 'C', 10, 0);
+        Object[][] records = new Object[][] {
+                { 12, 123456789012L, 1.25, -0.5, "a" },
+                { -7, -3L, 0.1, 12345.6789, "b" },
+                { 0, Long.MAX_VALUE, -100.0, 1e-5, "a" },
+                { null, null, null, null, null } };
+        header.setNumRecords(records.length);
+        File f = new File(System.getProperty("java.io.tmpdir"), "scratchNumbers.dbf");
+        f.deleteOnExit();
+        FileOutputStream fout = new FileOutputStream(f);
+        DbaseFileWriter writer = new DbaseFileWriter(header, fout.getChannel(), Charset
+                .defaultCharset());
+        for (Object[] record : records) {
+            writer.write(record);
+        }
+        writer.close();
+
+        ShpFiles tempShpFiles = new ShpFiles(f);
+        for (int[] projection : new int[][] { null, { 0, 1, 2, 3, 4 } }) {
+            DbaseFileReader r = new DbaseFileReader(tempShpFiles, false,
+                    ShapefileDataStore.DEFAULT_STRING_CHARSET);
+            try {
+                r.setColumnProjection(projection);
+                for (int i = 0; i < 3; i++) {
+                    Object[] values = r.readEntry();
+                    assertEquals(records[i][0], values[0]);
+                    assertEquals(records[i][1], values[1]);
+                    assertEquals(((Number) records[i][2]).doubleValue(), values[2]);
+                    assertEquals(((Number) records[i][3]).doubleValue(), values[3]);
+                    assertEquals(records[i][4], values[4]);
+                }
+                Object[] values = r.readEntry();
+                for (int i = 0; i < values.length; i++) {
+                    assertNull(values[i]);
+                }
+            } finally {
+                r.close();
+            }
+        }
+        f.delete();
+    }
+
     public void testHeader() throws Exception {
         DbaseFileHeader header = new DbaseFileHeader();
 
@@ -0,0 +1,139 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+
+/**
+ * Reads a shapefile of detailed polygons, each with a hole, building the geometries on the
+ * default coordinate arrays and then on packed coordinate sequences, see
+ * {@link ShapefileDataStoreFactory#PACKED_COORDINATES}. Not a test, run it with the number of
+ * polygons and of vertices per ring as arguments (defaults to 20000 and 500), the shapefile
+ * is generated in the temp directory if missing.
+ *
+ * @source $URL$
+ */
+public class PackedCoordinatesBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int polygons = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int vertices = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        File file = new File(System.getProperty("java.io.tmpdir"), "packed_" + polygons + "_"
+                + vertices + ".shp");
+        if (!file.exists()) {
+            long start = System.currentTimeMillis();
+            write(file, polygons, vertices);
+            System.out.println("Wrote " + polygons + " polygons in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+        System.out.println("Reading " + file + ", " + file.length() / 1024 / 1024 + "MB");
+
+        for (int i = 0; i < 3; i++) {
+            for (boolean packed : new boolean[] { false, true }) {
+                System.gc();
+                long used = usedMemory();
+                long start = System.currentTimeMillis();
+                List<SimpleFeature> features = read(file, packed);
+                long elapsed = System.currentTimeMillis() - start;
+                System.gc();
+                System.out.println((packed ? "Packed: " : "Coordinate arrays: ")
+                        + features.size() + " features in " + elapsed + "ms, "
+                        + (usedMemory() - used) / 1024 / 1024 + "MB retained");
+                features.clear();
+            }
+        }
+    }
+
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static void write(File file, int polygons, int vertices) throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("packed", "the_geom:Polygon,id:0");
+        ShapefileDataStore store = new ShapefileDataStore(file.toURI().toURL());
+        store.createSchema(type);
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = store.getFeatureWriterAppend(
+                store.getTypeNames()[0], Transaction.AUTO_COMMIT);
+        GeometryFactory gf = new GeometryFactory();
+        try {
+            int side = (int) Math.ceil(Math.sqrt(polygons));
+            for (int i = 0; i < polygons; i++) {
+                double cx = (i % side) * 10;
+                double cy = (i / side) * 10;
+                LinearRing shell = circle(gf, cx, cy, 4, vertices);
+                LinearRing hole = circle(gf, cx, cy, 2, vertices);
+                SimpleFeature f = writer.next();
+                f.setAttribute(0, gf.createPolygon(shell, new LinearRing[] { hole }));
+                f.setAttribute(1, i);
+                writer.write();
+            }
+        } finally {
+            writer.close();
+            store.dispose();
+        }
+    }
+
+    static LinearRing circle(GeometryFactory gf, double cx, double cy, double radius,
+            int vertices) {
+        Coordinate[] coordinates = new Coordinate[vertices + 1];
+        for (int i = 0; i < vertices; i++) {
+            double angle = Math.PI * 2 * i / vertices;
+            coordinates[i] = new Coordinate(cx + Math.cos(angle) * radius, cy + Math.sin(angle)
+                    * radius);
+        }
+        coordinates[vertices] = coordinates[0];
+        return gf.createLinearRing(coordinates);
+    }
+
+    static List<SimpleFeature> read(File file, boolean packed) throws Exception {
+        Map<String, Serializable> params = new HashMap<String, Serializable>();
+        params.put(ShapefileDataStoreFactory.URLP.key, file.toURI().toURL());
+        params.put(ShapefileDataStoreFactory.MEMORY_MAPPED.key, Boolean.TRUE);
+        params.put(ShapefileDataStoreFactory.CREATE_SPATIAL_INDEX.key, Boolean.FALSE);
+        params.put(ShapefileDataStoreFactory.PACKED_COORDINATES.key, packed);
+        ShapefileDataStore store = (ShapefileDataStore) new ShapefileDataStoreFactory()
+                .createDataStore(params);
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        SimpleFeatureIterator it = store.getFeatureSource().getFeatures().features();
+        try {
+            while (it.hasNext()) {
+                features.add(it.next());
+            }
+        } finally {
+            it.close();
+            store.dispose();
+        }
+        return features;
+    }
+}
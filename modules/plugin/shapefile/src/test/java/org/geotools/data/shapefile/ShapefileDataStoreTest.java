@@ -18,6 +18,7 @@ package org.geotools.data.shapefile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
@@ -26,6 +27,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
@@ -47,8 +49,10 @@ import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.Hints;
 import org.geotools.feature.FeatureCollections;
 import org.geotools.feature.FeatureTypes;
+import org.geotools.feature.simple.CompactSimpleFeature;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.feature.type.BasicFeatureTypes;
@@ -70,6 +74,7 @@ import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.geom.MultiLineString;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 /**
  * 
@@ -803,6 +808,89 @@ public class ShapefileDataStoreTest extends TestCaseSupport {
         s.dispose();
     }
     
+    public void testCompactReaders() throws Exception {
+        URL url = TestData.url(STATE_POP);
+        ShapefileDataStore s = new ShapefileDataStore(url);
+        String typeName = s.getSchema().getTypeName();
+        List<SimpleFeature> expected = DataUtilities.list(s.getFeatureSource().getFeatures());
+
+        // compact features can be retained
+        Query query = new Query(typeName);
+        query.setHints(new Hints(Hints.FEATURE_COMPACT, Boolean.TRUE));
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = s.getFeatureReader(typeName,
+                query);
+        List<SimpleFeature> compact = new ArrayList<SimpleFeature>();
+        try {
+            while (reader.hasNext()) {
+                SimpleFeature f = reader.next();
+                assertTrue(f instanceof CompactSimpleFeature);
+                compact.add(f);
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(expected.size(), compact.size());
+        assertNotSame(compact.get(0), compact.get(1));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getID(), compact.get(i).getID());
+            assertEquals(expected.get(i).getAttributes(), compact.get(i).getAttributes());
+        }
+
+        // reused features are the same object, valid until the reader moves on
+        query.setHints(new Hints(Hints.FEATURE_REUSE, Boolean.TRUE));
+        reader = s.getFeatureReader(typeName, query);
+        SimpleFeature previous = null;
+        int i = 0;
+        try {
+            while (reader.hasNext()) {
+                SimpleFeature f = reader.next();
+                if (previous != null) {
+                    assertSame(previous, f);
+                }
+                assertEquals(expected.get(i).getID(), f.getID());
+                assertEquals(expected.get(i).getAttribute("STATE_NAME"),
+                        f.getAttribute("STATE_NAME"));
+                assertEquals(expected.get(i).getDefaultGeometry(), f.getDefaultGeometry());
+                previous = f;
+                i++;
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(expected.size(), i);
+        try {
+            previous.getAttribute("PERSONS");
+            fail("The reused feature should not be readable after the reader moved on");
+        } catch (IllegalStateException e) {
+            // fine
+        }
+        s.dispose();
+    }
+
+    public void testPackedCoordinates() throws Exception {
+        for (String resource : new String[] { STATE_POP, STREAM }) {
+            URL url = TestData.url(resource);
+            ShapefileDataStore s = new ShapefileDataStore(url);
+            List<SimpleFeature> expected = DataUtilities.list(s.getFeatureSource().getFeatures());
+            s.dispose();
+
+            Map<String, Serializable> params = new HashMap<String, Serializable>();
+            params.put(ShapefileDataStoreFactory.URLP.key, url);
+            params.put(ShapefileDataStoreFactory.PACKED_COORDINATES.key, Boolean.TRUE);
+            s = (ShapefileDataStore) new ShapefileDataStoreFactory().createDataStore(params);
+            assertTrue(s.isPackedCoordinates());
+            List<SimpleFeature> packed = DataUtilities.list(s.getFeatureSource().getFeatures());
+            s.dispose();
+
+            assertEquals(expected.size(), packed.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Geometry g = (Geometry) packed.get(i).getDefaultGeometry();
+                assertTrue(g.getFactory().getCoordinateSequenceFactory() instanceof PackedCoordinateSequenceFactory);
+                assertTrue(((Geometry) expected.get(i).getDefaultGeometry()).equalsExact(g));
+            }
+        }
+    }
+
     public void testWrite() throws Exception {
         // create feature type
         SimpleFeatureType type = DataUtilities.createType("junk","a:Point,b:java.math.BigDecimal,c:java.math.BigInteger");
@@ -0,0 +1,115 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of many threads opening a read channel on the same {@link ShpFiles},
+ * reading a small record at a random position and closing it, the access pattern of concurrent
+ * tile requests, with the default locking and in immutable mode. Not a test, run it with the
+ * number of threads and the duration of each run in seconds as arguments (defaults to 32 and 5).
+ *
+ * @source $URL$
+ */
+public class ShpFilesConcurrencyBenchmark {
+
+    static final int FILE_SIZE = 1024 * 1024;
+
+    static final int RECORD_SIZE = 100;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        long duration = (args.length > 1 ? Long.parseLong(args[1]) : 5) * 1000;
+
+        File file = File.createTempFile("concurrency", ".shp");
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            try {
+                fos.write(new byte[FILE_SIZE]);
+            } finally {
+                fos.close();
+            }
+
+            for (int i = 0; i < 2; i++) {
+                for (boolean immutable : new boolean[] { false, true }) {
+                    ShpFiles shpFiles = new ShpFiles(file);
+                    shpFiles.setImmutable(immutable);
+                    long ops = run(shpFiles, threads, duration);
+                    shpFiles.dispose();
+                    System.out.println((immutable ? "Immutable: " : "Locking: ") + threads
+                            + " threads, " + ops * 1000 / duration + " reads/s");
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    static long run(final ShpFiles shpFiles, int threads, final long duration)
+            throws Exception {
+        final AtomicLong ops = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            final int seed = i;
+            Thread thread = new Thread() {
+                public void run() {
+                    FileReader reader = new FileReader() {
+                        public String id() {
+                            return "Benchmark reader " + seed;
+                        }
+                    };
+                    Random random = new Random(seed);
+                    ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+                    long count = 0;
+                    try {
+                        start.await();
+                        long end = System.currentTimeMillis() + duration;
+                        while (System.currentTimeMillis() < end) {
+                            FileChannel channel = (FileChannel) shpFiles.getReadChannel(
+                                    ShpFileType.SHP, reader);
+                            try {
+                                buffer.clear();
+                                channel.position(random.nextInt(FILE_SIZE - RECORD_SIZE));
+                                channel.read(buffer);
+                            } finally {
+                                channel.close();
+                            }
+                            count++;
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        ops.addAndGet(count);
+                        done.countDown();
+                    }
+                }
+            };
+            thread.start();
+        }
+        start.countDown();
+        done.await();
+        return ops.get();
+    }
+}
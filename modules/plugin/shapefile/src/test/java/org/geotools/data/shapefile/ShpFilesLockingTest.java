@@ -21,7 +21,13 @@ import static org.geotools.data.shapefile.ShpFileType.SHP;
 import static org.geotools.data.shapefile.ShpFileType.SHX;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 
 import junit.framework.TestCase;
 
@@ -194,6 +200,125 @@ public class ShpFilesLockingTest extends TestCase implements FileWriter {
         shpFiles.finalize();
     }
 
+    public void testImmutable() throws Throwable {
+        ShpFiles shpFiles = new ShpFiles("http://somefile.com/shp.shp");
+        shpFiles.setImmutable(true);
+
+        URL url = shpFiles.acquireRead(DBF, this);
+        assertEquals("http://somefile.com/shp.dbf", url.toExternalForm());
+        Result<URL, State> result = shpFiles.tryAcquireRead(SHX, this);
+        assertEquals(State.GOOD, result.state);
+        assertEquals(2, shpFiles.numberOfLocks());
+
+        try {
+            shpFiles.acquireWrite(SHP, this);
+            fail("Immutable files cannot be written");
+        } catch (IllegalStateException e) {
+            // good
+        }
+        try {
+            shpFiles.setImmutable(false);
+            fail("The mode cannot change while reading");
+        } catch (IllegalStateException e) {
+            // good
+        }
+
+        shpFiles.unlockRead(result.value, this);
+        shpFiles.unlockRead(url, this);
+        assertEquals(0, shpFiles.numberOfLocks());
+        try {
+            shpFiles.unlockRead(url, this);
+            fail("Nothing left to unlock");
+        } catch (IllegalArgumentException e) {
+            // good
+        }
+
+        shpFiles.setImmutable(false);
+        url = shpFiles.acquireWrite(SHP, this);
+        shpFiles.unlockWrite(url, this);
+        shpFiles.finalize();
+    }
+
+    public void testImmutableSharedChannels() throws Throwable {
+        File file = File.createTempFile("immutable", ".shp");
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            fos.write(new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+            fos.close();
+
+            ShpFiles shpFiles = new ShpFiles(file);
+            shpFiles.setImmutable(true);
+            FileChannel c1 = (FileChannel) shpFiles.getReadChannel(SHP, this);
+            FileChannel c2 = (FileChannel) shpFiles.getReadChannel(SHP, this);
+            assertEquals(2, shpFiles.numberOfLocks());
+
+            // each channel has its own position
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            c1.read(buffer);
+            assertEquals(4, c1.position());
+            assertEquals(0, c2.position());
+            buffer.clear();
+            c2.position(6);
+            c2.read(buffer);
+            assertEquals(6, buffer.get(0));
+            assertEquals(-1, c2.read(ByteBuffer.allocate(1)));
+            assertEquals(10, c1.size());
+            assertEquals(5, c1.map(MapMode.READ_ONLY, 0, 10).get(5));
+
+            c1.close();
+            c2.close();
+            assertEquals(0, shpFiles.numberOfLocks());
+            shpFiles.dispose();
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testImmutableSharedChannelsInterruptAndDispose() throws Throwable {
+        File file = File.createTempFile("immutable", ".shp");
+        try {
+            FileOutputStream fos = new FileOutputStream(file);
+            fos.write(new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+            fos.close();
+
+            ShpFiles shpFiles = new ShpFiles(file);
+            shpFiles.setImmutable(true);
+            FileChannel c1 = (FileChannel) shpFiles.getReadChannel(SHP, this);
+            FileChannel c2 = (FileChannel) shpFiles.getReadChannel(SHP, this);
+
+            // an interrupted reader closes the shared channel...
+            Thread.currentThread().interrupt();
+            try {
+                c1.read(ByteBuffer.allocate(4));
+                fail("The interrupted read should have failed");
+            } catch (ClosedByInterruptException e) {
+                // good
+            } finally {
+                Thread.interrupted();
+            }
+
+            // ... but the other readers keep on working
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            c2.position(3);
+            assertEquals(4, c2.read(buffer));
+            assertEquals(3, buffer.get(0));
+            assertEquals(10, c1.size());
+
+            // no reads once the files are disposed
+            shpFiles.dispose();
+            try {
+                c2.read(ByteBuffer.allocate(4));
+                fail("The files have been disposed");
+            } catch (ClosedChannelException e) {
+                // good
+            }
+            c1.close();
+            c2.close();
+        } finally {
+            file.delete();
+        }
+    }
+
     public String id() {
         return getClass().getName();
     }
@@ -28,10 +28,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -45,6 +47,7 @@ import org.geotools.data.FeatureWriter;
 import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
 import org.geotools.data.shapefile.ShpFileType;
 import org.geotools.data.shapefile.TestCaseSupport;
 import org.geotools.data.simple.SimpleFeatureCollection;
@@ -58,6 +61,8 @@ import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.filter.IllegalFilterException;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.index.CloseableIterator;
+import org.geotools.index.Data;
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
@@ -333,6 +338,68 @@ public class IndexedShapefileDataStoreTest extends TestCaseSupport {
         ds2.dispose();
     }
 
+    public void testCreateAndReadPRX() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+
+        String name = shpFile.getName();
+        String base = name.substring(0, name.lastIndexOf('.'));
+        File file = new File(shpFile.getParent(), base + ".prx");
+        File qix = new File(shpFile.getParent(), base + ".qix");
+        if (file.exists()) {
+            file.delete();
+        }
+        if (qix.exists()) {
+            qix.delete();
+        }
+        file.deleteOnExit();
+
+        IndexedShapefileDataStore ds = new IndexedShapefileDataStore(url, null,
+                true, true, IndexType.PRX);
+        IndexedShapefileDataStore ds2 = new IndexedShapefileDataStore(url,
+                null, false, false, IndexType.NONE);
+
+        ReferencedEnvelope bounds = ds.getFeatureSource().getBounds();
+        double dx = bounds.getWidth() / 4;
+        double dy = bounds.getHeight() / 4;
+        Envelope newBounds = new Envelope(bounds.getMinX() + dx, bounds.getMaxX()
+                - dx, bounds.getMinY() + dy, bounds.getMaxY() - dy);
+        performQueryComparison(ds, ds2, new ReferencedEnvelope(newBounds,
+                bounds.getCoordinateReferenceSystem()));
+        assertTrue(file.exists());
+        assertFalse(qix.exists());
+
+        // outside of the data
+        CloseableIterator<Data> it = ds.queryPackedRTree(new Envelope(-62, -61, 22, 23));
+        assertNotNull(it);
+        assertFalse(it.hasNext());
+        it.close();
+
+        // the mapping is kept by the store and shared by the queries
+        IndexedShapefileDataStore.PackedRTreeMapping mapping = ds.packedRTreeMapping;
+        assertNotNull(mapping);
+        it = ds.queryPackedRTree(new Envelope(-62, -61, 22, 23));
+        it.close();
+        assertSame(mapping, ds.packedRTreeMapping);
+        assertEquals(0, mapping.users);
+
+        // containing all the data, the index is not used
+        bounds.expandBy(1);
+        assertNull(ds.queryPackedRTree(bounds));
+        ds.dispose();
+        assertNull(ds.packedRTreeMapping);
+        assertTrue(mapping.retired);
+        ds2.dispose();
+
+        // the factory picks up the packed index when there is no quadtree
+        ShapefileDataStoreFactory factory = new ShapefileDataStoreFactory();
+        Map params = new HashMap();
+        params.put(ShapefileDataStoreFactory.URLP.key, url);
+        IndexedShapefileDataStore ds3 = (IndexedShapefileDataStore) factory.createDataStore(params);
+        assertEquals(IndexType.PRX, ds3.treeType);
+        ds3.dispose();
+    }
+
     public void testSelectionQuery() throws Exception {
         File shpFile = copyShapefiles(STATE_POP);
         URL url = shpFile.toURI().toURL();
@@ -20,12 +20,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 
 import org.geotools.data.shapefile.TestCaseSupport;
+import org.geotools.geometry.jts.coordinatesequence.CoordinateSequences;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.geom.impl.CoordinateArraySequenceFactory;
 
 /**
  * 
@@ -57,6 +60,32 @@ public class PolygonHandlerTest extends TestCaseSupport {
         }
     }
 
+    public void testPackedOrientation() {
+        double[][] rings = new double[][] {
+                // clockwise and counter-clockwise squares
+                { 0, 0, 0, 1, 1, 1, 1, 0, 0, 0 },
+                { 0, 0, 1, 0, 1, 1, 0, 1, 0, 0 },
+                // repeated points around the highest one
+                { 0, 0, 1, 2, 1, 2, 2, 0, 0, 0 },
+                { 0, 0, 2, 0, 1, 2, 1, 2, 0, 0 },
+                // collinear points at the top
+                { 0, 0, 0, 1, 1, 1, 2, 1, 2, 0, 0, 0 },
+                // A-B-A
+                { 0, 0, 1, 1, 0, 0 } };
+        CoordinateSequenceFactory csFactory = CoordinateArraySequenceFactory.instance();
+        for (int i = 0; i < rings.length; i++) {
+            double[] ring = rings[i];
+            Coordinate[] coordinates = new Coordinate[ring.length / 2];
+            for (int j = 0; j < coordinates.length; j++) {
+                coordinates[j] = new Coordinate(ring[j * 2], ring[j * 2 + 1]);
+            }
+            boolean expected = CoordinateSequences.isCCW(csFactory.create(coordinates));
+            assertEquals("Ring " + i, expected, PackedCoordinates.isCCW(ring, 2));
+        }
+        assertFalse(PackedCoordinates.isCCW(rings[0], 2));
+        assertTrue(PackedCoordinates.isCCW(rings[1], 2));
+    }
+
     public void testHoleAssignment() {
         java.awt.Dimension ps = new java.awt.Dimension(500, 500);
         PrecisionModel precision = new PrecisionModel();
@@ -0,0 +1,132 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.index.packed;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Random;
+
+import org.geotools.data.shapefile.ShpFiles;
+import org.geotools.data.shapefile.indexed.IndexType;
+import org.geotools.data.shapefile.indexed.ShapeFileIndexer;
+import org.geotools.data.shapefile.shp.IndexFile;
+import org.geotools.index.CloseableIterator;
+import org.geotools.index.Data;
+import org.geotools.index.quadtree.QuadTree;
+import org.geotools.index.quadtree.fs.FileSystemIndexStore;
+import org.geotools.util.NullProgressListener;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Compares the bbox query latency of the .qix quadtree and of the .prx packed R-tree on the
+ * same shapefile. Both indexes are rebuilt, then the same set of random queries is run against
+ * each of them, iterating over all the results.
+ * <p>
+ * Usage: <code>PackedRTreeBenchmark &lt;shapefile&gt; [queries] [query size as a fraction of
+ * the data bounds]</code>
+ * </p>
+ *
+ * @source $URL$
+ */
+public class PackedRTreeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: PackedRTreeBenchmark <shapefile> [queries] [query size]");
+            System.exit(1);
+        }
+        File shp = new File(args[0]);
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        double size = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+
+        ShpFiles shpFiles = new ShpFiles(shp);
+        long start = System.currentTimeMillis();
+        buildIndex(shpFiles, IndexType.QIX);
+        System.out.println("qix built in " + (System.currentTimeMillis() - start) + "ms");
+        start = System.currentTimeMillis();
+        buildIndex(shpFiles, IndexType.PRX);
+        System.out.println("prx built in " + (System.currentTimeMillis() - start) + "ms");
+
+        File base = new File(shp.getParentFile(), shp.getName().substring(0,
+                shp.getName().lastIndexOf('.')));
+        File qixFile = new File(base.getPath() + ".qix");
+        File prxFile = new File(base.getPath() + ".prx");
+
+        QuadTree quadTree = new FileSystemIndexStore(qixFile).load(
+                new IndexFile(shpFiles, true), true);
+        RandomAccessFile raf = new RandomAccessFile(prxFile, "r");
+        FileChannel channel = raf.getChannel();
+        MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        PackedRTree packed = new PackedRTree(buffer);
+
+        Envelope bounds = packed.getBounds();
+        Envelope[] envelopes = new Envelope[queries];
+        Random random = new Random(0);
+        double width = bounds.getWidth() * size;
+        double height = bounds.getHeight() * size;
+        for (int i = 0; i < queries; i++) {
+            double x = bounds.getMinX() + random.nextDouble() * (bounds.getWidth() - width);
+            double y = bounds.getMinY() + random.nextDouble() * (bounds.getHeight() - height);
+            envelopes[i] = new Envelope(x, x + width, y, y + height);
+        }
+
+        // warm up, then measure
+        for (int i = 0; i < 3; i++) {
+            benchmark("qix", quadTree, null, envelopes);
+            benchmark("prx", null, packed, envelopes);
+        }
+        benchmark("qix", quadTree, null, envelopes);
+        benchmark("prx", null, packed, envelopes);
+
+        quadTree.close();
+        packed.close();
+        raf.close();
+        shpFiles.dispose();
+    }
+
+    static void buildIndex(ShpFiles shpFiles, IndexType type) throws Exception {
+        ShapeFileIndexer indexer = new ShapeFileIndexer();
+        indexer.setShapeFileName(shpFiles);
+        indexer.setIndexType(type);
+        indexer.index(false, new NullProgressListener());
+    }
+
+    static void benchmark(String name, QuadTree quadTree, PackedRTree packed,
+            Envelope[] envelopes) throws Exception {
+        long hits = 0;
+        long start = System.nanoTime();
+        for (Envelope envelope : envelopes) {
+            CloseableIterator<Data> it = quadTree != null ? quadTree.search(envelope) : packed
+                    .search(envelope);
+            try {
+                while (it.hasNext()) {
+                    it.next();
+                    hits++;
+                }
+            } finally {
+                it.close();
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / envelopes.length;
+        System.out.println(name + ": " + Math.round(micros * 10) / 10d + " us/query, " + hits
+                + " hits");
+    }
+}
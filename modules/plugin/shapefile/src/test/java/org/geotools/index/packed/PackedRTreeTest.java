@@ -0,0 +1,146 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.index.packed;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.geotools.index.CloseableIterator;
+import org.geotools.index.Data;
+import org.geotools.index.quadtree.StoreException;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * 
+ *
+ * @source $URL$
+ */
+public class PackedRTreeTest extends TestCase {
+
+    File file;
+
+    protected void setUp() throws Exception {
+        file = File.createTempFile("packed", ".prx");
+    }
+
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testEmpty() throws Exception {
+        PackedRTreeBuilder builder = new PackedRTreeBuilder();
+        builder.write(file);
+        PackedRTree tree = new PackedRTree(map(file));
+        assertEquals(0, tree.getNumItems());
+        assertTrue(tree.getBounds().isNull());
+        assertFalse(tree.search(new Envelope(0, 10, 0, 10)).hasNext());
+    }
+
+    public void testSingleItem() throws Exception {
+        PackedRTreeBuilder builder = new PackedRTreeBuilder();
+        builder.add(0, 100, new Envelope(0, 10, 0, 10));
+        builder.write(file);
+        PackedRTree tree = new PackedRTree(map(file));
+        assertEquals(new Envelope(0, 10, 0, 10), tree.getBounds());
+
+        CloseableIterator<Data> it = tree.search(new Envelope(5, 6, 5, 6));
+        assertTrue(it.hasNext());
+        Data data = it.next();
+        assertEquals(Integer.valueOf(1), data.getValue(0));
+        assertEquals(Long.valueOf(100), data.getValue(1));
+        assertFalse(it.hasNext());
+        it.close();
+
+        assertEquals(0, tree.count(new Envelope(11, 12, 11, 12)));
+    }
+
+    public void testSearchAgainstLinearScan() throws Exception {
+        Random random = new Random(0);
+        int count = 5000;
+        Envelope[] boxes = new Envelope[count];
+        PackedRTreeBuilder builder = new PackedRTreeBuilder(8, 10);
+        for (int i = 0; i < count; i++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            boxes[i] = new Envelope(x, x + random.nextDouble() * 10, y, y
+                    + random.nextDouble() * 10);
+            builder.add(i, 100 + i * 20, boxes[i]);
+        }
+        builder.write(file);
+        PackedRTree tree = new PackedRTree(map(file));
+        assertEquals(count, tree.getNumItems());
+
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            double size = random.nextDouble() * 100;
+            Envelope query = new Envelope(x, x + size, y, y + size);
+
+            int expected = 0;
+            for (int i = 0; i < count; i++) {
+                if (boxes[i].intersects(query)) {
+                    expected++;
+                }
+            }
+
+            int actual = 0;
+            long lastOffset = -1;
+            CloseableIterator<Data> it = tree.search(query);
+            while (it.hasNext()) {
+                Data data = it.next();
+                int recno = ((Integer) data.getValue(0)) - 1;
+                long offset = (Long) data.getValue(1);
+                assertEquals(100 + recno * 20, offset);
+                assertTrue(boxes[recno].intersects(query));
+                // results are sorted on the shp offset
+                assertTrue(offset > lastOffset);
+                lastOffset = offset;
+                actual++;
+            }
+            it.close();
+            assertEquals(expected, actual);
+            assertEquals(expected, tree.count(query));
+        }
+    }
+
+    public void testInvalidFile() throws Exception {
+        try {
+            new PackedRTree(ByteBuffer.allocate(128));
+            fail("Should have failed, the magic number is missing");
+        } catch (StoreException e) {
+            // fine
+        }
+    }
+
+    ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return channel.map(MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.geotools.process.factory.DescribeResult;
 import org.geotools.process.gs.GSProcess;
 import org.geotools.process.gs.WrappingIterator;
 
+import org.geotools.data.DataUtilities;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.factory.CommonFactoryFinder;
@@ -134,7 +135,7 @@ public class ClipProcess implements GSProcess {
 
         @Override
         public SimpleFeatureIterator features() {
-            return new ClippingFeatureIterator(delegate.features(), clip, getSchema());
+            return new ClippingFeatureIterator(delegate, clip, getSchema());
         }
 
         @Override
@@ -150,63 +151,50 @@ public class ClipProcess implements GSProcess {
         }
     }
 
+    /**
+     * Clips the features as we stream, the features intersecting the clip are found and clipped
+     * in parallel by a {@link SpatialJoin} against the clip geometry
+     */
     static class ClippingFeatureIterator implements SimpleFeatureIterator {
-        SimpleFeatureIterator delegate;
-
-        GeometryClipper clipper;
-
-        boolean preserveTopology;
+        SpatialJoin.MatchIterator matches;
 
         SimpleFeatureBuilder fb;
 
         SimpleFeature next;
 
-        Geometry clip;
-
-        public ClippingFeatureIterator(SimpleFeatureIterator delegate, Geometry clip,
+        public ClippingFeatureIterator(SimpleFeatureCollection delegate, Geometry clip,
                 SimpleFeatureType schema) {
-            this.delegate = delegate;
-            
-            // can we use the fast clipper?
-            if(clip.getEnvelope().equals(clip)) {
-                this.clipper = new GeometryClipper(clip.getEnvelopeInternal());
-            } else {
-                this.clip = clip;
-            }
-                
+            SpatialJoin join = new SpatialJoin(delegate, clipCollection(clip),
+                    SpatialJoin.Relation.INTERSECTS);
+            // the clip is prepared once per evaluation thread, and matched against all features
+            join.setIndexSide(SpatialJoin.IndexSide.RIGHT);
+            join.setOperation(new ClipOperation(clip));
+            this.matches = join.iterator();
             fb = new SimpleFeatureBuilder(schema);
         }
 
+        /**
+         * Wraps the clip geometry in a single feature collection, to join the features with
+         */
+        static SimpleFeatureCollection clipCollection(Geometry clip) {
+            SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+            tb.setName("clip");
+            tb.add("clip", Geometry.class);
+            SimpleFeatureType type = tb.buildFeatureType();
+            return DataUtilities.collection(SimpleFeatureBuilder.build(type,
+                    new Object[] { clip }, null));
+        }
+
         public void close() {
-            delegate.close();
+            matches.close();
         }
 
         public boolean hasNext() {
-            while (next == null && delegate.hasNext()) {
-                boolean clippedOut = false;
-                
-                // try building the clipped feature out of the original feature, if the
-                // default geometry is clipped out, skip it
-                SimpleFeature f = delegate.next();
-                for (AttributeDescriptor ad : f.getFeatureType().getAttributeDescriptors()) {
-                    Object attribute = f.getAttribute(ad.getName());
-                    if (ad instanceof GeometryDescriptor) {
-                        Class target = ad.getType().getBinding();
-                        attribute = clipGeometry((Geometry) attribute, target);
-                        if (attribute == null && f.getFeatureType().getGeometryDescriptor() == ad) {
-                            // the feature has been clipped out
-                            fb.reset();
-                            clippedOut = true;
-                            break;
-                        }
-                    } 
-                    fb.add(attribute);
-                }
-                
-                if(!clippedOut) {
-                    // build the next feature
-                    next = fb.buildFeature(f.getID());
-                }
+            while (next == null && matches.hasNext()) {
+                SpatialJoin.Match match = matches.next();
+                // the clipped attributes, the features clipped out are not matched at all
+                fb.addAll((Object[]) match.getValue());
+                next = fb.buildFeature(match.getLeft().getID());
                 fb.reset();
             }
 
@@ -222,7 +210,47 @@ public class ClipProcess implements GSProcess {
             next = null;
             return result;
         }
-        
+    }
+
+    /**
+     * Computes the clipped attributes of a feature, or null if the feature default geometry
+     * has been clipped out. Called concurrently by the join threads.
+     */
+    static class ClipOperation implements SpatialJoin.MatchOperation {
+        GeometryClipper clipper;
+
+        Geometry clip;
+
+        ClipOperation(Geometry clip) {
+            // can we use the fast clipper?
+            if(clip.getEnvelope().equals(clip)) {
+                this.clipper = new GeometryClipper(clip.getEnvelopeInternal());
+            } else {
+                this.clip = clip;
+            }
+        }
+
+        public Object apply(SimpleFeature f, SimpleFeature clipFeature) {
+            // try building the clipped feature out of the original feature, if the
+            // default geometry is clipped out, skip it
+            List<AttributeDescriptor> descriptors = f.getFeatureType().getAttributeDescriptors();
+            Object[] values = new Object[descriptors.size()];
+            for (int i = 0; i < values.length; i++) {
+                AttributeDescriptor ad = descriptors.get(i);
+                Object attribute = f.getAttribute(ad.getName());
+                if (ad instanceof GeometryDescriptor) {
+                    Class target = ad.getType().getBinding();
+                    attribute = clipGeometry((Geometry) attribute, target);
+                    if (attribute == null && f.getFeatureType().getGeometryDescriptor() == ad) {
+                        // the feature has been clipped out
+                        return null;
+                    }
+                }
+                values[i] = attribute;
+            }
+            return values;
+        }
+
         private Object clipGeometry(Geometry geom, Class target) {
             // first off, clip
             Geometry clipped = null;
@@ -27,15 +27,8 @@ import org.geotools.process.gs.GSProcess;
 import org.geotools.process.gs.WrappingIterator;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
-import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.filter.Filter;
-import org.opengis.filter.FilterFactory2;
-
-import com.vividsolutions.jts.geom.Geometry;
 
 /**
  * A process providing a feature collection containing the features of the first input collection
@@ -70,7 +63,7 @@ public class InclusionFeatureCollection implements GSProcess {
 
         @Override
         public SimpleFeatureIterator features() {
-            return new IncludedFeatureIterator(delegate.features(), delegate, features, getSchema());
+            return new IncludedFeatureIterator(delegate, features);
         }
 
         @Override
@@ -87,54 +80,30 @@ public class InclusionFeatureCollection implements GSProcess {
     }
 
     /**
-     * Computes the inclusion property as we stream
+     * Computes the inclusion property as we stream, using a {@link SpatialJoin} to find the
+     * containing features
      */
     static class IncludedFeatureIterator implements SimpleFeatureIterator {
-        SimpleFeatureIterator delegate;
-
-        SimpleFeatureCollection firstFeatures;
-
-        SimpleFeatureCollection secondFeatures;
-
-        SimpleFeatureBuilder fb;
+        SpatialJoin.MatchIterator matches;
 
         SimpleFeature next;
 
-        String dataGeomName;
-        
-        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
-
-        public IncludedFeatureIterator(SimpleFeatureIterator delegate,
-                SimpleFeatureCollection firstFeatures, SimpleFeatureCollection secondFeatures,
-                SimpleFeatureType schema) {
-            this.delegate = delegate;
-            this.firstFeatures = firstFeatures;
-            this.secondFeatures = secondFeatures;
-            this.fb = new SimpleFeatureBuilder(schema);
-            this.dataGeomName = this.firstFeatures.getSchema().getGeometryDescriptor()
-                    .getLocalName();
-
+        public IncludedFeatureIterator(SimpleFeatureCollection firstFeatures,
+                SimpleFeatureCollection secondFeatures) {
+            SpatialJoin join = new SpatialJoin(firstFeatures, secondFeatures,
+                    SpatialJoin.Relation.WITHIN);
+            // each first feature is returned once, no matter how many features contain it
+            join.setDistinctLeft(true);
+            this.matches = join.iterator();
         }
 
         public void close() {
-            delegate.close();
+            matches.close();
         }
 
         public boolean hasNext() {
-            while (next == null && delegate.hasNext()) {
-                SimpleFeature f = delegate.next();
-                for (Object attribute : f.getAttributes()) {
-                    if (attribute instanceof Geometry) {
-                        Geometry geom = (Geometry) attribute;
-                        Filter overFilter = ff
-                                .contains(ff.property(dataGeomName), ff.literal(geom));
-                        SimpleFeatureCollection subFeatureCollectionInclusion = this.secondFeatures
-                                .subCollection(overFilter);
-                        if (subFeatureCollectionInclusion.size() > 0) {
-                            next = f;
-                        }
-                    }
-                }
+            if (next == null && matches.hasNext()) {
+                next = matches.next().getLeft();
             }
             return next != null;
         }
@@ -25,7 +25,6 @@ import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
-import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.AttributeTypeBuilder;
 import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
@@ -40,8 +39,6 @@ import org.geotools.referencing.CRS;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
-import org.opengis.filter.Filter;
-import org.opengis.filter.FilterFactory2;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
@@ -61,6 +58,12 @@ import com.vividsolutions.jts.geom.Polygon;
 
 /**
  * A process providing the intersection between two feature collections
+ * <p>
+ * The pairs of intersecting features are found by a {@link SpatialJoin}, which keeps the smaller
+ * collection in memory and streams the other one. The output follows the order of the streamed
+ * collection: when the first collection has less features than the second, the output is
+ * grouped by the features of the second collection, instead of the first.
+ * </p>
  * 
  * @author Gianni Barrotta - Sinergis
  * @author Andrea Di Nora - Sinergis
@@ -376,7 +379,7 @@ public class IntersectionFeatureCollection implements GSProcess {
 
         @Override
         public SimpleFeatureIterator features() {
-            return new IntersectedFeatureIterator(delegate.features(), delegate, features,
+            return new IntersectedFeatureIterator(delegate, features,
                     delegate.getSchema(), features.getSchema(), firstAttributes, sndAttributes,
                     intersectionMode, percentagesEnabled, areasEnabled,fb);
         }
@@ -395,35 +398,22 @@ public class IntersectionFeatureCollection implements GSProcess {
     }
 
     /**
-     * Builds the intersections while streaming
+     * Builds the intersections while streaming, the candidate pairs are found and intersected
+     * in parallel by a {@link SpatialJoin}
      */
     static class IntersectedFeatureIterator implements SimpleFeatureIterator {
-        SimpleFeatureIterator delegate;
-
         SimpleFeatureCollection firstFeatures;
 
         SimpleFeatureCollection secondFeatures;
 
-        SimpleFeatureCollection subFeatureCollection;
+        SpatialJoin.MatchIterator matches;
 
         SimpleFeatureBuilder fb;
 
         SimpleFeature next;
 
-        SimpleFeature first;
-
         Integer iterationIndex = 0;
 
-        boolean complete = true;
-
-        boolean added = false;
-
-        SimpleFeatureCollection intersectedGeometries;
-
-        SimpleFeatureIterator iterator;
-
-        String dataGeomName;
-
         List<String> retainAttributesFst = null;
 
         List<String> retainAttributesSnd = null;
@@ -437,8 +427,8 @@ public class IntersectionFeatureCollection implements GSProcess {
         IntersectionMode intersectionMode;
         int id=0;
 
-        public IntersectedFeatureIterator(SimpleFeatureIterator delegate,
-                SimpleFeatureCollection firstFeatures, SimpleFeatureCollection secondFeatures,
+        public IntersectedFeatureIterator(SimpleFeatureCollection firstFeatures,
+                SimpleFeatureCollection secondFeatures,
                 SimpleFeatureType firstFeatureCollectionSchema,
                 SimpleFeatureType secondFeatureCollectionSchema,
                 List<String> retainAttributesFstPar, List<String> retainAttributesSndPar,
@@ -446,7 +436,6 @@ public class IntersectionFeatureCollection implements GSProcess {
                 SimpleFeatureBuilder sfb) {
             this.retainAttributesFst = retainAttributesFstPar;
             this.retainAttributesSnd = retainAttributesSndPar;
-            this.delegate = delegate;
             this.firstFeatures = firstFeatures;
             this.secondFeatures = secondFeatures;
             this.percentagesEnabled = percentagesEnabled;
@@ -455,7 +444,6 @@ public class IntersectionFeatureCollection implements GSProcess {
 
             logger.fine("Creating schema");
             // create the geometry attribute descriptor for the result
-  //          SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
             if (intersectionMode == IntersectionMode.FIRST) {
                 geomType = firstFeatureCollectionSchema.getGeometryDescriptor();
             }
@@ -467,103 +455,60 @@ public class IntersectionFeatureCollection implements GSProcess {
             }
 
             this.fb = sfb;
-            subFeatureCollection = this.secondFeatures;
-
-            this.dataGeomName = this.firstFeatures.getSchema().getGeometryDescriptor()
-                    .getLocalName();
             logger.fine("Schema created");
-        }
 
+            SpatialJoin join = new SpatialJoin(firstFeatures, secondFeatures,
+                    SpatialJoin.Relation.INTERSECTS);
+            if (intersectionMode == IntersectionMode.INTERSECTION) {
+                // the overlay is the expensive part, have the join threads compute it
+                join.setOperation(new IntersectionOperation(geomType.getType().getBinding()));
+            }
+            this.matches = join.iterator();
+        }
 
         public void close() {
-            delegate.close();
+            matches.close();
         }
 
         public boolean hasNext() {
-         //   logger.info("qui");
             logger.finer("HAS NEXT");
-            while ((next == null && delegate.hasNext()) || (next == null && added)) {
-                       //     logger.info("qui nel while");
-                if (complete) {
-                    first = delegate.next();
-                    intersectedGeometries = null;
+            while (next == null && matches.hasNext()) {
+                SpatialJoin.Match match = matches.next();
+                SimpleFeature first = match.getLeft();
+                SimpleFeature second = match.getRight();
+                Geometry currentGeom = (Geometry) first.getDefaultGeometry();
+
+                // compute geometry
+                Geometry attribute = null;
+                if (intersectionMode == IntersectionMode.INTERSECTION) {
+                    attribute = (Geometry) match.getValue();
+                } else if (intersectionMode == IntersectionMode.FIRST) {
+                    attribute = currentGeom;
+                } else if (intersectionMode == IntersectionMode.SECOND) {
+                    attribute = (Geometry) second.getDefaultGeometry();
                 }
-                         //               logger.info("qui dopo check if (complete)");
-                //logger.finer("control HAS NEXT");
-                for (Object attribute : first.getAttributes()) {
-                    if (attribute instanceof Geometry
-                            && attribute.equals(first.getDefaultGeometry())) {
-                        Geometry currentGeom = (Geometry) attribute;
-
-                        if (intersectedGeometries == null && !added) {
-                            intersectedGeometries = filteredCollection(currentGeom,
-                                    subFeatureCollection);
-                            iterator = intersectedGeometries.features();
-                        }
-                        try {
-                            while (iterator.hasNext()) {
-                                added = false;
-                                SimpleFeature second = iterator.next();
-                                if (currentGeom.getEnvelope().intersects(
-                                        ((Geometry) second.getDefaultGeometry()))) {
-                                    // compute geometry
-                                    if (intersectionMode == IntersectionMode.INTERSECTION) {
-                                        attribute = currentGeom.intersection((Geometry) second
-                                                .getDefaultGeometry());
-
-                                        GeometryFilterImpl filter = new GeometryFilterImpl(geomType
-                                                .getType().getBinding());
-                                        ((Geometry) attribute).apply(filter);
-                                        attribute = filter.getGeometry();
-                                    } else if (intersectionMode == IntersectionMode.FIRST) {
-                                        attribute = currentGeom;
-                                    } else if (intersectionMode == IntersectionMode.SECOND) {
-                                        attribute = (Geometry) second.getDefaultGeometry();
-                                    }
-                                    if (((Geometry) attribute).getNumGeometries() > 0) {
-                                        fb.add(attribute);
-                                        fb.set("INTERSECTION_ID", id++);
-                                        // add the non geometric attributes
-                                        addAttributeValues(first, retainAttributesFst, fb);
-                                        addAttributeValues(second, retainAttributesSnd, fb);
-                                        // add the dynamic attributes
-                                        if (percentagesEnabled) {
-                                            addPercentages(currentGeom, second);
-                                        }
-                                        if (areasEnabled) {
-                                            addAreas(currentGeom, second);
-                                        }
-
-                                        // build the feature
-                                        next = fb.buildFeature(iterationIndex.toString());
-
-                                        // update iterator status
-                                        if (iterator.hasNext()) {
-                                            complete = false;
-                                            added = true;
-                                            iterationIndex++;
-                                            return next != null;
-                                        }
-                                        iterationIndex++;
-                                    }
-
-                                }
-                                complete = false;
-                            }
-                            complete = true;
-                        } finally {
-                            if (!added) {
-                                iterator.close();
-                            }
-                        }
+                if (attribute.getNumGeometries() > 0) {
+                    fb.add(attribute);
+                    fb.set("INTERSECTION_ID", id++);
+                    // add the non geometric attributes
+                    addAttributeValues(first, retainAttributesFst, fb);
+                    addAttributeValues(second, retainAttributesSnd, fb);
+                    // add the dynamic attributes
+                    if (percentagesEnabled) {
+                        addPercentages(currentGeom, second);
+                    }
+                    if (areasEnabled) {
+                        addAreas(currentGeom, second);
                     }
+
+                    // build the feature
+                    next = fb.buildFeature(iterationIndex.toString());
+                    iterationIndex++;
                 }
             }
             return next != null;
         }
 
-
-        
         private void addAttributeValues(SimpleFeature feature, List<String> retained,
                 SimpleFeatureBuilder fb) {
             Iterator<AttributeDescriptor> firstIterator = feature.getType().getAttributeDescriptors()
@@ -623,18 +568,26 @@ public class IntersectionFeatureCollection implements GSProcess {
             next = null;
             return result;
         }
+    }
 
-        private SimpleFeatureCollection filteredCollection(Geometry currentGeom,
-                SimpleFeatureCollection subFeatureCollection) {
-            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
-            Filter intersectFilter = ff.intersects(ff.property(dataGeomName),
-                    ff.literal(currentGeom));
-            SimpleFeatureCollection subFeatureCollectionIntersection = this.subFeatureCollection
-                    .subCollection(intersectFilter);
-            if (subFeatureCollectionIntersection.size() == 0) {
-                subFeatureCollectionIntersection = subFeatureCollection;
-            }
-            return subFeatureCollectionIntersection;
+    /**
+     * Computes the intersection of the matching features, keeping only the components
+     * compatible with the output geometry type
+     */
+    static class IntersectionOperation implements SpatialJoin.MatchOperation {
+        Class binding;
+
+        IntersectionOperation(Class binding) {
+            this.binding = binding;
+        }
+
+        public Object apply(SimpleFeature first, SimpleFeature second) {
+            Geometry intersection = ((Geometry) first.getDefaultGeometry())
+                    .intersection((Geometry) second.getDefaultGeometry());
+            GeometryFilterImpl filter = new GeometryFilterImpl(binding);
+            intersection.apply(filter);
+            Geometry result = filter.getGeometry();
+            return result.getNumGeometries() > 0 ? result : null;
         }
     }
 
@@ -0,0 +1,586 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2012, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.feature.gs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.process.ProcessException;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Joins two feature collections on a spatial relationship between their default geometries,
+ * used by the overlay processes ({@link IntersectionFeatureCollection},
+ * {@link InclusionFeatureCollection}, {@link ClipProcess}).
+ * <p>
+ * One side of the join (by default the smaller one) is loaded in memory and bulk loaded into a
+ * packed {@link STRtree}, the other side is streamed in batches: the candidates of each batch
+ * are looked up in the index and evaluated in parallel using {@link PreparedGeometry}
+ * predicates, then the matches are returned in the order the streamed side provided its
+ * features. Only one batch of matches is kept in memory at any given time.
+ * </p>
+ * <p>
+ * The geometries are prepared by the thread evaluating them, and never shared among threads,
+ * so the join does not depend on the thread safety of the prepared geometries. When the indexed
+ * side is small, its prepared geometries are kept by each thread for the whole iteration,
+ * otherwise they are reused only within the chunk of streamed features being evaluated.
+ * </p>
+ *
+ * @since 9.0
+ *
+ * @source $URL$
+ */
+public class SpatialJoin {
+
+    /**
+     * The default number of streamed features evaluated in each batch
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * Streamed geometries with at least this number of candidates get prepared, with less the
+     * indexed geometries are prepared instead (and reused across the batch)
+     */
+    static final int PREPARE_THRESHOLD = 4;
+
+    /**
+     * Batches smaller than this are evaluated in the calling thread
+     */
+    static final int MIN_PARALLEL_BATCH = 64;
+
+    /**
+     * Indexed sides with at most this number of features get their prepared geometries kept by
+     * each evaluation thread for the whole iteration, instead of one chunk
+     */
+    static final int MAX_THREAD_PREPARED = 256;
+
+    /**
+     * The spatial relationships the join can be performed on, read as
+     * <code>left RELATION right</code>
+     */
+    public enum Relation {
+        INTERSECTS {
+            @Override
+            boolean evaluate(PreparedGeometry a, Geometry b) {
+                return a.intersects(b);
+            }
+
+            @Override
+            Relation converse() {
+                return INTERSECTS;
+            }
+        },
+        CONTAINS {
+            @Override
+            boolean evaluate(PreparedGeometry a, Geometry b) {
+                return a.contains(b);
+            }
+
+            @Override
+            Relation converse() {
+                return WITHIN;
+            }
+        },
+        WITHIN {
+            @Override
+            boolean evaluate(PreparedGeometry a, Geometry b) {
+                return a.within(b);
+            }
+
+            @Override
+            Relation converse() {
+                return CONTAINS;
+            }
+        };
+
+        abstract boolean evaluate(PreparedGeometry a, Geometry b);
+
+        /**
+         * The relation with the operands swapped, <code>a R b == b R.converse() a</code>
+         */
+        abstract Relation converse();
+    }
+
+    /**
+     * Which side of the join gets indexed in memory
+     */
+    public enum IndexSide {
+        LEFT, RIGHT,
+        /**
+         * The side with less features, as reported by {@link SimpleFeatureCollection#size()}
+         */
+        SMALLER
+    }
+
+    /**
+     * Computes a value out of a matching pair, in the threads evaluating the join. Used to
+     * parallelize the expensive part of the overlays, such as computing the intersection
+     * geometries.
+     */
+    public interface MatchOperation {
+        /**
+         * Returns the value to be associated to the match, or null to drop the match
+         */
+        Object apply(SimpleFeature left, SimpleFeature right);
+    }
+
+    /**
+     * A pair of features satisfying the join relation
+     */
+    public static final class Match {
+        final SimpleFeature left;
+
+        final SimpleFeature right;
+
+        final Object value;
+
+        Match(SimpleFeature left, SimpleFeature right, Object value) {
+            this.left = left;
+            this.right = right;
+            this.value = value;
+        }
+
+        public SimpleFeature getLeft() {
+            return left;
+        }
+
+        public SimpleFeature getRight() {
+            return right;
+        }
+
+        /**
+         * The value computed by the {@link MatchOperation}, if any
+         */
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    SimpleFeatureCollection left;
+
+    SimpleFeatureCollection right;
+
+    Relation relation;
+
+    IndexSide indexSide = IndexSide.SMALLER;
+
+    boolean distinctLeft;
+
+    MatchOperation operation;
+
+    int batchSize = DEFAULT_BATCH_SIZE;
+
+    ExecutorService threadPool;
+
+    /**
+     * The thread pool shared by the joins that have not been given one, created on first use
+     */
+    static ExecutorService defaultThreadPool;
+
+    /**
+     * Builds a join returning the pairs of features for which
+     * <code>left relation right</code> holds
+     */
+    public SpatialJoin(SimpleFeatureCollection left, SimpleFeatureCollection right,
+            Relation relation) {
+        if (left == null || right == null || relation == null) {
+            throw new IllegalArgumentException("The collections and the relation must be non null");
+        }
+        this.left = left;
+        this.right = right;
+        this.relation = relation;
+    }
+
+    /**
+     * Sets which side of the join gets indexed, the other is streamed. Defaults to
+     * {@link IndexSide#SMALLER}
+     */
+    public void setIndexSide(IndexSide indexSide) {
+        this.indexSide = indexSide;
+    }
+
+    /**
+     * When true each left feature is returned at most once, paired with one of the right
+     * features it matches (a semi join). When the left side is indexed, the left features are
+     * returned in their original order after the right side has been fully streamed.
+     */
+    public void setDistinctLeft(boolean distinctLeft) {
+        this.distinctLeft = distinctLeft;
+    }
+
+    /**
+     * Sets the operation computing the value of each match in the evaluation threads
+     */
+    public void setOperation(MatchOperation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Sets the number of streamed features evaluated in each batch, which bounds the number of
+     * matches kept in memory
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the thread pool used to evaluate the batches. If not set, a pool of daemon threads,
+     * one per processor, shared by all the joins is used.
+     */
+    public void setThreadPool(ExecutorService threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    /**
+     * Returns the thread pool shared by the joins that have not been given one
+     */
+    static synchronized ExecutorService getDefaultThreadPool() {
+        if (defaultThreadPool == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            defaultThreadPool = Executors.newFixedThreadPool(Runtime.getRuntime()
+                    .availableProcessors(), new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    // daemon threads, the pool is never shut down
+                    Thread t = new Thread(r, "GeoTools-SpatialJoin-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return defaultThreadPool;
+    }
+
+    /**
+     * Builds the index and starts streaming the other side of the join. The iterator must be
+     * closed once done.
+     */
+    public MatchIterator iterator() {
+        boolean indexLeft;
+        if (indexSide == IndexSide.LEFT) {
+            indexLeft = true;
+        } else if (indexSide == IndexSide.RIGHT) {
+            indexLeft = false;
+        } else {
+            indexLeft = left.size() < right.size();
+        }
+        return new MatchIterator(indexLeft);
+    }
+
+    /**
+     * Streams the matches of the join
+     */
+    public final class MatchIterator implements Iterator<Match> {
+
+        final boolean indexLeft;
+
+        /**
+         * The relation as evaluated between a streamed and an indexed geometry
+         */
+        final Relation probeRelation;
+
+        final List<SimpleFeature> indexedFeatures = new ArrayList<SimpleFeature>();
+
+        final List<Geometry> indexedGeometries = new ArrayList<Geometry>();
+
+        final STRtree index = new STRtree();
+
+        /**
+         * The indexed geometries prepared by each evaluation thread, when the indexed side is
+         * small enough, or null
+         */
+        Map<Thread, Map<Integer, PreparedGeometry>> threadPrepared;
+
+        /**
+         * The matches of the indexed left features, when running a semi join with the left
+         * side indexed
+         */
+        final AtomicReferenceArray<Match> leftMatches;
+
+        SimpleFeatureIterator probes;
+
+        ExecutorService pool;
+
+        List<Match> pending = Collections.emptyList();
+
+        int cursor;
+
+        MatchIterator(boolean indexLeft) {
+            this.indexLeft = indexLeft;
+            this.probeRelation = indexLeft ? relation.converse() : relation;
+
+            SimpleFeatureIterator fi = (indexLeft ? left : right).features();
+            try {
+                while (fi.hasNext()) {
+                    SimpleFeature f = fi.next();
+                    Geometry g = (Geometry) f.getDefaultGeometry();
+                    if (g == null || g.isEmpty()) {
+                        continue;
+                    }
+                    index.insert(g.getEnvelopeInternal(), indexedFeatures.size());
+                    indexedFeatures.add(f);
+                    indexedGeometries.add(g);
+                }
+            } finally {
+                fi.close();
+            }
+            // build now, the queries are run concurrently
+            index.build();
+
+            leftMatches = distinctLeft && indexLeft ? new AtomicReferenceArray<Match>(
+                    indexedFeatures.size()) : null;
+            if (indexedFeatures.size() <= MAX_THREAD_PREPARED) {
+                threadPrepared = new ConcurrentHashMap<Thread, Map<Integer, PreparedGeometry>>();
+            }
+            if (!indexedFeatures.isEmpty()) {
+                probes = (indexLeft ? right : left).features();
+            }
+        }
+
+        public boolean hasNext() {
+            while (cursor >= pending.size()) {
+                if (probes == null) {
+                    return false;
+                }
+                cursor = 0;
+                pending = nextBatch();
+            }
+            return true;
+        }
+
+        public Match next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("hasNext() returned false!");
+            }
+            return pending.get(cursor++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+            if (probes != null) {
+                probes.close();
+                probes = null;
+            }
+            pending = Collections.emptyList();
+            if (threadPrepared != null) {
+                threadPrepared.clear();
+            }
+        }
+
+        /**
+         * Returns the map of the indexed geometries prepared by the current thread, kept for the
+         * whole iteration if the indexed side is small, or a new one for the current chunk
+         */
+        Map<Integer, PreparedGeometry> getPrepared() {
+            if (threadPrepared == null) {
+                return new HashMap<Integer, PreparedGeometry>();
+            }
+            Thread thread = Thread.currentThread();
+            Map<Integer, PreparedGeometry> prepared = threadPrepared.get(thread);
+            if (prepared == null) {
+                // only the current thread uses this map, no need to synchronize on it
+                prepared = new HashMap<Integer, PreparedGeometry>();
+                threadPrepared.put(thread, prepared);
+            }
+            return prepared;
+        }
+
+        /**
+         * Reads and evaluates the next batch of streamed features
+         */
+        List<Match> nextBatch() {
+            List<SimpleFeature> batch = new ArrayList<SimpleFeature>(batchSize);
+            while (batch.size() < batchSize && probes.hasNext()) {
+                batch.add(probes.next());
+            }
+            if (batch.size() < batchSize) {
+                // the streamed side is over
+                probes.close();
+                probes = null;
+            }
+
+            List<Match> matches;
+            if (batch.size() < MIN_PARALLEL_BATCH) {
+                matches = new JoinTask(batch, 0, batch.size()).call();
+            } else {
+                matches = evaluateParallel(batch);
+            }
+
+            if (probes == null && leftMatches != null) {
+                // the semi join over the indexed side is complete
+                for (int i = 0; i < leftMatches.length(); i++) {
+                    Match m = leftMatches.get(i);
+                    if (m != null) {
+                        matches.add(m);
+                    }
+                }
+            }
+            if (probes == null) {
+                close();
+            }
+            return matches;
+        }
+
+        List<Match> evaluateParallel(List<SimpleFeature> batch) {
+            final int threads = Runtime.getRuntime().availableProcessors();
+            if (pool == null) {
+                pool = threadPool != null ? threadPool : getDefaultThreadPool();
+            }
+
+            // a few chunks per thread, the cost of the single features varies a lot
+            final int chunk = Math.max(MIN_PARALLEL_BATCH / 4, batch.size() / (threads * 4) + 1);
+            List<Future<List<Match>>> futures = new ArrayList<Future<List<Match>>>();
+            for (int start = 0; start < batch.size(); start += chunk) {
+                futures.add(pool.submit(new JoinTask(batch, start, Math.min(start + chunk,
+                        batch.size()))));
+            }
+            List<Match> matches = new ArrayList<Match>();
+            try {
+                for (Future<List<Match>> future : futures) {
+                    matches.addAll(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel(futures);
+                throw new ProcessException("Interrupted while evaluating the spatial join", e);
+            } catch (ExecutionException e) {
+                cancel(futures);
+                throw new ProcessException("Failed to evaluate the spatial join", e.getCause());
+            }
+            return matches;
+        }
+
+        void cancel(List<Future<List<Match>>> futures) {
+            for (Future<List<Match>> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        /**
+         * Evaluates a range of the streamed features against the index
+         */
+        class JoinTask implements Callable<List<Match>> {
+            final List<SimpleFeature> batch;
+
+            final int start;
+
+            final int end;
+
+            JoinTask(List<SimpleFeature> batch, int start, int end) {
+                this.batch = batch;
+                this.start = start;
+                this.end = end;
+            }
+
+            @SuppressWarnings("unchecked")
+            public List<Match> call() {
+                List<Match> matches = new ArrayList<Match>();
+                // the indexed geometries prepared by this thread, confined to it
+                Map<Integer, PreparedGeometry> prepared = getPrepared();
+                for (int i = start; i < end; i++) {
+                    final SimpleFeature probe = batch.get(i);
+                    final Geometry geometry = (Geometry) probe.getDefaultGeometry();
+                    if (geometry == null || geometry.isEmpty()) {
+                        continue;
+                    }
+                    List<Integer> candidates = index.query(geometry.getEnvelopeInternal());
+                    if (candidates.isEmpty()) {
+                        continue;
+                    }
+                    // keep the indexed side order, the output is then stable
+                    Collections.sort(candidates);
+
+                    PreparedGeometry preparedProbe = null;
+                    if (candidates.size() >= PREPARE_THRESHOLD) {
+                        preparedProbe = PreparedGeometryFactory.prepare(geometry);
+                    }
+                    for (Integer candidate : candidates) {
+                        if (leftMatches != null && leftMatches.get(candidate) != null) {
+                            continue;
+                        }
+                        boolean matching;
+                        if (preparedProbe != null) {
+                            matching = probeRelation.evaluate(preparedProbe,
+                                    indexedGeometries.get(candidate));
+                        } else {
+                            PreparedGeometry pg = prepared.get(candidate);
+                            if (pg == null) {
+                                pg = PreparedGeometryFactory.prepare(indexedGeometries
+                                        .get(candidate));
+                                prepared.put(candidate, pg);
+                            }
+                            matching = probeRelation.converse().evaluate(pg, geometry);
+                        }
+                        if (!matching) {
+                            continue;
+                        }
+
+                        SimpleFeature indexed = indexedFeatures.get(candidate);
+                        SimpleFeature l = indexLeft ? indexed : probe;
+                        SimpleFeature r = indexLeft ? probe : indexed;
+                        Object value = null;
+                        if (operation != null) {
+                            value = operation.apply(l, r);
+                            if (value == null) {
+                                continue;
+                            }
+                        }
+                        Match match = new Match(l, r, value);
+                        if (leftMatches != null) {
+                            // returned once the streamed side is over
+                            leftMatches.compareAndSet(candidate, null, match);
+                        } else {
+                            matches.add(match);
+                            if (distinctLeft) {
+                                // the streamed feature is the left one, one match is enough
+                                break;
+                            }
+                        }
+                    }
+                }
+                return matches;
+            }
+        }
+    }
+}
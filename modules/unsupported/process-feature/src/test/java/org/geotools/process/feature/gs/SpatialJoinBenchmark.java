@@ -0,0 +1,100 @@
+package org.geotools.process.feature.gs;
+
+import java.util.Collections;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.process.feature.gs.IntersectionFeatureCollection.IntersectionMode;
+import org.geotools.process.feature.gs.SpatialJoin.MatchIterator;
+import org.geotools.process.feature.gs.SpatialJoin.Relation;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Compares the spatial join against a nested loop on two synthetic grids of overlapping
+ * polygons, and times the intersection process built on top of it. Not run as part of the
+ * build, launch it with the grid size as the first argument (defaults to 100, that is, two
+ * grids of 100 x 100 polygons)
+ *
+ * @source $URL$
+ */
+public class SpatialJoinBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        SimpleFeatureCollection first = SpatialJoinTest.grid("first", n, 1, 0);
+        SimpleFeatureCollection second = SpatialJoinTest.grid("second", n, 1.1, 0.3);
+        System.out.println("Joining two grids of " + n + " x " + n + " polygons");
+
+        // warm up
+        for (int i = 0; i < 3; i++) {
+            join(first, second);
+        }
+
+        long start = System.currentTimeMillis();
+        int matches = join(first, second);
+        System.out.println("Spatial join: " + matches + " matches in "
+                + (System.currentTimeMillis() - start) + "ms");
+
+        start = System.currentTimeMillis();
+        SimpleFeatureCollection intersections = new IntersectionFeatureCollection().execute(
+                first, second, Collections.<String> emptyList(),
+                Collections.<String> emptyList(), IntersectionMode.INTERSECTION, false, false);
+        int count = 0;
+        SimpleFeatureIterator fi = intersections.features();
+        try {
+            while (fi.hasNext()) {
+                fi.next();
+                count++;
+            }
+        } finally {
+            fi.close();
+        }
+        System.out.println("Intersection process: " + count + " features in "
+                + (System.currentTimeMillis() - start) + "ms");
+
+        if (n <= 100) {
+            start = System.currentTimeMillis();
+            matches = nestedLoop(first, second);
+            System.out.println("Nested loop: " + matches + " matches in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    static int join(SimpleFeatureCollection first, SimpleFeatureCollection second) {
+        int count = 0;
+        MatchIterator it = new SpatialJoin(first, second, Relation.INTERSECTS).iterator();
+        try {
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+        } finally {
+            it.close();
+        }
+        return count;
+    }
+
+    static int nestedLoop(SimpleFeatureCollection first, SimpleFeatureCollection second) {
+        int count = 0;
+        SimpleFeatureIterator fi = first.features();
+        try {
+            while (fi.hasNext()) {
+                Geometry g = (Geometry) fi.next().getDefaultGeometry();
+                SimpleFeatureIterator si = second.features();
+                try {
+                    while (si.hasNext()) {
+                        if (g.intersects((Geometry) si.next().getDefaultGeometry())) {
+                            count++;
+                        }
+                    }
+                } finally {
+                    si.close();
+                }
+            }
+        } finally {
+            fi.close();
+        }
+        return count;
+    }
+}
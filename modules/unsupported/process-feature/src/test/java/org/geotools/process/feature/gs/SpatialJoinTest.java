@@ -0,0 +1,198 @@
+package org.geotools.process.feature.gs;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.process.feature.gs.SpatialJoin.IndexSide;
+import org.geotools.process.feature.gs.SpatialJoin.Match;
+import org.geotools.process.feature.gs.SpatialJoin.MatchIterator;
+import org.geotools.process.feature.gs.SpatialJoin.Relation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ *
+ *
+ * @source $URL$
+ */
+public class SpatialJoinTest {
+
+    ExecutorService pool;
+
+    @Before
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Builds a grid of n x n square polygons of the given size, starting at the offset
+     */
+    static SimpleFeatureCollection grid(String name, int n, double size, double offset) {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName(name);
+        tb.add("geom", Polygon.class);
+        tb.add("id", Integer.class);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(tb.buildFeatureType());
+        ListFeatureCollection fc = new ListFeatureCollection(fb.getFeatureType());
+        int id = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double x = offset + i * size;
+                double y = offset + j * size;
+                fb.add(JTS.toGeometry(new Envelope(x, x + size, y, y + size)));
+                fb.add(id);
+                fc.add(fb.buildFeature(name + "." + id));
+                id++;
+            }
+        }
+        return fc;
+    }
+
+    List<Match> collect(SpatialJoin join) {
+        List<Match> result = new ArrayList<Match>();
+        MatchIterator it = join.iterator();
+        try {
+            while (it.hasNext()) {
+                result.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        return result;
+    }
+
+    int bruteForceCount(SimpleFeatureCollection left, SimpleFeatureCollection right) {
+        int count = 0;
+        SimpleFeatureIterator li = left.features();
+        try {
+            while (li.hasNext()) {
+                Geometry lg = (Geometry) li.next().getDefaultGeometry();
+                SimpleFeatureIterator ri = right.features();
+                try {
+                    while (ri.hasNext()) {
+                        if (lg.intersects((Geometry) ri.next().getDefaultGeometry())) {
+                            count++;
+                        }
+                    }
+                } finally {
+                    ri.close();
+                }
+            }
+        } finally {
+            li.close();
+        }
+        return count;
+    }
+
+    @Test
+    public void testIntersectsMatchesBruteForce() {
+        SimpleFeatureCollection left = grid("left", 20, 1, 0);
+        SimpleFeatureCollection right = grid("right", 15, 1.3, 0.5);
+        int expected = bruteForceCount(left, right);
+        assertTrue(expected > 0);
+
+        for (IndexSide side : IndexSide.values()) {
+            SpatialJoin join = new SpatialJoin(left, right, Relation.INTERSECTS);
+            join.setIndexSide(side);
+            join.setBatchSize(100);
+            join.setThreadPool(pool);
+            List<Match> matches = collect(join);
+            assertEquals(side.toString(), expected, matches.size());
+            for (Match m : matches) {
+                assertEquals("left", m.getLeft().getFeatureType().getTypeName());
+                assertEquals("right", m.getRight().getFeatureType().getTypeName());
+            }
+        }
+    }
+
+    @Test
+    public void testStreamedOrder() {
+        SimpleFeatureCollection left = grid("left", 10, 1, 0);
+        SimpleFeatureCollection right = grid("right", 10, 1, 0.5);
+        SpatialJoin join = new SpatialJoin(left, right, Relation.INTERSECTS);
+        join.setIndexSide(IndexSide.RIGHT);
+        join.setBatchSize(64);
+        join.setThreadPool(pool);
+        int last = -1;
+        for (Match m : collect(join)) {
+            int id = (Integer) m.getLeft().getAttribute("id");
+            assertTrue(id >= last);
+            last = id;
+        }
+        assertEquals(99, last);
+    }
+
+    @Test
+    public void testDistinctLeft() {
+        // the small cells crossing the borders of the big ones are not within any of them
+        SimpleFeatureCollection small = grid("small", 8, 1, 0.25);
+        SimpleFeatureCollection big = grid("big", 4, 4, 0);
+        for (IndexSide side : new IndexSide[] { IndexSide.LEFT, IndexSide.RIGHT }) {
+            SpatialJoin join = new SpatialJoin(small, big, Relation.WITHIN);
+            join.setDistinctLeft(true);
+            join.setIndexSide(side);
+            List<Match> matches = collect(join);
+            int last = -1;
+            for (Match m : matches) {
+                int id = (Integer) m.getLeft().getAttribute("id");
+                assertTrue(side.toString(), id > last);
+                last = id;
+                Geometry g = (Geometry) m.getLeft().getDefaultGeometry();
+                assertTrue(g.within((Geometry) m.getRight().getDefaultGeometry()));
+            }
+            // 3 cells out of 4 per row and column are fully inside a big cell
+            assertEquals(side.toString(), 6 * 6, matches.size());
+        }
+    }
+
+    @Test
+    public void testOperation() {
+        SimpleFeatureCollection left = grid("left", 10, 1, 0);
+        SimpleFeatureCollection right = grid("right", 10, 1, 0.5);
+        SpatialJoin join = new SpatialJoin(left, right, Relation.INTERSECTS);
+        join.setOperation(new SpatialJoin.MatchOperation() {
+
+            public Object apply(SimpleFeature left, SimpleFeature right) {
+                Geometry intersection = ((Geometry) left.getDefaultGeometry())
+                        .intersection((Geometry) right.getDefaultGeometry());
+                // drop the pairs only touching each other
+                return intersection.getArea() > 0 ? intersection : null;
+            }
+        });
+        List<Match> matches = collect(join);
+        // along each axis a cell overlaps the two shifted ones around it, 19 pairs in total
+        assertEquals(19 * 19, matches.size());
+        for (Match m : matches) {
+            assertEquals(0.25, ((Geometry) m.getValue()).getArea(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        SimpleFeatureCollection left = grid("left", 5, 1, 0);
+        SimpleFeatureCollection right = grid("right", 0, 1, 0);
+        SpatialJoin join = new SpatialJoin(left, right, Relation.INTERSECTS);
+        assertTrue(collect(join).isEmpty());
+    }
+}